@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.integration;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.config.ConfigRadar;
+import org.radarcns.config.RadarPropertyHandler;
+import org.radarcns.config.SingleStreamConfig;
+import org.radarcns.schema.registration.KafkaTopics;
+import org.radarcns.stream.ProcessingGuarantee;
+import org.radarcns.util.RadarSingletonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the throughput and latency of a windowed aggregation with at-least-once and with
+ * exactly-once processing. Throughput is measured by processing a backlog of input records, from
+ * starting the stream until all input offsets are committed. Latency is measured afterwards, from
+ * sending a probe record until its aggregate can be read by a {@code read_committed} consumer.
+ * Both streams use the same commit interval, which can be set with the
+ * {@code radar.benchmark.commit_interval_ms} system property.
+ */
+public class ExactlyOnceBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(ExactlyOnceBenchmark.class);
+    private static final String INPUT_TOPIC = "benchmark_input";
+    private static final int NUM_PARTITIONS = 3;
+    private static final int NUM_RECORDS = 200_000;
+    private static final int NUM_KEYS = 100;
+    private static final int NUM_PROBES = 1_000;
+    private static final long PROBE_INTERVAL_MS = 20L;
+    private static final long WINDOW_MS = Duration.ofSeconds(10).toMillis();
+    private static final long COMMIT_INTERVAL_MS = Long.getLong(
+            "radar.benchmark.commit_interval_ms", 5_000L);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+    private static final Duration MAX_DURATION = Duration.ofMinutes(5);
+    private static final int MAX_SLEEP = 32;
+
+    private ConfigRadar config;
+    private RadarPropertyHandler propHandler;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        String propertiesPath = "src/integrationTest/resources/org/radarcns/kafka/radar.yml";
+        propHandler = RadarSingletonFactory.getRadarPropertyHandler();
+        if (!propHandler.isLoaded()) {
+            propHandler.load(propertiesPath);
+        }
+        config = propHandler.getRadarProperties();
+
+        KafkaTopics topics = new KafkaTopics(config.getZookeeperPaths());
+        int expectedBrokers = config.getBroker().size();
+        int activeBrokers = 0;
+        int sleep = 2;
+        for (int tries = 0; tries < 10; tries++) {
+            activeBrokers = topics.getNumberOfBrokers();
+            if (activeBrokers >= expectedBrokers) {
+                break;
+            }
+            logger.warn("Only {} out of {} Kafka brokers available. Waiting {} seconds.",
+                    activeBrokers, expectedBrokers, sleep);
+            Thread.sleep(sleep * 1000L);
+            sleep = Math.min(MAX_SLEEP, sleep * 2);
+        }
+        assertThat(activeBrokers, greaterThanOrEqualTo(expectedBrokers));
+
+        topics.createTopics(Stream.concat(Stream.of(INPUT_TOPIC),
+                Stream.of(ProcessingGuarantee.values()).map(ExactlyOnceBenchmark::outputTopic)),
+                NUM_PARTITIONS, (short)1);
+    }
+
+    @Test(timeout = 1_800_000L)
+    public void benchmark() throws Exception {
+        try (KafkaProducer<String, Long> producer = createProducer()) {
+            long time = System.currentTimeMillis();
+            for (int i = 0; i < NUM_RECORDS; i++) {
+                producer.send(new ProducerRecord<>(INPUT_TOPIC, null, time,
+                        "device-" + (i % NUM_KEYS), (long) i));
+            }
+            producer.flush();
+        }
+
+        Map<ProcessingGuarantee, Result> results = new EnumMap<>(ProcessingGuarantee.class);
+        for (ProcessingGuarantee guarantee : ProcessingGuarantee.values()) {
+            results.put(guarantee, run(guarantee));
+        }
+
+        StringBuilder report = new StringBuilder(200)
+                .append(String.format("%n%-14s %12s %16s %15s%n",
+                        "guarantee", "records/s", "mean latency ms", "p99 latency ms"));
+        results.forEach((guarantee, result) -> report.append(String.format(
+                "%-14s %12.0f %16.1f %15d%n", guarantee.getValue(), result.throughput,
+                result.meanLatency, result.p99Latency)));
+        Result atLeastOnce = results.get(ProcessingGuarantee.AT_LEAST_ONCE);
+        Result exactlyOnce = results.get(ProcessingGuarantee.EXACTLY_ONCE);
+        report.append(String.format("Exactly-once throughput is %.0f%% of at-least-once,"
+                        + " with a commit interval of %d ms.",
+                100.0 * exactlyOnce.throughput / atLeastOnce.throughput, COMMIT_INTERVAL_MS));
+        logger.info("Processing guarantee benchmark:{}", report);
+    }
+
+    private Result run(ProcessingGuarantee guarantee) throws InterruptedException {
+        String applicationId = "radar-benchmark-" + guarantee.getValue() + '-'
+                + System.currentTimeMillis();
+        String outputTopic = outputTopic(guarantee);
+
+        Properties props = propHandler.getKafkaProperties().getStreamProperties(applicationId,
+                new SingleStreamConfig());
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, guarantee.getValue());
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, String.valueOf(COMMIT_INTERVAL_MS));
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.LongSerde.class);
+        config.getStream().addTransactionProperties(props);
+
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.<String, Long>stream(INPUT_TOPIC)
+                .groupByKey()
+                .windowedBy(TimeWindows.of(WINDOW_MS))
+                .count()
+                .toStream((window, count) -> window.key())
+                .to(outputTopic);
+
+        KafkaStreams streams = new KafkaStreams(builder.build(), props);
+        try (KafkaConsumer<byte[], byte[]> offsetConsumer = createOffsetConsumer(applicationId)) {
+            List<TopicPartition> partitions = offsetConsumer.partitionsFor(INPUT_TOPIC).stream()
+                    .map(p -> new TopicPartition(p.topic(), p.partition()))
+                    .collect(Collectors.toList());
+            Map<TopicPartition, Long> endOffsets = offsetConsumer.endOffsets(partitions);
+
+            long start = System.nanoTime();
+            streams.start();
+            awaitCommitted(offsetConsumer, endOffsets);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long processed = endOffsets.values().stream().mapToLong(Long::longValue).sum();
+            // includes the probes of earlier runs
+            assertThat(processed, greaterThanOrEqualTo((long) NUM_RECORDS));
+            double throughput = processed / seconds;
+            logger.info("Processed {} records with {} in {} seconds", processed,
+                    guarantee.getValue(), seconds);
+
+            List<Long> latencies;
+            try (KafkaConsumer<String, Long> outputConsumer = createOutputConsumer(outputTopic)) {
+                latencies = measureLatency(outputConsumer);
+            }
+            Collections.sort(latencies);
+            double meanLatency = latencies.stream().mapToLong(Long::longValue).average()
+                    .orElse(Double.NaN);
+            long p99Latency = latencies.get((int) Math.ceil(0.99 * latencies.size()) - 1);
+            return new Result(throughput, meanLatency, p99Latency);
+        } finally {
+            streams.close();
+            streams.cleanUp();
+        }
+    }
+
+    /** Wait until the stream committed the given offsets of all input partitions. */
+    private static void awaitCommitted(KafkaConsumer<byte[], byte[]> consumer,
+            Map<TopicPartition, Long> endOffsets) throws InterruptedException {
+        long deadline = System.nanoTime() + MAX_DURATION.toNanos();
+        Map<TopicPartition, Long> remaining = new HashMap<>(endOffsets);
+        while (!remaining.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Stream did not commit offsets " + remaining);
+            }
+            remaining.entrySet().removeIf(e -> {
+                OffsetAndMetadata committed = consumer.committed(e.getKey());
+                return committed != null && committed.offset() >= e.getValue();
+            });
+            Thread.sleep(POLL_TIMEOUT.toMillis());
+        }
+    }
+
+    /**
+     * Send probe records with unique keys at a fixed rate, and return the time in milliseconds
+     * until the aggregate of each probe was read from the output topic.
+     */
+    private List<Long> measureLatency(KafkaConsumer<String, Long> consumer)
+            throws InterruptedException {
+        Map<String, Long> sent = new HashMap<>();
+        List<Long> latencies = new ArrayList<>(NUM_PROBES);
+        long deadline = System.nanoTime() + MAX_DURATION.toNanos();
+
+        try (KafkaProducer<String, Long> producer = createProducer()) {
+            int numSent = 0;
+            long nextProbe = System.currentTimeMillis();
+            while (latencies.size() < NUM_PROBES) {
+                if (System.nanoTime() > deadline) {
+                    throw new AssertionError("Only " + latencies.size() + " out of "
+                            + NUM_PROBES + " probes were processed.");
+                }
+                long now = System.currentTimeMillis();
+                if (numSent < NUM_PROBES && now >= nextProbe) {
+                    String key = "probe-" + numSent;
+                    sent.put(key, now);
+                    producer.send(new ProducerRecord<>(INPUT_TOPIC, null, now, key, 1L));
+                    producer.flush();
+                    numSent++;
+                    nextProbe += PROBE_INTERVAL_MS;
+                }
+                for (ConsumerRecord<String, Long> record : consumer.poll(Duration.ofMillis(
+                        numSent < NUM_PROBES ? 1L : POLL_TIMEOUT.toMillis()))) {
+                    Long sendTime = sent.remove(record.key());
+                    if (sendTime != null) {
+                        latencies.add(System.currentTimeMillis() - sendTime);
+                    }
+                }
+            }
+        }
+        return latencies;
+    }
+
+    private KafkaProducer<String, Long> createProducer() {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getBrokerPaths());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+        return new KafkaProducer<>(props, new StringSerializer(), new LongSerializer());
+    }
+
+    private KafkaConsumer<byte[], byte[]> createOffsetConsumer(String groupId) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getBrokerPaths());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new KafkaConsumer<>(props, new ByteArrayDeserializer(),
+                new ByteArrayDeserializer());
+    }
+
+    /** Consumer of the current end of given output topic, that only reads committed data. */
+    private KafkaConsumer<String, Long> createOutputConsumer(String topic) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getBrokerPaths());
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        KafkaConsumer<String, Long> consumer = new KafkaConsumer<>(props,
+                new StringDeserializer(), new LongDeserializer());
+        List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+                .map(p -> new TopicPartition(p.topic(), p.partition()))
+                .collect(Collectors.toList());
+        consumer.assign(partitions);
+        consumer.seekToEnd(partitions);
+        partitions.forEach(consumer::position);
+        return consumer;
+    }
+
+    private static String outputTopic(ProcessingGuarantee guarantee) {
+        return "benchmark_output_" + guarantee.name().toLowerCase(Locale.US);
+    }
+
+    private static class Result {
+        private final double throughput;
+        private final double meanLatency;
+        private final long p99Latency;
+
+        private Result(double throughput, double meanLatency, long p99Latency) {
+            this.throughput = throughput;
+            this.meanLatency = meanLatency;
+            this.p99Latency = p99Latency;
+        }
+    }
+}
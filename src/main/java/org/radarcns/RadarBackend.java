@@ -20,13 +20,22 @@ import java.io.IOException;
 import java.util.Arrays;
 import javax.annotation.Nonnull;
 import org.apache.commons.cli.ParseException;
+import org.radarcns.config.ConfigWatcher;
+import org.radarcns.config.MetricsConfig;
 import org.radarcns.config.RadarBackendOptions;
 import org.radarcns.config.RadarPropertyHandler;
 import org.radarcns.config.SubCommand;
+import org.radarcns.metrics.JvmMetricsSource;
+import org.radarcns.metrics.MetricsRegistry;
+import org.radarcns.metrics.MetricsServer;
 import org.radarcns.monitor.KafkaMonitorFactory;
 import org.radarcns.producer.MockProducerCommand;
 import org.radarcns.stream.KafkaStreamFactory;
+import org.radarcns.stream.metrics.LateRecordMetrics;
+import org.radarcns.stream.metrics.StateRestoreTracker;
+import org.radarcns.stream.metrics.StreamMetricsSource;
 import org.radarcns.util.RadarSingletonFactory;
+import org.radarcns.util.serde.SharedSchemaRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +47,8 @@ public final class RadarBackend {
     private final RadarBackendOptions options;
     private final RadarPropertyHandler radarPropertyHandler;
     private SubCommand command;
+    private MetricsServer metricsServer;
+    private ConfigWatcher configWatcher;
 
     public RadarBackend(@Nonnull RadarBackendOptions options) throws IOException {
         this(options, createPropertyHandler(options));
@@ -71,6 +82,9 @@ public final class RadarBackend {
             case "statistics":
                 return new KafkaStreamFactory(options, radarPropertyHandler)
                         .createStreamStatistics();
+            case "backfill":
+                return new KafkaStreamFactory(options, radarPropertyHandler)
+                        .createBackfill();
             case "monitor":
                 return new KafkaMonitorFactory(options, radarPropertyHandler).createMonitor();
             case "mock":
@@ -94,6 +108,15 @@ public final class RadarBackend {
             log.error("The current instance was interrupted", ex);
         }
 
+        if (command != null && command.isFinished()) {
+            try {
+                shutdown();
+            } catch (IOException | InterruptedException ex) {
+                log.error("Failed to shut down after finishing", ex);
+            }
+            return;
+        }
+
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 shutdown();
@@ -112,7 +135,14 @@ public final class RadarBackend {
     public void start() throws IOException, InterruptedException {
         log.info("STARTING");
 
+        startMetricsServer();
+        SharedSchemaRegistry.configure(radarPropertyHandler.getRadarProperties());
         command = createCommand();
+        if (radarPropertyHandler.getRadarProperties().isReloadConfig()) {
+            // the command may not return from start until it is shut down
+            configWatcher = new ConfigWatcher(radarPropertyHandler, command);
+            configWatcher.start();
+        }
         command.start();
 
         log.info("STARTED");
@@ -127,11 +157,37 @@ public final class RadarBackend {
     public void shutdown() throws InterruptedException, IOException {
         log.info("SHUTTING DOWN");
 
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
         command.shutdown();
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
 
         log.info("FINISHED");
     }
 
+    /**
+     * Start exporting metrics over HTTP, if configured.
+     *
+     * @throws IOException if the metrics server cannot be started
+     */
+    private void startMetricsServer() throws IOException {
+        MetricsConfig config = radarPropertyHandler.getRadarProperties().getMetrics();
+        if (config == null) {
+            return;
+        }
+        if (config.isJvm()) {
+            MetricsRegistry.register(new JvmMetricsSource());
+        }
+        MetricsRegistry.register(new StreamMetricsSource());
+        MetricsRegistry.register(StateRestoreTracker.getInstance());
+        MetricsRegistry.register(LateRecordMetrics.getInstance());
+        metricsServer = new MetricsServer(config);
+        metricsServer.start();
+    }
+
     public static void main(String[] args) {
         try {
             RadarBackendOptions options = RadarBackendOptions.parse(args);
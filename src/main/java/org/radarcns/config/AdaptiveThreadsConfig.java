@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+
+/**
+ * Configuration of the controller that moves stream threads from idle streams to streams that
+ * lag behind their input topics.
+ */
+@SuppressWarnings("PMD.ImmutableField")
+public class AdaptiveThreadsConfig {
+    @JsonProperty
+    private boolean enable = false;
+    @JsonProperty
+    private int budget = 0;
+    @JsonProperty("max_threads")
+    private int maxThreads = 8;
+    @JsonProperty
+    private long interval = 60;
+    @JsonProperty
+    private long cooldown = Duration.ofMinutes(10).getSeconds();
+    @JsonProperty("min_lag")
+    private long minLag = 1000;
+    @JsonProperty("catch_up_high")
+    private long catchUpHigh = Duration.ofMinutes(5).getSeconds();
+    @JsonProperty("catch_up_low")
+    private long catchUpLow = 30;
+
+    /** Whether to adapt the number of stream threads to the consumer lag of each stream. */
+    public boolean isEnable() {
+        return enable;
+    }
+
+    /**
+     * Total number of stream threads of all streams, or 0 to use the number of threads that the
+     * streams were started with.
+     */
+    public int getBudget() {
+        return budget;
+    }
+
+    /** Maximum number of threads of a single Kafka Streams instance. */
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /** Interval at which the consumer lag is sampled and threads are rebalanced. */
+    public Duration getInterval() {
+        return Duration.ofSeconds(interval);
+    }
+
+    /** Minimum time between two thread changes of the same stream. */
+    public Duration getCooldown() {
+        return Duration.ofSeconds(cooldown);
+    }
+
+    /** Consumer lag, in records, below which a stream is never considered to be lagging. */
+    public long getMinLag() {
+        return minLag;
+    }
+
+    /**
+     * Time that a stream would need to consume its lag at the current rate, above which it gets
+     * more threads.
+     */
+    public Duration getCatchUpHigh() {
+        return Duration.ofSeconds(catchUpHigh);
+    }
+
+    /**
+     * Time that a stream would need to consume its lag at the current rate, below which it may
+     * give up threads.
+     */
+    public Duration getCatchUpLow() {
+        return Duration.ofSeconds(catchUpLow);
+    }
+
+    public void setEnable(boolean enable) {
+        this.enable = enable;
+    }
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Configuration of the {@code backfill} command, that recomputes stream output from historical
+ * data without affecting the live streams.
+ */
+@SuppressWarnings("PMD.ImmutableField")
+public class BackfillConfig {
+    @JsonProperty("application_id_suffix")
+    private String applicationIdSuffix = "backfill";
+    @JsonProperty
+    private int threads = 8;
+    @JsonProperty("max_poll_records")
+    private int maxPollRecords = 10_000;
+    @JsonProperty("cache_max_bytes")
+    private long cacheMaxBytes = 100L * 1024L * 1024L;
+    @JsonProperty("commit_interval")
+    private long commitInterval = 60;
+    @JsonProperty("check_interval")
+    private long checkInterval = 30;
+    @JsonProperty
+    private Map<String, String> properties;
+
+    /**
+     * Suffix of the application ID of backfill streams. Consumer groups, changelog topics and
+     * local state of a backfill are separate from those of the live streams. Reuse a suffix to
+     * continue an interrupted backfill.
+     */
+    public String getApplicationIdSuffix() {
+        return applicationIdSuffix;
+    }
+
+    public void setApplicationIdSuffix(String applicationIdSuffix) {
+        this.applicationIdSuffix = applicationIdSuffix;
+    }
+
+    /** Stream threads per Kafka Streams instance. */
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Maximum number of records that a stream thread polls at once. */
+    public int getMaxPollRecords() {
+        return maxPollRecords;
+    }
+
+    /** Memory used to cache records before they are written to state stores. */
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    /** Commit interval of backfill streams. */
+    public Duration getCommitInterval() {
+        return Duration.ofSeconds(commitInterval);
+    }
+
+    /** Interval to check whether the backfill has caught up. */
+    public Duration getCheckInterval() {
+        return Duration.ofSeconds(checkInterval);
+    }
+
+    /** Additional Kafka Streams properties of backfill streams. */
+    public Map<String, String> getProperties() {
+        return properties != null ? properties : Collections.emptyMap();
+    }
+}
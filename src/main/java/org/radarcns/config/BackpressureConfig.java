@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+
+/**
+ * Configuration of pausing low priority streams while high priority streams fall behind.
+ */
+@SuppressWarnings("PMD.ImmutableField")
+public class BackpressureConfig {
+    @JsonProperty
+    private boolean enable = false;
+    @JsonProperty
+    private long interval = 30;
+    @JsonProperty("pause_lag")
+    private long pauseLag = 100_000;
+    @JsonProperty("resume_lag")
+    private long resumeLag = 10_000;
+    @JsonProperty("pause_latency")
+    private double pauseLatency = 0;
+    @JsonProperty("resume_latency")
+    private double resumeLatency = 0;
+    @JsonProperty("min_duration")
+    private long minDuration = Duration.ofMinutes(5).getSeconds();
+    @JsonProperty("max_pause")
+    private long maxPause = Duration.ofHours(1).getSeconds();
+
+    /** Whether to pause low priority streams when high priority streams fall behind. */
+    public boolean isEnable() {
+        return enable;
+    }
+
+    /** Interval at which the high priority streams are checked. */
+    public Duration getInterval() {
+        return Duration.ofSeconds(interval);
+    }
+
+    /** Consumer lag of all high priority streams, in records, above which to pause. */
+    public long getPauseLag() {
+        return pauseLag;
+    }
+
+    /** Consumer lag of all high priority streams, in records, below which to resume. */
+    public long getResumeLag() {
+        return resumeLag;
+    }
+
+    /**
+     * Average processing latency of a high priority stream thread, in milliseconds, above which
+     * to pause. If 0, latency is not checked.
+     */
+    public double getPauseLatency() {
+        return pauseLatency;
+    }
+
+    /**
+     * Average processing latency of a high priority stream thread, in milliseconds, below which
+     * to resume. If 0, it is the same as the pause latency.
+     */
+    public double getResumeLatency() {
+        return resumeLatency > 0 ? resumeLatency : pauseLatency;
+    }
+
+    /** Minimum time that streams stay paused or running before they are resumed or paused. */
+    public Duration getMinDuration() {
+        return Duration.ofSeconds(minDuration);
+    }
+
+    /** Maximum time that streams stay paused, so they do not fall behind indefinitely. */
+    public Duration getMaxPause() {
+        return Duration.ofSeconds(maxPause);
+    }
+
+    public void setEnable(boolean enable) {
+        this.enable = enable;
+    }
+
+    public void setPauseLatency(double pauseLatency) {
+        this.pauseLatency = pauseLatency;
+    }
+}
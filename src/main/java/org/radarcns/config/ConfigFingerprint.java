@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Fingerprints of configuration objects, to find out which parts of a reloaded configuration
+ * changed. Two configurations with the same settings have the same fingerprint.
+ */
+public final class ConfigFingerprint {
+    /** Serializes fields only, so derived getters do not affect the fingerprint. */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setVisibility(PropertyAccessor.ALL, Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, Visibility.ANY)
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+
+    /** Stream settings that are only read when the stream master starts. */
+    private static final String[] STREAM_MASTER_SETTINGS = {
+            "streams", "source_statistics", "startup_threads", "adaptive_threads",
+            "backpressure", "backfill"};
+
+    private ConfigFingerprint() {
+        // utility class
+    }
+
+    /**
+     * Fingerprint of given configuration object.
+     * @param config configuration, may be {@code null}
+     * @return fingerprint
+     * @throws IllegalArgumentException if the configuration cannot be serialized
+     */
+    public static String of(@Nullable Object config) {
+        try {
+            return MAPPER.writeValueAsString(config);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Cannot serialize configuration", ex);
+        }
+    }
+
+    /**
+     * Fingerprint of the settings that all stream workers share: the Kafka and schema registry
+     * servers and the stream settings, except the list of streams and the settings of the stream
+     * master itself.
+     */
+    public static String ofSharedStreamSettings(ConfigRadar config) {
+        ObjectNode streamNode = MAPPER.valueToTree(config.getStream());
+        if (streamNode != null) {
+            streamNode.remove(Arrays.asList(STREAM_MASTER_SETTINGS));
+        }
+        ObjectNode node = MAPPER.createObjectNode();
+        node.set("broker", MAPPER.valueToTree(config.getBroker()));
+        node.set("schema_registry", MAPPER.valueToTree(config.getSchemaRegistry()));
+        node.set("stream", streamNode);
+        return node.toString();
+    }
+}
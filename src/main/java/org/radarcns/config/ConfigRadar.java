@@ -41,8 +41,14 @@ public class ConfigRadar {
     private List<SourceStatisticsStreamConfig> statisticsMonitors;
     @JsonProperty("stream")
     private StreamConfig stream;
+    @JsonProperty("metrics")
+    private MetricsConfig metrics;
     @JsonProperty("persistence_path")
     private String persistencePath;
+    @JsonProperty("schema_cache")
+    private SchemaCacheConfig schemaCache;
+    @JsonProperty("reload_config")
+    private boolean reloadConfig = false;
     private Map<String, Object> extras;
 
     @JsonProperty("build_version")
@@ -182,4 +188,30 @@ public class ConfigRadar {
     public StreamConfig getStream() {
         return stream;
     }
+
+    /** Metrics endpoint configuration, or {@code null} if metrics should not be exported. */
+    public MetricsConfig getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Configuration of the shared schema registry client. */
+    public SchemaCacheConfig getSchemaCache() {
+        return schemaCache != null ? schemaCache : new SchemaCacheConfig();
+    }
+
+    public void setSchemaCache(SchemaCacheConfig schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    public boolean isReloadConfig() {
+        return reloadConfig;
+    }
+
+    public void setReloadConfig(boolean reloadConfig) {
+        this.reloadConfig = reloadConfig;
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the configuration file and applies changes to a running subcommand. Changes are
+ * applied after the file has not changed for a second, so that partially written files are not
+ * loaded. If the new file cannot be parsed, the current configuration is kept.
+ */
+public class ConfigWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+    private static final long DEBOUNCE_MS = 1_000L;
+
+    private final RadarPropertyHandler propertyHandler;
+    private final SubCommand command;
+    private final Path configFile;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Watcher of the configuration file of given property handler.
+     * @param propertyHandler handler that loaded the configuration
+     * @param command command to apply configuration changes to
+     * @throws IOException if the directory of the configuration file cannot be watched
+     */
+    public ConfigWatcher(@Nonnull RadarPropertyHandler propertyHandler,
+            @Nonnull SubCommand command) throws IOException {
+        this.propertyHandler = propertyHandler;
+        this.command = command;
+        this.configFile = propertyHandler.getConfigFile().toPath().toAbsolutePath();
+        this.watchService = configFile.getFileSystem().newWatchService();
+        configFile.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "config-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /** Start watching the configuration file. */
+    public void start() {
+        logger.info("Watching configuration file {} for changes", configFile);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = pollChanges(key);
+                // wait until the file is completely written
+                while (true) {
+                    key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    changed |= pollChanges(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            logger.debug("Stopped watching configuration file {}", configFile);
+        }
+    }
+
+    /** Whether the configuration file changed according to the events of given key. */
+    private boolean pollChanges(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (context instanceof Path && configFile.getFileName().equals(context)) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /** Load the configuration file and apply it to the command. */
+    void reload() {
+        ConfigRadar oldConfig = propertyHandler.getRadarProperties();
+        ConfigRadar config;
+        try {
+            config = propertyHandler.reload();
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Cannot load changed configuration file {}. Keeping the current"
+                    + " configuration.", configFile, ex);
+            return;
+        }
+        logger.info("Configuration file {} changed. Applying changes.", configFile);
+        if (!ConfigFingerprint.of(oldConfig.getMetrics())
+                .equals(ConfigFingerprint.of(config.getMetrics()))
+                || !ConfigFingerprint.of(oldConfig.getSchemaCache())
+                .equals(ConfigFingerprint.of(config.getSchemaCache()))) {
+            logger.warn("Changes to metrics or schema_cache require a restart to take effect");
+        }
+        try {
+            if (command.reload(config)) {
+                logger.info("Applied configuration changes");
+            } else {
+                logger.warn("Not all configuration changes could be applied. Restart to apply"
+                        + " them.");
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Failed to apply configuration changes", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
@@ -17,13 +17,13 @@
 package org.radarcns.config;
 
 import io.confluent.kafka.serializers.AbstractKafkaAvroSerDeConfig;
-import io.confluent.kafka.streams.serdes.avro.SpecificAvroSerde;
 import java.util.Properties;
 import javax.annotation.Nonnull;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.streams.StreamsConfig;
-import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
 import org.apache.kafka.streams.processor.TimestampExtractor;
+import org.radarcns.stream.metrics.StreamMetrics;
+import org.radarcns.util.serde.SharedSpecificAvroSerde;
 
 public class KafkaProperty {
 
@@ -48,12 +48,19 @@ public class KafkaProperty {
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, configRadar.getBrokerPaths());
         props.put(AbstractKafkaAvroSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG,
                 configRadar.getSchemaRegistryPaths());
-        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, SpecificAvroSerde.class);
-        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, SpecificAvroSerde.class);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, SharedSpecificAvroSerde.class);
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, SharedSpecificAvroSerde.class);
         props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG,
                 streamConfig.threadsByPriority(singleStreamConfig.getPriority()));
-        props.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
-                LogAndContinueExceptionHandler.class.getName());
+        Integer standbyReplicas = streamConfig.standbyReplicasByPriority(
+                singleStreamConfig.getPriority());
+        if (standbyReplicas != null) {
+            props.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, standbyReplicas);
+        }
+        StreamMetrics.addStreamProperties(props, clientId);
+        streamConfig.addRocksDbProperties(props, singleStreamConfig.getPriority());
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG,
+                singleStreamConfig.getProcessingGuarantee().getValue());
         props.putAll(configRadar.getStream().getProperties());
         props.putAll(singleStreamConfig.getProperties());
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
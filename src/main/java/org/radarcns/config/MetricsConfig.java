@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Configuration of the HTTP endpoint that exports metrics in the Prometheus text format.
+ */
+@SuppressWarnings("PMD.ImmutableField")
+public class MetricsConfig {
+    @JsonProperty
+    private String host = "0.0.0.0";
+    @JsonProperty
+    private int port = 9400;
+    @JsonProperty
+    private String path = "/metrics";
+    @JsonProperty
+    private boolean jvm = true;
+
+    /** Address to listen on. */
+    public String getHost() {
+        return host;
+    }
+
+    /** Port to listen on. */
+    public int getPort() {
+        return port;
+    }
+
+    /** HTTP path of the metrics. */
+    public String getPath() {
+        return path;
+    }
+
+    /** Whether to export memory, garbage collection and thread metrics of the JVM. */
+    public boolean isJvm() {
+        return jvm;
+    }
+}
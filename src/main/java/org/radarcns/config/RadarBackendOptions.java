@@ -17,9 +17,12 @@
 package org.radarcns.config;
 
 import java.io.File;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import javax.annotation.Nonnull;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
@@ -35,7 +38,11 @@ public class RadarBackendOptions {
             .addOption("d", "devices", true, "Number of devices to use with the mock command.")
             .addOption("D", "direct", false, "The mock device will bypass the rest-proxy and use "
                     + "the Kafka Producer API instead.")
-            .addOption("f", "file", true, "Read mock data from given configuration file.");
+            .addOption("f", "file", true, "Read mock data from given configuration file.")
+            .addOption(Option.builder().longOpt("from").hasArg()
+                    .desc("Start time of the backfill command, as ISO-8601 instant.").build())
+            .addOption(Option.builder().longOpt("until").hasArg()
+                    .desc("End time of the backfill command, as ISO-8601 instant.").build());
 
 
     /**
@@ -83,6 +90,31 @@ public class RadarBackendOptions {
         }
     }
 
+    /**
+     * Start time of a backfill, or {@code null} to start at the earliest record.
+     * @throws DateTimeParseException if the time is not an ISO-8601 instant
+     */
+    public Instant getBackfillFrom() {
+        return parseInstant("from");
+    }
+
+    /**
+     * End time of a backfill, or {@code null} to end at the latest record.
+     * @throws DateTimeParseException if the time is not an ISO-8601 instant
+     */
+    public Instant getBackfillUntil() {
+        return parseInstant("until");
+    }
+
+    private Instant parseInstant(String option) {
+        String value = this.cli.getOptionValue(option, null);
+        if (value == null) {
+            return null;
+        } else {
+            return Instant.parse(value);
+        }
+    }
+
     public String getSubCommand() {
         return subCommand;
     }
@@ -16,6 +16,7 @@
 
 package org.radarcns.config;
 
+import java.io.File;
 import java.io.IOException;
 import org.radarcns.util.PersistentStateStore;
 
@@ -42,6 +43,18 @@ public interface RadarPropertyHandler {
 
     void load(String pathFile) throws IOException;
 
+    /**
+     * Load the configuration file again. The current configuration is only replaced if the file
+     * could be loaded.
+     * @return the new configuration
+     * @throws IOException if the file cannot be read or parsed.
+     * @throws IllegalStateException if no configuration was loaded yet.
+     */
+    ConfigRadar reload() throws IOException;
+
+    /** Configuration file that was loaded, or {@code null} if none was loaded yet. */
+    File getConfigFile();
+
     boolean isLoaded();
 
     KafkaProperty getKafkaProperties();
@@ -37,8 +37,9 @@ public class RadarPropertyHandlerImpl implements RadarPropertyHandler {
     private static final String CONFIG_FILE_NAME = "radar.yml";
     private static final Logger log = LoggerFactory.getLogger(RadarPropertyHandlerImpl.class);
 
-    private ConfigRadar properties;
-    private KafkaProperty kafkaProperty;
+    private volatile ConfigRadar properties;
+    private volatile KafkaProperty kafkaProperty;
+    private File configFile;
 
     @Override
     public ConfigRadar getRadarProperties() {
@@ -77,7 +78,29 @@ public class RadarPropertyHandlerImpl implements RadarPropertyHandler {
             throw new IllegalArgumentException("Config file " + file + " is invalid");
         }
 
-        properties = new YamlConfigLoader().load(file, ConfigRadar.class);
+        properties = loadFile(file);
+        configFile = file;
+    }
+
+    @Override
+    public synchronized ConfigRadar reload() throws IOException {
+        if (!isLoaded()) {
+            throw new IllegalStateException("Properties cannot be reloaded before they are loaded");
+        }
+        log.info("Reloading config file {}", configFile);
+        ConfigRadar reloaded = loadFile(configFile);
+        properties = reloaded;
+        kafkaProperty = null;
+        return reloaded;
+    }
+
+    @Override
+    public File getConfigFile() {
+        return configFile;
+    }
+
+    private ConfigRadar loadFile(File file) throws IOException {
+        ConfigRadar config = new YamlConfigLoader().load(file, ConfigRadar.class);
 
         Properties buildProperties = new Properties();
         try (InputStream in = getClass().getResourceAsStream("/build.properties")) {
@@ -87,8 +110,9 @@ public class RadarPropertyHandlerImpl implements RadarPropertyHandler {
         }
         String version = buildProperties.getProperty("version");
         if (version != null) {
-            properties.setBuildVersion(version);
+            config.setBuildVersion(version);
         }
+        return config;
     }
 
     private File getDefaultFile() throws IOException {
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.BLOCK_SIZE_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.MAX_WRITE_BUFFERS_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.MEMORY_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.POOL_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.STATISTICS_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.WRITE_BUFFER_RATIO_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.WRITE_BUFFER_SIZE_CONFIG;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Properties;
+import org.apache.kafka.streams.StreamsConfig;
+import org.radarcns.stream.RocksDbMemoryConfigSetter;
+
+/**
+ * RocksDB state store configuration. All state stores that use the same configuration share a
+ * block cache and write buffer memory, bounded by {@code memory_mb}.
+ */
+@SuppressWarnings("PMD.ImmutableField")
+public class RocksDbConfig {
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    @JsonProperty("memory_mb")
+    private long memoryMb = 512L;
+    @JsonProperty("write_buffer_ratio")
+    private double writeBufferRatio = 0.5;
+    @JsonProperty("write_buffer_size_mb")
+    private long writeBufferSizeMb = 16L;
+    @JsonProperty("max_write_buffers")
+    private int maxWriteBuffers = 3;
+    @JsonProperty("block_size_kb")
+    private long blockSizeKb = 4L;
+    @JsonProperty
+    private boolean statistics = false;
+
+    /** Total memory of the block cache and write buffers of all stores, in megabytes. */
+    public long getMemoryMb() {
+        return memoryMb;
+    }
+
+    /** Fraction of the memory that may be used by write buffers. */
+    public double getWriteBufferRatio() {
+        return writeBufferRatio;
+    }
+
+    /** Write buffer size per store, in megabytes. */
+    public long getWriteBufferSizeMb() {
+        return writeBufferSizeMb;
+    }
+
+    /** Maximum number of write buffers per store. */
+    public int getMaxWriteBuffers() {
+        return maxWriteBuffers;
+    }
+
+    /** Size of a data block, in kilobytes. */
+    public long getBlockSizeKb() {
+        return blockSizeKb;
+    }
+
+    /** Whether to collect RocksDB statistics. */
+    public boolean isStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Add Kafka Streams properties to configure RocksDB stores with.
+     * @param props properties to add to
+     * @param pool name of the memory pool that the stores should share
+     */
+    public void addStreamProperties(Properties props, String pool) {
+        if (memoryMb <= 0L) {
+            throw new IllegalStateException("RocksDB memory must be positive");
+        }
+        if (writeBufferRatio <= 0.0 || writeBufferRatio >= 1.0) {
+            throw new IllegalStateException("RocksDB write buffer ratio must be between 0 and 1");
+        }
+        props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG,
+                RocksDbMemoryConfigSetter.class.getName());
+        props.put(POOL_CONFIG, pool);
+        props.put(MEMORY_CONFIG, String.valueOf(memoryMb * MEGABYTE));
+        props.put(WRITE_BUFFER_RATIO_CONFIG, String.valueOf(writeBufferRatio));
+        props.put(WRITE_BUFFER_SIZE_CONFIG, String.valueOf(writeBufferSizeMb * MEGABYTE));
+        props.put(MAX_WRITE_BUFFERS_CONFIG, String.valueOf(maxWriteBuffers));
+        props.put(BLOCK_SIZE_CONFIG, String.valueOf(blockSizeKb * 1024L));
+        props.put(STATISTICS_CONFIG, String.valueOf(statistics));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Duration;
+
+/**
+ * Configuration of the schema registry client that is shared by all streams and monitors.
+ */
+@SuppressWarnings("PMD.ImmutableField")
+public class SchemaCacheConfig {
+    @JsonProperty
+    private String path;
+    @JsonProperty
+    private boolean warmup = true;
+    @JsonProperty("warmup_threads")
+    private int warmupThreads = 8;
+    @JsonProperty("warmup_timeout")
+    private long warmupTimeout = 60;
+
+    /**
+     * File to persist retrieved schemas to, or {@code null} to use {@code schema-cache.json} in
+     * the persistence path.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /** Whether to retrieve the schemas of all stream topics before starting the streams. */
+    public boolean isWarmup() {
+        return warmup;
+    }
+
+    /** Number of schemas to retrieve in parallel during warm-up. */
+    public int getWarmupThreads() {
+        return warmupThreads;
+    }
+
+    /** Maximum time to wait for the warm-up to complete. */
+    public Duration getWarmupTimeout() {
+        return Duration.ofSeconds(warmupTimeout);
+    }
+}
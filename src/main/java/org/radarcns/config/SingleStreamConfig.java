@@ -2,11 +2,17 @@ package org.radarcns.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSetter;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
 import javax.annotation.Nonnull;
 import org.radarcns.config.RadarPropertyHandler.Priority;
+import org.radarcns.stream.EmitPolicy;
+import org.radarcns.stream.LateRecordPolicy;
+import org.radarcns.stream.ProcessingGuarantee;
+import org.radarcns.stream.StoreType;
+import org.radarcns.util.serde.StateFormat;
 
 public class SingleStreamConfig {
     @JsonProperty("class")
@@ -15,6 +21,42 @@ public class SingleStreamConfig {
     private Map<String, String> properties;
     @JsonProperty
     private Priority priority = null;
+    @JsonProperty("shared_topology")
+    private boolean sharedTopology = false;
+    @JsonProperty("rollup_windows")
+    private boolean rollupWindows = false;
+    @JsonProperty("state_format")
+    private StateFormat stateFormat = StateFormat.JSON;
+    @JsonProperty("quantile_sketch")
+    private boolean quantileSketch = false;
+    @JsonProperty("quantile_sketch_accuracy")
+    private double quantileSketchAccuracy = 0.01;
+    @JsonProperty("quantile_sketch_min_window")
+    private long quantileSketchMinWindow = 0L;
+    @JsonProperty("aggregate_buffer")
+    private boolean aggregateBuffer = false;
+    @JsonProperty("aggregate_buffer_size")
+    private int aggregateBufferSize = 10_000;
+    @JsonProperty("multi_axis_collector")
+    private boolean multiAxisCollector = false;
+    @JsonProperty("emit_mode")
+    private EmitPolicy.Mode emitMode = EmitPolicy.Mode.UPDATES;
+    @JsonProperty("emit_grace_period")
+    private long emitGracePeriod = 0L;
+    @JsonProperty("emit_corrections")
+    private boolean emitCorrections = false;
+    @JsonProperty("emit_interval")
+    private long emitInterval = 60L;
+    @JsonProperty("emit_min_window")
+    private long emitMinWindow = 0L;
+    @JsonProperty("in_memory_max_window")
+    private long inMemoryMaxWindow = 0L;
+    @JsonProperty("processing_guarantee")
+    private ProcessingGuarantee processingGuarantee = ProcessingGuarantee.AT_LEAST_ONCE;
+    @JsonProperty("late_watermark")
+    private LateRecordPolicy.Watermark lateWatermark = LateRecordPolicy.Watermark.TASK;
+    @JsonProperty("late_record_topic")
+    private boolean lateRecordTopic = false;
 
     public void setStreamClass(Class<?> streamClass) {
         this.streamClass = streamClass;
@@ -43,4 +85,166 @@ public class SingleStreamConfig {
     public Priority getPriority() {
         return priority != null ? priority : Priority.NORMAL;
     }
+
+    /**
+     * Whether all stream definitions that share an input topic should be run from a single
+     * topology, instead of each in its own Kafka Streams instance.
+     */
+    public boolean isSharedTopology() {
+        return sharedTopology;
+    }
+
+    public void setSharedTopology(boolean sharedTopology) {
+        this.sharedTopology = sharedTopology;
+    }
+
+    /**
+     * Whether coarse time windows should be computed from the aggregates of finer time windows,
+     * instead of from the input records. This implies a shared topology.
+     */
+    public boolean isRollupWindows() {
+        return rollupWindows;
+    }
+
+    public void setRollupWindows(boolean rollupWindows) {
+        this.rollupWindows = rollupWindows;
+    }
+
+    @JsonSetter("state_format")
+    protected void setStateFormat(String stateFormat) {
+        this.stateFormat = StateFormat.valueOf(stateFormat.toUpperCase(Locale.US));
+    }
+
+    /**
+     * Format that aggregation state is written in. State in either format can always be read.
+     */
+    public StateFormat getStateFormat() {
+        return stateFormat;
+    }
+
+    /**
+     * Whether quartiles should be approximated with a bounded-size sketch, for time windows of
+     * at least {@link #getQuantileSketchMinWindow()}.
+     */
+    public boolean isQuantileSketch() {
+        return quantileSketch;
+    }
+
+    public void setQuantileSketch(boolean quantileSketch) {
+        this.quantileSketch = quantileSketch;
+    }
+
+    /** Normalized rank error of quartiles approximated with a sketch. */
+    public double getQuantileSketchAccuracy() {
+        return quantileSketchAccuracy;
+    }
+
+    /** Smallest time window for which quartiles are approximated with a sketch. */
+    public Duration getQuantileSketchMinWindow() {
+        return Duration.ofSeconds(quantileSketchMinWindow);
+    }
+
+    /**
+     * Whether windowed aggregates should be updated in memory, and only be written to their state
+     * store on commit.
+     */
+    public boolean isAggregateBuffer() {
+        return aggregateBuffer;
+    }
+
+    public void setAggregateBuffer(boolean aggregateBuffer) {
+        this.aggregateBuffer = aggregateBuffer;
+    }
+
+    /** Maximum number of windowed aggregates that are kept in memory per stream task. */
+    public int getAggregateBufferSize() {
+        return aggregateBufferSize;
+    }
+
+    /**
+     * Whether multiple fields of a record, like acceleration axes, are collected with a single
+     * collector that keeps the statistics of all fields in primitive arrays.
+     */
+    public boolean isMultiAxisCollector() {
+        return multiAxisCollector;
+    }
+
+    public void setMultiAxisCollector(boolean multiAxisCollector) {
+        this.multiAxisCollector = multiAxisCollector;
+    }
+
+    @JsonSetter("emit_mode")
+    protected void setEmitMode(String emitMode) {
+        this.emitMode = EmitPolicy.Mode.valueOf(emitMode.toUpperCase(Locale.US));
+    }
+
+    /**
+     * Policy of when to emit the aggregates of given time window. Windows smaller than
+     * {@code emit_min_window} emit every update.
+     */
+    @Nonnull
+    public EmitPolicy getEmitPolicy(@Nonnull Duration window) {
+        if (window.getSeconds() < emitMinWindow) {
+            return EmitPolicy.UPDATES;
+        }
+        switch (emitMode) {
+            case FINAL:
+                return EmitPolicy.finalResult(Duration.ofSeconds(emitGracePeriod),
+                        emitCorrections);
+            case RATE_LIMITED:
+                return EmitPolicy.rateLimited(Duration.ofSeconds(emitInterval));
+            default:
+                return EmitPolicy.UPDATES;
+        }
+    }
+
+    /**
+     * Type of state store to aggregate given time window in. Windows of at most
+     * {@code in_memory_max_window} are kept in memory. This is disabled by default, since
+     * in-memory stores are restored from their changelog whenever the streams of a worker are
+     * recreated, for example when they are paused, resumed or change their number of threads.
+     */
+    @Nonnull
+    public StoreType getStoreType(@Nonnull Duration window) {
+        return inMemoryMaxWindow > 0L && window.getSeconds() <= inMemoryMaxWindow
+                ? StoreType.IN_MEMORY : StoreType.PERSISTENT;
+    }
+
+    public void setInMemoryMaxWindow(long inMemoryMaxWindow) {
+        this.inMemoryMaxWindow = inMemoryMaxWindow;
+    }
+
+    @JsonSetter("processing_guarantee")
+    protected void setProcessingGuarantee(String processingGuarantee) {
+        this.processingGuarantee = ProcessingGuarantee.valueOf(
+                processingGuarantee.toUpperCase(Locale.US));
+    }
+
+    /**
+     * Whether records of the stream are processed at least once or exactly once. Exactly-once
+     * processing prevents double counting of records after a failure, at a throughput cost.
+     */
+    @Nonnull
+    public ProcessingGuarantee getProcessingGuarantee() {
+        return processingGuarantee;
+    }
+
+    @JsonSetter("late_watermark")
+    protected void setLateWatermark(String lateWatermark) {
+        this.lateWatermark = LateRecordPolicy.Watermark.valueOf(
+                lateWatermark.toUpperCase(Locale.US));
+    }
+
+    /**
+     * Policy of how records that arrive after the grace period of their time windows are
+     * detected and handled.
+     */
+    @Nonnull
+    public LateRecordPolicy getLateRecordPolicy() {
+        return new LateRecordPolicy(lateWatermark, lateRecordTopic);
+    }
+
+    public void setLateRecordTopic(boolean lateRecordTopic) {
+        this.lateRecordTopic = lateRecordTopic;
+    }
 }
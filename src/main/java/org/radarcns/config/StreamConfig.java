@@ -10,15 +10,27 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.streams.StreamsConfig;
 import org.radarcns.config.RadarPropertyHandler.Priority;
+import org.radarcns.stream.RestartBackoff;
 import org.radarcns.stream.TimeWindowMetadata;
 
 // POJO class
 @SuppressWarnings("PMD.ImmutableField")
 public class StreamConfig {
+    /** Kafka Streams default retention of windowed state. */
+    private static final Duration DEFAULT_RETENTION = Duration.ofDays(1);
+    /** Kafka default of the producer transaction timeout. */
+    private static final long DEFAULT_TRANSACTION_TIMEOUT_MS = Duration.ofMinutes(1).toMillis();
+    /** Kafka Streams default commit interval with exactly-once processing. */
+    private static final long DEFAULT_EXACTLY_ONCE_COMMIT_INTERVAL_MS = 100L;
+
+    @JsonIgnore
     private final Map<TimeWindowMetadata, Duration> timeWindowCommitInterval =
             new EnumMap<>(TimeWindowMetadata.class);
 
@@ -30,6 +42,10 @@ public class StreamConfig {
     private long maxCommitInterval = Duration.ofHours(3).getSeconds();
     @JsonProperty("time_window_commit_interval_multiplier")
     private float timeWindowCommitIntervalMultiplier = 0.5f;
+    @JsonProperty("time_window_grace_period")
+    private Map<String, Long> timeWindowGracePeriod;
+    @JsonProperty("time_window_retention")
+    private Map<String, Long> timeWindowRetention;
     @JsonProperty
     private Map<String, String> properties;
     @JsonProperty("streams")
@@ -38,6 +54,35 @@ public class StreamConfig {
     @JsonProperty("source_statistics")
     private List<SourceStatisticsStreamConfig> sourceStatistics;
 
+    @JsonProperty("startup_threads")
+    private int startupThreads = 4;
+    @JsonProperty("restart_initial_delay")
+    private long restartInitialDelay = 10;
+    @JsonProperty("restart_max_delay")
+    private long restartMaxDelay = Duration.ofMinutes(5).getSeconds();
+    @JsonProperty("restart_max_failures")
+    private int restartMaxFailures = 5;
+    @JsonProperty("restart_reset_interval")
+    private long restartResetInterval = Duration.ofHours(1).getSeconds();
+    @JsonProperty("rocksdb")
+    private RocksDbConfig rocksDb;
+    @JsonProperty("adaptive_threads")
+    private AdaptiveThreadsConfig adaptiveThreads;
+    @JsonProperty
+    private BackpressureConfig backpressure;
+    @JsonProperty
+    private BackfillConfig backfill;
+    @JsonProperty("merge_workers")
+    private boolean mergeWorkers = false;
+    @JsonProperty("transaction_max_timeout")
+    private long transactionMaxTimeout = Duration.ofMinutes(15).getSeconds();
+    @JsonIgnore
+    private final Map<Priority, RocksDbConfig> priorityRocksDb =
+            new EnumMap<>(Priority.class);
+    @JsonIgnore
+    private final Map<Priority, Integer> priorityStandbyReplicas =
+            new EnumMap<>(Priority.class);
+
 
     public StreamConfig() {
         priorityThreads = new EnumMap<>(Priority.class);
@@ -85,6 +130,35 @@ public class StreamConfig {
                         Map.Entry::getValue)));
     }
 
+    @JsonGetter("standby_replicas_per_priority")
+    public Map<String, Integer> getStandbyReplicasPerPriority() {
+        return priorityStandbyReplicas.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().getParam(), Map.Entry::getValue));
+    }
+
+    @JsonSetter("standby_replicas_per_priority")
+    public void setStandbyReplicasPerPriority(Map<String, Integer> standbyReplicas) {
+        standbyReplicas.values().forEach(v -> {
+            if (v == null || v < 0) {
+                throw new IllegalArgumentException("Standby replicas cannot be negative");
+            }
+        });
+        this.priorityStandbyReplicas.putAll(standbyReplicas.entrySet().stream()
+                .collect(Collectors.toMap(
+                        e -> Priority.valueOf(e.getKey().toUpperCase(Locale.US)),
+                        Map.Entry::getValue)));
+    }
+
+    /**
+     * Number of standby replicas of the state stores of streams with given priority. Standby
+     * replicas keep a copy of the state on another instance, so a task can fail over without
+     * restoring its state from the changelog.
+     * @return number of standby replicas, or {@code null} to use the Kafka Streams default.
+     */
+    public Integer standbyReplicasByPriority(Priority level) {
+        return priorityStandbyReplicas.get(level);
+    }
+
     @JsonIgnore
     public Duration getCommitIntervalForTimeWindow(TimeWindowMetadata w) {
         if (timeWindowCommitInterval.isEmpty()) {
@@ -101,11 +175,186 @@ public class StreamConfig {
         return timeWindowCommitInterval.get(w);
     }
 
+    /**
+     * Time that given time window accepts late records after it has ended. Records that arrive
+     * later are dropped. By default, late records are not dropped, so that an old backlog that
+     * is uploaded later is still aggregated while its windows are retained.
+     * @return grace period, or {@code null} if it is not configured.
+     */
+    @JsonIgnore
+    public Duration getGracePeriodForTimeWindow(TimeWindowMetadata w) {
+        Long configured = getTimeWindowSetting(timeWindowGracePeriod, w);
+        return configured != null ? Duration.ofSeconds(configured) : null;
+    }
+
+    public void setTimeWindowGracePeriod(Map<String, Long> timeWindowGracePeriod) {
+        this.timeWindowGracePeriod = timeWindowGracePeriod;
+    }
+
+    /**
+     * Time that the state of given time window is retained. By default, it is retained until the
+     * window has ended and its grace period has passed or, without a grace period, for the Kafka
+     * Streams default of one day. It is never shorter than the window.
+     */
+    @JsonIgnore
+    public Duration getRetentionForTimeWindow(TimeWindowMetadata w) {
+        Duration size = Duration.ofMillis(w.getIntervalInMilliSec());
+        Long configured = getTimeWindowSetting(timeWindowRetention, w);
+        Duration retention;
+        if (configured != null) {
+            retention = Duration.ofSeconds(configured);
+        } else {
+            Duration grace = getGracePeriodForTimeWindow(w);
+            retention = grace != null ? size.plus(grace) : DEFAULT_RETENTION;
+        }
+        return retention.compareTo(size) > 0 ? retention : size;
+    }
+
+    /**
+     * Setting for given time window in a map keyed by window label, like {@code 10sec}.
+     * @return setting or {@code null} if not configured.
+     */
+    private static Long getTimeWindowSetting(Map<String, Long> settings, TimeWindowMetadata w) {
+        if (settings == null) {
+            return null;
+        }
+        // topic labels start with an underscore
+        return settings.get(w.getTopicLabel("").substring(1));
+    }
+
     public int threadsByPriority(Priority level) {
         return priorityThreads.get(level);
     }
 
+    /** Number of stream workers that are started in parallel. */
+    public int getStartupThreads() {
+        return startupThreads;
+    }
+
+    /**
+     * Restart delays for a single Kafka Streams instance that failed. Delays grow from
+     * {@code restart_initial_delay} to {@code restart_max_delay} seconds. After
+     * {@code restart_max_failures} consecutive failures, an instance is only restarted once
+     * every {@code restart_reset_interval} seconds, until it runs that long without failing.
+     */
+    public RestartBackoff createRestartBackoff() {
+        return new RestartBackoff(Duration.ofSeconds(restartInitialDelay),
+                Duration.ofSeconds(restartMaxDelay), restartMaxFailures,
+                Duration.ofSeconds(restartResetInterval));
+    }
+
+    /**
+     * Configuration of adapting stream threads to consumer lag, or {@code null} to keep the
+     * threads of each priority fixed.
+     */
+    public AdaptiveThreadsConfig getAdaptiveThreads() {
+        return adaptiveThreads;
+    }
+
+    /**
+     * Configuration of pausing low priority streams, or {@code null} to never pause streams.
+     */
+    public BackpressureConfig getBackpressure() {
+        return backpressure;
+    }
+
+    /** Configuration of the {@code backfill} command. */
+    public BackfillConfig getBackfill() {
+        return backfill != null ? backfill : new BackfillConfig();
+    }
+
     public List<SourceStatisticsStreamConfig> getSourceStatistics() {
         return sourceStatistics;
     }
+
+    /** RocksDB configuration shared by all streams, or {@code null} to use the defaults. */
+    public RocksDbConfig getRocksDb() {
+        return rocksDb;
+    }
+
+    @JsonGetter("rocksdb_per_priority")
+    public Map<String, RocksDbConfig> getRocksDbPerPriority() {
+        return priorityRocksDb.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().getParam(), Map.Entry::getValue));
+    }
+
+    @JsonSetter("rocksdb_per_priority")
+    public void setRocksDbPerPriority(Map<String, RocksDbConfig> rocksDbPriority) {
+        this.priorityRocksDb.putAll(rocksDbPriority.entrySet().stream()
+                .collect(Collectors.toMap(
+                        e -> Priority.valueOf(e.getKey().toUpperCase(Locale.US)),
+                        Map.Entry::getValue)));
+    }
+
+    /**
+     * Add the RocksDB properties of streams with given priority. Streams of a priority with its
+     * own RocksDB configuration use a separate memory pool from the other streams.
+     * @param props Kafka Streams properties to add to
+     * @param level stream priority
+     */
+    public void addRocksDbProperties(Properties props, Priority level) {
+        RocksDbConfig priorityConfig = priorityRocksDb.get(level);
+        if (priorityConfig != null) {
+            priorityConfig.addStreamProperties(props, level.getParam());
+        } else if (rocksDb != null) {
+            rocksDb.addStreamProperties(props, "default");
+        }
+    }
+
+    /** Whether any RocksDB memory pool is configured. */
+    public boolean hasRocksDbConfig() {
+        return rocksDb != null || !priorityRocksDb.isEmpty();
+    }
+
+    /**
+     * Whether stream workers that consume the same input topic should be run from a single
+     * topology, so that the topic is consumed once.
+     */
+    public boolean isMergeWorkers() {
+        return mergeWorkers;
+    }
+
+    /**
+     * Maximum time that a transaction of an exactly-once stream may stay open. It should not
+     * exceed the {@code transaction.max.timeout.ms} setting of the Kafka brokers.
+     */
+    public Duration getTransactionMaxTimeout() {
+        return Duration.ofSeconds(transactionMaxTimeout);
+    }
+
+    /**
+     * Tune the producer transactions of given Kafka Streams properties, if they use exactly-once
+     * processing. A transaction stays open for a whole commit interval, so the transaction
+     * timeout is set to twice the commit interval, but at least to the Kafka default of one
+     * minute and at most to {@link #getTransactionMaxTimeout()}. A commit interval that does not
+     * fit in half of the transaction timeout is shortened. Call this after the commit interval
+     * is set.
+     * @param props Kafka Streams properties to update
+     */
+    public void addTransactionProperties(Properties props) {
+        if (!StreamsConfig.EXACTLY_ONCE.equals(
+                props.get(StreamsConfig.PROCESSING_GUARANTEE_CONFIG))) {
+            return;
+        }
+        Object commitValue = props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG);
+        long commitInterval = commitValue != null
+                ? Long.parseLong(commitValue.toString())
+                : DEFAULT_EXACTLY_ONCE_COMMIT_INTERVAL_MS;
+
+        String timeoutKey = StreamsConfig.producerPrefix(
+                ProducerConfig.TRANSACTION_TIMEOUT_CONFIG);
+        Object timeoutValue = props.get(timeoutKey);
+        long timeout;
+        if (timeoutValue != null) {
+            timeout = Long.parseLong(timeoutValue.toString());
+        } else {
+            timeout = Math.min(getTransactionMaxTimeout().toMillis(),
+                    Math.max(DEFAULT_TRANSACTION_TIMEOUT_MS, 2 * commitInterval));
+            props.put(timeoutKey, String.valueOf(timeout));
+        }
+
+        if (commitInterval > timeout / 2) {
+            props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, String.valueOf(timeout / 2));
+        }
+    }
 }
@@ -32,4 +32,23 @@ public interface SubCommand {
 
     /** Stop the subcommand, possibly waiting for it to complete. */
     void shutdown() throws IOException, InterruptedException;
+
+    /**
+     * Apply a changed configuration to the running subcommand, restarting only the parts that
+     * are affected by the change.
+     * @param config new configuration
+     * @return whether the configuration was applied. If not, the subcommand must be restarted
+     *         for the changes to take effect.
+     */
+    default boolean reload(ConfigRadar config) {
+        return false;
+    }
+
+    /**
+     * Whether the command completed its work when {@link #start()} returned. Commands that run
+     * until they are shut down are never finished.
+     */
+    default boolean isFinished() {
+        return false;
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+import static org.radarcns.metrics.PrometheusWriter.labels;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Exports memory, garbage collection and thread statistics of the JVM.
+ */
+public class JvmMetricsSource implements MetricsSource {
+    private static final Map<String, String> NO_LABELS = Collections.emptyMap();
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        writeMemory(writer, "heap",
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage());
+        writeMemory(writer, "nonheap",
+                ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage());
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, String> gcLabels = labels("gc", gc.getName());
+            writer.counter("jvm_gc_collections_total", "Number of garbage collections.",
+                    gcLabels, gc.getCollectionCount());
+            writer.counter("jvm_gc_collection_seconds_total",
+                    "Time spent in garbage collection.", gcLabels,
+                    gc.getCollectionTime() / 1000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        writer.gauge("jvm_threads_current", "Number of live threads.", NO_LABELS,
+                threads.getThreadCount());
+        writer.gauge("jvm_threads_daemon", "Number of live daemon threads.", NO_LABELS,
+                threads.getDaemonThreadCount());
+
+        writer.gauge("jvm_uptime_seconds", "Uptime of the JVM.", NO_LABELS,
+                ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        writer.gauge("system_load_average", "System load average over the last minute.",
+                NO_LABELS, ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+        writer.gauge("system_processors", "Number of processors available to the JVM.",
+                NO_LABELS, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static void writeMemory(PrometheusWriter writer, String area, MemoryUsage usage) {
+        Map<String, String> areaLabels = labels("area", area);
+        writer.gauge("jvm_memory_bytes_used", "Used memory.", areaLabels, usage.getUsed());
+        writer.gauge("jvm_memory_bytes_committed", "Committed memory.", areaLabels,
+                usage.getCommitted());
+        writer.gauge("jvm_memory_bytes_max", "Maximum memory, or -1 if undefined.", areaLabels,
+                usage.getMax());
+    }
+
+    @Override
+    public String toString() {
+        return "JvmMetricsSource";
+    }
+}
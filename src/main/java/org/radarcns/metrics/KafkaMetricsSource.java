@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+/**
+ * Exports the metrics of Kafka clients. Metric names are composed of a prefix, the metric group
+ * and the metric name, and metric tags are exported as labels. Metrics that are not numeric are
+ * skipped.
+ */
+public class KafkaMetricsSource implements MetricsSource {
+    private final String prefix;
+    private final Map<String, String> labels;
+    private final Supplier<Collection<Map<MetricName, ? extends Metric>>> metrics;
+
+    /**
+     * Kafka metrics source.
+     * @param prefix prefix of all metric names, e.g. {@code kafka_streams}
+     * @param labels additional labels of all metrics
+     * @param metrics supplier of the current metrics of one or more clients. It is called on
+     *                each scrape, so clients may be replaced in the meantime.
+     */
+    public KafkaMetricsSource(@Nonnull String prefix, @Nonnull Map<String, String> labels,
+            @Nonnull Supplier<Collection<Map<MetricName, ? extends Metric>>> metrics) {
+        this.prefix = prefix;
+        this.labels = labels;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        for (Map<MetricName, ? extends Metric> clientMetrics : metrics.get()) {
+            for (Map.Entry<MetricName, ? extends Metric> entry : clientMetrics.entrySet()) {
+                Object value = entry.getValue().metricValue();
+                if (!(value instanceof Number)) {
+                    continue;
+                }
+                MetricName name = entry.getKey();
+                Map<String, String> sampleLabels = new LinkedHashMap<>(labels);
+                sampleLabels.putAll(name.tags());
+                writer.untyped(prefix + '_' + name.group() + '_' + name.name(),
+                        name.description(), sampleLabels, ((Number) value).doubleValue());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KafkaMetricsSource<" + prefix + ", " + labels + ">";
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sources of the metrics that are exported by the {@link MetricsServer}. Stream workers and
+ * monitors register their sources when they start and remove them when they stop.
+ */
+public final class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final List<MetricsSource> SOURCES = new CopyOnWriteArrayList<>();
+
+    private MetricsRegistry() {
+        // utility class
+    }
+
+    /** Add a source of metrics. */
+    public static void register(@Nonnull MetricsSource source) {
+        SOURCES.add(source);
+    }
+
+    /** Remove a source of metrics. */
+    public static void unregister(MetricsSource source) {
+        SOURCES.remove(source);
+    }
+
+    /**
+     * Write the metrics of all sources. A source that fails is skipped.
+     * @param writer writer to add the metrics to
+     */
+    public static void writeMetrics(@Nonnull PrometheusWriter writer) {
+        for (MetricsSource source : SOURCES) {
+            try {
+                source.writeMetrics(writer);
+            } catch (RuntimeException ex) {
+                logger.warn("Failed to collect metrics from {}", source, ex);
+            }
+        }
+    }
+
+    /** Current metrics of all sources in the Prometheus text format. */
+    public static String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        writeMetrics(writer);
+        return writer.toString();
+    }
+}
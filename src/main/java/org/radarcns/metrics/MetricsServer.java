@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nonnull;
+import org.radarcns.config.MetricsConfig;
+import org.radarcns.util.RadarThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded HTTP server that exports the metrics of the {@link MetricsRegistry} in the Prometheus
+ * text format.
+ */
+public class MetricsServer {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsServer.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsConfig config;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsServer(@Nonnull MetricsConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Start serving metrics.
+     * @throws IOException if the server cannot listen on the configured address.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Metrics server already started");
+        }
+        InetSocketAddress address = new InetSocketAddress(config.getHost(), config.getPort());
+        server = HttpServer.create(address, 0);
+        server.createContext(config.getPath(), this::handle);
+        executor = Executors.newSingleThreadExecutor(new RadarThreadFactoryBuilder()
+                .setNamePrefix("metrics-server")
+                .setDaemon(true)
+                .build());
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Serving metrics on http://{}:{}{}", config.getHost(), config.getPort(),
+                config.getPath());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = MetricsRegistry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Stop serving metrics. */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+            executor = null;
+        }
+    }
+}
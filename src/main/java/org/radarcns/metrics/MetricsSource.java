@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+/**
+ * Source of metrics that are exported by the {@link MetricsServer}.
+ */
+@FunctionalInterface
+public interface MetricsSource {
+    /**
+     * Write the current value of all metrics of this source. This is called on each scrape, from
+     * the thread of the metrics server.
+     * @param writer writer to add metrics to
+     */
+    void writeMetrics(PrometheusWriter writer);
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+
+/**
+ * Collects metric samples and writes them in the Prometheus text exposition format. Samples with
+ * the same metric name are grouped, even if they are added by different sources.
+ */
+public class PrometheusWriter {
+    private static final Pattern INVALID_NAME_CHARACTERS = Pattern.compile("[^a-zA-Z0-9_:]");
+    private static final Pattern INVALID_LABEL_CHARACTERS = Pattern.compile("[^a-zA-Z0-9_]");
+
+    private final Map<String, Family> families;
+
+    public PrometheusWriter() {
+        families = new LinkedHashMap<>();
+    }
+
+    /** Add a sample of a value that can go up and down. */
+    public void gauge(@Nonnull String name, String help, Map<String, String> labels,
+            double value) {
+        sample("gauge", name, help, labels, value);
+    }
+
+    /** Add a sample of a value that only increases. */
+    public void counter(@Nonnull String name, String help, Map<String, String> labels,
+            double value) {
+        sample("counter", name, help, labels, value);
+    }
+
+    /** Add a sample of a value that is not known to be a gauge or a counter. */
+    public void untyped(@Nonnull String name, String help, Map<String, String> labels,
+            double value) {
+        sample("untyped", name, help, labels, value);
+    }
+
+    private void sample(String type, String name, String help, Map<String, String> labels,
+            double value) {
+        String metricName = sanitizeName(name);
+        families.computeIfAbsent(metricName, n -> new Family(type, help))
+                .samples.add(formatSample(metricName, labels, value));
+    }
+
+    /**
+     * Write all samples in the Prometheus text format.
+     * @param out output to append to
+     */
+    public void write(StringBuilder out) {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            if (family.help != null) {
+                out.append("# HELP ").append(entry.getKey()).append(' ')
+                        .append(family.help.replace("\\", "\\\\").replace("\n", "\\n"))
+                        .append('\n');
+            }
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type)
+                    .append('\n');
+            for (String sample : family.samples) {
+                out.append(sample).append('\n');
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        write(builder);
+        return builder.toString();
+    }
+
+    /** Labels of a sample, in given key-value order. */
+    public static Map<String, String> labels(String... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as key-value pairs");
+        }
+        if (keyValues.length == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            labels.put(keyValues[i], keyValues[i + 1]);
+        }
+        return labels;
+    }
+
+    private static String formatSample(String name, Map<String, String> labels, double value) {
+        StringBuilder sample = new StringBuilder(name);
+        if (labels != null && !labels.isEmpty()) {
+            sample.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                if (!first) {
+                    sample.append(',');
+                }
+                first = false;
+                sample.append(INVALID_LABEL_CHARACTERS.matcher(label.getKey()).replaceAll("_"))
+                        .append("=\"")
+                        .append(escapeLabelValue(label.getValue()))
+                        .append('"');
+            }
+            sample.append('}');
+        }
+        return sample.append(' ').append(formatValue(value)).toString();
+    }
+
+    /** Replace all characters that are not allowed in a metric name with underscores. */
+    static String sanitizeName(String name) {
+        String sanitized = INVALID_NAME_CHARACTERS.matcher(name).replaceAll("_");
+        if (!sanitized.isEmpty() && Character.isDigit(sanitized.charAt(0))) {
+            return '_' + sanitized;
+        }
+        return sanitized;
+    }
+
+    private static String escapeLabelValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        } else {
+            return Double.toString(value);
+        }
+    }
+
+    /** Samples of a single metric. */
+    private static class Family {
+        private final String type;
+        private final String help;
+        private final List<String> samples;
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help != null && !help.isEmpty() ? help : null;
+            this.samples = new ArrayList<>();
+        }
+    }
+}
@@ -23,11 +23,11 @@ import static org.apache.kafka.clients.consumer.ConsumerConfig.CLIENT_ID_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.GROUP_ID_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG;
 import static org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG;
 
-import io.confluent.kafka.serializers.KafkaAvroDeserializer;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Collection;
@@ -49,8 +49,15 @@ import org.apache.kafka.common.errors.WakeupException;
 import org.radarcns.config.ConfigRadar;
 import org.radarcns.config.RadarPropertyHandler;
 import org.radarcns.kafka.ObservationKey;
+import org.radarcns.metrics.KafkaMetricsSource;
+import org.radarcns.metrics.MetricsRegistry;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
+import org.radarcns.stream.metrics.MetricsConsumerInterceptor;
+import org.radarcns.stream.metrics.StreamMetrics;
+import org.radarcns.util.KeyInterner;
 import org.radarcns.util.PersistentStateStore;
-import org.radarcns.util.RollingTimeAverage;
+import org.radarcns.util.serde.SharedKafkaAvroDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,7 +100,7 @@ public abstract class AbstractKafkaMonitor<K, V, S> implements KafkaMonitor {
         }
 
         properties = new Properties();
-        String deserializer = KafkaAvroDeserializer.class.getName();
+        String deserializer = SharedKafkaAvroDeserializer.class.getName();
         String monitorClientId = getClass().getName() + "-" + clientId;
         properties.setProperty(KEY_DESERIALIZER_CLASS_CONFIG, deserializer);
         properties.setProperty(VALUE_DESERIALIZER_CLASS_CONFIG, deserializer);
@@ -103,6 +110,9 @@ public abstract class AbstractKafkaMonitor<K, V, S> implements KafkaMonitor {
         properties.setProperty(AUTO_COMMIT_INTERVAL_MS_CONFIG, "1001");
         properties.setProperty(SESSION_TIMEOUT_MS_CONFIG, "15101");
         properties.setProperty(HEARTBEAT_INTERVAL_MS_CONFIG, "7500");
+        properties.setProperty(INTERCEPTOR_CLASSES_CONFIG,
+                MetricsConsumerInterceptor.class.getName());
+        properties.setProperty(StreamMetrics.APPLICATION_CONFIG, monitorClientId);
 
         ConfigRadar config = radar.getRadarProperties();
         properties.setProperty(SCHEMA_REGISTRY_URL_CONFIG, config.getSchemaRegistryPaths());
@@ -156,18 +166,24 @@ public abstract class AbstractKafkaMonitor<K, V, S> implements KafkaMonitor {
      */
     @Override
     public void start() {
+        StreamMetrics metrics = StreamMetrics.get(clientId);
+        topics.forEach(metrics::input);
         consumer = new KafkaConsumer<>(this.properties);
         consumer.subscribe(topics);
 
+        Consumer<K, V> currentConsumer = consumer;
+        MetricsSource metricsSource = new KafkaMetricsSource("kafka_consumer",
+                PrometheusWriter.labels("monitor", getClass().getSimpleName()),
+                () -> Collections.singletonList(currentConsumer.metrics()));
+        MetricsRegistry.register(metricsSource);
+
         logger.info("Monitoring streams {}", topics);
-        RollingTimeAverage ops = new RollingTimeAverage(20000);
 
         try {
             while (!isShutdown()) {
                 try {
                     @SuppressWarnings("unchecked")
                     ConsumerRecords<K, V> records = consumer.poll(getPollTimeout());
-                    ops.add(records.count());
                     evaluateRecords(records);
                 } catch (SerializationException ex) {
                     handleSerializationException();
@@ -181,6 +197,7 @@ public abstract class AbstractKafkaMonitor<K, V, S> implements KafkaMonitor {
                 }
             }
         } finally {
+            MetricsRegistry.unregister(metricsSource);
             consumer.close();
         }
     }
@@ -301,10 +318,10 @@ public abstract class AbstractKafkaMonitor<K, V, S> implements KafkaMonitor {
                     + schema + " without source ID.");
         }
         Object projectIdValue = record.get(projectIdField.pos());
-        return new ObservationKey(
+        return KeyInterner.getInstance().intern(new ObservationKey(
                 projectIdValue != null ? projectIdValue.toString() : null,
                 record.get(userIdField.pos()).toString(),
-                record.get(sourceIdField.pos()).toString());
+                record.get(sourceIdField.pos()).toString()));
     }
 
     public PersistentStateStore getStateStore() {
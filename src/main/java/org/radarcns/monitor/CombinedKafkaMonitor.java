@@ -19,42 +19,59 @@ package org.radarcns.monitor;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.radarcns.config.ConfigRadar;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Runs multiple monitors, each in its own thread.
+ * Runs multiple monitors, each in its own thread. Monitors can be replaced while running, for
+ * example when their configuration changes.
  */
 public class CombinedKafkaMonitor implements KafkaMonitor {
     private static final Logger logger = LoggerFactory.getLogger(CombinedKafkaMonitor.class);
 
     private final List<KafkaMonitor> monitors;
+    private final Map<KafkaMonitor, Future<?>> running;
     private final AtomicBoolean done;
 
     private ExecutorService executor;
     private IOException ioException;
     private InterruptedException interruptedException;
+    private int replacing;
+    private Predicate<ConfigRadar> reloader;
 
     public CombinedKafkaMonitor(Stream<KafkaMonitor> monitors) {
         this.monitors = Objects.requireNonNull(monitors)
                 .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+                .collect(Collectors.toCollection(CopyOnWriteArrayList::new));
 
         if (this.monitors.isEmpty()) {
             throw new IllegalArgumentException("Monitor collection may not be empty");
         }
+        this.running = new HashMap<>();
         this.done = new AtomicBoolean(false);
         this.executor = null;
         this.ioException = null;
         this.interruptedException = null;
+        this.replacing = 0;
+        this.reloader = null;
     }
 
     @Override
@@ -75,23 +92,15 @@ public class CombinedKafkaMonitor implements KafkaMonitor {
             if (executor != null) {
                 throw new IllegalStateException("Cannot start monitor twice");
             }
-            executor = Executors.newFixedThreadPool(monitors.size());
-        }
+            executor = Executors.newCachedThreadPool();
+            monitors.forEach(this::submit);
 
-        for (KafkaMonitor monitor : monitors) {
-            executor.submit(() -> {
-                try {
-                    monitor.start();
-                } catch (IOException ex) {
-                    setIoException(ex);
-                } catch (InterruptedException ex) {
-                    setInterruptedException(ex);
-                }
-            });
+            // wait until all monitors are done, including replaced monitors
+            while (!running.isEmpty() || replacing > 0) {
+                wait();
+            }
         }
-
         executor.shutdown();
-        executor.awaitTermination(366_000, TimeUnit.DAYS); // > 1000 years...
 
         if (getIoException() != null) {
             throw getIoException();
@@ -101,6 +110,93 @@ public class CombinedKafkaMonitor implements KafkaMonitor {
         }
     }
 
+    /** Run a monitor in its own thread. Call while holding the lock on this object. */
+    private void submit(KafkaMonitor monitor) {
+        running.put(monitor, executor.submit(() -> {
+            try {
+                monitor.start();
+            } catch (IOException ex) {
+                setIoException(ex);
+            } catch (InterruptedException ex) {
+                setInterruptedException(ex);
+            } finally {
+                finished(monitor);
+            }
+        }));
+    }
+
+    private synchronized void finished(KafkaMonitor monitor) {
+        running.remove(monitor);
+        notifyAll();
+    }
+
+    /**
+     * Replace a monitor. The old monitor is shut down before the replacement is created, so
+     * that the replacement can continue from the persisted state of the old monitor.
+     * @param monitor monitor to replace, or {@code null} to only add the replacement
+     * @param supplier supplier of the replacement monitor. It may supply {@code null} to only
+     *                 remove the monitor.
+     * @return replacement monitor or {@code null} if none was supplied
+     * @throws IOException if the old monitor failed to shut down or the replacement could not
+     *                     be created
+     * @throws InterruptedException if interrupted while waiting for the old monitor to stop
+     */
+    @Nullable
+    public KafkaMonitor replace(@Nullable KafkaMonitor monitor,
+            @Nonnull MonitorSupplier supplier) throws IOException, InterruptedException {
+        Future<?> future;
+        synchronized (this) {
+            if (done.get()) {
+                throw new IllegalStateException("Cannot replace monitors after shutdown");
+            }
+            replacing++;
+            future = monitor != null ? running.get(monitor) : null;
+        }
+        try {
+            if (monitor != null) {
+                monitors.remove(monitor);
+                monitor.shutdown();
+                if (future != null) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            }
+            KafkaMonitor replacement = supplier.get();
+            if (replacement != null) {
+                synchronized (this) {
+                    monitors.add(replacement);
+                    if (executor != null && !done.get()) {
+                        submit(replacement);
+                    }
+                }
+            }
+            return replacement;
+        } catch (ExecutionException | TimeoutException ex) {
+            throw new IOException("Replaced monitor " + monitor + " did not stop", ex);
+        } finally {
+            synchronized (this) {
+                replacing--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Set the function that applies a reloaded configuration to this monitor.
+     * @param reloader function that returns whether the configuration was applied
+     */
+    public synchronized void setReloader(@Nullable Predicate<ConfigRadar> reloader) {
+        this.reloader = reloader;
+    }
+
+    @Override
+    public boolean reload(ConfigRadar config) {
+        Predicate<ConfigRadar> currentReloader;
+        synchronized (this) {
+            currentReloader = reloader;
+        }
+        return currentReloader != null && currentReloader.test(config);
+    }
+
     private synchronized IOException getIoException() {
         return ioException;
     }
@@ -145,6 +241,7 @@ public class CombinedKafkaMonitor implements KafkaMonitor {
             }
         }
         initiateShutdown();
+        executor.shutdown();
         executor.awaitTermination(30, TimeUnit.SECONDS);
         executor.shutdownNow();
     }
@@ -157,4 +254,11 @@ public class CombinedKafkaMonitor implements KafkaMonitor {
     public List<KafkaMonitor> getMonitors() {
         return new ArrayList<>(monitors);
     }
+
+    /** Supplies a monitor. */
+    @FunctionalInterface
+    public interface MonitorSupplier {
+        @Nullable
+        KafkaMonitor get() throws IOException;
+    }
 }
@@ -20,13 +20,17 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
-import java.util.stream.Stream;
+import java.util.function.Function;
 import org.radarcns.config.BatteryMonitorConfig;
+import org.radarcns.config.ConfigFingerprint;
+import org.radarcns.config.ConfigRadar;
 import org.radarcns.config.DisconnectMonitorConfig;
 import org.radarcns.config.MonitorConfig;
 import org.radarcns.config.RadarBackendOptions;
 import org.radarcns.config.RadarPropertyHandler;
+import org.radarcns.monitor.CombinedKafkaMonitor.MonitorSupplier;
 import org.radarcns.util.EmailSenders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,8 +66,7 @@ public class KafkaMonitorFactory {
                 monitor = createDisconnectMonitor();
                 break;
             case "all":
-                monitor = new CombinedKafkaMonitor(
-                        Stream.of(createDisconnectMonitor(), createBatteryLevelMonitor()));
+                monitor = createCombinedMonitor();
                 break;
             default:
                 throw new IllegalArgumentException("Cannot create unknown monitor " + commandType);
@@ -74,6 +77,32 @@ public class KafkaMonitorFactory {
         return monitor;
     }
 
+    /**
+     * Create a monitor that runs all configured monitors. When the configuration is reloaded,
+     * monitors with a changed configuration are recreated.
+     */
+    private KafkaMonitor createCombinedMonitor() throws IOException {
+        List<ReloadableMonitor> reloadable = Arrays.asList(
+                new ReloadableMonitor("disconnect_monitor", ConfigRadar::getDisconnectMonitor,
+                        this::createDisconnectMonitor),
+                new ReloadableMonitor("battery_monitor", ConfigRadar::getBatteryMonitor,
+                        this::createBatteryLevelMonitor));
+        ConfigRadar config = properties.getRadarProperties();
+        for (ReloadableMonitor monitor : reloadable) {
+            monitor.create(config);
+        }
+        CombinedKafkaMonitor combined = new CombinedKafkaMonitor(reloadable.stream()
+                .map(m -> m.monitor));
+        combined.setReloader(newConfig -> {
+            boolean applied = true;
+            for (ReloadableMonitor monitor : reloadable) {
+                applied &= monitor.reload(combined, newConfig);
+            }
+            return applied;
+        });
+        return combined;
+    }
+
     private KafkaMonitor createBatteryLevelMonitor() throws IOException {
         BatteryMonitorConfig config = properties.getRadarProperties().getBatteryMonitor();
 
@@ -128,4 +157,48 @@ public class KafkaMonitorFactory {
             return Collections.singleton(defaultTopic);
         }
     }
+
+    /** Monitor that is recreated when its configuration section changes. */
+    private static final class ReloadableMonitor {
+        private final String name;
+        private final Function<ConfigRadar, Object> configSelector;
+        private final MonitorSupplier supplier;
+        private String fingerprint;
+        private KafkaMonitor monitor;
+
+        private ReloadableMonitor(String name, Function<ConfigRadar, Object> configSelector,
+                MonitorSupplier supplier) {
+            this.name = name;
+            this.configSelector = configSelector;
+            this.supplier = supplier;
+        }
+
+        private void create(ConfigRadar config) throws IOException {
+            fingerprint = ConfigFingerprint.of(configSelector.apply(config));
+            monitor = supplier.get();
+        }
+
+        /**
+         * Replace the monitor in given combined monitor if its configuration changed.
+         * @return whether the configuration was applied
+         */
+        private boolean reload(CombinedKafkaMonitor combined, ConfigRadar config) {
+            String newFingerprint = ConfigFingerprint.of(configSelector.apply(config));
+            if (fingerprint.equals(newFingerprint)) {
+                return true;
+            }
+            logger.info("Configuration of {} changed. Restarting it.", name);
+            try {
+                monitor = combined.replace(monitor, supplier);
+                fingerprint = newFingerprint;
+                return true;
+            } catch (IOException ex) {
+                logger.error("Failed to restart {}", name, ex);
+                return false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
 }
@@ -1,23 +1,29 @@
 package org.radarcns.stream;
 
-import java.lang.Thread.UncaughtExceptionHandler;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.kafka.streams.KafkaStreams;
-import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.TimeWindows;
 import org.radarcns.config.ConfigRadar;
 import org.radarcns.config.KafkaProperty;
 import org.radarcns.config.RadarPropertyHandler;
 import org.radarcns.config.SingleStreamConfig;
+import org.radarcns.config.StreamConfig;
+import org.radarcns.stream.metrics.StateRestoreTracker;
 import org.radarcns.topic.KafkaTopic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public abstract class AbstractStreamWorker implements StreamWorker, UncaughtExceptionHandler {
+public abstract class AbstractStreamWorker implements StreamWorker {
     private static final Logger logger = LoggerFactory.getLogger(AbstractStreamWorker.class);
 
     public static final String OUTPUT_LABEL = "_output";
@@ -27,9 +33,13 @@ public abstract class AbstractStreamWorker implements StreamWorker, UncaughtExce
     protected SingleStreamConfig config;
     protected ConfigRadar allConfig;
     protected int numThreads;
+    /** Whether the number of threads was changed after the worker was configured. */
+    private boolean threadsChanged;
     protected KafkaProperty kafkaProperty;
     protected StreamMaster master;
-    protected List<KafkaStreams> streams;
+    protected volatile List<KafkaStreams> streams;
+    private volatile boolean paused;
+    private Backfill backfill;
 
     public AbstractStreamWorker() {
         streamDefinitions = new ArrayList<>();
@@ -91,11 +101,19 @@ public abstract class AbstractStreamWorker implements StreamWorker, UncaughtExce
     protected void defineWindowedSensorStream(String input,
             String outputBase) {
         streamDefinitions.addAll(Arrays.stream(TimeWindowMetadata.values())
-                .map(w -> new StreamDefinition(
-                        new KafkaTopic(input),
-                        new KafkaTopic(w.getTopicLabel(outputBase)),
-                        Duration.ofMillis(w.getIntervalInMilliSec()),
-                        allConfig.getStream().getCommitIntervalForTimeWindow(w)))
+                .map(w -> {
+                    StreamConfig streamConfig = allConfig.getStream();
+                    Duration window = Duration.ofMillis(w.getIntervalInMilliSec());
+                    return new StreamDefinition(
+                            new KafkaTopic(input),
+                            new KafkaTopic(w.getTopicLabel(outputBase)),
+                            TimeWindows.of(window.toMillis())
+                                    .until(streamConfig.getRetentionForTimeWindow(w).toMillis()),
+                            streamConfig.getCommitIntervalForTimeWindow(w),
+                            config.getEmitPolicy(window),
+                            config.getStoreType(window),
+                            streamConfig.getGracePeriodForTimeWindow(w));
+                })
                 .collect(Collectors.toList()));
     }
 
@@ -104,76 +122,217 @@ public abstract class AbstractStreamWorker implements StreamWorker, UncaughtExce
         return streamDefinitions.stream();
     }
 
+    @Override
+    public Collection<KafkaStreams> getKafkaStreams() {
+        List<KafkaStreams> currentStreams = streams;
+        return currentStreams != null && !paused ? currentStreams : Collections.emptyList();
+    }
+
+    @Override
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    @Override
+    public synchronized void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        if (numThreads == this.numThreads) {
+            return;
+        }
+        logger.info("Changing {} from {} to {} threads per stream",
+                getName(), this.numThreads, numThreads);
+        this.numThreads = numThreads;
+        this.threadsChanged = true;
+
+        if (streams != null && !paused) {
+            closeRunningStreams();
+            recreateStreams();
+        }
+    }
+
+    @Override
+    public synchronized void pause() {
+        if (streams == null || paused) {
+            return;
+        }
+        logger.info("Pausing {}", getName());
+        paused = true;
+        closeRunningStreams();
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        logger.info("Resuming {}", getName());
+        paused = false;
+        if (streams != null) {
+            recreateStreams();
+        }
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void closeRunningStreams() {
+        streams.forEach(KafkaStreams::close);
+    }
+
+    /** Replace all Kafka Streams instances with new ones, and start them. */
+    private void recreateStreams() {
+        List<KafkaStreams> currentStreams = streams;
+        for (int i = 0; i < currentStreams.size(); i++) {
+            KafkaStreams replacement = recreateStream(i);
+            currentStreams.set(i, replacement);
+            startStream(i, replacement, allConfig.getStream().createRestartBackoff());
+        }
+    }
+
+    @Override
+    public void setBackfill(Backfill backfill) {
+        this.backfill = backfill;
+        if (backfill != null) {
+            this.numThreads = backfill.getConfig().getThreads();
+        }
+    }
+
+    /** Backfill that this worker runs, or {@code null} if it processes live data. */
+    protected Backfill getBackfill() {
+        return backfill;
+    }
+
+    /**
+     * Set the number of stream threads in given Kafka Streams properties, if it was changed after
+     * this worker was configured. Otherwise, the configured properties are kept.
+     */
+    protected void addThreadProperties(Properties props) {
+        if (threadsChanged) {
+            props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, numThreads);
+        }
+    }
+
     @Override
     public void configure(StreamMaster streamMaster, RadarPropertyHandler properties,
             SingleStreamConfig singleConfig) {
         this.kafkaProperty = properties.getKafkaProperties();
         this.allConfig = properties.getRadarProperties();
-        this.numThreads = allConfig.getStream().threadsByPriority(singleConfig.getPriority());
         this.config = singleConfig;
         this.master = streamMaster;
         this.initialize();
+        // workers may set a default priority during initialization
+        this.numThreads = allConfig.getStream().threadsByPriority(singleConfig.getPriority());
     }
 
     /**
      * Starts the stream and notify the StreamMaster.
      */
-    public void start() {
+    public synchronized void start() {
         if (streams != null) {
             throw new IllegalStateException("Streams already started. Cannot start them again.");
         }
-        streams = createStreams();
+        List<KafkaStreams> createdStreams = createStreams();
 
-        if (streams == null) {
+        if (createdStreams == null) {
             throw new IllegalStateException("Streams are not initialized during doStart");
         }
-        streams.forEach(stream -> {
-            stream.setUncaughtExceptionHandler(this);
-            stream.start();
-        });
+        streams = new CopyOnWriteArrayList<>(createdStreams);
+        for (int i = 0; i < createdStreams.size(); i++) {
+            startStream(i, createdStreams.get(i), allConfig.getStream().createRestartBackoff());
+        }
 
         master.notifyStartedStream(this);
     }
 
     protected abstract List<KafkaStreams> createStreams();
 
+    /**
+     * Create a new Kafka Streams instance to replace a failed one. The new instance uses the
+     * same application ID, so it reuses the local state of the failed instance.
+     * @param index index of the failed instance in the list of {@link #createStreams()}.
+     * @return new Kafka Streams instance
+     */
+    protected abstract KafkaStreams recreateStream(int index);
+
+    private void startStream(int index, KafkaStreams stream, RestartBackoff backoff) {
+        stream.setUncaughtExceptionHandler((t, e) ->
+                handleStreamFailure(index, stream, backoff, t, e));
+        stream.setGlobalStateRestoreListener(StateRestoreTracker.getInstance());
+        stream.start();
+        backoff.started(System.currentTimeMillis());
+    }
+
+    /**
+     * Handle the failure of a single Kafka Streams instance. The failed instance is closed and
+     * restarted with backoff, while the other instances of this worker keep running. This is
+     * called from the stream thread that failed, so closing and restarting is left to the
+     * stream master.
+     */
+    private void handleStreamFailure(int index, KafkaStreams failed, RestartBackoff backoff,
+            Thread t, Throwable e) {
+        logger.error("Thread {} of {} stream {} has been terminated due to {}",
+                t.getName(), getName(), index, e.getMessage(), e);
+
+        if (!(e instanceof Exception)) {
+            // errors like an OutOfMemoryError leave the application in an unknown state
+            master.notifyCrashedStream(getName());
+            return;
+        }
+
+        long delay = backoff.failed(System.currentTimeMillis());
+        if (delay < 0L) {
+            // another thread of the same instance already failed
+            return;
+        }
+        if (backoff.isCircuitOpen()) {
+            logger.error("{} stream {} failed {} times in a row. Retrying in {} seconds.",
+                    getName(), index, backoff.getFailures(), delay / 1000L);
+        } else {
+            logger.warn("Restarting {} stream {} in {} ms",
+                    getName(), index, delay);
+        }
+        master.schedule(failed::close, 0L);
+        master.schedule(() -> restartStream(index, failed, backoff), delay);
+    }
+
+    private synchronized void restartStream(int index, KafkaStreams failed,
+            RestartBackoff backoff) {
+        List<KafkaStreams> currentStreams = streams;
+        if (currentStreams == null || paused || currentStreams.get(index) != failed) {
+            // worker was shut down, paused or restarted in the meantime
+            return;
+        }
+        logger.info("Restarting {} stream {}", getName(), index);
+        KafkaStreams replacement = recreateStream(index);
+        currentStreams.set(index, replacement);
+        startStream(index, replacement, backoff);
+    }
+
     /**
      * Close the stream and notify the StreamMaster.
      */
     public void shutdown() {
-        logger.info("Shutting down {} stream", getClass().getSimpleName());
+        logger.info("Shutting down {} stream", getName());
 
         closeStreams();
 
         master.notifyClosedStream(this);
     }
 
-    protected void closeStreams() {
+    protected synchronized void closeStreams() {
         if (streams != null) {
             streams.forEach(KafkaStreams::close);
             streams = null;
         }
+        paused = false;
         doCleanup();
     }
 
     protected abstract void doCleanup();
 
     protected abstract void initialize();
-
-    /**
-     * Handles exceptions that have been uncaught. It is called when a StreamThread is
-     * terminating due to an exception.
-     */
-    @Override
-    public void uncaughtException(Thread t, Throwable e) {
-        logger.error("Thread {} has been terminated due to {}", t.getName(), e.getMessage(), e);
-
-        closeStreams();
-
-        if (e instanceof StreamsException) {
-            master.restartStream(this);
-        } else {
-            master.notifyCrashedStream(getClass().getSimpleName());
-        }
-    }
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import org.radarcns.config.AdaptiveThreadsConfig;
+import org.radarcns.config.RadarPropertyHandler.Priority;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves stream threads from idle stream workers to workers that lag behind their input topics,
+ * within a global thread budget. A worker lags if consuming its lag at the current rate would
+ * take longer than {@link AdaptiveThreadsConfig#getCatchUpHigh()}. It then gets twice as many
+ * threads, taken from the free budget or from idle workers of the same or lower priority. A
+ * worker is idle if it would consume its lag within {@link AdaptiveThreadsConfig#getCatchUpLow()}.
+ * Idle workers with more threads than they were started with give half of their extra threads
+ * back. Since every change restarts the Kafka Streams instances of a worker, a worker is not
+ * changed again within {@link AdaptiveThreadsConfig#getCooldown()}.
+ */
+class AdaptiveThreadController implements Runnable, MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveThreadController.class);
+
+    private final AdaptiveThreadsConfig config;
+    private final Function<StreamWorker, LagSample> sampler;
+    private final List<WorkerState> workers;
+    private volatile int budget;
+
+    /**
+     * Controller that samples the consumer metrics of the Kafka Streams instances of each worker.
+     */
+    AdaptiveThreadController(@Nonnull AdaptiveThreadsConfig config) {
+        this(config, LagSample::of);
+    }
+
+    AdaptiveThreadController(@Nonnull AdaptiveThreadsConfig config,
+            @Nonnull Function<StreamWorker, LagSample> sampler) {
+        this.config = config;
+        this.sampler = sampler;
+        this.workers = new CopyOnWriteArrayList<>();
+        this.budget = config.getBudget();
+    }
+
+    /**
+     * Let the controller manage the threads of a worker. The worker must be configured.
+     * @param name unique name of the worker in metrics
+     * @param worker stream worker
+     * @param priority priority of the worker; lagging workers of higher priority get threads
+     *                 first
+     */
+    void add(@Nonnull String name, @Nonnull StreamWorker worker, @Nonnull Priority priority) {
+        workers.add(new WorkerState(name, worker, priority, worker.getNumThreads()));
+    }
+
+    /**
+     * Stop managing the threads of a worker. Its threads are no longer counted in the budget.
+     * @param worker stream worker that was added before
+     */
+    void remove(@Nonnull StreamWorker worker) {
+        workers.removeIf(s -> s.worker == worker);
+    }
+
+    @Override
+    public void run() {
+        try {
+            rebalance(System.currentTimeMillis());
+        } catch (RuntimeException ex) {
+            // an exception would cancel the next runs
+            logger.error("Failed to rebalance stream threads", ex);
+        }
+    }
+
+    /**
+     * Sample the lag of all workers and change the threads of workers that lag or are idle.
+     * @param now current time in milliseconds
+     * @return new number of threads per Kafka Streams instance of each worker that changed
+     */
+    Map<StreamWorker, Integer> rebalance(long now) {
+        for (WorkerState state : workers) {
+            // paused workers keep the threads and lag that they had before they were paused
+            if (!state.worker.isPaused()) {
+                state.update(sampler.apply(state.worker), state.worker.getKafkaStreams().size());
+            }
+        }
+
+        int used = workers.stream().mapToInt(WorkerState::getTotalThreads).sum();
+        if (used == 0) {
+            // streams are not running
+            return new LinkedHashMap<>();
+        }
+        if (budget <= 0) {
+            budget = used;
+            logger.info("Rebalancing a budget of {} stream threads", budget);
+        }
+        long cooldownMs = config.getCooldown().toMillis();
+
+        Map<WorkerState, Integer> changes = new LinkedHashMap<>();
+        int free = budget - used;
+
+        // give extra threads back
+        for (WorkerState state : workers) {
+            if (state.isIdle() && state.threads > state.baseThreads
+                    && state.canChange(now, cooldownMs)) {
+                int threads = Math.max(state.baseThreads, state.threads / 2);
+                changes.put(state, threads);
+                free += (state.threads - threads) * state.instances;
+            }
+        }
+
+        List<WorkerState> lagging = workers.stream()
+                .filter(s -> s.isLagging() && s.instances > 0 && !s.worker.isPaused()
+                        && s.threads < config.getMaxThreads() && s.canChange(now, cooldownMs))
+                .sorted(Comparator.comparing((WorkerState s) -> s.priority).reversed()
+                        .thenComparing(Comparator.comparingDouble(
+                                WorkerState::getCatchUpSeconds).reversed()))
+                .collect(Collectors.toList());
+
+        for (WorkerState receiver : lagging) {
+            int target = Math.min(config.getMaxThreads(), receiver.threads * 2);
+            int needed = (target - receiver.threads) * receiver.instances;
+            if (free < needed) {
+                free += reclaim(receiver, needed - free, changes, now, cooldownMs);
+            }
+            int added = Math.min(target - receiver.threads, free / receiver.instances);
+            if (added > 0) {
+                changes.put(receiver, receiver.threads + added);
+                free -= added * receiver.instances;
+            }
+        }
+
+        Map<StreamWorker, Integer> result = new LinkedHashMap<>();
+        changes.forEach((state, threads) -> {
+            if (apply(state, threads, now)) {
+                result.put(state.worker, threads);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Take threads from idle workers to give them to a lagging worker. Workers of the lowest
+     * priority and with the most threads give up half of their threads first.
+     * @return number of threads that were taken
+     */
+    private int reclaim(WorkerState receiver, int needed, Map<WorkerState, Integer> changes,
+            long now, long cooldownMs) {
+        List<WorkerState> donors = workers.stream()
+                .filter(s -> s != receiver && !changes.containsKey(s) && s.isIdle()
+                        && s.threads > 1 && s.priority.compareTo(receiver.priority) <= 0
+                        && s.canChange(now, cooldownMs))
+                .sorted(Comparator.comparing((WorkerState s) -> s.priority)
+                        .thenComparing(Comparator.comparingInt(
+                                WorkerState::getTotalThreads).reversed()))
+                .collect(Collectors.toList());
+
+        int reclaimed = 0;
+        for (WorkerState donor : donors) {
+            if (reclaimed >= needed) {
+                break;
+            }
+            int threads = Math.max(1, donor.threads / 2);
+            changes.put(donor, threads);
+            reclaimed += (donor.threads - threads) * donor.instances;
+        }
+        return reclaimed;
+    }
+
+    private boolean apply(WorkerState state, int threads, long now) {
+        logger.info("Changing {} from {} to {} threads per stream, at a lag of {} records"
+                        + " consumed at {} records/s", state.worker, state.threads, threads,
+                state.lag, (long) state.rate);
+        try {
+            state.worker.setNumThreads(threads);
+        } catch (RuntimeException ex) {
+            logger.error("Failed to change the threads of {}", state.worker, ex);
+            return false;
+        }
+        state.threads = threads;
+        state.lastChange = now;
+        return true;
+    }
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        writer.gauge("radar_stream_thread_budget",
+                "Total number of stream threads that are divided over the streams.", null,
+                budget);
+        for (WorkerState state : workers) {
+            Map<String, String> labels = PrometheusWriter.labels(
+                    "worker", state.name);
+            writer.gauge("radar_stream_threads",
+                    "Stream threads per Kafka Streams instance of a worker.", labels,
+                    state.threads);
+            writer.gauge("radar_stream_consumer_lag_records",
+                    "Records that a worker has not yet consumed.", labels, state.lag);
+            writer.gauge("radar_stream_consumed_records_rate",
+                    "Records per second that a worker consumes.", labels, state.rate);
+        }
+    }
+
+    /** Threads and latest lag sample of a worker. */
+    private final class WorkerState {
+        private final String name;
+        private final StreamWorker worker;
+        private final Priority priority;
+        private final int baseThreads;
+        private volatile int threads;
+        private volatile int instances;
+        private volatile long lag;
+        private volatile double rate;
+        private long lastChange;
+
+        private WorkerState(String name, StreamWorker worker, Priority priority, int threads) {
+            this.name = name;
+            this.worker = worker;
+            this.priority = priority;
+            this.baseThreads = threads;
+            this.threads = threads;
+            this.lastChange = -1L;
+        }
+
+        private void update(LagSample sample, int numInstances) {
+            lag = sample.getLag();
+            rate = sample.getRate();
+            instances = numInstances;
+        }
+
+        private int getTotalThreads() {
+            return threads * instances;
+        }
+
+        /** Time it would take to consume the lag at the current rate. */
+        private double getCatchUpSeconds() {
+            if (lag < config.getMinLag()) {
+                return 0.0;
+            }
+            return rate > 0.0 ? lag / rate : Double.POSITIVE_INFINITY;
+        }
+
+        private boolean isLagging() {
+            return getCatchUpSeconds() > config.getCatchUpHigh().getSeconds();
+        }
+
+        private boolean isIdle() {
+            return getCatchUpSeconds() <= config.getCatchUpLow().getSeconds();
+        }
+
+        private boolean canChange(long now, long cooldownMs) {
+            return lastChange < 0L || now - lastChange >= cooldownMs;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+/**
+ * In-memory buffer of live window aggregates in front of a window store. Aggregates are updated
+ * in memory, and are only written to the window store, and thereby to its changelog, when the
+ * buffer is flushed. Kafka Streams flushes all state stores of a task before it commits its
+ * offsets, so buffered updates are not lost when a task fails. Updates are forwarded downstream
+ * by {@link #forward()}, which should be scheduled at the commit interval, and at the latest when
+ * they are stored, so that no stored update is left unforwarded after a failure.
+ *
+ * <p>Aggregates that were not updated between two calls to {@link #forward()} are dropped from
+ * memory. If the buffer exceeds its maximum size, the least recently used aggregate is stored,
+ * forwarded and dropped.
+ *
+ * @param <K> record key type
+ * @param <C> aggregate type
+ */
+public class AggregateBuffer<K, C> implements StateStore {
+    private final String name;
+    private final int maxSize;
+    private final LinkedHashMap<Windowed<K>, Aggregate<C>> aggregates;
+    private WindowStore<K, C> store;
+    private BiConsumer<Windowed<K>, C> forwarder;
+    private boolean open;
+
+    /**
+     * Aggregate buffer.
+     * @param name state store name of the buffer
+     * @param maxSize maximum number of aggregates to keep in memory.
+     */
+    public AggregateBuffer(String name, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Aggregate buffer size must be positive");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.aggregates = new LinkedHashMap<>(16, 0.75f, true);
+        this.open = false;
+    }
+
+    /**
+     * Attach the buffer to the window store that it buffers.
+     * @param store window store of the aggregates
+     * @param forwarder forwards an aggregate update downstream
+     */
+    public void attach(WindowStore<K, C> store, BiConsumer<Windowed<K>, C> forwarder) {
+        this.store = store;
+        this.forwarder = forwarder;
+    }
+
+    /**
+     * Get the aggregate of a window, from memory or else from the window store.
+     * @return aggregate or {@code null} if the window has no aggregate yet.
+     */
+    public C get(Windowed<K> window) {
+        Aggregate<C> aggregate = aggregates.get(window);
+        if (aggregate != null) {
+            aggregate.touched = true;
+            return aggregate.value;
+        }
+        long start = window.window().start();
+        try (WindowStoreIterator<C> iterator = store.fetch(window.key(), start, start)) {
+            if (iterator.hasNext()) {
+                C value = iterator.next().value;
+                if (value != null) {
+                    putAggregate(window, new Aggregate<>(value, true));
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /** Update the aggregate of a window in memory. */
+    public void put(Windowed<K> window, C value) {
+        Aggregate<C> aggregate = aggregates.get(window);
+        if (aggregate != null) {
+            aggregate.value = value;
+            aggregate.stored = false;
+            aggregate.forwarded = false;
+            aggregate.touched = true;
+        } else {
+            putAggregate(window, new Aggregate<>(value, false));
+        }
+    }
+
+    private void putAggregate(Windowed<K> window, Aggregate<C> aggregate) {
+        aggregates.put(window, aggregate);
+        if (aggregates.size() > maxSize) {
+            Iterator<Map.Entry<Windowed<K>, Aggregate<C>>> iterator =
+                    aggregates.entrySet().iterator();
+            Map.Entry<Windowed<K>, Aggregate<C>> eldest = iterator.next();
+            write(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Store and forward all updated aggregates. Aggregates that were not updated since the
+     * previous call are dropped from memory.
+     */
+    public void forward() {
+        Iterator<Map.Entry<Windowed<K>, Aggregate<C>>> iterator =
+                aggregates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Windowed<K>, Aggregate<C>> entry = iterator.next();
+            Aggregate<C> aggregate = entry.getValue();
+            if (aggregate.touched) {
+                write(entry.getKey(), aggregate);
+                aggregate.touched = false;
+            } else {
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Forward and store a single aggregate, if needed. */
+    private void write(Windowed<K> window, Aggregate<C> aggregate) {
+        if (!aggregate.forwarded) {
+            forwarder.accept(window, aggregate.value);
+            aggregate.forwarded = true;
+        }
+        if (!aggregate.stored) {
+            store.put(window.key(), aggregate.value, window.window().start());
+            aggregate.stored = true;
+        }
+    }
+
+    public int size() {
+        return aggregates.size();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void init(ProcessorContext context, StateStore root) {
+        // the buffer itself is not logged, so there is nothing to restore
+        context.register(root, (key, value) -> { });
+        open = true;
+    }
+
+    /**
+     * Forward and write all updated aggregates to the window store. Called on commit, before the
+     * offsets of the processed records are committed.
+     */
+    @Override
+    public void flush() {
+        if (store == null) {
+            return;
+        }
+        for (Map.Entry<Windowed<K>, Aggregate<C>> entry : aggregates.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        store.flush();
+    }
+
+    @Override
+    public void close() {
+        aggregates.clear();
+        open = false;
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    private static class Aggregate<C> {
+        private C value;
+        private boolean stored;
+        private boolean forwarded;
+        private boolean touched;
+
+        Aggregate(C value, boolean stored) {
+            this.value = value;
+            this.stored = stored;
+            this.forwarded = stored;
+            this.touched = true;
+        }
+    }
+
+    /**
+     * Builds an aggregate buffer. The buffer is never cached or logged.
+     * @param <K> record key type
+     * @param <C> aggregate type
+     */
+    public static class Builder<K, C> implements StoreBuilder<AggregateBuffer<K, C>> {
+        private final String name;
+        private final int maxSize;
+
+        /**
+         * Aggregate buffer builder.
+         * @param name state store name of the buffer
+         * @param maxSize maximum number of aggregates to keep in memory.
+         */
+        public Builder(String name, int maxSize) {
+            this.name = name;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public StoreBuilder<AggregateBuffer<K, C>> withCachingEnabled() {
+            return this;
+        }
+
+        @Override
+        public StoreBuilder<AggregateBuffer<K, C>> withLoggingEnabled(Map<String, String> config) {
+            return this;
+        }
+
+        @Override
+        public StoreBuilder<AggregateBuffer<K, C>> withLoggingDisabled() {
+            return this;
+        }
+
+        @Override
+        public AggregateBuffer<K, C> build() {
+            return new AggregateBuffer<>(name, maxSize);
+        }
+
+        @Override
+        public Map<String, String> logConfig() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public boolean loggingEnabled() {
+            return false;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.ValueTransformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.radarcns.config.BackfillConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replay of a bounded range of input data. Backfill streams run under their own application ID,
+ * so they never use the consumer groups, changelog topics or local state of the live streams.
+ * Before a backfill stream starts, its consumer group is set to the start of the range, unless
+ * it already committed offsets in an earlier run. The end of the range is fixed when the stream
+ * is first configured; records after it are dropped. The backfill has caught up once every
+ * consumer group has committed the end offsets.
+ */
+public class Backfill {
+    private static final Logger logger = LoggerFactory.getLogger(Backfill.class);
+
+    private final BackfillConfig config;
+    private final Instant from;
+    private final Instant until;
+    private final Function<Properties, Consumer<byte[], byte[]>> consumerFactory;
+    private final Map<String, BackfillGroup> groups;
+    private final Map<TopicPartition, Long> startOffsets;
+    private final Map<TopicPartition, Long> endOffsets;
+
+    /**
+     * Backfill over given time range.
+     * @param config backfill configuration
+     * @param from first record time to process, or {@code null} to start at the earliest record
+     * @param until record time to stop at, or {@code null} to stop at the latest record at the
+     *              time that the backfill starts
+     */
+    public Backfill(@Nonnull BackfillConfig config, @Nullable Instant from,
+            @Nullable Instant until) {
+        this(config, from, until, props -> new KafkaConsumer<>(props,
+                new ByteArrayDeserializer(), new ByteArrayDeserializer()));
+    }
+
+    Backfill(@Nonnull BackfillConfig config, @Nullable Instant from, @Nullable Instant until,
+            @Nonnull Function<Properties, Consumer<byte[], byte[]>> consumerFactory) {
+        String suffix = config.getApplicationIdSuffix();
+        if (suffix == null || suffix.isEmpty()) {
+            throw new IllegalArgumentException("Backfill application ID suffix must be set,"
+                    + " to keep the backfill apart from the live streams");
+        }
+        if (from != null && until != null && !from.isBefore(until)) {
+            throw new IllegalArgumentException("Backfill start " + from
+                    + " must be before its end " + until);
+        }
+        this.config = config;
+        this.from = from;
+        this.until = until;
+        this.consumerFactory = consumerFactory;
+        this.groups = new ConcurrentHashMap<>();
+        this.startOffsets = new ConcurrentHashMap<>();
+        this.endOffsets = new ConcurrentHashMap<>();
+    }
+
+    public BackfillConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Change the properties of a Kafka Streams instance to run as a backfill, and set the
+     * starting offsets of its consumer group.
+     * @param props Kafka Streams properties of the live stream. They are modified in place.
+     * @param inputTopics topics that the stream consumes
+     */
+    public void apply(@Nonnull Properties props, @Nonnull List<String> inputTopics) {
+        String applicationId = props.getProperty(StreamsConfig.APPLICATION_ID_CONFIG) + '-'
+                + config.getApplicationIdSuffix();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, config.getThreads());
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_POLL_RECORDS_CONFIG),
+                config.getMaxPollRecords());
+        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, config.getCacheMaxBytes());
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG,
+                config.getCommitInterval().toMillis());
+        props.putAll(config.getProperties());
+
+        Properties consumerProps = new Properties();
+        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,
+                props.get(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG));
+        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, applicationId);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+
+        List<TopicPartition> partitions;
+        try (Consumer<byte[], byte[]> consumer = consumerFactory.apply(consumerProps)) {
+            partitions = inputTopics.stream()
+                    .flatMap(t -> consumer.partitionsFor(t).stream())
+                    .map(p -> new TopicPartition(p.topic(), p.partition()))
+                    .collect(Collectors.toList());
+            List<TopicPartition> unknown = partitions.stream()
+                    .filter(p -> !endOffsets.containsKey(p))
+                    .collect(Collectors.toList());
+            if (!unknown.isEmpty()) {
+                startOffsets.putAll(offsetsAt(consumer, unknown, from,
+                        consumer.beginningOffsets(unknown)));
+                endOffsets.putAll(offsetsAt(consumer, unknown, until,
+                        consumer.endOffsets(unknown)));
+            }
+
+            Map<TopicPartition, OffsetAndMetadata> initialOffsets = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                if (consumer.committed(partition) == null) {
+                    initialOffsets.put(partition,
+                            new OffsetAndMetadata(startOffsets.get(partition)));
+                }
+            }
+            if (!initialOffsets.isEmpty()) {
+                consumer.commitSync(initialOffsets);
+            }
+            if (initialOffsets.size() < partitions.size()) {
+                logger.info("Continuing earlier backfill {}", applicationId);
+            }
+        }
+        groups.put(applicationId, new BackfillGroup(consumerProps, partitions));
+    }
+
+    /**
+     * Offsets of the first records at or after given time.
+     * @param defaultOffsets offsets to use if no time is given, or if a partition has no
+     *                       records after given time
+     */
+    private static Map<TopicPartition, Long> offsetsAt(Consumer<?, ?> consumer,
+            List<TopicPartition> partitions, Instant time,
+            Map<TopicPartition, Long> defaultOffsets) {
+        if (time == null) {
+            return defaultOffsets;
+        }
+        Map<TopicPartition, Long> query = partitions.stream()
+                .collect(Collectors.toMap(Function.identity(), p -> time.toEpochMilli()));
+        Map<TopicPartition, OffsetAndTimestamp> found = consumer.offsetsForTimes(query);
+        return partitions.stream()
+                .collect(Collectors.toMap(Function.identity(), p -> {
+                    OffsetAndTimestamp offset = found.get(p);
+                    return offset != null ? offset.offset() : defaultOffsets.get(p);
+                }));
+    }
+
+    /**
+     * Number of records that the backfill streams still have to consume, according to their
+     * committed offsets.
+     */
+    public long remaining() {
+        long remaining = 0L;
+        for (BackfillGroup group : groups.values()) {
+            try (Consumer<byte[], byte[]> consumer = consumerFactory.apply(group.consumerProps)) {
+                for (TopicPartition partition : group.partitions) {
+                    OffsetAndMetadata committed = consumer.committed(partition);
+                    long position = committed != null
+                            ? committed.offset() : startOffsets.get(partition);
+                    remaining += Math.max(0L, endOffsets.get(partition) - position);
+                }
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Drop the records of given stream after the end of the backfill range.
+     * @param stream input stream, directly read from a topic
+     * @return filtered stream
+     */
+    public <K, V> KStream<K, V> filter(@Nonnull KStream<K, V> stream) {
+        return stream.transformValues(() -> new RangeFilter<V>())
+                .filter((k, v) -> v != null);
+    }
+
+    /** Consumer group of a backfill stream. */
+    private static final class BackfillGroup {
+        private final Properties consumerProps;
+        private final List<TopicPartition> partitions;
+
+        private BackfillGroup(Properties consumerProps, List<TopicPartition> partitions) {
+            this.consumerProps = consumerProps;
+            this.partitions = partitions;
+        }
+    }
+
+    /** Drops records at or after the end offset of their partition. */
+    private class RangeFilter<V> implements ValueTransformer<V, V> {
+        private ProcessorContext context;
+
+        @Override
+        public void init(ProcessorContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public V transform(V value) {
+            Long end = endOffsets.get(new TopicPartition(context.topic(), context.partition()));
+            return end != null && context.offset() >= end ? null : value;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.io.IOException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import org.radarcns.config.ConfigRadar;
+import org.radarcns.config.RadarPropertyHandler;
+import org.radarcns.config.SingleStreamConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs stream workers as a backfill, until they have consumed the backfill range. The streams
+ * are then left to be shut down.
+ */
+public class BackfillMaster extends StreamMaster {
+    private static final Logger logger = LoggerFactory.getLogger(BackfillMaster.class);
+
+    private final Backfill backfill;
+    private volatile boolean finished;
+
+    protected BackfillMaster(@Nonnull RadarPropertyHandler propertyHandler,
+            @Nonnull Function<ConfigRadar, Stream<? extends SingleStreamConfig>> streamSelector,
+            @Nonnull Backfill backfill) {
+        super(propertyHandler, streamSelector, backfill);
+        this.backfill = backfill;
+        this.finished = false;
+    }
+
+    /** Starts all workers and waits until they have caught up with the end of the backfill. */
+    @Override
+    public void start() throws IOException {
+        super.start();
+
+        long startTime = System.currentTimeMillis();
+        long checkInterval = backfill.getConfig().getCheckInterval().toMillis();
+        try {
+            long remaining = backfill.remaining();
+            while (remaining > 0L) {
+                logger.info("Backfill has {} records remaining", remaining);
+                Thread.sleep(checkInterval);
+                remaining = backfill.remaining();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the backfill", ex);
+        }
+        logger.info("Backfill caught up in {} seconds",
+                (System.currentTimeMillis() - startTime) / 1000L);
+        finished = true;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** The configuration of a backfill is fixed once it started. */
+    @Override
+    public boolean reload(ConfigRadar config) {
+        return false;
+    }
+}
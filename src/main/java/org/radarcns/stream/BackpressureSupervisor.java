@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import org.radarcns.config.BackpressureConfig;
+import org.radarcns.config.RadarPropertyHandler.Priority;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pauses low priority stream workers while high priority workers fall behind, so they do not
+ * compete for CPU. High priority workers fall behind if their total consumer lag exceeds
+ * {@link BackpressureConfig#getPauseLag()}, or if a stream thread takes longer than
+ * {@link BackpressureConfig#getPauseLatency()} to process a record on average. Low priority
+ * workers are resumed when the lag and latency drop below their resume thresholds, or when they
+ * were paused for {@link BackpressureConfig#getMaxPause()}. Workers are not paused or resumed
+ * within {@link BackpressureConfig#getMinDuration()} of the previous change.
+ */
+class BackpressureSupervisor implements Runnable, MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(BackpressureSupervisor.class);
+
+    private final BackpressureConfig config;
+    private final Function<StreamWorker, LagSample> sampler;
+    private final List<StreamWorker> watched;
+    private final List<StreamWorker> pausable;
+    private final Map<StreamWorker, String> names;
+
+    private volatile long lag;
+    private volatile double latencyMs;
+    private volatile boolean paused;
+    private volatile long pauses;
+    private long lastChange;
+
+    /** Supervisor that samples the Kafka Streams metrics of high priority workers. */
+    BackpressureSupervisor(@Nonnull BackpressureConfig config) {
+        this(config, LagSample::of);
+    }
+
+    BackpressureSupervisor(@Nonnull BackpressureConfig config,
+            @Nonnull Function<StreamWorker, LagSample> sampler) {
+        this.config = config;
+        this.sampler = sampler;
+        this.watched = new CopyOnWriteArrayList<>();
+        this.pausable = new CopyOnWriteArrayList<>();
+        this.names = new ConcurrentHashMap<>();
+        this.lastChange = -1L;
+    }
+
+    /**
+     * Add a worker to supervise. High priority workers are watched and low priority workers may
+     * be paused. Normal priority workers are left alone.
+     * @param name unique name of the worker in metrics
+     * @param worker stream worker
+     * @param priority priority of the worker
+     */
+    void add(@Nonnull String name, @Nonnull StreamWorker worker, @Nonnull Priority priority) {
+        if (priority == Priority.HIGH) {
+            watched.add(worker);
+        } else if (priority == Priority.LOW) {
+            pausable.add(worker);
+            names.put(worker, name);
+        }
+    }
+
+    /**
+     * Stop supervising a worker.
+     * @param worker stream worker that was added before
+     */
+    void remove(@Nonnull StreamWorker worker) {
+        watched.remove(worker);
+        pausable.remove(worker);
+        names.remove(worker);
+    }
+
+    @Override
+    public void run() {
+        try {
+            check(System.currentTimeMillis());
+        } catch (RuntimeException ex) {
+            // an exception would cancel the next runs
+            logger.error("Failed to check stream backpressure", ex);
+        }
+    }
+
+    /**
+     * Sample the high priority workers and pause or resume the low priority workers.
+     * @param now current time in milliseconds
+     * @return whether the low priority workers are paused
+     */
+    boolean check(long now) {
+        long currentLag = 0L;
+        double currentLatency = 0.0;
+        for (StreamWorker worker : watched) {
+            LagSample sample = sampler.apply(worker);
+            currentLag += sample.getLag();
+            currentLatency = Math.max(currentLatency, sample.getLatencyMs());
+        }
+        lag = currentLag;
+        latencyMs = currentLatency;
+
+        boolean canChange = lastChange < 0L
+                || now - lastChange >= config.getMinDuration().toMillis();
+
+        if (!paused) {
+            if (canChange && isOverloaded(currentLag, currentLatency)) {
+                logger.warn("High priority streams fall behind with a lag of {} records and a"
+                        + " processing latency of {} ms. Pausing {} low priority streams.",
+                        currentLag, currentLatency, pausable.size());
+                pausable.forEach(w -> change(w, true));
+                paused = true;
+                pauses++;
+                lastChange = now;
+            }
+        } else if (now - lastChange >= config.getMaxPause().toMillis()) {
+            logger.warn("Resuming low priority streams after a pause of {}, although high"
+                    + " priority streams have a lag of {} records", config.getMaxPause(),
+                    currentLag);
+            resume(now);
+        } else if (canChange && hasCaughtUp(currentLag, currentLatency)) {
+            logger.info("High priority streams caught up with a lag of {} records."
+                    + " Resuming low priority streams.", currentLag);
+            resume(now);
+        }
+        return paused;
+    }
+
+    private void resume(long now) {
+        pausable.forEach(w -> change(w, false));
+        paused = false;
+        lastChange = now;
+    }
+
+    private boolean isOverloaded(long currentLag, double currentLatency) {
+        return currentLag > config.getPauseLag()
+                || config.getPauseLatency() > 0 && currentLatency > config.getPauseLatency();
+    }
+
+    private boolean hasCaughtUp(long currentLag, double currentLatency) {
+        return currentLag <= config.getResumeLag()
+                && (config.getPauseLatency() <= 0
+                        || currentLatency <= config.getResumeLatency());
+    }
+
+    private static void change(StreamWorker worker, boolean pause) {
+        try {
+            if (pause) {
+                worker.pause();
+            } else {
+                worker.resume();
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Failed to {} {}", pause ? "pause" : "resume", worker, ex);
+        }
+    }
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        writer.gauge("radar_backpressure_lag_records",
+                "Consumer lag of all high priority streams.", null, lag);
+        writer.gauge("radar_backpressure_latency_ms",
+                "Highest average processing latency of a high priority stream thread.", null,
+                latencyMs);
+        writer.counter("radar_backpressure_pauses_total",
+                "Number of times that low priority streams were paused.", null, pauses);
+        for (StreamWorker worker : pausable) {
+            writer.gauge("radar_stream_paused", "Whether a stream worker is paused.",
+                    PrometheusWriter.labels("worker", names.get(worker)),
+                    worker.isPaused() ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import javax.annotation.Nonnull;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Aggregator;
+import org.apache.kafka.streams.kstream.Initializer;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.internals.InternalProcessorContext;
+import org.apache.kafka.streams.processor.internals.ProcessorNode;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
+import org.apache.kafka.streams.state.WindowStore;
+
+/**
+ * Windowed aggregation that combines updates of the same window in memory with an
+ * {@link AggregateBuffer}. Aggregates are only serialized and written to the window store on
+ * commit, on eviction from the buffer, or when updates are forwarded at the flush interval. The
+ * window store has the same format as that of a windowed aggregation in the Kafka Streams DSL.
+ *
+ * @param <K> record key type
+ * @param <V> record value type
+ * @param <C> aggregate type
+ */
+public class BufferedWindowAggregator<K, V, C>
+        implements Transformer<K, V, KeyValue<Windowed<K>, C>> {
+    private final String storeName;
+    private final String bufferName;
+    private final TimeWindows windows;
+    private final Initializer<C> initializer;
+    private final Aggregator<? super K, ? super V, C> aggregator;
+    private final long flushIntervalMs;
+
+    private ProcessorContext context;
+    private AggregateBuffer<K, C> buffer;
+
+    /**
+     * Buffered aggregator.
+     * @param storeName name of the window store
+     * @param bufferName name of the aggregate buffer
+     * @param windows time windows to aggregate in
+     * @param initializer creates an empty aggregate
+     * @param aggregator adds a record to an aggregate
+     * @param flushIntervalMs interval in milliseconds to forward aggregate updates at
+     */
+    public BufferedWindowAggregator(String storeName, String bufferName, TimeWindows windows,
+            Initializer<C> initializer, Aggregator<? super K, ? super V, C> aggregator,
+            long flushIntervalMs) {
+        this.storeName = storeName;
+        this.bufferName = bufferName;
+        this.windows = windows;
+        this.initializer = initializer;
+        this.aggregator = aggregator;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Aggregate a stream in buffered time windows. The stream must already be partitioned by its
+     * key.
+     *
+     * @param builder builder of the topology
+     * @param stream stream to aggregate
+     * @param storeSupplier supplier of the window store
+     * @param windows time windows to aggregate in
+     * @param initializer creates an empty aggregate
+     * @param aggregator adds a record to an aggregate
+     * @param serde serde of the aggregate. Keys are stored with the default key serde.
+     * @param flushInterval interval to forward aggregate updates at
+     * @param bufferSize maximum number of aggregates kept in memory per task
+     * @return stream of aggregate updates
+     */
+    public static <K, V, C> KStream<Windowed<K>, C> aggregate(@Nonnull StreamsBuilder builder,
+            @Nonnull KStream<K, V> stream, @Nonnull WindowBytesStoreSupplier storeSupplier,
+            @Nonnull TimeWindows windows, @Nonnull Initializer<C> initializer,
+            @Nonnull Aggregator<? super K, ? super V, C> aggregator, @Nonnull Serde<C> serde,
+            @Nonnull Duration flushInterval, int bufferSize) {
+        String storeName = storeSupplier.name();
+        String bufferName = storeName + "-buffer";
+        builder.addStateStore(Stores.windowStoreBuilder(storeSupplier, null, serde));
+        builder.addStateStore(new AggregateBuffer.Builder<K, C>(bufferName, bufferSize));
+
+        long flushIntervalMs = flushInterval.toMillis();
+        return stream.transform(() -> new BufferedWindowAggregator<>(storeName, bufferName,
+                windows, initializer, aggregator, flushIntervalMs), storeName, bufferName);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        buffer = (AggregateBuffer<K, C>) context.getStateStore(bufferName);
+        buffer.attach((WindowStore<K, C>) context.getStateStore(storeName), forwarder(context));
+        context.schedule(flushIntervalMs, PunctuationType.WALL_CLOCK_TIME, t -> buffer.forward());
+    }
+
+    /**
+     * Forwards aggregates from this processor. The buffer also forwards aggregates when Kafka
+     * Streams flushes it on commit, outside the processing of this node, so the current node is
+     * set explicitly, like the Kafka Streams record caches do.
+     */
+    @SuppressWarnings("rawtypes")
+    private static <K, C> BiConsumer<Windowed<K>, C> forwarder(ProcessorContext context) {
+        if (!(context instanceof InternalProcessorContext)) {
+            return context::forward;
+        }
+        InternalProcessorContext internalContext = (InternalProcessorContext) context;
+        ProcessorNode node = internalContext.currentNode();
+        return (window, aggregate) -> {
+            ProcessorNode previous = internalContext.currentNode();
+            internalContext.setCurrentNode(node);
+            try {
+                context.forward(window, aggregate);
+            } finally {
+                internalContext.setCurrentNode(previous);
+            }
+        };
+    }
+
+    @Override
+    public KeyValue<Windowed<K>, C> transform(K key, V value) {
+        if (key == null || value == null) {
+            return null;
+        }
+        for (Map.Entry<Long, TimeWindow> entry : windows.windowsFor(context.timestamp())
+                .entrySet()) {
+            Windowed<K> window = new Windowed<>(key, entry.getValue());
+            C aggregate = buffer.get(window);
+            if (aggregate == null) {
+                aggregate = initializer.apply();
+            }
+            buffer.put(window, aggregator.apply(key, value, aggregate));
+        }
+        // updates are forwarded by the buffer
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // stores are flushed and closed by Kafka Streams
+    }
+}
@@ -16,19 +16,25 @@
 
 package org.radarcns.stream;
 
-import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.IndexedRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.streams.processor.TimestampExtractor;
+import org.radarcns.util.NumericFieldAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Custom TimestampExtractor for TimeWindows Streams. */
+/**
+ * Custom TimestampExtractor for TimeWindows Streams. The position of the timeReceived field is
+ * resolved once per schema; since a topic normally has a single value schema, the accessor of the
+ * last schema is reused.
+ */
 public class DeviceTimestampExtractor implements TimestampExtractor {
 
     private static final Logger log = LoggerFactory.getLogger(DeviceTimestampExtractor.class);
 
+    private volatile NumericFieldAccessor lastAccessor;
+
     /**
      * Return the timeReceived value converted in long. timeReceived is the timestamp at which the
      * device has collected the sample.
@@ -38,20 +44,27 @@ public class DeviceTimestampExtractor implements TimestampExtractor {
     @Override
     public long extract(ConsumerRecord<Object, Object> record, long previousTimestamp) {
         IndexedRecord value = (IndexedRecord) record.value();
-        Schema recordSchema = value.getSchema();
 
         try {
-            Schema.Field field = recordSchema.getField("timeReceived");
-            if (value.get(field.pos()) instanceof Double) {
-                return (long) (1000d * (Double) value.get(field.pos()));
+            double timeReceived = accessor(value.getSchema()).get(value);
+            if (!Double.isNaN(timeReceived)) {
+                return (long) (1000d * timeReceived);
             } else {
-                log.error("timeReceived id not a Double in {}", record);
+                log.error("timeReceived is not set in {}", record);
             }
-
-        } catch (AvroRuntimeException e) {
-            log.error("Cannot extract timeReceived form {}", record, e);
+        } catch (IllegalArgumentException e) {
+            log.error("Cannot extract timeReceived from {}", record, e);
         }
 
         throw new RuntimeException("Impossible to extract timeReceived from " + record);
     }
+
+    private NumericFieldAccessor accessor(Schema schema) {
+        NumericFieldAccessor accessor = lastAccessor;
+        if (accessor == null || accessor.getSchema() != schema) {
+            accessor = NumericFieldAccessor.of(schema, "timeReceived");
+            lastAccessor = accessor;
+        }
+        return accessor;
+    }
 }
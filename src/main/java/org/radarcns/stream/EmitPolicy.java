@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.time.Duration;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+
+/**
+ * Policy of when to emit the aggregates of a windowed stream downstream.
+ */
+public final class EmitPolicy {
+    /** Emit mode. */
+    public enum Mode {
+        /** Emit every update of a window aggregate. */
+        UPDATES,
+        /** Emit a window aggregate once, after the window and its grace period have passed. */
+        FINAL,
+        /** Emit updates of a window aggregate at most once per interval. */
+        RATE_LIMITED
+    }
+
+    /** Emit every update. */
+    public static final EmitPolicy UPDATES = new EmitPolicy(Mode.UPDATES, Duration.ZERO, false);
+
+    private final Mode mode;
+    private final Duration duration;
+    private final boolean forwardCorrections;
+
+    private EmitPolicy(@Nonnull Mode mode, @Nonnull Duration duration,
+            boolean forwardCorrections) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Emit policy duration " + duration
+                    + " may not be negative");
+        }
+        this.mode = Objects.requireNonNull(mode);
+        this.duration = duration;
+        this.forwardCorrections = forwardCorrections;
+    }
+
+    /**
+     * Emit a window aggregate once, when stream time has passed the end of the window and its
+     * grace period. Updates of windows that were already emitted are dropped.
+     * @param gracePeriod time to wait for late records after a window has ended.
+     */
+    public static EmitPolicy finalResult(@Nonnull Duration gracePeriod) {
+        return finalResult(gracePeriod, false);
+    }
+
+    /**
+     * Emit a window aggregate when stream time has passed the end of the window and its grace
+     * period.
+     * @param gracePeriod time to wait for late records after a window has ended.
+     * @param forwardCorrections whether to forward updates of windows that were already
+     *                           emitted as corrections, instead of dropping them. A window may
+     *                           then be emitted more than once.
+     */
+    public static EmitPolicy finalResult(@Nonnull Duration gracePeriod,
+            boolean forwardCorrections) {
+        return new EmitPolicy(Mode.FINAL, gracePeriod, forwardCorrections);
+    }
+
+    /**
+     * Emit the latest update of each window aggregate at most once per interval.
+     * @param interval wall-clock time between emitted updates of the same window.
+     */
+    public static EmitPolicy rateLimited(@Nonnull Duration interval) {
+        if (interval.isZero()) {
+            return UPDATES;
+        }
+        return new EmitPolicy(Mode.RATE_LIMITED, interval, false);
+    }
+
+    @Nonnull
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** Grace period in {@link Mode#FINAL} mode. */
+    @Nonnull
+    public Duration getGracePeriod() {
+        return mode == Mode.FINAL ? duration : Duration.ZERO;
+    }
+
+    /**
+     * Whether updates of windows that were already emitted are forwarded as corrections in
+     * {@link Mode#FINAL} mode.
+     */
+    public boolean isForwardCorrections() {
+        return forwardCorrections;
+    }
+
+    /** Minimum interval between updates in {@link Mode#RATE_LIMITED} mode. */
+    @Nonnull
+    public Duration getInterval() {
+        return mode == Mode.RATE_LIMITED ? duration : Duration.ZERO;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EmitPolicy that = (EmitPolicy) o;
+        return mode == that.mode && duration.equals(that.duration)
+                && forwardCorrections == that.forwardCorrections;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mode, duration, forwardCorrections);
+    }
+
+    @Override
+    public String toString() {
+        return "EmitPolicy{mode=" + mode + ", duration=" + duration
+                + ", forwardCorrections=" + forwardCorrections + '}';
+    }
+}
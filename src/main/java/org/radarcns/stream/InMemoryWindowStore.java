@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+/**
+ * Window store that keeps all windows in memory. It is not persistent, so Kafka Streams restores
+ * it from its changelog when a task is started. The restore callback reads the changelog format
+ * of the persistent window stores, so a store can switch between both types.
+ */
+public class InMemoryWindowStore implements WindowStore<Bytes, byte[]> {
+    /** Changelog keys end with the window start time and a sequence number. */
+    private static final int KEY_SUFFIX_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final String name;
+    private final long retentionMs;
+    private final long windowSizeMs;
+    private final NavigableMap<Long, NavigableMap<Bytes, byte[]>> windows;
+
+    private ProcessorContext context;
+    private long observedStreamTime;
+    private volatile boolean open;
+
+    /**
+     * In-memory window store.
+     * @param name store name
+     * @param retentionMs time to retain windows after stream time has passed their start
+     * @param windowSizeMs size of the windows
+     */
+    public InMemoryWindowStore(String name, long retentionMs, long windowSizeMs) {
+        this.name = name;
+        this.retentionMs = retentionMs;
+        this.windowSizeMs = windowSizeMs;
+        this.windows = new TreeMap<>();
+        this.observedStreamTime = -1L;
+        this.open = false;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void init(ProcessorContext context, StateStore root) {
+        this.context = context;
+        context.register(root, (key, value) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(key);
+            int keySize = key.length - KEY_SUFFIX_SIZE;
+            byte[] storeKey = new byte[keySize];
+            buffer.get(storeKey);
+            put(Bytes.wrap(storeKey), value, buffer.getLong());
+        });
+        open = true;
+    }
+
+    @Override
+    public void put(Bytes key, byte[] value) {
+        put(key, value, context.timestamp());
+    }
+
+    @Override
+    public void put(Bytes key, byte[] value, long windowStartTimestamp) {
+        if (windowStartTimestamp > observedStreamTime) {
+            observedStreamTime = windowStartTimestamp;
+            windows.headMap(observedStreamTime - retentionMs, false).clear();
+        }
+        if (value == null) {
+            NavigableMap<Bytes, byte[]> window = windows.get(windowStartTimestamp);
+            if (window != null) {
+                window.remove(key);
+                if (window.isEmpty()) {
+                    windows.remove(windowStartTimestamp);
+                }
+            }
+        } else if (windowStartTimestamp >= observedStreamTime - retentionMs) {
+            windows.computeIfAbsent(windowStartTimestamp, t -> new TreeMap<>()).put(key, value);
+        }
+    }
+
+    @Override
+    public byte[] fetch(Bytes key, long time) {
+        NavigableMap<Bytes, byte[]> window = windows.get(time);
+        return window != null ? window.get(key) : null;
+    }
+
+    @Override
+    public WindowStoreIterator<byte[]> fetch(Bytes key, long timeFrom, long timeTo) {
+        List<KeyValue<Long, byte[]>> result = new ArrayList<>();
+        for (Map.Entry<Long, NavigableMap<Bytes, byte[]>> window
+                : windowsBetween(timeFrom, timeTo).entrySet()) {
+            byte[] value = window.getValue().get(key);
+            if (value != null) {
+                result.add(KeyValue.pair(window.getKey(), value));
+            }
+        }
+        return new WindowIterator(result);
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> fetch(Bytes from, Bytes to, long timeFrom,
+            long timeTo) {
+        List<KeyValue<Windowed<Bytes>, byte[]>> result = new ArrayList<>();
+        if (from.compareTo(to) > 0) {
+            return new ListIterator<>(result);
+        }
+        for (Map.Entry<Long, NavigableMap<Bytes, byte[]>> window
+                : windowsBetween(timeFrom, timeTo).entrySet()) {
+            addWindow(result, window.getKey(),
+                    window.getValue().subMap(from, true, to, true));
+        }
+        return new ListIterator<>(result);
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> all() {
+        return fetchAll(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public KeyValueIterator<Windowed<Bytes>, byte[]> fetchAll(long timeFrom, long timeTo) {
+        List<KeyValue<Windowed<Bytes>, byte[]>> result = new ArrayList<>();
+        for (Map.Entry<Long, NavigableMap<Bytes, byte[]>> window
+                : windowsBetween(timeFrom, timeTo).entrySet()) {
+            addWindow(result, window.getKey(), window.getValue());
+        }
+        return new ListIterator<>(result);
+    }
+
+    /** Windows that start between given times, inclusive. */
+    private NavigableMap<Long, NavigableMap<Bytes, byte[]>> windowsBetween(long timeFrom,
+            long timeTo) {
+        if (timeFrom > timeTo) {
+            return Collections.emptyNavigableMap();
+        }
+        return windows.subMap(timeFrom, true, timeTo, true);
+    }
+
+    private void addWindow(List<KeyValue<Windowed<Bytes>, byte[]>> result, long start,
+            Map<Bytes, byte[]> values) {
+        TimeWindow timeWindow = new TimeWindow(start, start + windowSizeMs);
+        for (Map.Entry<Bytes, byte[]> entry : values.entrySet()) {
+            result.add(KeyValue.pair(new Windowed<>(entry.getKey(), timeWindow),
+                    entry.getValue()));
+        }
+    }
+
+    @Override
+    public void flush() {
+        // nothing to flush
+    }
+
+    @Override
+    public void close() {
+        windows.clear();
+        open = false;
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /** Number of windows in the store. */
+    int size() {
+        return windows.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /** Iterator over a snapshot of store values, so the store may be updated while iterating. */
+    private static class ListIterator<K> implements KeyValueIterator<K, byte[]> {
+        private final Iterator<KeyValue<K, byte[]>> iterator;
+        private KeyValue<K, byte[]> next;
+
+        ListIterator(List<KeyValue<K, byte[]>> values) {
+            this.iterator = values.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null || iterator.hasNext();
+        }
+
+        @Override
+        public KeyValue<K, byte[]> next() {
+            if (next != null) {
+                KeyValue<K, byte[]> result = next;
+                next = null;
+                return result;
+            }
+            return iterator.next();
+        }
+
+        @Override
+        public K peekNextKey() {
+            if (next == null) {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                next = iterator.next();
+            }
+            return next.key;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    /** Iterator over a snapshot of the values of a single key. */
+    private static class WindowIterator extends ListIterator<Long>
+            implements WindowStoreIterator<byte[]> {
+        WindowIterator(List<KeyValue<Long, byte[]>> values) {
+            super(values);
+        }
+    }
+
+    /** Supplier of in-memory window stores. */
+    public static class Supplier implements WindowBytesStoreSupplier {
+        /** Segments for the caching layer; the store itself is not segmented. */
+        private static final int NUM_SEGMENTS = 3;
+
+        private final String name;
+        private final long retentionMs;
+        private final long windowSizeMs;
+
+        /**
+         * Supplier of in-memory window stores.
+         * @param name store name
+         * @param retentionMs time to retain windows after stream time has passed their start
+         * @param windowSizeMs size of the windows
+         */
+        public Supplier(String name, long retentionMs, long windowSizeMs) {
+            this.name = name;
+            this.retentionMs = retentionMs;
+            this.windowSizeMs = windowSizeMs;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public WindowStore<Bytes, byte[]> get() {
+            return new InMemoryWindowStore(name, retentionMs, windowSizeMs);
+        }
+
+        @Override
+        public String metricsScope() {
+            return "in-memory-window-state";
+        }
+
+        @Override
+        public int segments() {
+            return NUM_SEGMENTS;
+        }
+
+        @Override
+        public long windowSize() {
+            return windowSizeMs;
+        }
+
+        @Override
+        public boolean retainDuplicates() {
+            return false;
+        }
+
+        @Override
+        public long retentionPeriod() {
+            return retentionMs;
+        }
+    }
+}
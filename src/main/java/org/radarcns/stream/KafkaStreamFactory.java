@@ -22,7 +22,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Function;
 import java.util.stream.Stream;
+import org.radarcns.config.ConfigRadar;
 import org.radarcns.config.RadarBackendOptions;
 import org.radarcns.config.RadarPropertyHandler;
 import org.radarcns.config.SingleStreamConfig;
@@ -45,6 +47,29 @@ public class KafkaStreamFactory {
     }
 
     public StreamMaster createSensorStreams() {
+        return master(sensorStreams());
+    }
+
+    /**
+     * Create a backfill of the sensor streams that are given as arguments, over the time range
+     * given in the options.
+     */
+    public StreamMaster createBackfill() {
+        String[] args = options.getSubCommandArgs();
+        if (args == null || args.length == 0) {
+            throw new IllegalArgumentException("Specify the streams to backfill");
+        }
+        Backfill backfill = new Backfill(
+                radarProperties.getRadarProperties().getStream().getBackfill(),
+                options.getBackfillFrom(), options.getBackfillUntil());
+        return new BackfillMaster(radarProperties, sensorStreams(), backfill);
+    }
+
+    /**
+     * Selects the sensor streams of which the class name ends with one of the subcommand
+     * arguments, or all sensor streams if no arguments are given.
+     */
+    private Function<ConfigRadar, Stream<? extends SingleStreamConfig>> sensorStreams() {
         Collection<String> streamTypes;
 
         String[] args = options.getSubCommandArgs();
@@ -54,25 +79,26 @@ public class KafkaStreamFactory {
             streamTypes = Collections.emptySet();
         }
 
-        return master(radarProperties.getRadarProperties().getStream().getStreamConfigs().stream()
+        return config -> config.getStream().getStreamConfigs().stream()
                 .filter(s -> streamTypes.isEmpty() || streamTypes.stream().anyMatch(n ->
                         s.getStreamClass().getName().toLowerCase(Locale.US)
-                                .endsWith(n.toLowerCase(Locale.US)))));
+                                .endsWith(n.toLowerCase(Locale.US))));
     }
 
-    private StreamMaster master(Stream<? extends SingleStreamConfig> configs) {
-        return new StreamMaster(radarProperties, configs);
+    private StreamMaster master(
+            Function<ConfigRadar, Stream<? extends SingleStreamConfig>> streamSelector) {
+        return new StreamMaster(radarProperties, streamSelector);
     }
 
     public SubCommand createStreamStatistics() {
-        List<SourceStatisticsStreamConfig> configs = radarProperties.getRadarProperties()
-                .getStream().getSourceStatistics();
-
-        if (configs == null) {
+        if (radarProperties.getRadarProperties().getStream().getSourceStatistics() == null) {
             logger.warn("Statistics monitor is not configured. Cannot start it.");
-            return master(Stream.empty());
         }
 
-        return master(configs.stream());
+        return master(config -> {
+            List<SourceStatisticsStreamConfig> configs = config.getStream()
+                    .getSourceStatistics();
+            return configs != null ? configs.stream() : Stream.empty();
+        });
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.streams.KafkaStreams;
+
+/** Consumer lag, consumption rate and processing latency of a stream worker. */
+final class LagSample {
+    private static final String FETCH_METRICS_GROUP = "consumer-fetch-manager-metrics";
+    private static final String STREAM_METRICS_GROUP = "stream-metrics";
+    private static final String RESTORE_CONSUMER_SUFFIX = "restore-consumer";
+
+    private final long lag;
+    private final double rate;
+    private final double latencyMs;
+
+    /**
+     * Lag sample.
+     * @param lag number of records that were not yet consumed
+     * @param rate records consumed per second
+     * @param latencyMs highest average time that a stream thread takes to process a record
+     */
+    LagSample(long lag, double rate, double latencyMs) {
+        this.lag = lag;
+        this.rate = rate;
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Sample the Kafka Streams metrics of all instances of a worker. Lag and rate are summed
+     * over all consumers, except the consumers that restore state stores.
+     */
+    static LagSample of(@Nonnull StreamWorker worker) {
+        long lag = 0L;
+        double rate = 0.0;
+        double latency = 0.0;
+        for (KafkaStreams stream : worker.getKafkaStreams()) {
+            for (Map.Entry<MetricName, ? extends Metric> entry : stream.metrics().entrySet()) {
+                MetricName name = entry.getKey();
+                double value = valueOf(entry.getValue());
+                if (!Double.isFinite(value)) {
+                    continue;
+                }
+                if (STREAM_METRICS_GROUP.equals(name.group())) {
+                    if ("process-latency-avg".equals(name.name())) {
+                        latency = Math.max(latency, value);
+                    }
+                    continue;
+                }
+                String clientId = name.tags().get("client-id");
+                if (!FETCH_METRICS_GROUP.equals(name.group())
+                        || clientId != null && clientId.endsWith(RESTORE_CONSUMER_SUFFIX)) {
+                    continue;
+                }
+                if ("records-lag".equals(name.name()) && name.tags().containsKey("partition")) {
+                    lag += (long) value;
+                } else if ("records-consumed-rate".equals(name.name())
+                        && !name.tags().containsKey("topic")) {
+                    rate += value;
+                }
+            }
+        }
+        return new LagSample(lag, rate, latency);
+    }
+
+    private static double valueOf(Metric metric) {
+        Object value = metric.metricValue();
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    /** Number of records that were not yet consumed. */
+    long getLag() {
+        return lag;
+    }
+
+    /** Records consumed per second. */
+    double getRate() {
+        return rate;
+    }
+
+    /** Highest average time in milliseconds that a stream thread takes to process a record. */
+    double getLatencyMs() {
+        return latencyMs;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import java.time.Duration;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.ValueTransformerWithKey;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.radarcns.stream.LateRecordPolicy.Watermark;
+import org.radarcns.stream.metrics.LateRecordMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drops records of which all time windows have closed. A window closes when the watermark
+ * observed by the filter has passed the end of the window plus a grace period. The watermark is
+ * either the stream time of the task or, with a {@link Watermark#KEY} policy, the latest record
+ * time of the record key, which is kept in a state store. Without this filter, late records
+ * update old windows for as long as they are retained.
+ *
+ * <p>The filter can also be used to select only the too-late records, so they can be written to
+ * a separate topic instead.
+ *
+ * @param <K> record key type
+ * @param <V> record value type
+ */
+public class LateRecordFilter<K, V> implements ValueTransformerWithKey<K, V, V> {
+    private static final Logger logger = LoggerFactory.getLogger(LateRecordFilter.class);
+
+    /** Lateness of a record relative to the watermark. */
+    enum Lateness {
+        /** Not older than the watermark. */
+        ON_TIME,
+        /** Older than the watermark, but one of its windows is still open. */
+        LATE,
+        /** All windows of the record have closed. */
+        TOO_LATE
+    }
+
+    private final long sizeMs;
+    private final long advanceMs;
+    private final long graceMs;
+    private final String watermarkStoreName;
+    private final boolean selectTooLate;
+    private final LateRecordMetrics.Counts counts;
+
+    private ProcessorContext context;
+    private KeyValueStore<K, Long> watermarks;
+    private long observedStreamTime;
+    private long tooLate;
+
+    /**
+     * Filter for given time windows, using the stream time of the task as watermark.
+     * @param windows time windows that records are aggregated in
+     * @param gracePeriod time that windows accept late records after they have ended
+     */
+    public LateRecordFilter(@Nonnull TimeWindows windows, @Nonnull Duration gracePeriod) {
+        this(windows, gracePeriod, null, false, new LateRecordMetrics.Counts());
+    }
+
+    /**
+     * Filter for given time windows.
+     * @param windows time windows that records are aggregated in
+     * @param gracePeriod time that windows accept late records after they have ended
+     * @param watermarkStoreName key-value store with the watermark per key, or {@code null} to
+     *                           use the stream time of the task
+     * @param selectTooLate if {@code true}, only too-late records are passed on, otherwise only
+     *                      records that are not too late.
+     * @param counts counts to record the lateness of records in
+     */
+    public LateRecordFilter(@Nonnull TimeWindows windows, @Nonnull Duration gracePeriod,
+            @Nullable String watermarkStoreName, boolean selectTooLate,
+            @Nonnull LateRecordMetrics.Counts counts) {
+        this.sizeMs = windows.sizeMs;
+        this.advanceMs = windows.advanceMs;
+        this.graceMs = gracePeriod.toMillis();
+        this.watermarkStoreName = watermarkStoreName;
+        this.selectTooLate = selectTooLate;
+        this.counts = counts;
+    }
+
+    /**
+     * Drop the records of given stream that are too late for the given time windows. With a
+     * {@link Watermark#KEY} policy, a watermark store is added to the builder. If the policy
+     * forwards too-late records and the definition has an output topic, they are written to that
+     * topic name with suffix {@value LateRecordPolicy#LATE_TOPIC_SUFFIX}, with the default
+     * serdes.
+     *
+     * @param builder builder of the topology, only needed with a {@link Watermark#KEY} policy
+     * @param stream stream to filter. Filtering does not cause repartitioning.
+     * @param definition stream definition that the records are aggregated for
+     * @param windows time windows that records are aggregated in
+     * @param gracePeriod time that windows accept late records after they have ended, or
+     *                    {@code null} to keep all records
+     * @param policy late record policy
+     * @return filtered stream
+     */
+    public static <K, V> KStream<K, V> filter(@Nullable StreamsBuilder builder,
+            @Nonnull KStream<K, V> stream, @Nonnull StreamDefinition definition,
+            @Nonnull TimeWindows windows, @Nullable Duration gracePeriod,
+            @Nonnull LateRecordPolicy policy) {
+        if (gracePeriod == null) {
+            return stream;
+        }
+        String storeName = definition.getStateStoreName();
+        LateRecordMetrics.Counts counts = LateRecordMetrics.getInstance().counts(storeName);
+
+        String watermarkStoreName;
+        String[] stores;
+        if (policy.getWatermark() == Watermark.KEY) {
+            Objects.requireNonNull(builder, "Key watermarks need a topology builder");
+            watermarkStoreName = storeName + "-watermark";
+            stores = new String[] {watermarkStoreName};
+            // caching limits changelog writes to one per key per commit
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                    Stores.inMemoryKeyValueStore(watermarkStoreName), null, Serdes.Long())
+                    .withCachingEnabled());
+        } else {
+            watermarkStoreName = null;
+            stores = new String[0];
+        }
+
+        if (policy.isForwardTooLate() && definition.getOutputTopic() != null) {
+            // the same records are classified in the same way, so no watermark is written here
+            stream.transformValues(() -> new LateRecordFilter<K, V>(windows, gracePeriod,
+                    watermarkStoreName, true, counts), stores)
+                    .filter((k, v) -> v != null)
+                    .to(LateRecordPolicy.lateTopic(definition.getOutputTopic()).getName());
+        }
+
+        return stream.transformValues(() -> new LateRecordFilter<K, V>(windows, gracePeriod,
+                watermarkStoreName, false, counts), stores)
+                .filter((k, v) -> v != null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        if (watermarkStoreName != null) {
+            this.watermarks = (KeyValueStore<K, Long>) context.getStateStore(watermarkStoreName);
+        }
+        this.observedStreamTime = -1L;
+        this.tooLate = 0L;
+    }
+
+    @Override
+    public V transform(K key, V value) {
+        long timestamp = context.timestamp();
+        long watermark = watermark(key);
+        Lateness lateness = classify(timestamp, watermark);
+
+        if (selectTooLate) {
+            if (watermarks == null && timestamp > observedStreamTime) {
+                observedStreamTime = timestamp;
+            }
+            return lateness == Lateness.TOO_LATE ? value : null;
+        }
+
+        switch (lateness) {
+            case ON_TIME:
+                counts.onTime();
+                if (timestamp > watermark) {
+                    advanceWatermark(key, timestamp);
+                }
+                return value;
+            case LATE:
+                counts.late();
+                return value;
+            default:
+                counts.tooLate();
+                tooLate++;
+                return null;
+        }
+    }
+
+    private long watermark(K key) {
+        if (watermarks == null) {
+            return observedStreamTime;
+        }
+        Long keyWatermark = key != null ? watermarks.get(key) : null;
+        return keyWatermark != null ? keyWatermark : -1L;
+    }
+
+    private void advanceWatermark(K key, long timestamp) {
+        if (watermarks == null) {
+            observedStreamTime = timestamp;
+        } else if (key != null) {
+            watermarks.put(key, timestamp);
+        }
+    }
+
+    /**
+     * Lateness of a record with given timestamp at given watermark.
+     */
+    Lateness classify(long timestamp, long watermark) {
+        if (timestamp >= watermark) {
+            return Lateness.ON_TIME;
+        } else if (isClosed(timestamp, watermark)) {
+            return Lateness.TOO_LATE;
+        } else {
+            return Lateness.LATE;
+        }
+    }
+
+    /**
+     * Whether all windows of a record with given timestamp are closed at given stream time.
+     */
+    boolean isClosed(long timestamp, long streamTime) {
+        // end of the last window that contains the timestamp
+        long windowEnd = timestamp - Math.floorMod(timestamp, advanceMs) + sizeMs;
+        return windowEnd + graceMs <= streamTime;
+    }
+
+    @Override
+    public void close() {
+        if (tooLate > 0L) {
+            logger.info("Filtered out {} records that arrived after the grace period of {} ms of"
+                    + " their {} ms time windows", tooLate, graceMs, sizeMs);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.radarcns.topic.KafkaTopic;
+
+/**
+ * Policy of how records that arrive after their time windows have closed are detected and
+ * handled.
+ */
+public final class LateRecordPolicy {
+    /** Suffix of the output topic name that too-late records are written to. */
+    public static final String LATE_TOPIC_SUFFIX = "_late";
+
+    /** Scope of the event-time watermark that windows are closed by. */
+    public enum Watermark {
+        /**
+         * Latest record time of the stream task. Any key can close the windows of other keys in
+         * the same partition.
+         */
+        TASK,
+        /**
+         * Latest record time per key. A device uploading an old backlog only has its records
+         * compared to its own earlier records.
+         */
+        KEY
+    }
+
+    /** Compare records to the stream task watermark and drop too-late records. */
+    public static final LateRecordPolicy DEFAULT = new LateRecordPolicy(Watermark.TASK, false);
+
+    private final Watermark watermark;
+    private final boolean forwardTooLate;
+
+    /**
+     * Late record policy.
+     * @param watermark scope of the watermark
+     * @param forwardTooLate whether too-late records are written to a separate topic instead of
+     *                       being dropped.
+     */
+    public LateRecordPolicy(@Nonnull Watermark watermark, boolean forwardTooLate) {
+        this.watermark = Objects.requireNonNull(watermark);
+        this.forwardTooLate = forwardTooLate;
+    }
+
+    @Nonnull
+    public Watermark getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Whether too-late records are written to the output topic name with suffix
+     * {@value #LATE_TOPIC_SUFFIX}, instead of being dropped.
+     */
+    public boolean isForwardTooLate() {
+        return forwardTooLate;
+    }
+
+    /** Topic that too-late records of given output topic are written to. */
+    @Nonnull
+    public static KafkaTopic lateTopic(@Nonnull KafkaTopic outputTopic) {
+        return new KafkaTopic(outputTopic.getName() + LATE_TOPIC_SUFFIX);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LateRecordPolicy that = (LateRecordPolicy) o;
+        return watermark == that.watermark && forwardTooLate == that.forwardTooLate;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(watermark, forwardTooLate);
+    }
+
+    @Override
+    public String toString() {
+        return "LateRecordPolicy{watermark=" + watermark
+                + ", forwardTooLate=" + forwardTooLate + '}';
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.KStream;
+import org.radarcns.config.ConfigFingerprint;
+import org.radarcns.config.RadarPropertyHandler;
+import org.radarcns.config.SingleStreamConfig;
+import org.radarcns.topic.KafkaTopic;
+
+/**
+ * Runs the stream definitions of several sensor stream workers that read the same input topic
+ * from a single topology. The input topic is consumed and deserialized once, and each record is
+ * passed to the stream computations of all member workers. Each member still writes to its own
+ * output topics and state stores, with its own stream configuration.
+ *
+ * @param <K> input key type
+ * @param <V> input value type
+ */
+public class MergedStreamWorker<K extends SpecificRecord, V extends SpecificRecord>
+        extends SensorStreamWorker<K, V> {
+    private final List<SensorStreamWorker<K, V>> members;
+    private final Map<StreamDefinition, SensorStreamWorker<K, V>> owners;
+
+    /**
+     * Merged worker of given configured workers. Members are ordered by class name, so the
+     * topology is the same regardless of the order in which the workers are configured.
+     * @param members workers that read the same input topic
+     */
+    MergedStreamWorker(@Nonnull List<SensorStreamWorker<K, V>> members) {
+        this.members = members.stream()
+                .sorted(Comparator.comparing(m -> m.getClass().getName()))
+                .collect(Collectors.toList());
+        this.owners = new IdentityHashMap<>();
+        this.members.forEach(m -> m.getStreamDefinitions().forEach(d -> owners.put(d, m)));
+    }
+
+    /**
+     * Merge given workers into a single worker.
+     * @param master stream master that runs the merged worker
+     * @param properties handler of the RADAR configuration
+     * @param workers configured workers with the same {@link #mergeKey(StreamWorker)}
+     * @return configured merged worker
+     */
+    @SuppressWarnings("unchecked")
+    static StreamWorker merge(@Nonnull StreamMaster master,
+            @Nonnull RadarPropertyHandler properties, @Nonnull List<StreamWorker> workers) {
+        List<SensorStreamWorker<SpecificRecord, SpecificRecord>> members = new ArrayList<>();
+        for (StreamWorker worker : workers) {
+            members.add((SensorStreamWorker<SpecificRecord, SpecificRecord>) worker);
+        }
+        MergedStreamWorker<SpecificRecord, SpecificRecord> merged =
+                new MergedStreamWorker<>(members);
+        // members are merged only if they share the settings of the merged Kafka Streams
+        merged.configure(master, properties, members.get(0).config);
+        return merged;
+    }
+
+    /**
+     * Key of the workers that given worker can be merged with. Workers can be merged if all
+     * their stream definitions read the same input topic, and they have the same priority,
+     * processing guarantee and Kafka Streams properties.
+     * @param worker configured worker
+     * @return merge key, or {@code null} if the worker cannot be merged.
+     */
+    @Nullable
+    static String mergeKey(@Nonnull StreamWorker worker) {
+        if (!(worker instanceof SensorStreamWorker) || worker instanceof MergedStreamWorker) {
+            return null;
+        }
+        List<String> inputTopics = worker.getStreamDefinitions()
+                .map(d -> d.getInputTopic().getName())
+                .distinct()
+                .collect(Collectors.toList());
+        if (inputTopics.size() != 1) {
+            return null;
+        }
+        SingleStreamConfig config = ((SensorStreamWorker<?, ?>) worker).config;
+        return inputTopics.get(0) + ' ' + config.getPriority() + ' '
+                + config.getProcessingGuarantee() + ' '
+                + ConfigFingerprint.of(config.getProperties());
+    }
+
+    @Override
+    protected void initialize() {
+        // the stream definitions are those of the members
+    }
+
+    @Override
+    public Stream<StreamDefinition> getStreamDefinitions() {
+        return members.stream().flatMap(SensorStreamWorker::getStreamDefinitions);
+    }
+
+    @Override
+    public Stream<KafkaTopic> getLateRecordTopics() {
+        return members.stream().flatMap(SensorStreamWorker::getLateRecordTopics);
+    }
+
+    @Override
+    boolean isSharedTopology() {
+        return true;
+    }
+
+    @Override
+    String getApplicationName() {
+        return getClass().getName() + '-' + members.stream()
+                .map(m -> m.getClass().getSimpleName())
+                .collect(Collectors.joining("-"));
+    }
+
+    @Override
+    void implementShared(@Nonnull StreamsBuilder builder, @Nonnull KStream<K, V> input,
+            @Nonnull List<StreamDefinition> definitions) {
+        for (SensorStreamWorker<K, V> member : members) {
+            List<StreamDefinition> memberDefinitions = definitions.stream()
+                    .filter(d -> owners.get(d) == member)
+                    .collect(Collectors.toList());
+            if (!memberDefinitions.isEmpty()) {
+                member.implementShared(builder, input, memberDefinitions);
+            }
+        }
+    }
+
+    @Override
+    protected KStream<?, ?> implementStream(StreamDefinition definition,
+            @Nonnull KStream<K, V> kstream) {
+        SensorStreamWorker<K, V> owner = owners.get(definition);
+        if (owner == null) {
+            throw new IllegalArgumentException("Stream definition " + definition
+                    + " does not belong to " + getName());
+        }
+        return owner.implementStream(definition, kstream);
+    }
+
+    @Override
+    public String getName() {
+        return members.stream()
+                .map(StreamWorker::getName)
+                .collect(Collectors.joining("+"));
+    }
+}
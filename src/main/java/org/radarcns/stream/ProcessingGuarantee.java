@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import org.apache.kafka.streams.StreamsConfig;
+
+/**
+ * Processing guarantee of a stream. With exactly-once processing, the output records, changelog
+ * updates and consumer offsets of a commit are written in a single Kafka transaction, so records
+ * that are processed again after a failure are not counted twice. This costs throughput and adds
+ * latency, because output only becomes visible to consumers once it is committed.
+ */
+public enum ProcessingGuarantee {
+    AT_LEAST_ONCE(StreamsConfig.AT_LEAST_ONCE),
+    EXACTLY_ONCE(StreamsConfig.EXACTLY_ONCE);
+
+    private final String value;
+
+    ProcessingGuarantee(String value) {
+        this.value = value;
+    }
+
+    /** Value of the Kafka Streams {@code processing.guarantee} property. */
+    public String getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nonnull;
+
+/**
+ * Restart delays of a single Kafka Streams instance. Delays grow exponentially with the number
+ * of consecutive failures, with random jitter so instances that fail together do not restart
+ * together. After too many consecutive failures the circuit opens: the instance is only tried
+ * again once per reset interval. An instance that runs for the reset interval without failing
+ * is considered healthy again.
+ */
+public class RestartBackoff {
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final int maxFailures;
+    private final long resetIntervalMs;
+    private final Random random;
+
+    private int failures;
+    private long lastStart;
+    private boolean restarting;
+
+    /**
+     * Restart backoff.
+     * @param initialDelay delay after the first failure
+     * @param maxDelay maximum delay while the circuit is closed
+     * @param maxFailures number of consecutive failures after which the circuit opens
+     * @param resetInterval time an instance should run to reset its failures, and the delay
+     *                      while the circuit is open
+     */
+    public RestartBackoff(@Nonnull Duration initialDelay, @Nonnull Duration maxDelay,
+            int maxFailures, @Nonnull Duration resetInterval) {
+        this(initialDelay, maxDelay, maxFailures, resetInterval, null);
+    }
+
+    /**
+     * Restart backoff with a fixed random generator for testing.
+     * @param random random generator for the jitter, or {@code null} to use the
+     *               {@link ThreadLocalRandom} of the calling thread.
+     */
+    RestartBackoff(Duration initialDelay, Duration maxDelay, int maxFailures,
+            Duration resetInterval, Random random) {
+        this.initialDelayMs = initialDelay.toMillis();
+        this.maxDelayMs = Math.max(maxDelay.toMillis(), initialDelayMs);
+        this.maxFailures = maxFailures;
+        this.resetIntervalMs = resetInterval.toMillis();
+        this.random = random;
+        this.failures = 0;
+        this.lastStart = -1L;
+        this.restarting = false;
+    }
+
+    /**
+     * Register a failure of the instance.
+     * @param now current time in milliseconds
+     * @return delay in milliseconds before restarting the instance, or -1 if a restart is
+     *         already scheduled.
+     */
+    public synchronized long failed(long now) {
+        if (restarting) {
+            return -1L;
+        }
+        restarting = true;
+        if (lastStart >= 0L && now - lastStart >= resetIntervalMs) {
+            failures = 0;
+        }
+        failures++;
+        if (isCircuitOpen()) {
+            return resetIntervalMs;
+        }
+        long delay = initialDelayMs << Math.min(failures - 1, 30);
+        if (delay <= 0L || delay > maxDelayMs) {
+            delay = maxDelayMs;
+        }
+        // equal jitter: between half and the full delay
+        Random jitter = random != null ? random : ThreadLocalRandom.current();
+        return delay / 2L + (long) (jitter.nextDouble() * (delay - delay / 2L));
+    }
+
+    /**
+     * Register that the instance was restarted.
+     * @param now current time in milliseconds
+     */
+    public synchronized void started(long now) {
+        lastStart = now;
+        restarting = false;
+    }
+
+    /** Whether the instance has failed too often to be restarted with backoff. */
+    public synchronized boolean isCircuitOpen() {
+        return failures > maxFailures;
+    }
+
+    /** Number of consecutive failures. */
+    public synchronized int getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.util.Map;
+import org.apache.kafka.streams.state.RocksDBConfigSetter;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Options;
+
+/**
+ * Configures RocksDB state stores to use a shared {@link RocksDbMemoryPool}. The pool and store
+ * settings are read from the Kafka Streams properties, as set by
+ * {@link org.radarcns.config.RocksDbConfig}.
+ */
+public class RocksDbMemoryConfigSetter implements RocksDBConfigSetter {
+    private static final String PREFIX = "radar.rocksdb.";
+    public static final String POOL_CONFIG = PREFIX + "pool";
+    public static final String MEMORY_CONFIG = PREFIX + "memory.bytes";
+    public static final String WRITE_BUFFER_RATIO_CONFIG = PREFIX + "write.buffer.ratio";
+    public static final String WRITE_BUFFER_SIZE_CONFIG = PREFIX + "write.buffer.bytes";
+    public static final String MAX_WRITE_BUFFERS_CONFIG = PREFIX + "max.write.buffers";
+    public static final String BLOCK_SIZE_CONFIG = PREFIX + "block.bytes";
+    public static final String STATISTICS_CONFIG = PREFIX + "statistics";
+
+    /**
+     * Bloom filter policy shared by all stores. Its native handle lives as long as the
+     * application, since Kafka Streams offers no callback to close per-store objects.
+     */
+    private static final BloomFilter BLOOM_FILTER = new BloomFilter();
+
+    @Override
+    public void setConfig(String storeName, Options options, Map<String, Object> configs) {
+        RocksDbMemoryPool pool = RocksDbMemoryPool.get(
+                String.valueOf(configs.get(POOL_CONFIG)),
+                Long.parseLong(String.valueOf(configs.get(MEMORY_CONFIG))),
+                Double.parseDouble(String.valueOf(configs.get(WRITE_BUFFER_RATIO_CONFIG))),
+                Boolean.parseBoolean(String.valueOf(configs.get(STATISTICS_CONFIG))));
+
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        tableConfig.setBlockCache(pool.getCache());
+        tableConfig.setBlockSize(Long.parseLong(String.valueOf(configs.get(BLOCK_SIZE_CONFIG))));
+        // count index and filter blocks towards the memory of the pool
+        tableConfig.setCacheIndexAndFilterBlocks(true);
+        tableConfig.setFilter(BLOOM_FILTER);
+        options.setTableFormatConfig(tableConfig);
+
+        options.setWriteBufferManager(pool.getWriteBufferManager());
+        options.setWriteBufferSize(
+                Long.parseLong(String.valueOf(configs.get(WRITE_BUFFER_SIZE_CONFIG))));
+        options.setMaxWriteBufferNumber(
+                Integer.parseInt(String.valueOf(configs.get(MAX_WRITE_BUFFERS_CONFIG))));
+
+        if (pool.getStatistics() != null) {
+            options.setStatistics(pool.getStatistics());
+        }
+        pool.addStore();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.rocksdb.Cache;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Statistics;
+import org.rocksdb.StatsLevel;
+import org.rocksdb.WriteBufferManager;
+
+/**
+ * Memory shared by RocksDB state stores. Block cache and write buffers of all stores in the pool
+ * are charged to a single cache, so the pool does not use more than its capacity. Pools live as
+ * long as the JVM, since Kafka Streams does not notify when a store has closed.
+ */
+public final class RocksDbMemoryPool {
+    private static final Map<String, RocksDbMemoryPool> POOLS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final long capacity;
+    private final Cache cache;
+    private final WriteBufferManager writeBufferManager;
+    private final Statistics statistics;
+    private final AtomicInteger numStores;
+
+    private RocksDbMemoryPool(String name, long capacity, double writeBufferRatio,
+            boolean collectStatistics) {
+        this.name = name;
+        this.capacity = capacity;
+        this.cache = new LRUCache(capacity);
+        this.writeBufferManager = new WriteBufferManager(
+                (long) (capacity * writeBufferRatio), cache);
+        if (collectStatistics) {
+            statistics = new Statistics();
+            statistics.setStatsLevel(StatsLevel.EXCEPT_DETAILED_TIMERS);
+        } else {
+            statistics = null;
+        }
+        this.numStores = new AtomicInteger(0);
+    }
+
+    /**
+     * Get the pool with given name, creating it if needed. The settings of an existing pool are
+     * not changed.
+     * @param name pool name
+     * @param capacity total memory of the pool in bytes
+     * @param writeBufferRatio fraction of the capacity that write buffers may use
+     * @param collectStatistics whether to collect statistics of the stores in the pool
+     * @return memory pool
+     */
+    public static RocksDbMemoryPool get(@Nonnull String name, long capacity,
+            double writeBufferRatio, boolean collectStatistics) {
+        return POOLS.computeIfAbsent(name, n ->
+                new RocksDbMemoryPool(n, capacity, writeBufferRatio, collectStatistics));
+    }
+
+    /** All memory pools that were created. */
+    public static Collection<RocksDbMemoryPool> getPools() {
+        return Collections.unmodifiableCollection(POOLS.values());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Total memory of the pool in bytes. */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public WriteBufferManager getWriteBufferManager() {
+        return writeBufferManager;
+    }
+
+    /** Statistics of all stores in the pool, or {@code null} if they are not collected. */
+    @Nullable
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /** Register that a store was opened with the pool. */
+    void addStore() {
+        numStores.incrementAndGet();
+    }
+
+    /**
+     * Number of stores that were opened with the pool. Window stores open a store per segment.
+     */
+    public int getNumStores() {
+        return numStores.get();
+    }
+}
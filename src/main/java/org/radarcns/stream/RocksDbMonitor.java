@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the statistics of each {@link RocksDbMemoryPool} since the previous run.
+ */
+public class RocksDbMonitor implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(RocksDbMonitor.class);
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    @Override
+    public void run() {
+        for (RocksDbMemoryPool pool : RocksDbMemoryPool.getPools()) {
+            Statistics stats = pool.getStatistics();
+            if (stats == null) {
+                logger.info("RocksDB pool {}: {} stores opened, memory limit {} MB",
+                        pool.getName(), pool.getNumStores(), pool.getCapacity() / MEGABYTE);
+                continue;
+            }
+            long hits = stats.getAndResetTickerCount(TickerType.BLOCK_CACHE_HIT);
+            long misses = stats.getAndResetTickerCount(TickerType.BLOCK_CACHE_MISS);
+            logger.info("RocksDB pool {}: {} stores opened, memory limit {} MB,"
+                            + " block cache hit rate {}%, {} MB written, compaction read {} MB"
+                            + " and wrote {} MB, write stalls {} ms",
+                    pool.getName(), pool.getNumStores(), pool.getCapacity() / MEGABYTE,
+                    hits + misses == 0L ? 100L : 100L * hits / (hits + misses),
+                    stats.getAndResetTickerCount(TickerType.BYTES_WRITTEN) / MEGABYTE,
+                    stats.getAndResetTickerCount(TickerType.COMPACT_READ_BYTES) / MEGABYTE,
+                    stats.getAndResetTickerCount(TickerType.COMPACT_WRITE_BYTES) / MEGABYTE,
+                    stats.getAndResetTickerCount(TickerType.STALL_MICROS) / 1000L);
+        }
+    }
+}
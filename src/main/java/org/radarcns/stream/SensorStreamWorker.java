@@ -20,32 +20,53 @@ import static org.apache.kafka.streams.KeyValue.pair;
 import static org.radarcns.util.StreamUtil.first;
 import static org.radarcns.util.StreamUtil.second;
 
-import java.util.Collection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import org.apache.avro.Schema;
 import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.Aggregator;
+import org.apache.kafka.streams.kstream.Initializer;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
 import org.radarcns.kafka.AggregateKey;
 import org.radarcns.kafka.ObservationKey;
 import org.radarcns.stream.aggregator.AggregateList;
 import org.radarcns.stream.aggregator.NumericAggregate;
 import org.radarcns.stream.collector.AggregateListCollector;
+import org.radarcns.stream.collector.MergeableCollector;
+import org.radarcns.stream.collector.MergeableListCollector;
+import org.radarcns.stream.collector.MergeableNumericCollector;
+import org.radarcns.stream.collector.MultiAxisCollector;
 import org.radarcns.stream.collector.NumericAggregateCollector;
-import org.radarcns.util.Monitor;
+import org.radarcns.stream.collector.QuantileSketch;
+import org.radarcns.stream.metrics.StreamMetrics;
+import org.radarcns.stream.metrics.StreamMetricsReporter;
+import org.radarcns.topic.KafkaTopic;
+import org.radarcns.util.NumericFieldAccessor;
 import org.radarcns.util.RadarSingletonFactory;
 import org.radarcns.util.RadarUtilities;
 import org.radarcns.util.serde.RadarSerdes;
+import org.radarcns.util.serde.StateFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,9 +76,13 @@ import org.slf4j.LoggerFactory;
  * @param <V> input value type.
  */
 public abstract class SensorStreamWorker<K extends SpecificRecord, V extends SpecificRecord>
-        extends AbstractStreamWorker implements Thread.UncaughtExceptionHandler {
+        extends AbstractStreamWorker {
     private final Logger monitorLog;
-    private Collection<ScheduledFuture<?>> monitors;
+    private List<ScheduledFuture<?>> monitors;
+    private List<Supplier<KeyValue<ScheduledFuture<?>, KafkaStreams>>> streamFactories;
+    private WindowRollup<V> rollup;
+    /** Builder of the topology that is currently being defined. */
+    private StreamsBuilder currentBuilder;
 
     protected final RadarUtilities utilities = RadarSingletonFactory.getRadarUtilities();
 
@@ -72,49 +97,171 @@ public abstract class SensorStreamWorker<K extends SpecificRecord, V extends Spe
      * input topic to given output topic. It monitors the amount of messages that are read.
      */
     protected KeyValue<ScheduledFuture<?>, KafkaStreams> createBuilder(StreamDefinition def) {
-        Monitor monitor;
-        ScheduledFuture<?> future = null;
-        if (monitorLog != null) {
-            monitor = new Monitor(monitorLog, "records have been read from "
-                    + def.getInputTopic() + " to " + def.getOutputTopic());
-            future = master.addMonitor(monitor);
-        } else {
-            monitor = null;
+        Properties props = getStreamProperties(def);
+        ScheduledFuture<?> future = monitor(props, Collections.singletonList(def));
+
+        StreamsBuilder builder = new StreamsBuilder();
+        currentBuilder = builder;
+
+        try {
+            KStream<?, ?> stream = implementStream(def,
+                    input(builder, def.getInputTopic()));
+            if (def.getOutputTopic() != null) {
+                stream.to(def.getOutputTopic().getName());
+            }
+        } finally {
+            currentBuilder = null;
         }
 
+        return pair(future, new KafkaStreams(builder.build(), props));
+    }
+
+    /**
+     * Create a single Kafka Stream builder for all given definitions. The definitions must all
+     * have the same input topic. That topic is consumed and deserialized once, and each record
+     * is passed to the stream computation of each definition.
+     *
+     * @param definitions stream definitions sharing an input topic
+     */
+    protected KeyValue<ScheduledFuture<?>, KafkaStreams> createSharedBuilder(
+            @Nonnull List<StreamDefinition> definitions) {
+        KafkaTopic inputTopic = definitions.get(0).getInputTopic();
+        Properties props = getSharedStreamProperties(inputTopic, definitions);
+        ScheduledFuture<?> future = monitor(props, definitions);
+
         StreamsBuilder builder = new StreamsBuilder();
+        implementShared(builder, input(builder, inputTopic), definitions);
+
+        return pair(future, new KafkaStreams(builder.build(), props));
+    }
 
-        KStream<?, ?> stream = implementStream(def,
-                builder.<K, V>stream(def.getInputTopic().getName())
-                        .map((k, v) -> {
-                            if (monitor != null) {
-                                monitor.increment();
-                            }
-                            return pair(k, v);
-                        }));
-        if (def.getOutputTopic() != null) {
-            stream.to(def.getOutputTopic().getName());
+    /**
+     * Define the stream computations of given definitions on a single input stream, and write
+     * their results to their output topics.
+     *
+     * @param builder builder of the topology
+     * @param input deserialized input stream that all definitions read
+     * @param definitions stream definitions of this worker
+     */
+    void implementShared(@Nonnull StreamsBuilder builder, @Nonnull KStream<K, V> input,
+            @Nonnull List<StreamDefinition> definitions) {
+        currentBuilder = builder;
+
+        List<StreamDefinition> orderedDefinitions = definitions;
+        if (config.isRollupWindows()) {
+            rollup = new WindowRollup<>(builder, definitions,
+                    config.isAggregateBuffer() ? config.getAggregateBufferSize() : 0,
+                    config.getLateRecordPolicy());
+            // finer windows must be defined before the windows that are rolled up from them
+            orderedDefinitions = definitions.stream()
+                    .sorted(Comparator.comparingLong(d -> d.getTimeWindows() == null
+                            ? 0L : d.getTimeWindows().sizeMs))
+                    .collect(Collectors.toList());
+        }
+
+        try {
+            for (StreamDefinition def : orderedDefinitions) {
+                KStream<?, ?> stream = implementStream(def, input);
+                if (def.getOutputTopic() != null) {
+                    stream.to(def.getOutputTopic().getName());
+                }
+            }
+        } finally {
+            rollup = null;
+            currentBuilder = null;
         }
+    }
+
+    /**
+     * Whether all definitions that share an input topic are run from a single topology.
+     */
+    boolean isSharedTopology() {
+        return config.isSharedTopology() || config.isRollupWindows();
+    }
 
-        return pair(future, new KafkaStreams(builder.build(), getStreamProperties(def)));
+    /** Name that the application IDs of the Kafka Streams of this worker start with. */
+    String getApplicationName() {
+        return getClass().getName();
+    }
+
+    /** Stream of given input topic, limited to the backfill range if this is a backfill. */
+    private KStream<K, V> input(StreamsBuilder builder, KafkaTopic topic) {
+        KStream<K, V> stream = builder.stream(topic.getName());
+        Backfill backfill = getBackfill();
+        return backfill != null ? backfill.filter(stream) : stream;
+    }
+
+    /**
+     * Register the topics of given definitions for metrics, and report the metrics periodically.
+     * Records are counted by the clients of the stream, so no node is added to the topology.
+     * @param props properties of the stream running the definitions
+     * @param definitions stream definitions
+     * @return future of the reporter, or {@code null} if it was not started
+     */
+    private ScheduledFuture<?> monitor(@Nonnull Properties props,
+            @Nonnull List<StreamDefinition> definitions) {
+        StreamMetrics metrics = StreamMetrics.forClient(props);
+        if (metrics == null) {
+            return null;
+        }
+        for (StreamDefinition def : definitions) {
+            metrics.input(def.getInputTopic().getName());
+            if (def.getOutputTopic() != null) {
+                metrics.output(def.getOutputTopic().getName());
+            }
+        }
+        if (monitorLog == null || master == null) {
+            return null;
+        }
+        return master.addMonitor(new StreamMetricsReporter(monitorLog, metrics, definitions));
     }
 
     /**
      * @return Properties for a Kafka Stream
      */
     protected Properties getStreamProperties(@Nonnull StreamDefinition definition) {
-        String localClientId = getClass().getName() + "-" + allConfig.getBuildVersion();
+        String localClientId = getApplicationName() + "-" + allConfig.getBuildVersion();
         TimeWindows window = definition.getTimeWindows();
         if (window != null) {
             localClientId += '-' + window.sizeMs + '-' + window.advanceMs;
         }
 
-        Properties props = kafkaProperty.getStreamProperties(localClientId, config,
+        return getStreamProperties(localClientId, definition.getCommitInterval(),
+                definition.getInputTopic());
+    }
+
+    /**
+     * Properties for a Kafka Stream that runs all given definitions. It commits as often as the
+     * definition with the shortest commit interval requires.
+     * @return Properties for a Kafka Stream
+     */
+    protected Properties getSharedStreamProperties(@Nonnull KafkaTopic inputTopic,
+            @Nonnull List<StreamDefinition> definitions) {
+        String localClientId = getApplicationName() + "-" + allConfig.getBuildVersion()
+                + "-shared-" + inputTopic.getName();
+
+        Duration commitInterval = definitions.stream()
+                .map(StreamDefinition::getCommitInterval)
+                .min(Comparator.naturalOrder())
+                .orElse(TIME_WINDOW_COMMIT_INTERVAL_DEFAULT);
+
+        return getStreamProperties(localClientId, commitInterval, inputTopic);
+    }
+
+    private Properties getStreamProperties(@Nonnull String clientId,
+            @Nonnull Duration commitInterval, @Nonnull KafkaTopic inputTopic) {
+        Properties props = kafkaProperty.getStreamProperties(clientId, config,
                 DeviceTimestampExtractor.class);
         long interval = (long)(ThreadLocalRandom.current().nextDouble(0.75, 1.25)
-                * definition.getCommitInterval().toMillis());
+                * commitInterval.toMillis());
         props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG,
                 String.valueOf(interval));
+        addThreadProperties(props);
+        Backfill backfill = getBackfill();
+        if (backfill != null) {
+            backfill.apply(props, Collections.singletonList(inputTopic.getName()));
+        }
+        allConfig.getStream().addTransactionProperties(props);
 
         return props;
     }
@@ -129,22 +276,51 @@ public abstract class SensorStreamWorker<K extends SpecificRecord, V extends Spe
      * Starts the stream and notify the StreamMaster.
      */
     public List<KafkaStreams> createStreams() {
-        List<KeyValue<ScheduledFuture<?>, KafkaStreams>> streamBuilders = getStreamDefinitions()
-                .map(this::createBuilder)
+        if (isSharedTopology()) {
+            streamFactories = getStreamDefinitions()
+                    .collect(Collectors.groupingBy(d -> d.getInputTopic().getName(),
+                            LinkedHashMap::new, Collectors.toList()))
+                    .values().stream()
+                    .<Supplier<KeyValue<ScheduledFuture<?>, KafkaStreams>>>map(
+                            defs -> () -> createSharedBuilder(defs))
+                    .collect(Collectors.toList());
+        } else {
+            streamFactories = getStreamDefinitions()
+                    .<Supplier<KeyValue<ScheduledFuture<?>, KafkaStreams>>>map(
+                            def -> () -> createBuilder(def))
+                    .collect(Collectors.toList());
+        }
+
+        List<KeyValue<ScheduledFuture<?>, KafkaStreams>> streamBuilders = streamFactories
+                .stream()
+                .map(Supplier::get)
                 .collect(Collectors.toList());
 
         monitors = streamBuilders.stream()
                 .map(first())
-                .collect(Collectors.toList());
+                .collect(Collectors.toCollection(ArrayList::new));
 
         return streamBuilders.stream()
                 .map(second())
                 .collect(Collectors.toList());
     }
 
+    @Override
+    protected KafkaStreams recreateStream(int index) {
+        KeyValue<ScheduledFuture<?>, KafkaStreams> streamBuilder =
+                streamFactories.get(index).get();
+        ScheduledFuture<?> previousMonitor = monitors.set(index, streamBuilder.key);
+        if (previousMonitor != null) {
+            previousMonitor.cancel(false);
+        }
+        return streamBuilder.value;
+    }
+
     protected void doCleanup() {
         if (monitors != null) {
-            monitors.forEach(f -> f.cancel(false));
+            monitors.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(f -> f.cancel(false));
             monitors = null;
         }
     }
@@ -152,48 +328,173 @@ public abstract class SensorStreamWorker<K extends SpecificRecord, V extends Spe
     protected final KStream<AggregateKey, NumericAggregate> aggregateNumeric(
             @Nonnull StreamDefinition definition, @Nonnull KStream<ObservationKey, V> kstream,
             @Nonnull String fieldName, @Nonnull Schema schema) {
-        return kstream.groupByKey()
-                .windowedBy(definition.getTimeWindows())
-                .aggregate(
-                        () -> new NumericAggregateCollector(fieldName, schema),
-                        (k, v, valueCollector) -> valueCollector.add(v),
-                        RadarSerdes.materialized(definition.getStateStoreName(),
-                            RadarSerdes.getInstance().getNumericAggregateCollector()))
-                .toStream()
+        // resolve the field position and type once, instead of once per record
+        NumericFieldAccessor accessor = NumericFieldAccessor.of(schema, fieldName);
+        if (useMergeableCollectors(definition)) {
+            int sketchSize = getSketchSize(definition);
+            return aggregateMergeable(definition, kstream,
+                    () -> new MergeableNumericCollector(accessor, sketchSize),
+                    (k, v, valueCollector) -> valueCollector.add(v),
+                    RadarSerdes.getInstance().getMergeableNumericCollector(
+                            config.getStateFormat()))
+                    .map(utilities::mergeableNumericCollectorToAvro);
+        }
+        int pos = accessor.getPosition();
+        return aggregateWindowed(definition, kstream,
+                () -> new NumericAggregateCollector(fieldName),
+                (k, v, valueCollector) -> {
+                    Object value = v.get(pos);
+                    return value != null
+                            ? valueCollector.add(accessor.toDouble(value)) : valueCollector;
+                },
+                RadarSerdes.getInstance().getNumericAggregateCollector())
                 .map(utilities::numericCollectorToAvro);
     }
 
     protected final KStream<AggregateKey, NumericAggregate> aggregateCustomNumeric(
             @Nonnull StreamDefinition definition, @Nonnull KStream<ObservationKey, V> kstream,
             @Nonnull Function<V, Double> calculation, @Nonnull String fieldName) {
-        return kstream.groupByKey()
-                .windowedBy(definition.getTimeWindows())
-                .aggregate(
-                        () -> new NumericAggregateCollector(fieldName),
-                        (k, v, valueCollector) -> valueCollector.add(calculation.apply(v)),
-                        RadarSerdes.materialized(definition.getStateStoreName(),
-                            RadarSerdes.getInstance().getNumericAggregateCollector()))
-                .toStream()
+        if (useMergeableCollectors(definition)) {
+            int sketchSize = getSketchSize(definition);
+            return aggregateMergeable(definition, kstream,
+                    () -> new MergeableNumericCollector(fieldName, sketchSize),
+                    (k, v, valueCollector) -> valueCollector.add(calculation.apply(v)),
+                    RadarSerdes.getInstance().getMergeableNumericCollector(
+                            config.getStateFormat()))
+                    .map(utilities::mergeableNumericCollectorToAvro);
+        }
+        return aggregateWindowed(definition, kstream,
+                () -> new NumericAggregateCollector(fieldName),
+                (k, v, valueCollector) -> valueCollector.add(calculation.apply(v)),
+                RadarSerdes.getInstance().getNumericAggregateCollector())
                 .map(utilities::numericCollectorToAvro);
     }
 
+    /**
+     * Aggregate multiple numeric fields of a record, like the axes of an acceleration record.
+     * With {@code multi_axis_collector}, all fields are collected in primitive arrays by a single
+     * {@link MultiAxisCollector}. It reads existing JSON state of an
+     * {@link AggregateListCollector} and binary state of a {@link MergeableListCollector}.
+     */
     protected final KStream<AggregateKey, AggregateList> aggregateFields(
             @Nonnull StreamDefinition definition, @Nonnull KStream<ObservationKey, V> kstream,
             @Nonnull String[] fieldNames, @Nonnull Schema schema) {
-
-        return kstream.groupByKey()
-                .windowedBy(definition.getTimeWindows())
-                .aggregate(
-                        () -> new AggregateListCollector(fieldNames, schema),
-                        (k, v, valueCollector) -> valueCollector.add(v),
-                        RadarSerdes.materialized(definition.getStateStoreName(),
-                            RadarSerdes.getInstance().getAggregateListCollector()))
-                .toStream()
+        int sketchSize = getSketchSize(definition);
+        if (config.isMultiAxisCollector()) {
+            return aggregateMergeable(definition, kstream,
+                    () -> new MultiAxisCollector(fieldNames, schema, sketchSize),
+                    (k, v, valueCollector) -> valueCollector.add(v),
+                    RadarSerdes.getInstance().getMultiAxisCollector(config.getStateFormat()))
+                    .map(utilities::multiAxisCollectorToAvro);
+        }
+        if (useMergeableCollectors(definition)) {
+            return aggregateMergeable(definition, kstream,
+                    () -> new MergeableListCollector(fieldNames, schema, sketchSize),
+                    (k, v, valueCollector) -> valueCollector.add(v),
+                    RadarSerdes.getInstance().getMergeableListCollector(
+                            config.getStateFormat()))
+                    .map(utilities::mergeableListCollectorToAvro);
+        }
+        return aggregateWindowed(definition, kstream,
+                () -> new AggregateListCollector(fieldNames, schema),
+                (k, v, valueCollector) -> valueCollector.add(v),
+                RadarSerdes.getInstance().getAggregateListCollector())
                 .map(utilities::listCollectorToAvro);
     }
 
+    /**
+     * Whether to aggregate with the mergeable collectors. These are needed to roll up time
+     * windows, to store state in binary format and to approximate quartiles with a sketch. They
+     * also read the JSON state of the default collectors.
+     */
+    private boolean useMergeableCollectors(StreamDefinition definition) {
+        return rollup != null || config.getStateFormat() == StateFormat.BINARY
+                || getSketchSize(definition) > 0;
+    }
+
+    /**
+     * Size of the quantile sketch to approximate quartiles with.
+     * @return sketch size, or 0 if quartiles should be computed exactly.
+     */
+    private int getSketchSize(StreamDefinition definition) {
+        TimeWindows window = definition.getTimeWindows();
+        if (!config.isQuantileSketch() || window == null
+                || window.sizeMs < config.getQuantileSketchMinWindow().toMillis()) {
+            return 0;
+        }
+        return QuantileSketch.sizeForAccuracy(config.getQuantileSketchAccuracy());
+    }
+
+    private <C extends MergeableCollector<C>> KStream<Windowed<ObservationKey>, C>
+            aggregateMergeable(@Nonnull StreamDefinition definition,
+            @Nonnull KStream<ObservationKey, V> kstream, @Nonnull Initializer<C> initializer,
+            @Nonnull Aggregator<ObservationKey, V, C> aggregator, @Nonnull Serde<C> serde) {
+        if (rollup != null) {
+            // coarser windows are rolled up from all updates, so only the result is limited
+            return emit(definition,
+                    rollup.aggregate(definition, kstream, initializer, aggregator, serde), serde);
+        }
+        return aggregateWindowed(definition, kstream, initializer, aggregator, serde);
+    }
+
+    /**
+     * Aggregate records in the time windows of given definition. If configured, aggregates are
+     * updated in memory and only written to the state store on commit.
+     */
+    private <C> KStream<Windowed<ObservationKey>, C> aggregateWindowed(
+            @Nonnull StreamDefinition definition, @Nonnull KStream<ObservationKey, V> kstream,
+            @Nonnull Initializer<C> initializer,
+            @Nonnull Aggregator<ObservationKey, V, C> aggregator, @Nonnull Serde<C> serde) {
+        TimeWindows windows = definition.getTimeWindows();
+        WindowBytesStoreSupplier storeSupplier = definition.getStoreType().windowStore(
+                definition.getStateStoreName(), windows.maintainMs(), windows.sizeMs);
+        // a watermark store can only be added when the builder is known
+        LateRecordPolicy latePolicy = currentBuilder != null
+                ? config.getLateRecordPolicy() : LateRecordPolicy.DEFAULT;
+        KStream<ObservationKey, V> input = LateRecordFilter.filter(currentBuilder, kstream,
+                definition, windows, definition.getGracePeriod(), latePolicy);
+        KStream<Windowed<ObservationKey>, C> updates;
+        if (config.isAggregateBuffer() && currentBuilder != null) {
+            updates = BufferedWindowAggregator.aggregate(currentBuilder, input,
+                    storeSupplier, windows, initializer, aggregator, serde,
+                    definition.getCommitInterval(), config.getAggregateBufferSize());
+        } else {
+            updates = input.groupByKey()
+                    .windowedBy(windows)
+                    .aggregate(initializer, aggregator,
+                            RadarSerdes.materialized(storeSupplier, serde))
+                    .toStream();
+        }
+        return emit(definition, updates, serde);
+    }
+
+    /**
+     * Emit window aggregate updates according to the emit policy of given definition.
+     */
+    private <C> KStream<Windowed<ObservationKey>, C> emit(@Nonnull StreamDefinition definition,
+            @Nonnull KStream<Windowed<ObservationKey>, C> updates, @Nonnull Serde<C> serde) {
+        EmitPolicy policy = definition.getEmitPolicy();
+        if (policy.getMode() == EmitPolicy.Mode.UPDATES || currentBuilder == null) {
+            return updates;
+        }
+        return WindowEmitter.emit(currentBuilder, updates, definition.getStateStoreName(),
+                definition.getTimeWindows(), policy, serde, definition.getCommitInterval(),
+                definition.getStoreType());
+    }
+
+    @Override
+    public Stream<KafkaTopic> getLateRecordTopics() {
+        if (!config.getLateRecordPolicy().isForwardTooLate()) {
+            return Stream.empty();
+        }
+        // only windows with a grace period drop records as too late
+        return getStreamDefinitions()
+                .filter(d -> d.getGracePeriod() != null && d.getOutputTopic() != null)
+                .map(d -> LateRecordPolicy.lateTopic(d.getOutputTopic()));
+    }
+
     @Override
     public String toString() {
-        return getClass().getSimpleName();
+        return getName();
     }
 }
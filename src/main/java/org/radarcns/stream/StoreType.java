@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
+
+/**
+ * Type of state store to keep windowed aggregates in. Both types are backed by the same
+ * changelog format, so a stream can switch between them without resetting its state.
+ */
+public enum StoreType {
+    /** RocksDB store on local disk. */
+    PERSISTENT {
+        @Override
+        public WindowBytesStoreSupplier windowStore(String name, long retentionMs,
+                long windowSizeMs) {
+            return Stores.persistentWindowStore(name, retentionMs, NUM_SEGMENTS, windowSizeMs,
+                    false);
+        }
+    },
+    /** Store in memory, which is restored from its changelog on startup. */
+    IN_MEMORY {
+        @Override
+        public WindowBytesStoreSupplier windowStore(String name, long retentionMs,
+                long windowSizeMs) {
+            return new InMemoryWindowStore.Supplier(name, retentionMs, windowSizeMs);
+        }
+    };
+
+    private static final int NUM_SEGMENTS = 3;
+
+    /**
+     * Supplier of a window store of this type, that does not retain duplicates.
+     * @param name store name
+     * @param retentionMs time to retain windows
+     * @param windowSizeMs size of the windows
+     */
+    public abstract WindowBytesStoreSupplier windowStore(String name, long retentionMs,
+            long windowSizeMs);
+}
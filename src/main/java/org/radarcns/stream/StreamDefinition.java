@@ -31,6 +31,9 @@ public class StreamDefinition implements Comparable<StreamDefinition> {
     private final KafkaTopic outputTopic;
     private final TimeWindows window;
     private final Duration commitIntervalMs;
+    private final EmitPolicy emitPolicy;
+    private final StoreType storeType;
+    private final Duration gracePeriod;
 
     /**
      * Constructor. It takes in input the topic name to be consumed and to topic name where the
@@ -80,13 +83,68 @@ public class StreamDefinition implements Comparable<StreamDefinition> {
      */
     public StreamDefinition(@Nonnull KafkaTopic input, @Nullable KafkaTopic output,
             @Nullable TimeWindows window, @Nonnull Duration commitIntervalMs) {
+        this(input, output, window, commitIntervalMs, EmitPolicy.UPDATES);
+    }
+
+    /**
+     * Constructor. It takes in input the topic name to be consumed and to topic name where the
+     *      related stream will write the computed values.
+     * @param input source {@link KafkaTopic}
+     * @param output output {@link KafkaTopic}
+     * @param window time window for aggregation.
+     * @param commitIntervalMs The commit.interval.ms config for the stream
+     * @param emitPolicy when to emit windowed aggregates
+     */
+    public StreamDefinition(@Nonnull KafkaTopic input, @Nullable KafkaTopic output,
+            @Nullable TimeWindows window, @Nonnull Duration commitIntervalMs,
+            @Nonnull EmitPolicy emitPolicy) {
+        this(input, output, window, commitIntervalMs, emitPolicy, StoreType.PERSISTENT);
+    }
+
+    /**
+     * Constructor. It takes in input the topic name to be consumed and to topic name where the
+     *      related stream will write the computed values.
+     * @param input source {@link KafkaTopic}
+     * @param output output {@link KafkaTopic}
+     * @param window time window for aggregation.
+     * @param commitIntervalMs The commit.interval.ms config for the stream
+     * @param emitPolicy when to emit windowed aggregates
+     * @param storeType type of state store to aggregate in
+     */
+    public StreamDefinition(@Nonnull KafkaTopic input, @Nullable KafkaTopic output,
+            @Nullable TimeWindows window, @Nonnull Duration commitIntervalMs,
+            @Nonnull EmitPolicy emitPolicy, @Nonnull StoreType storeType) {
+        this(input, output, window, commitIntervalMs, emitPolicy, storeType, null);
+    }
+
+    /**
+     * Constructor. It takes in input the topic name to be consumed and to topic name where the
+     *      related stream will write the computed values.
+     * @param input source {@link KafkaTopic}
+     * @param output output {@link KafkaTopic}
+     * @param window time window for aggregation, retained as long as its maintain duration.
+     * @param commitIntervalMs The commit.interval.ms config for the stream
+     * @param emitPolicy when to emit windowed aggregates
+     * @param storeType type of state store to aggregate in
+     * @param gracePeriod time that a window accepts late records after it has ended, or
+     *                    {@code null} to accept them until the window is no longer retained.
+     */
+    public StreamDefinition(@Nonnull KafkaTopic input, @Nullable KafkaTopic output,
+            @Nullable TimeWindows window, @Nonnull Duration commitIntervalMs,
+            @Nonnull EmitPolicy emitPolicy, @Nonnull StoreType storeType,
+            @Nullable Duration gracePeriod) {
         Objects.requireNonNull(input);
         Objects.requireNonNull(output);
+        Objects.requireNonNull(emitPolicy);
+        Objects.requireNonNull(storeType);
 
         this.inputTopic = input;
         this.outputTopic = output;
         this.window = window;
         this.commitIntervalMs = commitIntervalMs;
+        this.emitPolicy = emitPolicy;
+        this.storeType = storeType;
+        this.gracePeriod = gracePeriod;
     }
 
     @Nonnull
@@ -125,6 +183,39 @@ public class StreamDefinition implements Comparable<StreamDefinition> {
         return commitIntervalMs;
     }
 
+    /** When to emit the aggregates of the time windows. */
+    @Nonnull
+    public EmitPolicy getEmitPolicy() {
+        return emitPolicy;
+    }
+
+    /** Type of state store that windowed aggregates are kept in. */
+    @Nonnull
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    /**
+     * Time that a window accepts late records after it has ended.
+     * @return grace period or {@code null} if late records are accepted as long as the window is
+     *         retained.
+     */
+    @Nullable
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    /**
+     * Number of time windows that are retained per key.
+     * @return number of windows, or 0 if the stream is not windowed.
+     */
+    public long getRetainedWindows() {
+        if (window == null) {
+            return 0L;
+        }
+        return (window.maintainMs() + window.advanceMs - 1) / window.advanceMs;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
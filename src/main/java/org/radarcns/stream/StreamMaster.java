@@ -18,23 +18,53 @@ package org.radarcns.stream;
 
 import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.streams.KafkaStreams;
+import org.radarcns.config.AdaptiveThreadsConfig;
+import org.radarcns.config.BackpressureConfig;
+import org.radarcns.config.ConfigFingerprint;
+import org.radarcns.config.ConfigRadar;
 import org.radarcns.config.RadarPropertyHandler;
 import org.radarcns.config.SingleStreamConfig;
+import org.radarcns.config.SourceStatisticsStreamConfig;
+import org.radarcns.config.StreamConfig;
 import org.radarcns.config.SubCommand;
+import org.radarcns.metrics.KafkaMetricsSource;
+import org.radarcns.metrics.MetricsRegistry;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
 import org.radarcns.topic.KafkaTopic;
-import org.radarcns.util.Monitor;
+import org.radarcns.util.RadarThreadFactoryBuilder;
+import org.radarcns.util.serde.SharedSchemaRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,27 +74,247 @@ import org.slf4j.LoggerFactory;
 public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
     private static final Logger logger = LoggerFactory.getLogger(StreamMaster.class);
 
-    public static final int RETRY_TIMEOUT = 300_000; // 5 minutes
-
+    private final RadarPropertyHandler propertyHandler;
+    private final Function<ConfigRadar, Stream<? extends SingleStreamConfig>> streamSelector;
     private final List<StreamWorker> streamWorkers;
+    private final Map<String, WorkerEntry> workerEntries;
     private final AtomicInteger currentStream;
+    private final boolean monitorRocksDb;
+    private final List<MetricsSource> metricsSources;
+    private final int startupThreads;
+    private final Map<StreamWorker, StartupTime> startupTimes;
+    private final AdaptiveThreadController threadController;
+    private final Duration threadControllerInterval;
+    private final BackpressureSupervisor backpressureSupervisor;
+    private final Duration backpressureInterval;
+    private final Backfill backfill;
 
+    private volatile ConfigRadar radarConfig;
+    private String sharedSettings;
     private ScheduledExecutorService executor;
 
     /**
      * A stream master for given sensor type.
+     * @param propertyHandler handler of the RADAR configuration
+     * @param streamSelector selects the configurations of the streams to run from the RADAR
+     *                       configuration. It is applied again when the configuration is
+     *                       reloaded.
+     */
+    protected StreamMaster(@Nonnull RadarPropertyHandler propertyHandler,
+            @Nonnull Function<ConfigRadar, Stream<? extends SingleStreamConfig>> streamSelector) {
+        this(propertyHandler, streamSelector, null);
+    }
+
+    /**
+     * A stream master that runs its streams as a backfill.
+     * @param propertyHandler handler of the RADAR configuration
+     * @param streamSelector selects the configurations of the streams to run
+     * @param backfill backfill to run, or {@code null} to process live data. Stream threads
+     *                 are not adapted and streams are not paused during a backfill.
      */
     protected StreamMaster(@Nonnull RadarPropertyHandler propertyHandler,
-            @Nonnull Stream<? extends SingleStreamConfig> streams) {
+            @Nonnull Function<ConfigRadar, Stream<? extends SingleStreamConfig>> streamSelector,
+            @Nullable Backfill backfill) {
+        this.propertyHandler = propertyHandler;
+        this.streamSelector = streamSelector;
+        this.backfill = backfill;
         currentStream = new AtomicInteger(0);
-        streamWorkers = streams
-                .map(c -> createWorker(propertyHandler, c))
-                .collect(Collectors.toList());
-        logger.info("Configured streams: \n{}", streamWorkers.stream()
-                .map(s -> " - " + s.getClass().getName())
+        radarConfig = propertyHandler.getRadarProperties();
+        sharedSettings = ConfigFingerprint.ofSharedStreamSettings(radarConfig);
+        StreamConfig streamConfig = radarConfig.getStream();
+        monitorRocksDb = streamConfig.hasRocksDbConfig();
+        startupThreads = Math.max(1, streamConfig.getStartupThreads());
+        startupTimes = new ConcurrentHashMap<>();
+
+        AdaptiveThreadsConfig adaptiveThreads = streamConfig.getAdaptiveThreads();
+        if (adaptiveThreads != null && adaptiveThreads.isEnable() && backfill == null) {
+            threadController = new AdaptiveThreadController(adaptiveThreads);
+            threadControllerInterval = adaptiveThreads.getInterval();
+        } else {
+            threadController = null;
+            threadControllerInterval = null;
+        }
+
+        BackpressureConfig backpressure = streamConfig.getBackpressure();
+        if (backpressure != null && backpressure.isEnable() && backfill == null) {
+            backpressureSupervisor = new BackpressureSupervisor(backpressure);
+            backpressureInterval = backpressure.getInterval();
+        } else {
+            backpressureSupervisor = null;
+            backpressureInterval = null;
+        }
+
+        streamWorkers = new CopyOnWriteArrayList<>();
+        workerEntries = new ConcurrentHashMap<>();
+        Map<String, SingleStreamConfig> streams = selectStreams(radarConfig);
+        Map<String, PlannedWorker> plannedWorkers = planWorkers(streams, fingerprints(streams),
+                streamConfig.isMergeWorkers());
+        plannedWorkers.values().forEach(this::addWorker);
+
+        metricsSources = new ArrayList<>();
+        metricsSources.add(this::writeStartupMetrics);
+        if (threadController != null) {
+            metricsSources.add(threadController);
+        }
+        if (backpressureSupervisor != null) {
+            metricsSources.add(backpressureSupervisor);
+        }
+        logger.info("Configured streams: \n{}", plannedWorkers.keySet().stream()
+                .map(key -> " - " + key)
+                .collect(Collectors.joining("\n")));
+        logger.info("Expected windowed state per key: \n{}", plannedWorkers.entrySet().stream()
+                .map(e -> stateSizeReport(e.getKey(), e.getValue().worker))
                 .collect(Collectors.joining("\n")));
     }
 
+    /**
+     * Report of the number of time windows that a worker retains per key, for each of its
+     * windowed stream definitions.
+     */
+    private static String stateSizeReport(String key, StreamWorker worker) {
+        List<StreamDefinition> windowed = worker.getStreamDefinitions()
+                .filter(d -> d.getTimeWindows() != null)
+                .collect(Collectors.toList());
+        return " - " + key + ": "
+                + windowed.stream().mapToLong(StreamDefinition::getRetainedWindows).sum()
+                + " windows" + windowed.stream()
+                .map(d -> "\n    - " + d.getStateStoreName() + ": "
+                        + d.getRetainedWindows() + " windows of "
+                        + Duration.ofMillis(d.getTimeWindows().sizeMs) + ", retained "
+                        + Duration.ofMillis(d.getTimeWindows().maintainMs())
+                        + (d.getGracePeriod() != null
+                                ? ", grace period " + d.getGracePeriod() : ""))
+                .collect(Collectors.joining());
+    }
+
+    /**
+     * Select the stream configurations from given configuration, by a unique key. The key
+     * identifies the worker across configuration reloads.
+     */
+    private Map<String, SingleStreamConfig> selectStreams(ConfigRadar config) {
+        Map<String, SingleStreamConfig> configs = new LinkedHashMap<>();
+        streamSelector.apply(config).forEachOrdered(c -> {
+            String key = c.getStreamClass().getName();
+            if (c instanceof SourceStatisticsStreamConfig) {
+                key += ':' + ((SourceStatisticsStreamConfig) c).getName();
+            }
+            String uniqueKey = key;
+            for (int i = 2; configs.containsKey(uniqueKey); i++) {
+                uniqueKey = key + '#' + i;
+            }
+            configs.put(uniqueKey, c);
+        });
+        return configs;
+    }
+
+    /**
+     * Fingerprints of given stream configurations, by stream key. They are computed before the
+     * workers are created, since workers change the configuration when they set their default
+     * priority.
+     */
+    private static Map<String, String> fingerprints(Map<String, SingleStreamConfig> streams) {
+        Map<String, String> fingerprints = new HashMap<>();
+        streams.forEach((key, c) -> fingerprints.put(key, ConfigFingerprint.of(c)));
+        return fingerprints;
+    }
+
+    /**
+     * Create the workers of given streams, by the keys of the streams they run. Workers that read
+     * the same input topic are merged into a single worker if {@code merge_workers} is enabled.
+     * Otherwise, they are only reported.
+     * @param streams stream configurations by stream key
+     * @param fingerprints fingerprints of the stream configurations by stream key
+     * @param merge whether to merge workers that read the same input topic
+     */
+    private Map<String, PlannedWorker> planWorkers(Map<String, SingleStreamConfig> streams,
+            Map<String, String> fingerprints, boolean merge) {
+        Map<String, List<PlannedWorker>> groups = new LinkedHashMap<>();
+        streams.forEach((key, c) -> {
+            StreamWorker worker = createWorker(propertyHandler, c);
+            String mergeKey = MergedStreamWorker.mergeKey(worker);
+            PlannedWorker planned = new PlannedWorker(key, Collections.singletonList(key),
+                    fingerprints.get(key), mergeKey, c, worker);
+            List<PlannedWorker> group = mergeKey != null ? groups.get(mergeKey) : null;
+            if (group != null && group.stream()
+                    .noneMatch(p -> p.worker.getClass() == planned.worker.getClass())) {
+                group.add(planned);
+            } else {
+                List<PlannedWorker> newGroup = new ArrayList<>();
+                newGroup.add(planned);
+                groups.put(mergeKey != null && group == null ? mergeKey : key, newGroup);
+            }
+        });
+
+        Map<String, PlannedWorker> plannedWorkers = new LinkedHashMap<>();
+        for (List<PlannedWorker> group : groups.values()) {
+            if (group.size() > 1 && merge) {
+                PlannedWorker merged = PlannedWorker.merge(group, MergedStreamWorker.merge(this,
+                        propertyHandler, group.stream()
+                                .map(p -> p.worker)
+                                .collect(Collectors.toList())));
+                plannedWorkers.put(merged.key, merged);
+            } else {
+                if (group.size() > 1) {
+                    logger.info("Streams {} all consume topic {}. Enable merge_workers to"
+                            + " consume it once.", group.stream()
+                                    .map(p -> p.key)
+                                    .collect(Collectors.joining(", ")),
+                            group.get(0).worker.getStreamDefinitions()
+                                    .map(d -> d.getInputTopic().getName())
+                                    .findAny().orElse(null));
+                }
+                group.forEach(p -> plannedWorkers.put(p.key, p));
+            }
+        }
+        return plannedWorkers;
+    }
+
+    /**
+     * Let the thread controller and backpressure supervisor manage a planned worker.
+     */
+    private WorkerEntry addWorker(PlannedWorker planned) {
+        StreamWorker worker = planned.worker;
+        worker.setBackfill(backfill);
+        if (threadController != null) {
+            threadController.add(planned.key, worker, planned.config.getPriority());
+        }
+        if (backpressureSupervisor != null) {
+            backpressureSupervisor.add(planned.key, worker, planned.config.getPriority());
+        }
+        WorkerEntry entry = new WorkerEntry(worker, planned.streamKeys, planned.fingerprint,
+                planned.mergeKey, createMetricsSource(planned.key, worker));
+        workerEntries.put(planned.key, entry);
+        streamWorkers.add(worker);
+        return entry;
+    }
+
+    /** Shut down a worker and stop managing it. */
+    private void removeWorker(String key) {
+        WorkerEntry entry = workerEntries.remove(key);
+        MetricsRegistry.unregister(entry.metricsSource);
+        if (threadController != null) {
+            threadController.remove(entry.worker);
+        }
+        if (backpressureSupervisor != null) {
+            backpressureSupervisor.remove(entry.worker);
+        }
+        streamWorkers.remove(entry.worker);
+        startupTimes.remove(entry.worker);
+        entry.worker.shutdown();
+    }
+
+    /**
+     * Source of the Kafka Streams metrics of the currently running streams of a worker.
+     * @param key unique key of the worker, used as metrics label
+     */
+    private static MetricsSource createMetricsSource(String key, StreamWorker worker) {
+        return new KafkaMetricsSource("kafka_streams",
+                PrometheusWriter.labels("worker", key),
+                () -> worker.getKafkaStreams().stream()
+                        .<Map<MetricName, ? extends Metric>>map(KafkaStreams::metrics)
+                        .collect(Collectors.toList()));
+    }
+
     private StreamWorker createWorker(RadarPropertyHandler config, SingleStreamConfig c) {
         try {
             StreamWorker worker = (StreamWorker) c.getStreamClass().newInstance();
@@ -85,12 +335,49 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
         executor = Executors.newSingleThreadScheduledExecutor();
         executor.execute(() -> Thread.currentThread().setUncaughtExceptionHandler(this));
 
-        announceTopics();
+        announceTopics(streamWorkers);
+        metricsSources.forEach(MetricsRegistry::register);
+        workerEntries.values().forEach(e -> MetricsRegistry.register(e.metricsSource));
+
+        try {
+            SharedSchemaRegistry.warmUp(radarConfig, streamWorkers.stream()
+                    .flatMap(StreamWorker::getStreamDefinitions)
+                    .flatMap(d -> Stream.of(d.getInputTopic(), d.getOutputTopic()))
+                    .filter(Objects::nonNull)
+                    .map(KafkaTopic::getName)
+                    .collect(Collectors.toCollection(TreeSet::new)));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while retrieving schemas", ex);
+        }
+
+        if (monitorRocksDb) {
+            executor.scheduleAtFixedRate(new RocksDbMonitor(), 30, 30, TimeUnit.SECONDS);
+        }
+        if (threadController != null) {
+            long interval = threadControllerInterval.toMillis();
+            executor.scheduleAtFixedRate(threadController, interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (backpressureSupervisor != null) {
+            long interval = backpressureInterval.toMillis();
+            executor.scheduleAtFixedRate(backpressureSupervisor, interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
 
-        logger.info("Starting all streams");
+        int numThreads = Math.min(startupThreads, streamWorkers.size());
+        logger.info("Starting all streams with {} threads", numThreads);
 
-        List<Exception> exs = streamWorkers.stream()
-                .map(worker -> executor.submit(worker::start))
+        // start workers in parallel, without delaying the monitors and restarts of the executor
+        ExecutorService startExecutor = Executors.newFixedThreadPool(Math.max(numThreads, 1),
+                new RadarThreadFactoryBuilder().setNamePrefix("stream-startup").build());
+        long submitTime = System.nanoTime();
+        List<Future<?>> futures = streamWorkers.stream()
+                .map(worker -> startExecutor.submit(() -> startWorker(worker, submitTime)))
+                .collect(Collectors.toList());
+        startExecutor.shutdown();
+
+        List<Exception> exs = futures.stream()
                 .map(future -> {
                     try {
                         future.get();
@@ -102,6 +389,13 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
+        logger.info("Started streams in {} ms: \n{}",
+                (System.nanoTime() - submitTime) / 1_000_000L,
+                streamWorkers.stream()
+                        .filter(startupTimes::containsKey)
+                        .map(w -> " - " + w + ": " + startupTimes.get(w))
+                        .collect(Collectors.joining("\n")));
+
         if (!exs.isEmpty()) {
             for (Exception ex : exs) {
                 logger.error("Failed to start stream", ex);
@@ -110,6 +404,38 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
         }
     }
 
+    /**
+     * Start a worker and record how long it took.
+     * @param worker worker to start
+     * @param submitTime time in nanoseconds at which starting the worker was requested
+     */
+    private void startWorker(StreamWorker worker, long submitTime) {
+        long startTime = System.nanoTime();
+        try {
+            worker.start();
+        } finally {
+            startupTimes.put(worker,
+                    new StartupTime(startTime - submitTime, System.nanoTime() - startTime));
+        }
+    }
+
+    private void writeStartupMetrics(PrometheusWriter writer) {
+        workerEntries.forEach((name, entry) -> {
+            StartupTime time = startupTimes.get(entry.worker);
+            if (time == null) {
+                return;
+            }
+            writer.gauge("radar_stream_startup_seconds",
+                    "Time that a stream worker waited to start and took to start.",
+                    PrometheusWriter.labels("worker", name, "phase", "wait"),
+                    time.waitNanos / 1e9);
+            writer.gauge("radar_stream_startup_seconds",
+                    "Time that a stream worker waited to start and took to start.",
+                    PrometheusWriter.labels("worker", name, "phase", "start"),
+                    time.startNanos / 1e9);
+        });
+    }
+
     /**
      * Signal all workers to shut down. This does not wait for the workers to shut down.
      */
@@ -120,12 +446,114 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
             return;
         }
         logger.info("Shutting down all streams");
+        metricsSources.forEach(MetricsRegistry::unregister);
+        workerEntries.values().forEach(e -> MetricsRegistry.unregister(e.metricsSource));
 
         streamWorkers.forEach(worker -> executor.execute(worker::shutdown));
         executor.shutdown();
         executor.awaitTermination(30, TimeUnit.SECONDS);
     }
 
+    /**
+     * Apply a reloaded configuration. Workers of which the stream configuration was removed or
+     * changed are shut down, and workers of new or changed stream configurations are created and
+     * started. Workers of unchanged stream configurations are not created again. If the settings
+     * that all workers share changed, all workers are restarted. Other stream master settings
+     * only take effect after a full restart.
+     */
+    @Override
+    public synchronized boolean reload(ConfigRadar config) {
+        if (executor == null || executor.isShutdown()) {
+            return false;
+        }
+        ConfigRadar oldConfig = radarConfig;
+        boolean applied = true;
+        if (!ConfigFingerprint.of(masterSettings(oldConfig))
+                .equals(ConfigFingerprint.of(masterSettings(config)))) {
+            logger.warn("Changes to startup_threads, adaptive_threads or backpressure"
+                    + " require a restart to take effect");
+            applied = false;
+        }
+        radarConfig = config;
+
+        String newSharedSettings = ConfigFingerprint.ofSharedStreamSettings(config);
+        boolean restartAll = !newSharedSettings.equals(sharedSettings);
+        sharedSettings = newSharedSettings;
+        if (restartAll) {
+            logger.info("Shared stream settings changed. Restarting all streams.");
+        }
+
+        boolean merge = config.getStream().isMergeWorkers();
+        List<String> unchanged;
+        Map<String, PlannedWorker> plannedWorkers;
+        try {
+            Map<String, SingleStreamConfig> streams = selectStreams(config);
+            Map<String, String> fingerprints = fingerprints(streams);
+            // workers of which all streams have the same configuration keep running
+            unchanged = restartAll ? new ArrayList<>() : workerEntries.entrySet().stream()
+                    .filter(e -> e.getValue().fingerprint.equals(e.getValue().streamKeys.stream()
+                            .map(fingerprints::get)
+                            .map(String::valueOf)
+                            .collect(Collectors.joining("\n"))))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+
+            while (true) {
+                Map<String, SingleStreamConfig> changed = new LinkedHashMap<>(streams);
+                unchanged.forEach(key -> changed.keySet()
+                        .removeAll(workerEntries.get(key).streamKeys));
+                plannedWorkers = planWorkers(changed, fingerprints, merge);
+                if (!merge) {
+                    break;
+                }
+                // new or changed streams may have to be merged with the worker of unchanged ones
+                Set<String> mergeKeys = plannedWorkers.values().stream()
+                        .map(p -> p.mergeKey)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet());
+                if (!unchanged.removeIf(key -> mergeKeys.contains(
+                        workerEntries.get(key).mergeKey))) {
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.error("Failed to create the reloaded streams. Keeping the current streams.",
+                    ex);
+            return false;
+        }
+
+        List<String> removed = workerEntries.keySet().stream()
+                .filter(key -> !unchanged.contains(key))
+                .collect(Collectors.toList());
+        for (String key : removed) {
+            logger.info("Stopping stream {}", key);
+            removeWorker(key);
+        }
+
+        announceTopics(plannedWorkers.values().stream()
+                .map(p -> p.worker)
+                .collect(Collectors.toList()));
+        for (PlannedWorker planned : plannedWorkers.values()) {
+            logger.info("Starting stream {}", planned.key);
+            try {
+                WorkerEntry entry = addWorker(planned);
+                MetricsRegistry.register(entry.metricsSource);
+                startWorker(entry.worker, System.nanoTime());
+            } catch (RuntimeException ex) {
+                logger.error("Failed to start stream {}", planned.key, ex);
+                applied = false;
+            }
+        }
+        return applied;
+    }
+
+    /** Stream master settings that cannot be changed while running. */
+    private static List<Object> masterSettings(ConfigRadar config) {
+        StreamConfig stream = config.getStream();
+        return Arrays.asList(stream.getStartupThreads(), stream.getAdaptiveThreads(),
+                stream.getBackpressure());
+    }
+
     /**
      * Notification from a worker that it has started.
      *
@@ -154,14 +582,16 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
     }
 
     /**
-     * Function used by StreamWorker to notify a crash and trigger a forced shutdown.
+     * Function used by StreamWorker to notify a fatal error, like an {@link OutOfMemoryError},
+     * and trigger a forced shutdown. Failed streams that can be restarted are restarted by their
+     * worker instead.
      *
      * @param stream the name of the stream that is crashed. Useful for debug purpose
      */
     public void notifyCrashedStream(@Nonnull String stream) {
         logger.error("{} is crashed", stream);
 
-        logger.info("Forcing shutdown of {}");
+        logger.info("Forcing shutdown of all streams");
 
         try {
             shutdown();
@@ -170,33 +600,43 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
         }
     }
 
-    public void restartStream(final StreamWorker worker) {
-        logger.info("Restarting stream {}", worker);
-
+    /**
+     * Run a task on the executor of the master after a delay.
+     * @param task task to run
+     * @param delayMs delay in milliseconds
+     */
+    public void schedule(@Nonnull Runnable task, long delayMs) {
         try {
-            executor.schedule(worker::start, RETRY_TIMEOUT, TimeUnit.MILLISECONDS);
+            executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
         } catch (RejectedExecutionException ex) {
-            logger.info("Failed to schedule");
+            logger.info("Failed to schedule task, streams are shutting down");
         }
     }
 
     /**
-     * Log the topic list that the application is going to use.
+     * Log the topic list that given workers are going to use.
      */
-    protected void announceTopics() {
+    protected void announceTopics(Collection<StreamWorker> workers) {
+        if (workers.isEmpty()) {
+            return;
+        }
         logger.info("If AUTO.CREATE.TOPICS.ENABLE is FALSE you must create the following topics "
                 + "before starting: \n  - {}",
-                streamWorkers.stream()
-                        .flatMap(StreamWorker::getStreamDefinitions)
-                        .flatMap(d -> Stream.of(d.getInputTopic(), d.getOutputTopic()))
+                Stream.concat(
+                        workers.stream()
+                                .flatMap(StreamWorker::getStreamDefinitions)
+                                .flatMap(d -> Stream.of(d.getInputTopic(), d.getOutputTopic())),
+                        workers.stream()
+                                .flatMap(StreamWorker::getLateRecordTopics))
                         .filter(Objects::nonNull)
                         .map(KafkaTopic::getName)
+                        .distinct()
                         .sorted()
                         .collect(Collectors.joining("\n - ")));
     }
 
     /** Add a monitor to the master. It will run every 30 seconds. */
-    ScheduledFuture<?> addMonitor(Monitor monitor) {
+    ScheduledFuture<?> addMonitor(Runnable monitor) {
         return executor.scheduleAtFixedRate(monitor, 0, 30, TimeUnit.SECONDS);
     }
 
@@ -209,4 +649,74 @@ public class StreamMaster implements SubCommand, UncaughtExceptionHandler {
             // ignore
         }
     }
+
+    /**
+     * Worker with the keys of the streams it runs, the fingerprint of its configuration and the
+     * source of its metrics.
+     */
+    private static final class WorkerEntry {
+        private final StreamWorker worker;
+        private final List<String> streamKeys;
+        private final String fingerprint;
+        private final String mergeKey;
+        private final MetricsSource metricsSource;
+
+        private WorkerEntry(StreamWorker worker, List<String> streamKeys, String fingerprint,
+                String mergeKey, MetricsSource metricsSource) {
+            this.worker = worker;
+            this.streamKeys = streamKeys;
+            this.fingerprint = fingerprint;
+            this.mergeKey = mergeKey;
+            this.metricsSource = metricsSource;
+        }
+    }
+
+    /**
+     * Worker that was created for one or more stream configurations, but that is not yet
+     * managed by the master.
+     */
+    private static final class PlannedWorker {
+        private final String key;
+        private final List<String> streamKeys;
+        private final String fingerprint;
+        private final String mergeKey;
+        private final SingleStreamConfig config;
+        private final StreamWorker worker;
+
+        private PlannedWorker(String key, List<String> streamKeys, String fingerprint,
+                String mergeKey, SingleStreamConfig config, StreamWorker worker) {
+            this.key = key;
+            this.streamKeys = streamKeys;
+            this.fingerprint = fingerprint;
+            this.mergeKey = mergeKey;
+            this.config = config;
+            this.worker = worker;
+        }
+
+        /** Worker that runs all streams of given planned workers. */
+        private static PlannedWorker merge(List<PlannedWorker> group, StreamWorker worker) {
+            return new PlannedWorker(
+                    group.stream().map(p -> p.key).collect(Collectors.joining(" + ")),
+                    group.stream().map(p -> p.key).collect(Collectors.toList()),
+                    group.stream().map(p -> p.fingerprint).collect(Collectors.joining("\n")),
+                    group.get(0).mergeKey, group.get(0).config, worker);
+        }
+    }
+
+    /** Time that a worker waited for a startup thread, and the time it took to start. */
+    private static final class StartupTime {
+        private final long waitNanos;
+        private final long startNanos;
+
+        private StartupTime(long waitNanos, long startNanos) {
+            this.waitNanos = waitNanos;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "waited " + waitNanos / 1_000_000L + " ms, started in "
+                    + startNanos / 1_000_000L + " ms";
+        }
+    }
 }
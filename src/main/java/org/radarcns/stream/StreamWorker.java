@@ -1,13 +1,49 @@
 package org.radarcns.stream;
 
+import java.util.Collection;
 import java.util.stream.Stream;
+import org.apache.kafka.streams.KafkaStreams;
 import org.radarcns.config.RadarPropertyHandler;
 import org.radarcns.config.SingleStreamConfig;
+import org.radarcns.topic.KafkaTopic;
 
 public interface StreamWorker {
     void start();
     void configure(StreamMaster streamMaster, RadarPropertyHandler properties,
             SingleStreamConfig singleConfig);
     Stream<StreamDefinition> getStreamDefinitions();
+    /** Topics that too-late records are written to, in addition to the output topics. */
+    default Stream<KafkaTopic> getLateRecordTopics() {
+        return Stream.empty();
+    }
+    /** Kafka Streams instances that are currently running. */
+    Collection<KafkaStreams> getKafkaStreams();
+    /** Number of stream threads of each Kafka Streams instance. */
+    int getNumThreads();
+    /**
+     * Change the number of stream threads of each Kafka Streams instance. Running instances are
+     * restarted with the new number of threads.
+     */
+    void setNumThreads(int numThreads);
+    /**
+     * Stop consuming until {@link #resume()} is called. Kafka Streams cannot pause its
+     * consumers, so running instances are closed. Their local state is kept.
+     */
+    void pause();
+    /** Start consuming again after {@link #pause()}. */
+    void resume();
+    /** Whether the worker is paused. */
+    boolean isPaused();
+    /**
+     * Run this worker as a backfill over historical data instead of over live data. Call before
+     * starting the worker.
+     * @param backfill backfill to run, or {@code null} to process live data
+     */
+    void setBackfill(Backfill backfill);
     void shutdown();
+
+    /** Name of the worker in logs and metrics. */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
 }
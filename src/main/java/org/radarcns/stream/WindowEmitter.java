@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits the updates of windowed aggregates according to an {@link EmitPolicy}. The latest
+ * update of each window is kept in a pending window store until it is emitted. In
+ * {@link EmitPolicy.Mode#FINAL} mode, pending windows are emitted once stream time has passed
+ * their end and grace period. Updates of windows that were already emitted are dropped, or passed
+ * on directly as corrections if the policy forwards corrections. In
+ * {@link EmitPolicy.Mode#RATE_LIMITED} mode, all pending windows are
+ * emitted at the wall-clock interval of the policy. Only the range of window start times that
+ * were updated since the previous emit is scanned.
+ *
+ * <p>The emit progress is kept in a progress store, so that windows are not emitted again after
+ * a restart or rebalance. Without exactly-once processing, windows that were emitted after the
+ * last commit may still be emitted again after a failure.
+ *
+ * @param <K> key type
+ * @param <C> aggregate type
+ */
+public class WindowEmitter<K, C>
+        implements Transformer<Windowed<K>, C, KeyValue<Windowed<K>, C>> {
+    private static final Logger logger = LoggerFactory.getLogger(WindowEmitter.class);
+
+    /** Suffix of the progress store name, after the name of the pending window store. */
+    public static final String PROGRESS_SUFFIX = "-progress";
+    private static final String CLOSED_BEFORE = "closedBefore";
+    private static final String EMITTED_UNTIL = "emittedUntil";
+    private static final String PENDING_FROM = "pendingFrom";
+    private static final String PENDING_UNTIL = "pendingUntil";
+
+    private final String storeName;
+    private final EmitPolicy policy;
+    private final long windowSizeMs;
+    private final long punctuateIntervalMs;
+
+    private ProcessorContext context;
+    private WindowStore<K, C> pending;
+    private KeyValueStore<String, Long> progress;
+    /** End time of windows that are closed, or -1 if not yet known. */
+    private long closedBefore;
+    /** Start time of the last window that was emitted as final. */
+    private long emittedUntil;
+    /** First start time of windows that are pending in rate-limited mode. */
+    private long pendingFrom;
+    /** Last start time of windows that are pending in rate-limited mode. */
+    private long pendingUntil;
+    /** Number of updates of windows that were already emitted that were dropped. */
+    private long dropped;
+
+    /**
+     * Emitter of window updates.
+     * @param storeName name of the pending window store. Progress is kept in a key-value store
+     *                  with the same name and suffix {@value #PROGRESS_SUFFIX}.
+     * @param policy emit policy, not {@link EmitPolicy.Mode#UPDATES}
+     * @param windowSizeMs size of the time windows
+     * @param punctuateIntervalMs interval to check for final windows in stream time, in
+     *                            {@link EmitPolicy.Mode#FINAL} mode
+     */
+    public WindowEmitter(String storeName, EmitPolicy policy, long windowSizeMs,
+            long punctuateIntervalMs) {
+        this.storeName = storeName;
+        this.policy = policy;
+        this.windowSizeMs = windowSizeMs;
+        this.punctuateIntervalMs = punctuateIntervalMs;
+    }
+
+    /**
+     * Emit given window updates according to an emit policy.
+     *
+     * @param builder builder of the topology
+     * @param updates stream of window aggregate updates
+     * @param storeName name of the windowed aggregation state store
+     * @param windows time windows of the aggregation
+     * @param policy emit policy
+     * @param serde serde of the aggregate. Keys are stored with the default key serde.
+     * @param checkInterval interval to check for final windows in stream time
+     * @param storeType type of the pending window store
+     * @return stream of emitted aggregates
+     */
+    public static <K, C> KStream<Windowed<K>, C> emit(@Nonnull StreamsBuilder builder,
+            @Nonnull KStream<Windowed<K>, C> updates, @Nonnull String storeName,
+            @Nonnull TimeWindows windows, @Nonnull EmitPolicy policy, @Nonnull Serde<C> serde,
+            @Nonnull Duration checkInterval, @Nonnull StoreType storeType) {
+        long punctuateIntervalMs;
+        long retentionMs;
+        switch (policy.getMode()) {
+            case FINAL:
+                punctuateIntervalMs = checkInterval.toMillis();
+                // pending windows must be kept until they are emitted
+                retentionMs = Math.max(windows.maintainMs(), windows.sizeMs
+                        + policy.getGracePeriod().toMillis() + punctuateIntervalMs);
+                break;
+            case RATE_LIMITED:
+                punctuateIntervalMs = policy.getInterval().toMillis();
+                retentionMs = windows.maintainMs();
+                break;
+            default:
+                return updates;
+        }
+
+        String pendingName = storeName + "-pending";
+        builder.addStateStore(Stores.windowStoreBuilder(
+                storeType.windowStore(pendingName, retentionMs, windows.sizeMs), null, serde)
+                .withCachingEnabled());
+        String progressName = pendingName + PROGRESS_SUFFIX;
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.inMemoryKeyValueStore(progressName), Serdes.String(), Serdes.Long())
+                .withCachingEnabled());
+
+        long windowSizeMs = windows.sizeMs;
+        return updates.transform(() -> new WindowEmitter<>(pendingName, policy, windowSizeMs,
+                punctuateIntervalMs), pendingName, progressName);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void init(ProcessorContext context) {
+        this.context = context;
+        pending = (WindowStore<K, C>) context.getStateStore(storeName);
+        progress = (KeyValueStore<String, Long>) context.getStateStore(
+                storeName + PROGRESS_SUFFIX);
+        closedBefore = load(CLOSED_BEFORE, -1L);
+        emittedUntil = load(EMITTED_UNTIL, -1L);
+        pendingFrom = load(PENDING_FROM, Long.MAX_VALUE);
+        pendingUntil = load(PENDING_UNTIL, -1L);
+        dropped = 0L;
+
+        if (policy.getMode() == EmitPolicy.Mode.FINAL) {
+            context.schedule(punctuateIntervalMs, PunctuationType.STREAM_TIME, this::emitFinal);
+        } else {
+            context.schedule(punctuateIntervalMs, PunctuationType.WALL_CLOCK_TIME,
+                    t -> emitRateLimited());
+        }
+    }
+
+    private long load(String key, long defaultValue) {
+        Long value = progress.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public KeyValue<Windowed<K>, C> transform(Windowed<K> window, C value) {
+        if (window == null || value == null) {
+            return null;
+        }
+        if (closedBefore != -1L && window.window().end() <= closedBefore) {
+            // final result was already emitted
+            if (policy.isForwardCorrections()) {
+                return KeyValue.pair(window, value);
+            }
+            dropped++;
+            return null;
+        }
+        long start = window.window().start();
+        pending.put(window.key(), value, start);
+        if (policy.getMode() == EmitPolicy.Mode.RATE_LIMITED) {
+            if (start < pendingFrom) {
+                pendingFrom = start;
+                progress.put(PENDING_FROM, start);
+            }
+            if (start > pendingUntil) {
+                pendingUntil = start;
+                progress.put(PENDING_UNTIL, start);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Emit all pending windows that have closed at given stream time.
+     * @param streamTime current stream time
+     */
+    void emitFinal(long streamTime) {
+        long newClosedBefore = streamTime - policy.getGracePeriod().toMillis();
+        if (newClosedBefore <= closedBefore) {
+            return;
+        }
+        closedBefore = newClosedBefore;
+        progress.put(CLOSED_BEFORE, closedBefore);
+
+        long startedBefore = closedBefore - windowSizeMs;
+        if (startedBefore < 0L || startedBefore <= emittedUntil) {
+            return;
+        }
+        emitPending(emittedUntil + 1L, startedBefore);
+        emittedUntil = startedBefore;
+        progress.put(EMITTED_UNTIL, emittedUntil);
+    }
+
+    /** Emit all windows that were updated since the previous call. */
+    void emitRateLimited() {
+        if (pendingFrom > pendingUntil) {
+            return;
+        }
+        emitPending(pendingFrom, pendingUntil);
+        pendingFrom = Long.MAX_VALUE;
+        pendingUntil = -1L;
+        progress.delete(PENDING_FROM);
+        progress.delete(PENDING_UNTIL);
+    }
+
+    /**
+     * Emit and remove all pending windows that started in given time range.
+     * @param startedFrom first start time of windows to emit
+     * @param startedUntil last start time of windows to emit
+     */
+    private void emitPending(long startedFrom, long startedUntil) {
+        List<KeyValue<Windowed<K>, C>> emitted = new ArrayList<>();
+        try (KeyValueIterator<Windowed<K>, C> iterator = pending.fetchAll(
+                startedFrom, startedUntil)) {
+            while (iterator.hasNext()) {
+                KeyValue<Windowed<K>, C> next = iterator.next();
+                if (next.value != null) {
+                    emitted.add(next);
+                }
+            }
+        }
+
+        for (KeyValue<Windowed<K>, C> entry : emitted) {
+            pending.put(entry.key.key(), null, entry.key.window().start());
+            context.forward(entry.key, entry.value);
+        }
+    }
+
+    /** Number of updates of windows that were already emitted that were dropped. */
+    long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public void close() {
+        // stores are flushed and closed by Kafka Streams
+        if (dropped > 0L) {
+            logger.info("Dropped {} updates of {} ms time windows that were already emitted",
+                    dropped, windowSizeMs);
+        }
+    }
+}
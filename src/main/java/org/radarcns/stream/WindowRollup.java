@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Aggregator;
+import org.apache.kafka.streams.kstream.Initializer;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
+import org.radarcns.kafka.ObservationKey;
+import org.radarcns.stream.collector.MergeableCollector;
+import org.radarcns.util.serde.RadarSerdes;
+
+/**
+ * Builds the windowed aggregates of a shared topology as a cascade. Only the finest time window
+ * is aggregated from the input records. Each coarser time window is computed by merging the
+ * aggregates of the next finer time window, if its size is a multiple of that window.
+ *
+ * @param <V> input value type
+ */
+public class WindowRollup<V> {
+    private final StreamsBuilder builder;
+    private final int bufferSize;
+    private final LateRecordPolicy latePolicy;
+    private final Map<StreamDefinition, StreamDefinition> sources;
+    private final Map<StreamDefinition, Long> retention;
+    private final Map<StreamDefinition, Duration> gracePeriods;
+    private final Map<StreamDefinition, KStream<Windowed<ObservationKey>, ?>> updates;
+
+    /**
+     * Rollup of given definitions.
+     * @param builder builder of the shared topology
+     * @param definitions definitions in the shared topology
+     * @param bufferSize size of the {@link AggregateBuffer} of the finest time windows, or 0 to
+     *                   write each update to the state store.
+     * @param latePolicy policy of how too-late records are detected and handled
+     */
+    public WindowRollup(@Nonnull StreamsBuilder builder,
+            @Nonnull Collection<StreamDefinition> definitions, int bufferSize,
+            @Nonnull LateRecordPolicy latePolicy) {
+        this.builder = builder;
+        this.bufferSize = bufferSize;
+        this.latePolicy = latePolicy;
+        this.sources = new HashMap<>();
+        this.retention = new HashMap<>();
+        this.gracePeriods = new HashMap<>();
+        this.updates = new HashMap<>();
+
+        List<StreamDefinition> windowed = definitions.stream()
+                .filter(d -> d.getTimeWindows() != null
+                        && d.getTimeWindows().advanceMs == d.getTimeWindows().sizeMs)
+                .sorted(Comparator.comparingLong(d -> d.getTimeWindows().sizeMs))
+                .collect(Collectors.toList());
+
+        for (StreamDefinition definition : windowed) {
+            retention.put(definition, definition.getTimeWindows().maintainMs());
+            if (definition.getGracePeriod() != null) {
+                gracePeriods.put(definition, definition.getGracePeriod());
+            }
+        }
+
+        for (int i = 1; i < windowed.size(); i++) {
+            StreamDefinition fine = windowed.get(i - 1);
+            StreamDefinition coarse = windowed.get(i);
+            if (coarse.getTimeWindows().sizeMs % fine.getTimeWindows().sizeMs == 0) {
+                sources.put(coarse, fine);
+            }
+        }
+
+        // propagate from the coarsest window, since coarse windows may be rolled up in turn
+        for (int i = windowed.size() - 1; i > 0; i--) {
+            StreamDefinition coarse = windowed.get(i);
+            StreamDefinition fine = sources.get(coarse);
+            if (fine == null) {
+                continue;
+            }
+            // the fine windows must be kept as long as the coarse window is retained
+            retention.merge(fine, retention.get(coarse), Math::max);
+
+            // records may not be dropped as late while their coarse window still accepts them
+            Duration coarseGrace = gracePeriods.get(coarse);
+            if (coarseGrace == null) {
+                gracePeriods.remove(fine);
+            } else if (gracePeriods.containsKey(fine)) {
+                Duration extendedGrace = coarseGrace.plusMillis(
+                        coarse.getTimeWindows().sizeMs - fine.getTimeWindows().sizeMs);
+                gracePeriods.merge(fine, extendedGrace,
+                        (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            }
+        }
+    }
+
+    /**
+     * Aggregate given stream in the time windows of given definition. If the definition can be
+     * rolled up from a finer definition that was already aggregated, the input stream is not
+     * used.
+     *
+     * @param definition stream definition to aggregate
+     * @param kstream input stream
+     * @param initializer creates an empty collector
+     * @param aggregator adds a record to a collector
+     * @param serde serde to store collectors with
+     * @param <C> collector type
+     * @return stream of aggregate updates
+     */
+    public <C extends MergeableCollector<C>> KStream<Windowed<ObservationKey>, C> aggregate(
+            @Nonnull StreamDefinition definition, @Nonnull KStream<ObservationKey, V> kstream,
+            @Nonnull Initializer<C> initializer,
+            @Nonnull Aggregator<ObservationKey, V, C> aggregator, @Nonnull Serde<C> serde) {
+        TimeWindows windows = definition.getTimeWindows();
+        if (windows == null) {
+            throw new IllegalArgumentException("Cannot roll up stream "
+                    + definition.getStateStoreName() + " without time windows");
+        }
+        long retentionMs = retention.getOrDefault(definition, windows.maintainMs());
+
+        WindowBytesStoreSupplier storeSupplier = definition.getStoreType().windowStore(
+                definition.getStateStoreName(), retentionMs, windows.sizeMs);
+
+        StreamDefinition source = sources.get(definition);
+        KStream<Windowed<ObservationKey>, C> result;
+
+        if ((source == null || !updates.containsKey(source)) && bufferSize > 0) {
+            result = BufferedWindowAggregator.aggregate(builder,
+                    LateRecordFilter.filter(builder, kstream, definition, windows,
+                            gracePeriods.get(definition), latePolicy),
+                    storeSupplier, TimeWindows.of(windows.sizeMs), initializer, aggregator,
+                    serde, definition.getCommitInterval(), bufferSize);
+        } else if (source == null || !updates.containsKey(source)) {
+            result = LateRecordFilter.filter(builder, kstream, definition, windows,
+                    gracePeriods.get(definition), latePolicy)
+                    .groupByKey()
+                    .windowedBy(TimeWindows.of(windows.sizeMs).until(retentionMs))
+                    .aggregate(initializer, aggregator,
+                            RadarSerdes.materialized(storeSupplier, serde))
+                    .toStream();
+        } else {
+            @SuppressWarnings("unchecked")
+            KStream<Windowed<ObservationKey>, C> sourceUpdates =
+                    (KStream<Windowed<ObservationKey>, C>) updates.get(source);
+
+            String sourceStoreName = source.getStateStoreName();
+            long sourceSize = source.getTimeWindows().sizeMs;
+            String storeName = definition.getStateStoreName();
+            long size = windows.sizeMs;
+
+            // use the default key serde
+            builder.addStateStore(Stores.windowStoreBuilder(storeSupplier, null, serde));
+
+            result = sourceUpdates.transform(() -> new WindowRollupTransformer<>(
+                    sourceStoreName, sourceSize, storeName, size, initializer),
+                    sourceStoreName, storeName);
+        }
+
+        updates.put(definition, result);
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import static org.apache.kafka.streams.KeyValue.pair;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Initializer;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.radarcns.stream.collector.MergeableCollector;
+
+/**
+ * Computes the aggregate of a coarse time window by merging the aggregates of the finer time
+ * windows that it contains. The result is stored in the coarse window store, so that it can be
+ * rolled up again.
+ *
+ * <p>Per key, the merged aggregate of all fine windows before the latest fine window of the
+ * current coarse window is kept in memory. An update of the latest fine window is then merged
+ * with that aggregate directly, and moving to a new fine window only merges the previous latest
+ * window into it. Fine windows are only fetched from the fine window store again for updates of
+ * fine windows older than the latest one, for older coarse windows, and after a restart.
+ *
+ * @param <K> record key type
+ * @param <C> collector type
+ */
+public class WindowRollupTransformer<K, C extends MergeableCollector<C>>
+        implements Transformer<Windowed<K>, C, KeyValue<Windowed<K>, C>> {
+    private final String sourceStoreName;
+    private final long sourceSize;
+    private final String storeName;
+    private final long size;
+    private final Initializer<C> initializer;
+
+    private final Map<K, Progress<C>> progress;
+
+    private WindowStore<K, C> sourceStore;
+    private WindowStore<K, C> store;
+
+    /**
+     * Rollup transformer.
+     * @param sourceStoreName name of the window store with the fine aggregates
+     * @param sourceSize size of the fine windows in milliseconds
+     * @param storeName name of the window store to store coarse aggregates in
+     * @param size size of the coarse windows in milliseconds, a multiple of sourceSize
+     * @param initializer creates an empty collector
+     */
+    public WindowRollupTransformer(String sourceStoreName, long sourceSize, String storeName,
+            long size, Initializer<C> initializer) {
+        if (size % sourceSize != 0) {
+            throw new IllegalArgumentException("Window size " + size
+                    + " is not a multiple of source window size " + sourceSize);
+        }
+        this.sourceStoreName = sourceStoreName;
+        this.sourceSize = sourceSize;
+        this.storeName = storeName;
+        this.size = size;
+        this.initializer = initializer;
+        this.progress = new HashMap<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void init(ProcessorContext context) {
+        sourceStore = (WindowStore<K, C>) context.getStateStore(sourceStoreName);
+        store = (WindowStore<K, C>) context.getStateStore(storeName);
+    }
+
+    @Override
+    public KeyValue<Windowed<K>, C> transform(Windowed<K> key, C value) {
+        if (key == null || value == null) {
+            return null;
+        }
+        K recordKey = key.key();
+        long sourceStart = key.window().start();
+        long start = sourceStart - sourceStart % size;
+
+        C aggregate;
+        Progress<C> keyProgress = progress.get(recordKey);
+        if (keyProgress != null && keyProgress.start > start) {
+            // update of an older coarse window
+            aggregate = merge(recordKey, start, start + size - sourceSize);
+        } else {
+            if (keyProgress == null || keyProgress.start < start) {
+                keyProgress = new Progress<>(start, sourceStart,
+                        merge(recordKey, start, sourceStart - sourceSize));
+                progress.put(recordKey, keyProgress);
+            } else if (sourceStart > keyProgress.latest) {
+                C previous = sourceStore.fetch(recordKey, keyProgress.latest);
+                if (previous != null) {
+                    keyProgress.base.merge(previous);
+                }
+                keyProgress.latest = sourceStart;
+            } else if (sourceStart < keyProgress.latest) {
+                keyProgress.base = merge(recordKey, start, keyProgress.latest - sourceSize);
+            }
+
+            aggregate = initializer.apply().merge(keyProgress.base);
+            C latest = sourceStart == keyProgress.latest
+                    ? value : sourceStore.fetch(recordKey, keyProgress.latest);
+            if (latest != null) {
+                aggregate.merge(latest);
+            }
+        }
+
+        store.put(recordKey, aggregate, start);
+        return pair(new Windowed<>(recordKey, new TimeWindow(start, start + size)), aggregate);
+    }
+
+    /** Merge all fine windows of given key that start in given time range. */
+    private C merge(K key, long timeFrom, long timeTo) {
+        C aggregate = initializer.apply();
+        if (timeTo < timeFrom) {
+            return aggregate;
+        }
+        try (WindowStoreIterator<C> iterator = sourceStore.fetch(key, timeFrom, timeTo)) {
+            while (iterator.hasNext()) {
+                C partial = iterator.next().value;
+                if (partial != null) {
+                    aggregate.merge(partial);
+                }
+            }
+        }
+        return aggregate;
+    }
+
+    @Override
+    public void close() {
+        progress.clear();
+    }
+
+    /** Progress of the current coarse window of a key. */
+    private static class Progress<C> {
+        private final long start;
+        private long latest;
+        private C base;
+
+        private Progress(long start, long latest, C base) {
+            this.start = start;
+            this.latest = latest;
+            this.base = base;
+        }
+    }
+}
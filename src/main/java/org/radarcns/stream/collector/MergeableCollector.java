@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.collector;
+
+/**
+ * Collector of which the state can be combined with that of another collector of the same type.
+ * Merging the collectors of two adjacent time windows gives the same result as collecting all
+ * values of both windows in a single collector.
+ * @param <T> collector type
+ */
+public interface MergeableCollector<T extends MergeableCollector<T>> {
+    /**
+     * Add all values collected by another collector to this collector.
+     * @param other collector to merge, it is not modified.
+     * @return this collector
+     */
+    T merge(T other);
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.collector;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.radarcns.util.serde.BinaryEncodable;
+
+/**
+ * Collects numeric values of multiple fields of a record. In contrast to
+ * {@link AggregateListCollector}, collectors can be merged. Unknown JSON properties are ignored,
+ * so that the JSON state of a {@link AggregateListCollector} can also be read.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MergeableListCollector
+        implements MergeableCollector<MergeableListCollector>, BinaryEncodable {
+    private MergeableNumericCollector[] collectors;
+
+    /** Empty collector, used for deserialization. */
+    public MergeableListCollector() {
+        this.collectors = new MergeableNumericCollector[0];
+    }
+
+    /**
+     * Collector of given fields of a record.
+     * @param fieldNames field names in given schema
+     * @param schema record schema that contains the fields.
+     * @throws IllegalArgumentException if the schema does not contain one of the fields.
+     */
+    public MergeableListCollector(String[] fieldNames, Schema schema) {
+        this(fieldNames, schema, 0);
+    }
+
+    /**
+     * Collector of given fields of a record.
+     * @param fieldNames field names in given schema
+     * @param schema record schema that contains the fields.
+     * @param sketchSize size of the quantile sketch of each field, or 0 to compute exact
+     *                   quartiles.
+     * @throws IllegalArgumentException if the schema does not contain one of the fields.
+     */
+    public MergeableListCollector(String[] fieldNames, Schema schema, int sketchSize) {
+        this.collectors = new MergeableNumericCollector[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            collectors[i] = new MergeableNumericCollector(fieldNames[i], schema, sketchSize);
+        }
+    }
+
+    /** Add the configured fields of given record. */
+    public MergeableListCollector add(IndexedRecord record) {
+        for (MergeableNumericCollector collector : collectors) {
+            collector.add(record);
+        }
+        return this;
+    }
+
+    @Override
+    public MergeableListCollector merge(MergeableListCollector other) {
+        if (collectors.length == 0) {
+            collectors = new MergeableNumericCollector[other.collectors.length];
+            for (int i = 0; i < collectors.length; i++) {
+                collectors[i] = new MergeableNumericCollector(other.collectors[i].getName());
+            }
+        } else if (collectors.length != other.collectors.length) {
+            throw new IllegalArgumentException("Cannot merge collectors of different fields");
+        }
+        for (int i = 0; i < collectors.length; i++) {
+            collectors[i].merge(other.collectors[i]);
+        }
+        return this;
+    }
+
+    public List<MergeableNumericCollector> getCollectors() {
+        return Arrays.asList(collectors);
+    }
+
+    @Override
+    public int binarySize() {
+        int size = Integer.BYTES;
+        for (MergeableNumericCollector collector : collectors) {
+            size += collector.binarySize();
+        }
+        return size;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(collectors.length);
+        for (MergeableNumericCollector collector : collectors) {
+            collector.writeTo(buffer);
+        }
+    }
+
+    /**
+     * Read a collector that was written with {@link #writeTo(ByteBuffer)}.
+     * @param version binary format version
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a full collector.
+     */
+    public static MergeableListCollector readFrom(ByteBuffer buffer, int version) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid number of collectors " + length);
+        }
+        MergeableListCollector result = new MergeableListCollector();
+        result.collectors = new MergeableNumericCollector[length];
+        for (int i = 0; i < length; i++) {
+            result.collectors[i] = MergeableNumericCollector.readFrom(buffer, version);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MergeableListCollector{collectors=" + Arrays.toString(collectors) + '}';
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.collector;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.radarcns.util.NumericFieldAccessor;
+import org.radarcns.util.serde.BinaryEncodable;
+
+/**
+ * Collects numeric values, keeping the minimum, maximum, sum, mean and quartiles. In contrast to
+ * {@link NumericAggregateCollector}, collectors can be merged. Unknown JSON properties are
+ * ignored, so that the JSON state of a {@link NumericAggregateCollector} can also be read.
+ *
+ * <p>By default, all values are kept to compute exact quartiles. If a sketch size is given, the
+ * quartiles are approximated with a {@link QuantileSketch} of bounded size instead.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MergeableNumericCollector
+        implements MergeableCollector<MergeableNumericCollector>, BinaryEncodable {
+    static final int INITIAL_CAPACITY = 8;
+    static final byte EXACT = 0;
+    static final byte SKETCH = 1;
+    static final double[] EMPTY_HISTORY = new double[0];
+
+    private String name;
+    private int pos;
+    private double min;
+    private double max;
+    private double sum;
+    private int count;
+    /** Sorted values. Only the first {@code count} values are in use. */
+    @JsonIgnore
+    private double[] history;
+    /** Quartile approximation, or {@code null} if all values are kept in the history. */
+    private QuantileSketch sketch;
+    private transient byte[] encodedName;
+    private transient NumericFieldAccessor accessor;
+
+    /** Collector without name. Values must be added with {@link #add(double)}. */
+    public MergeableNumericCollector() {
+        this(null);
+    }
+
+    /**
+     * Collector with given name. Values must be added with {@link #add(double)}.
+     * @param name field name of the aggregate
+     */
+    public MergeableNumericCollector(String name) {
+        this(name, -1, 0);
+    }
+
+    /**
+     * Collector with given name. Values must be added with {@link #add(double)}.
+     * @param name field name of the aggregate
+     * @param sketchSize size of the quantile sketch, or 0 to compute exact quartiles.
+     */
+    public MergeableNumericCollector(String name, int sketchSize) {
+        this(name, -1, sketchSize);
+    }
+
+    /**
+     * Collector of a field of a record.
+     * @param name field name in given schema
+     * @param schema record schema that contains the field.
+     * @throws IllegalArgumentException if the schema does not contain given numeric field.
+     */
+    public MergeableNumericCollector(String name, Schema schema) {
+        this(NumericFieldAccessor.of(schema, name), 0);
+    }
+
+    /**
+     * Collector of a field of a record.
+     * @param name field name in given schema
+     * @param schema record schema that contains the field.
+     * @param sketchSize size of the quantile sketch, or 0 to compute exact quartiles.
+     * @throws IllegalArgumentException if the schema does not contain given numeric field.
+     */
+    public MergeableNumericCollector(String name, Schema schema, int sketchSize) {
+        this(NumericFieldAccessor.of(schema, name), sketchSize);
+    }
+
+    /**
+     * Collector of a field of a record.
+     * @param accessor accessor of the field
+     * @param sketchSize size of the quantile sketch, or 0 to compute exact quartiles.
+     */
+    public MergeableNumericCollector(NumericFieldAccessor accessor, int sketchSize) {
+        this(accessor.getName(), accessor.getPosition(), sketchSize);
+        this.accessor = accessor;
+    }
+
+    private MergeableNumericCollector(String name, int pos, int sketchSize) {
+        this.name = name;
+        this.pos = pos;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        if (sketchSize > 0) {
+            this.sketch = new QuantileSketch(sketchSize);
+            this.history = EMPTY_HISTORY;
+        } else {
+            this.history = new double[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Add the configured field of given record. If the collector was not created with a schema,
+     * for example because it was deserialized, the field accessor is resolved from the record
+     * schema.
+     * @throws IllegalStateException if the field accessor cannot be determined.
+     */
+    public MergeableNumericCollector add(IndexedRecord record) {
+        if (accessor == null) {
+            if (name == null) {
+                throw new IllegalStateException("Cannot add record to collector without name");
+            }
+            try {
+                accessor = NumericFieldAccessor.of(record.getSchema(), name);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalStateException("Cannot add record to collector", ex);
+            }
+            pos = accessor.getPosition();
+        }
+        Object value = record.get(pos);
+        return value != null ? add(accessor.toDouble(value)) : this;
+    }
+
+    /** Add a single value. */
+    public MergeableNumericCollector add(double value) {
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        sum += value;
+
+        if (sketch != null) {
+            sketch.add(value);
+            count++;
+            return this;
+        }
+
+        history = insertSorted(history, count, value);
+        count++;
+        return this;
+    }
+
+    /**
+     * Insert a value into a sorted array.
+     * @param values sorted values, of which the first {@code count} are in use.
+     * @return given array, or a larger copy of it if it was full.
+     */
+    static double[] insertSorted(double[] values, int count, double value) {
+        int index = Arrays.binarySearch(values, 0, count, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        double[] result = values;
+        if (count == values.length) {
+            result = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, count * 2));
+        }
+        System.arraycopy(result, index, result, index + 1, count - index);
+        result[index] = value;
+        return result;
+    }
+
+    /** Merge the first values of two sorted arrays into a new sorted array. */
+    static double[] mergeSorted(double[] first, int firstCount, double[] second,
+            int secondCount) {
+        double[] merged = new double[Math.max(INITIAL_CAPACITY, firstCount + secondCount)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < firstCount && j < secondCount) {
+            merged[k++] = first[i] <= second[j] ? first[i++] : second[j++];
+        }
+        while (i < firstCount) {
+            merged[k++] = first[i++];
+        }
+        while (j < secondCount) {
+            merged[k++] = second[j++];
+        }
+        return merged;
+    }
+
+    @Override
+    public MergeableNumericCollector merge(MergeableNumericCollector other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (other.min < min) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+        sum += other.sum;
+
+        if (sketch == null && other.sketch != null) {
+            useSketch(other.sketch.getSize());
+        }
+        if (sketch != null) {
+            if (other.sketch != null) {
+                sketch.merge(other.sketch);
+            } else {
+                for (int i = 0; i < other.count; i++) {
+                    sketch.add(other.history[i]);
+                }
+            }
+            count += other.count;
+            return this;
+        }
+
+        history = mergeSorted(history, count, other.history, other.count);
+        count += other.count;
+        return this;
+    }
+
+    /** Replace the exact history with a quantile sketch of given size. */
+    private void useSketch(int sketchSize) {
+        sketch = new QuantileSketch(sketchSize);
+        for (int i = 0; i < count; i++) {
+            sketch.add(history[i]);
+        }
+        history = EMPTY_HISTORY;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return sum / count;
+    }
+
+    /**
+     * Quartiles of the collected values, interpolated with the {@code (n + 1) p} method.
+     * @return 25th, 50th and 75th percentile.
+     */
+    public List<Double> getQuartile() {
+        if (sketch != null) {
+            double[] values = sketch.getQuantiles(0.25, 0.5, 0.75);
+            return Arrays.asList(values[0], values[1], values[2]);
+        }
+        return quartiles(history, count);
+    }
+
+    /** Quartiles of the first values of a sorted array. */
+    static List<Double> quartiles(double[] values, int count) {
+        List<Double> quartiles = new ArrayList<>(3);
+        for (int i = 1; i <= 3; i++) {
+            quartiles.add(percentile(values, count, 0.25 * i));
+        }
+        return quartiles;
+    }
+
+    private static double percentile(double[] values, int count, double p) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double position = p * (count + 1);
+        int intPosition = (int) position;
+        if (intPosition < 1) {
+            return values[0];
+        } else if (intPosition >= count) {
+            return values[count - 1];
+        } else {
+            double base = values[intPosition - 1];
+            return base + (position - intPosition) * (values[intPosition] - base);
+        }
+    }
+
+    /** Whether quartiles are approximated with a sketch. */
+    public boolean hasSketch() {
+        return sketch != null;
+    }
+
+    int getPos() {
+        return pos;
+    }
+
+    QuantileSketch getSketch() {
+        return sketch;
+    }
+
+    @JsonProperty("history")
+    double[] getHistory() {
+        return sketch != null ? null : Arrays.copyOf(history, count);
+    }
+
+    @JsonProperty("history")
+    void setHistory(double[] values) {
+        if (values == null) {
+            return;
+        }
+        history = values.length < INITIAL_CAPACITY
+                ? Arrays.copyOf(values, INITIAL_CAPACITY) : values;
+        count = values.length;
+    }
+
+    @Override
+    public int binarySize() {
+        byte[] nameBytes = getEncodedName();
+        int size = 3 * Integer.BYTES + (nameBytes == null ? 0 : nameBytes.length)
+                + 3 * Double.BYTES + 1;
+        if (sketch != null) {
+            return size + sketch.binarySize();
+        } else {
+            return size + count * Double.BYTES;
+        }
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        byte[] nameBytes = getEncodedName();
+        if (nameBytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(nameBytes.length);
+            buffer.put(nameBytes);
+        }
+        buffer.putInt(pos);
+        buffer.putInt(count);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putDouble(sum);
+        if (sketch != null) {
+            buffer.put(SKETCH);
+            sketch.writeTo(buffer);
+        } else {
+            buffer.put(EXACT);
+            for (int i = 0; i < count; i++) {
+                buffer.putDouble(history[i]);
+            }
+        }
+    }
+
+    /**
+     * Read a collector that was written with {@link #writeTo(ByteBuffer)}. Binary format version
+     * 1 does not contain a quantile sketch.
+     * @param version binary format version
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a full collector.
+     */
+    public static MergeableNumericCollector readFrom(ByteBuffer buffer, int version) {
+        int nameLength = buffer.getInt();
+        byte[] nameBytes = null;
+        String name = null;
+        if (nameLength >= 0) {
+            nameBytes = new byte[nameLength];
+            buffer.get(nameBytes);
+            name = new String(nameBytes, UTF_8);
+        }
+        MergeableNumericCollector collector = new MergeableNumericCollector(
+                name, buffer.getInt(), 0);
+        collector.encodedName = nameBytes;
+        collector.count = buffer.getInt();
+        if (collector.count < 0) {
+            throw new IllegalArgumentException("Invalid collector count " + collector.count);
+        }
+        collector.min = buffer.getDouble();
+        collector.max = buffer.getDouble();
+        collector.sum = buffer.getDouble();
+        if (version > 1 && buffer.get() == SKETCH) {
+            collector.sketch = QuantileSketch.readFrom(buffer);
+            collector.history = EMPTY_HISTORY;
+            return collector;
+        }
+        if (collector.count > collector.history.length) {
+            collector.history = new double[collector.count];
+        }
+        for (int i = 0; i < collector.count; i++) {
+            collector.history[i] = buffer.getDouble();
+        }
+        return collector;
+    }
+
+    private byte[] getEncodedName() {
+        if (encodedName == null && name != null) {
+            encodedName = name.getBytes(UTF_8);
+        }
+        return encodedName;
+    }
+
+    @Override
+    public String toString() {
+        return "MergeableNumericCollector{"
+                + "name='" + name + '\''
+                + ", min=" + min
+                + ", max=" + max
+                + ", sum=" + sum
+                + ", count=" + count
+                + '}';
+    }
+}
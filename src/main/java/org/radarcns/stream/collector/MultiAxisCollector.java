@@ -0,0 +1,423 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.collector;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.radarcns.stream.collector.MergeableNumericCollector.EMPTY_HISTORY;
+import static org.radarcns.stream.collector.MergeableNumericCollector.EXACT;
+import static org.radarcns.stream.collector.MergeableNumericCollector.INITIAL_CAPACITY;
+import static org.radarcns.stream.collector.MergeableNumericCollector.SKETCH;
+import static org.radarcns.util.Serialization.floatToDouble;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.radarcns.util.NumericFieldAccessor;
+import org.radarcns.util.serde.BinaryEncodable;
+
+/**
+ * Collects numeric values of multiple fields of a record, like the axes of an acceleration
+ * record. The statistics of all fields are kept in primitive arrays, and the field positions are
+ * resolved once, so adding a record does not allocate a collector per field. Float values are
+ * converted via their decimal representation, like in {@link MergeableNumericCollector}.
+ *
+ * <p>The collector is mergeable and reads the JSON state of a {@link AggregateListCollector}.
+ * Its binary format is the same as that of a {@link MergeableListCollector}, so streams can
+ * switch between the two without losing state.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MultiAxisCollector
+        implements MergeableCollector<MultiAxisCollector>, BinaryEncodable {
+    private String[] names;
+    private int[] positions;
+    private double[] min;
+    private double[] max;
+    private double[] sum;
+    private int[] counts;
+    /** Sorted values per field. Only the first {@code counts[i]} values are in use. */
+    @JsonIgnore
+    private double[][] history;
+    /** Quartile approximations, or {@code null} if all values are kept in the history. */
+    private QuantileSketch[] sketches;
+    private transient byte[][] encodedNames;
+
+    /** Empty collector, used for deserialization. */
+    public MultiAxisCollector() {
+        this(new String[0], new int[0], 0);
+    }
+
+    /**
+     * Collector of given fields of a record.
+     * @param fieldNames field names in given schema
+     * @param schema record schema that contains the fields.
+     * @throws IllegalArgumentException if the schema does not contain one of the fields or if
+     *                                  it is not numeric.
+     */
+    public MultiAxisCollector(String[] fieldNames, Schema schema) {
+        this(fieldNames, schema, 0);
+    }
+
+    /**
+     * Collector of given fields of a record.
+     * @param fieldNames field names in given schema
+     * @param schema record schema that contains the fields.
+     * @param sketchSize size of the quantile sketch of each field, or 0 to compute exact
+     *                   quartiles.
+     * @throws IllegalArgumentException if the schema does not contain one of the fields or if
+     *                                  it is not numeric.
+     */
+    public MultiAxisCollector(String[] fieldNames, Schema schema, int sketchSize) {
+        this(fieldNames.clone(), fieldPositions(fieldNames, schema), sketchSize);
+    }
+
+    private MultiAxisCollector(String[] names, int[] positions, int sketchSize) {
+        int numFields = names.length;
+        this.names = names;
+        this.positions = positions;
+        this.min = new double[numFields];
+        this.max = new double[numFields];
+        this.sum = new double[numFields];
+        this.counts = new int[numFields];
+        this.history = new double[numFields][];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        if (sketchSize > 0) {
+            sketches = new QuantileSketch[numFields];
+            for (int i = 0; i < numFields; i++) {
+                sketches[i] = new QuantileSketch(sketchSize);
+                history[i] = EMPTY_HISTORY;
+            }
+        } else {
+            for (int i = 0; i < numFields; i++) {
+                history[i] = new double[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    private static int[] fieldPositions(String[] fieldNames, Schema schema) {
+        NumericFieldAccessor[] accessors = NumericFieldAccessor.of(schema, fieldNames);
+        int[] positions = new int[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            positions[i] = accessors[i].getPosition();
+        }
+        return positions;
+    }
+
+    /** Add the configured fields of given record. */
+    public MultiAxisCollector add(IndexedRecord record) {
+        for (int i = 0; i < positions.length; i++) {
+            Object value = record.get(positions[i]);
+            if (value instanceof Float) {
+                add(i, floatToDouble((Float) value));
+            } else if (value != null) {
+                add(i, ((Number) value).doubleValue());
+            }
+        }
+        return this;
+    }
+
+    private void add(int field, double value) {
+        if (value < min[field]) {
+            min[field] = value;
+        }
+        if (value > max[field]) {
+            max[field] = value;
+        }
+        sum[field] += value;
+        if (sketches != null) {
+            sketches[field].add(value);
+        } else {
+            history[field] = MergeableNumericCollector.insertSorted(
+                    history[field], counts[field], value);
+        }
+        counts[field]++;
+    }
+
+    @Override
+    public MultiAxisCollector merge(MultiAxisCollector other) {
+        if (names.length == 0) {
+            MultiAxisCollector empty = new MultiAxisCollector(
+                    other.names, other.positions, 0);
+            names = empty.names;
+            positions = empty.positions;
+            min = empty.min;
+            max = empty.max;
+            sum = empty.sum;
+            counts = empty.counts;
+            history = empty.history;
+            encodedNames = null;
+        } else if (names.length != other.names.length) {
+            throw new IllegalArgumentException("Cannot merge collectors of different fields");
+        }
+        if (sketches == null && other.sketches != null && other.sketches.length > 0) {
+            useSketches(other.sketches[0].getSize());
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (other.counts[i] == 0) {
+                continue;
+            }
+            if (other.min[i] < min[i]) {
+                min[i] = other.min[i];
+            }
+            if (other.max[i] > max[i]) {
+                max[i] = other.max[i];
+            }
+            sum[i] += other.sum[i];
+            if (sketches == null) {
+                history[i] = MergeableNumericCollector.mergeSorted(
+                        history[i], counts[i], other.history[i], other.counts[i]);
+            } else if (other.sketches != null) {
+                sketches[i].merge(other.sketches[i]);
+            } else {
+                for (int j = 0; j < other.counts[i]; j++) {
+                    sketches[i].add(other.history[i][j]);
+                }
+            }
+            counts[i] += other.counts[i];
+        }
+        return this;
+    }
+
+    /** Replace the exact histories with quantile sketches of given size. */
+    private void useSketches(int sketchSize) {
+        sketches = new QuantileSketch[names.length];
+        for (int i = 0; i < names.length; i++) {
+            sketches[i] = new QuantileSketch(sketchSize);
+            for (int j = 0; j < counts[i]; j++) {
+                sketches[i].add(history[i][j]);
+            }
+            history[i] = EMPTY_HISTORY;
+        }
+    }
+
+    /** Number of fields that are collected. */
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    public String getName(int field) {
+        return names[field];
+    }
+
+    public double getMin(int field) {
+        return min[field];
+    }
+
+    public double getMax(int field) {
+        return max[field];
+    }
+
+    public double getSum(int field) {
+        return sum[field];
+    }
+
+    public int getCount(int field) {
+        return counts[field];
+    }
+
+    public double getMean(int field) {
+        return sum[field] / counts[field];
+    }
+
+    /**
+     * Quartiles of the collected values of a field, interpolated with the {@code (n + 1) p}
+     * method.
+     * @return 25th, 50th and 75th percentile.
+     */
+    public List<Double> getQuartile(int field) {
+        if (sketches != null) {
+            double[] values = sketches[field].getQuantiles(0.25, 0.5, 0.75);
+            return Arrays.asList(values[0], values[1], values[2]);
+        }
+        return MergeableNumericCollector.quartiles(history[field], counts[field]);
+    }
+
+    @JsonProperty("history")
+    double[][] getHistory() {
+        if (sketches != null) {
+            return null;
+        }
+        double[][] result = new double[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = Arrays.copyOf(history[i], counts[i]);
+        }
+        return result;
+    }
+
+    @JsonProperty("history")
+    void setHistory(double[][] values) {
+        if (values == null) {
+            return;
+        }
+        history = new double[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            history[i] = Arrays.copyOf(values[i], Math.max(INITIAL_CAPACITY, values[i].length));
+        }
+    }
+
+    /**
+     * Read the JSON state of a {@link AggregateListCollector} or of a list of
+     * {@link MergeableNumericCollector}.
+     */
+    @JsonProperty("collectors")
+    void setCollectors(MergeableNumericCollector[] collectors) {
+        int numFields = collectors.length;
+        names = new String[numFields];
+        positions = new int[numFields];
+        min = new double[numFields];
+        max = new double[numFields];
+        sum = new double[numFields];
+        counts = new int[numFields];
+        history = new double[numFields][];
+        sketches = numFields > 0 && collectors[0].hasSketch()
+                ? new QuantileSketch[numFields] : null;
+        for (int i = 0; i < numFields; i++) {
+            MergeableNumericCollector collector = collectors[i];
+            names[i] = collector.getName();
+            positions[i] = collector.getPos();
+            min[i] = collector.getMin();
+            max[i] = collector.getMax();
+            sum[i] = collector.getSum();
+            counts[i] = collector.getCount();
+            if (sketches != null) {
+                sketches[i] = collector.getSketch();
+                history[i] = EMPTY_HISTORY;
+            } else {
+                history[i] = Arrays.copyOf(collector.getHistory(),
+                        Math.max(INITIAL_CAPACITY, counts[i]));
+            }
+        }
+    }
+
+    @Override
+    public int binarySize() {
+        int size = Integer.BYTES;
+        byte[][] nameBytes = getEncodedNames();
+        for (int i = 0; i < names.length; i++) {
+            size += 3 * Integer.BYTES + (nameBytes[i] == null ? 0 : nameBytes[i].length)
+                    + 3 * Double.BYTES + 1;
+            if (sketches != null) {
+                size += sketches[i].binarySize();
+            } else {
+                size += counts[i] * Double.BYTES;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        byte[][] nameBytes = getEncodedNames();
+        buffer.putInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            if (nameBytes[i] == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(nameBytes[i].length);
+                buffer.put(nameBytes[i]);
+            }
+            buffer.putInt(positions[i]);
+            buffer.putInt(counts[i]);
+            buffer.putDouble(min[i]);
+            buffer.putDouble(max[i]);
+            buffer.putDouble(sum[i]);
+            if (sketches != null) {
+                buffer.put(SKETCH);
+                sketches[i].writeTo(buffer);
+            } else {
+                buffer.put(EXACT);
+                for (int j = 0; j < counts[i]; j++) {
+                    buffer.putDouble(history[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a collector that was written with {@link #writeTo(ByteBuffer)}. Binary format version
+     * 1 does not contain quantile sketches.
+     * @param version binary format version
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a full collector.
+     * @throws IllegalArgumentException if the buffer does not contain a valid collector.
+     */
+    public static MultiAxisCollector readFrom(ByteBuffer buffer, int version) {
+        int numFields = buffer.getInt();
+        if (numFields < 0) {
+            throw new IllegalArgumentException("Invalid number of fields " + numFields);
+        }
+        MultiAxisCollector collector = new MultiAxisCollector(
+                new String[numFields], new int[numFields], 0);
+        collector.encodedNames = new byte[numFields][];
+        for (int i = 0; i < numFields; i++) {
+            int nameLength = buffer.getInt();
+            if (nameLength >= 0) {
+                byte[] nameBytes = new byte[nameLength];
+                buffer.get(nameBytes);
+                collector.encodedNames[i] = nameBytes;
+                collector.names[i] = new String(nameBytes, UTF_8);
+            }
+            collector.positions[i] = buffer.getInt();
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new IllegalArgumentException("Invalid collector count " + count);
+            }
+            collector.counts[i] = count;
+            collector.min[i] = buffer.getDouble();
+            collector.max[i] = buffer.getDouble();
+            collector.sum[i] = buffer.getDouble();
+            if (version > 1 && buffer.get() == SKETCH) {
+                if (collector.sketches == null) {
+                    collector.sketches = new QuantileSketch[numFields];
+                }
+                collector.sketches[i] = QuantileSketch.readFrom(buffer);
+                collector.history[i] = EMPTY_HISTORY;
+            } else {
+                double[] values = new double[Math.max(INITIAL_CAPACITY, count)];
+                for (int j = 0; j < count; j++) {
+                    values[j] = buffer.getDouble();
+                }
+                collector.history[i] = values;
+            }
+        }
+        return collector;
+    }
+
+    private byte[][] getEncodedNames() {
+        if (encodedNames == null) {
+            encodedNames = new byte[names.length][];
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] != null) {
+                    encodedNames[i] = names[i].getBytes(UTF_8);
+                }
+            }
+        }
+        return encodedNames;
+    }
+
+    @Override
+    public String toString() {
+        return "MultiAxisCollector{names=" + Arrays.toString(names)
+                + ", counts=" + Arrays.toString(counts) + '}';
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.collector;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import org.radarcns.util.serde.BinaryEncodable;
+
+/**
+ * Mergeable streaming quantile sketch of bounded size, after the KLL sketch of Karnin, Lang and
+ * Liberty. Values are kept in a hierarchy of compactors, where a value in compactor {@code h}
+ * represents {@code 2^h} added values. When the sketch is full, the lowest full compactor is
+ * sorted and a random half of its values is promoted to the next compactor. The number of retained
+ * values stays below about three times the sketch size, no matter how many values are added.
+ */
+@JsonPropertyOrder({"size", "count", "levels"})
+public class QuantileSketch implements BinaryEncodable {
+    /** Smallest sketch size. */
+    public static final int MIN_SIZE = 8;
+    /** Largest sketch size. */
+    public static final int MAX_SIZE = 1 << 16;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private int size;
+    private long count;
+    @JsonIgnore
+    private double[][] levels;
+    @JsonIgnore
+    private int[] levelSizes;
+    @JsonIgnore
+    private int[] capacities;
+    @JsonIgnore
+    private int retained;
+    @JsonIgnore
+    private int totalCapacity;
+
+    /** Sketch of minimum size, used for deserialization. */
+    QuantileSketch() {
+        this(MIN_SIZE);
+    }
+
+    /**
+     * Sketch of given size. Larger sketches are more accurate.
+     * @param size number of values in the largest compactor.
+     * @throws IllegalArgumentException if the size is not between {@link #MIN_SIZE} and
+     *                                  {@link #MAX_SIZE}.
+     */
+    public QuantileSketch(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Sketch size " + size + " is not between "
+                    + MIN_SIZE + " and " + MAX_SIZE);
+        }
+        this.size = size;
+        this.count = 0;
+        this.levels = new double[][] {new double[size]};
+        this.levelSizes = new int[1];
+        this.retained = 0;
+        updateCapacities();
+    }
+
+    /**
+     * Sketch size that approximately attains given normalized rank error with high probability.
+     * For example, with accuracy 0.01, a returned median is between the 49th and 51st percentile.
+     * @param accuracy normalized rank error, between 0 and 1.
+     * @return sketch size, bounded by {@link #MIN_SIZE} and {@link #MAX_SIZE}.
+     */
+    public static int sizeForAccuracy(double accuracy) {
+        if (accuracy <= 0 || accuracy >= 1) {
+            throw new IllegalArgumentException("Accuracy " + accuracy + " is not between 0 and 1");
+        }
+        // empirical error bound of KLL sketches with a capacity decay of 2/3
+        double size = Math.ceil(Math.pow(2.296 / accuracy, 1.0 / 0.9723));
+        return (int) Math.max(MIN_SIZE, Math.min(MAX_SIZE, size));
+    }
+
+    /** Add a single value. */
+    public QuantileSketch add(double value) {
+        append(0, value);
+        count++;
+        compress();
+        return this;
+    }
+
+    /**
+     * Merge given sketch into this one. The size of this sketch is kept.
+     * @return this sketch
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.levelSizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        compress();
+        return this;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /** Number of values added to the sketch. */
+    public long getCount() {
+        return count;
+    }
+
+    /** Number of values retained by the sketch. */
+    public int getRetained() {
+        return retained;
+    }
+
+    /**
+     * Approximate quantile, interpolated with the {@code (n + 1) p} method.
+     * @param p quantile, between 0 and 1.
+     * @return value at given quantile, or {@code NaN} if no values were added.
+     */
+    public double getQuantile(double p) {
+        return getQuantiles(p)[0];
+    }
+
+    /**
+     * Approximate quantiles, interpolated with the {@code (n + 1) p} method.
+     * @param ps quantiles, between 0 and 1.
+     * @return values at given quantiles, or {@code NaN} if no values were added.
+     */
+    public double[] getQuantiles(double... ps) {
+        double[] result = new double[ps.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+
+        double[] values = new double[retained];
+        long[] ranks = new long[retained];
+        sortedValues(values, ranks);
+
+        for (int i = 0; i < ps.length; i++) {
+            double position = ps[i] * (count + 1);
+            long rank = (long) position;
+            if (rank < 1) {
+                result[i] = values[0];
+            } else if (rank >= count) {
+                result[i] = values[retained - 1];
+            } else {
+                double base = valueAtRank(values, ranks, rank);
+                double next = valueAtRank(values, ranks, rank + 1);
+                result[i] = base + (position - rank) * (next - base);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merge all compactors into sorted values with their cumulative ranks.
+     * @param values retained values, in ascending order
+     * @param ranks highest rank represented by each value.
+     */
+    private void sortedValues(double[] values, long[] ranks) {
+        int[] heads = new int[levels.length];
+        for (int h = 0; h < levels.length; h++) {
+            Arrays.sort(levels[h], 0, levelSizes[h]);
+        }
+        long rank = 0;
+        for (int i = 0; i < retained; i++) {
+            int minLevel = -1;
+            for (int h = 0; h < levels.length; h++) {
+                if (heads[h] < levelSizes[h] && (minLevel == -1
+                        || levels[h][heads[h]] < levels[minLevel][heads[minLevel]])) {
+                    minLevel = h;
+                }
+            }
+            values[i] = levels[minLevel][heads[minLevel]++];
+            rank += 1L << minLevel;
+            ranks[i] = rank;
+        }
+    }
+
+    private static double valueAtRank(double[] values, long[] ranks, long rank) {
+        int index = Arrays.binarySearch(ranks, rank);
+        if (index < 0) {
+            index = Math.min(-index - 1, values.length - 1);
+        }
+        return values[index];
+    }
+
+    private void append(int level, double value) {
+        while (level >= levels.length) {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[levels.length - 1] = new double[MIN_CAPACITY];
+            levelSizes = Arrays.copyOf(levelSizes, levelSizes.length + 1);
+            updateCapacities();
+        }
+        if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][levelSizes[level]++] = value;
+        retained++;
+    }
+
+    /** Compact full compactors until the sketch fits its capacity. */
+    private void compress() {
+        while (retained > totalCapacity) {
+            int level = 0;
+            while (levelSizes[level] < capacities[level]) {
+                level++;
+            }
+            compact(level);
+        }
+    }
+
+    /** Promote a random half of the values of a compactor to the next compactor. */
+    private void compact(int level) {
+        double[] values = levels[level];
+        int numValues = levelSizes[level];
+        Arrays.sort(values, 0, numValues);
+        // keep the smallest value if the number of values is odd
+        int kept = numValues % 2;
+        int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        levelSizes[level] = kept;
+        retained -= numValues - kept;
+        for (int i = kept + offset; i < numValues; i += 2) {
+            append(level + 1, values[i]);
+        }
+    }
+
+    private void updateCapacities() {
+        int numLevels = levels.length;
+        capacities = new int[numLevels];
+        totalCapacity = 0;
+        for (int h = 0; h < numLevels; h++) {
+            capacities[h] = Math.max(MIN_CAPACITY,
+                    (int) Math.ceil(size * Math.pow(CAPACITY_DECAY, numLevels - 1 - h)));
+            totalCapacity += capacities[h];
+        }
+    }
+
+    @JsonProperty("levels")
+    double[][] getLevels() {
+        double[][] result = new double[levels.length][];
+        for (int h = 0; h < levels.length; h++) {
+            result[h] = Arrays.copyOf(levels[h], levelSizes[h]);
+        }
+        return result;
+    }
+
+    @JsonProperty("levels")
+    void setLevels(double[][] values) {
+        levels = new double[Math.max(1, values.length)][];
+        levelSizes = new int[levels.length];
+        levels[0] = new double[MIN_CAPACITY];
+        retained = 0;
+        for (int h = 0; h < values.length; h++) {
+            levels[h] = Arrays.copyOf(values[h], Math.max(MIN_CAPACITY, values[h].length));
+            levelSizes[h] = values[h].length;
+            retained += values[h].length;
+        }
+        updateCapacities();
+    }
+
+    @Override
+    public int binarySize() {
+        return 2 * Integer.BYTES + Long.BYTES + levels.length * Integer.BYTES
+                + retained * Double.BYTES;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.putLong(count);
+        buffer.putInt(levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            buffer.putInt(levelSizes[h]);
+            for (int i = 0; i < levelSizes[h]; i++) {
+                buffer.putDouble(levels[h][i]);
+            }
+        }
+    }
+
+    /**
+     * Read a sketch that was written with {@link #writeTo(ByteBuffer)}.
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a full sketch.
+     * @throws IllegalArgumentException if the buffer does not contain a valid sketch.
+     */
+    public static QuantileSketch readFrom(ByteBuffer buffer) {
+        QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+        sketch.count = buffer.getLong();
+        int numLevels = buffer.getInt();
+        if (numLevels < 1 || numLevels > Long.SIZE) {
+            throw new IllegalArgumentException("Invalid number of sketch levels " + numLevels);
+        }
+        double[][] values = new double[numLevels][];
+        for (int h = 0; h < numLevels; h++) {
+            int levelSize = buffer.getInt();
+            if (levelSize < 0 || levelSize * Double.BYTES > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid sketch level size " + levelSize);
+            }
+            values[h] = new double[levelSize];
+            for (int i = 0; i < levelSize; i++) {
+                values[h][i] = buffer.getDouble();
+            }
+        }
+        sketch.setLevels(values);
+        return sketch;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{size=" + size + ", count=" + count + ", retained=" + retained + '}';
+    }
+}
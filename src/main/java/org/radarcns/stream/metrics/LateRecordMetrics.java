@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.metrics;
+
+import static org.radarcns.metrics.PrometheusWriter.labels;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
+
+/**
+ * Counts windowed input records by their lateness relative to the watermark of their time
+ * windows. Records are on time if they are not older than the watermark, late if one of their
+ * windows still accepts them, and too late otherwise. The counts are kept per state store, since
+ * each time window has its own grace period.
+ */
+public final class LateRecordMetrics implements MetricsSource {
+    private static final LateRecordMetrics INSTANCE = new LateRecordMetrics();
+
+    private final Map<String, Counts> counts;
+
+    private LateRecordMetrics() {
+        counts = new ConcurrentHashMap<>();
+    }
+
+    public static LateRecordMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Counts of given state store, shared by all stream tasks of that store.
+     * @param storeName windowed aggregation state store name
+     */
+    @Nonnull
+    public Counts counts(@Nonnull String storeName) {
+        return counts.computeIfAbsent(storeName, n -> new Counts());
+    }
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        counts.forEach((store, c) -> {
+            write(writer, store, "on_time", c.onTime);
+            write(writer, store, "late", c.late);
+            write(writer, store, "too_late", c.tooLate);
+        });
+    }
+
+    private static void write(PrometheusWriter writer, String store, String lateness,
+            LongAdder count) {
+        writer.counter("radar_late_records_total",
+                "Windowed input records by lateness relative to the watermark.",
+                labels("store", store, "lateness", lateness), count.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "LateRecordMetrics";
+    }
+
+    /** Record counts of a single state store. */
+    public static final class Counts {
+        private final LongAdder onTime = new LongAdder();
+        private final LongAdder late = new LongAdder();
+        private final LongAdder tooLate = new LongAdder();
+
+        /** Record a record that is not older than the watermark. */
+        public void onTime() {
+            onTime.increment();
+        }
+
+        /** Record a record that is older than the watermark but still accepted by a window. */
+        public void late() {
+            late.increment();
+        }
+
+        /** Record a record of which all windows have closed. */
+        public void tooLate() {
+            tooLate.increment();
+        }
+
+        public long getOnTime() {
+            return onTime.sum();
+        }
+
+        public long getLate() {
+            return late.sum();
+        }
+
+        public long getTooLate() {
+            return tooLate.sum();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Records the number and size of the records that are polled from registered input topics.
+ * Metrics are updated once per polled partition, not once per record.
+ */
+public class MetricsConsumerInterceptor implements ConsumerInterceptor<Object, Object> {
+    private StreamMetrics metrics;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        metrics = StreamMetrics.forClient(configs);
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> onConsume(ConsumerRecords<Object, Object> records) {
+        if (metrics == null) {
+            return records;
+        }
+        for (TopicPartition partition : records.partitions()) {
+            TopicMetrics topicMetrics = metrics.findInput(partition.topic());
+            if (topicMetrics == null) {
+                continue;
+            }
+            List<ConsumerRecord<Object, Object>> partitionRecords = records.records(partition);
+            long size = 0L;
+            for (ConsumerRecord<Object, Object> record : partitionRecords) {
+                size += Math.max(record.serializedKeySize(), 0)
+                        + Math.max(record.serializedValueSize(), 0);
+            }
+            topicMetrics.record(partitionRecords.size(), size);
+        }
+        return records;
+    }
+
+    @Override
+    public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        // nothing to record
+    }
+
+    @Override
+    public void close() {
+        // metrics are kept in the registry
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.apache.kafka.streams.processor.ProcessorContext;
+
+/**
+ * Logs and skips records that cannot be deserialized, and counts them as errors of their input
+ * topic.
+ */
+public class MetricsDeserializationExceptionHandler extends LogAndContinueExceptionHandler {
+    private StreamMetrics metrics;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        super.configure(configs);
+        metrics = StreamMetrics.forClient(configs);
+    }
+
+    @Override
+    public DeserializationHandlerResponse handle(ProcessorContext context,
+            ConsumerRecord<byte[], byte[]> record, Exception exception) {
+        if (metrics != null) {
+            TopicMetrics topicMetrics = metrics.findInput(record.topic());
+            if (topicMetrics != null) {
+                topicMetrics.error();
+            }
+        }
+        return super.handle(context, record, exception);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import java.util.Map;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/**
+ * Records the number and size of the records that are written to registered output topics, and
+ * the number of records that failed to be written.
+ */
+public class MetricsProducerInterceptor implements ProducerInterceptor<Object, Object> {
+    private StreamMetrics metrics;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        metrics = StreamMetrics.forClient(configs);
+    }
+
+    @Override
+    public ProducerRecord<Object, Object> onSend(ProducerRecord<Object, Object> record) {
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+        if (metrics == null || metadata == null) {
+            return;
+        }
+        TopicMetrics topicMetrics = metrics.findOutput(metadata.topic());
+        if (topicMetrics == null) {
+            return;
+        }
+        if (exception != null) {
+            topicMetrics.error();
+        } else {
+            topicMetrics.record(1L, Math.max(metadata.serializedKeySize(), 0)
+                    + Math.max(metadata.serializedValueSize(), 0));
+        }
+    }
+
+    @Override
+    public void close() {
+        // metrics are kept in the registry
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import static org.radarcns.metrics.PrometheusWriter.labels;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the restoration of state stores from their changelog topics. It logs when the
+ * restoration of a changelog partition starts and ends, and exports the restored records,
+ * restoration rate and estimated remaining time of each partition as metrics. The same tracker is
+ * used by all Kafka Streams instances, since changelog topic names are unique per application.
+ */
+public final class StateRestoreTracker implements StateRestoreListener, MetricsSource {
+    private static final Logger logger = LoggerFactory.getLogger(StateRestoreTracker.class);
+    private static final StateRestoreTracker INSTANCE = new StateRestoreTracker();
+
+    private final Map<TopicPartition, Progress> progress;
+
+    private StateRestoreTracker() {
+        progress = new ConcurrentHashMap<>();
+    }
+
+    public static StateRestoreTracker getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void onRestoreStart(TopicPartition topicPartition, String storeName,
+            long startingOffset, long endingOffset) {
+        logger.info("Restoring {} records of store {} from {}",
+                endingOffset - startingOffset, storeName, topicPartition);
+        progress.put(topicPartition, new Progress(storeName, startingOffset, endingOffset,
+                System.currentTimeMillis()));
+    }
+
+    @Override
+    public void onBatchRestored(TopicPartition topicPartition, String storeName,
+            long batchEndOffset, long numRestored) {
+        Progress partitionProgress = progress.get(topicPartition);
+        if (partitionProgress != null) {
+            partitionProgress.restored(batchEndOffset, numRestored);
+        }
+    }
+
+    @Override
+    public void onRestoreEnd(TopicPartition topicPartition, String storeName,
+            long totalRestored) {
+        Progress partitionProgress = progress.get(topicPartition);
+        if (partitionProgress == null) {
+            return;
+        }
+        partitionProgress.finish(System.currentTimeMillis());
+        logger.info("Restored {} records of store {} from {} in {} seconds ({} records/s)",
+                totalRestored, storeName, topicPartition,
+                partitionProgress.getDurationMs(System.currentTimeMillis()) / 1000L,
+                (long) partitionProgress.getRate(System.currentTimeMillis()));
+    }
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        long now = System.currentTimeMillis();
+        progress.forEach((partition, p) -> {
+            Map<String, String> partitionLabels = labels("store", p.storeName,
+                    "topic", partition.topic(),
+                    "partition", String.valueOf(partition.partition()));
+            writer.counter("radar_state_restore_records_total",
+                    "Records restored from the changelog.", partitionLabels, p.restored);
+            writer.gauge("radar_state_restore_remaining_records",
+                    "Approximate number of records that still need to be restored.",
+                    partitionLabels, p.getRemaining());
+            writer.gauge("radar_state_restore_rate",
+                    "Records restored per second.", partitionLabels, p.getRate(now));
+            writer.gauge("radar_state_restore_eta_seconds",
+                    "Estimated time until the restoration is done.", partitionLabels,
+                    p.getEtaSeconds(now));
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "StateRestoreTracker";
+    }
+
+    /**
+     * Restoration progress of a single changelog partition. It is updated by a single stream
+     * thread and read by the metrics thread.
+     */
+    private static final class Progress {
+        private final String storeName;
+        private final long endingOffset;
+        private final long startTime;
+        private volatile long offset;
+        private volatile long restored;
+        private volatile long endTime;
+
+        private Progress(String storeName, long startingOffset, long endingOffset,
+                long startTime) {
+            this.storeName = storeName;
+            this.endingOffset = endingOffset;
+            this.startTime = startTime;
+            this.offset = startingOffset;
+            this.restored = 0L;
+            this.endTime = -1L;
+        }
+
+        private void restored(long batchEndOffset, long numRestored) {
+            offset = batchEndOffset;
+            restored += numRestored;
+        }
+
+        private void finish(long time) {
+            offset = endingOffset;
+            endTime = time;
+        }
+
+        private long getRemaining() {
+            return Math.max(endingOffset - offset, 0L);
+        }
+
+        private long getDurationMs(long now) {
+            long end = endTime;
+            return (end >= 0L ? end : now) - startTime;
+        }
+
+        private double getRate(long now) {
+            long duration = getDurationMs(now);
+            return duration > 0L ? restored * 1000.0 / duration : 0.0;
+        }
+
+        private double getEtaSeconds(long now) {
+            long remaining = getRemaining();
+            if (remaining == 0L) {
+                return 0.0;
+            }
+            double rate = getRate(now);
+            return rate > 0.0 ? remaining / rate : Double.POSITIVE_INFINITY;
+        }
+    }
+}
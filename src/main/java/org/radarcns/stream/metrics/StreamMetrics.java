@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.streams.StreamsConfig;
+
+/**
+ * Registry of the input and output metrics of Kafka Streams applications. Metrics are recorded
+ * by the consumer and producer interceptors and the deserialization exception handler that
+ * {@link #addStreamProperties(Map, String)} configures, so counting records does not add a node
+ * to the stream topology. Only topics that are registered with {@link #input(String)} or
+ * {@link #output(String)} are counted, so changelog and repartition topics are ignored.
+ */
+public final class StreamMetrics {
+    /** Client property with the name of the application that the client records metrics for. */
+    public static final String APPLICATION_CONFIG = "radar.metrics.application";
+
+    private static final Map<String, StreamMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String application;
+    private final Map<String, TopicMetrics> input;
+    private final Map<String, TopicMetrics> output;
+
+    private StreamMetrics(String application) {
+        this.application = application;
+        this.input = new ConcurrentHashMap<>();
+        this.output = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the metrics of given application, creating them if needed.
+     * @param application Kafka Streams application ID
+     * @return application metrics
+     */
+    public static StreamMetrics get(@Nonnull String application) {
+        return REGISTRY.computeIfAbsent(application, StreamMetrics::new);
+    }
+
+    /** Metrics of all applications, by application ID. */
+    public static Map<String, StreamMetrics> getAll() {
+        return Collections.unmodifiableMap(REGISTRY);
+    }
+
+    /**
+     * Configure a Kafka Streams application to record its metrics in this registry.
+     * @param props stream properties to update
+     * @param application Kafka Streams application ID
+     */
+    public static void addStreamProperties(@Nonnull Map<Object, Object> props,
+            @Nonnull String application) {
+        props.put(APPLICATION_CONFIG, application);
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG),
+                MetricsConsumerInterceptor.class.getName());
+        props.put(StreamsConfig.consumerPrefix(APPLICATION_CONFIG), application);
+        props.put(StreamsConfig.producerPrefix(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG),
+                MetricsProducerInterceptor.class.getName());
+        props.put(StreamsConfig.producerPrefix(APPLICATION_CONFIG), application);
+        props.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                MetricsDeserializationExceptionHandler.class.getName());
+    }
+
+    public String getApplication() {
+        return application;
+    }
+
+    /** Register an input topic, and get its metrics. */
+    public TopicMetrics input(@Nonnull String topic) {
+        return input.computeIfAbsent(topic, TopicMetrics::new);
+    }
+
+    /** Register an output topic, and get its metrics. */
+    public TopicMetrics output(@Nonnull String topic) {
+        return output.computeIfAbsent(topic, TopicMetrics::new);
+    }
+
+    /** Metrics of an input topic, or {@code null} if it was not registered. */
+    @Nullable
+    public TopicMetrics findInput(String topic) {
+        return input.get(topic);
+    }
+
+    /** Metrics of an output topic, or {@code null} if it was not registered. */
+    @Nullable
+    public TopicMetrics findOutput(String topic) {
+        return output.get(topic);
+    }
+
+    /** Metrics of all input topics, by topic name. */
+    public Map<String, TopicMetrics> getInputs() {
+        return Collections.unmodifiableMap(input);
+    }
+
+    /** Metrics of all output topics, by topic name. */
+    public Map<String, TopicMetrics> getOutputs() {
+        return Collections.unmodifiableMap(output);
+    }
+
+    /**
+     * Metrics of the application that a stream or client is configured for.
+     * @param configs stream or client configuration
+     * @return metrics or {@code null} if it is not configured to record metrics.
+     */
+    @Nullable
+    public static StreamMetrics forClient(Map<?, ?> configs) {
+        Object application = configs.get(APPLICATION_CONFIG);
+        return application != null ? get(application.toString()) : null;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import org.radarcns.stream.StreamDefinition;
+import org.radarcns.topic.KafkaTopic;
+import org.slf4j.Logger;
+
+/**
+ * Logs the records that stream definitions have read and written since the previous run.
+ */
+public class StreamMetricsReporter implements Runnable {
+    private final Logger log;
+    private final List<Counter> counters;
+
+    /**
+     * Reporter of the metrics of given stream definitions. Their input and output topics are
+     * registered in given metrics.
+     * @param log logger to report to
+     * @param metrics metrics of the application that runs the definitions
+     * @param definitions stream definitions
+     */
+    public StreamMetricsReporter(@Nonnull Logger log, @Nonnull StreamMetrics metrics,
+            @Nonnull List<StreamDefinition> definitions) {
+        this.log = Objects.requireNonNull(log);
+        this.counters = new ArrayList<>(definitions.size());
+        for (StreamDefinition definition : definitions) {
+            KafkaTopic output = definition.getOutputTopic();
+            counters.add(new Counter(
+                    metrics.input(definition.getInputTopic().getName()),
+                    output != null ? metrics.output(output.getName()) : null));
+        }
+    }
+
+    @Override
+    public void run() {
+        for (Counter counter : counters) {
+            counter.report();
+        }
+    }
+
+    /** Keeps the previous totals of a definition, to report the difference. */
+    private final class Counter {
+        private final TopicMetrics input;
+        private final TopicMetrics output;
+        private long records;
+        private long bytes;
+        private long errors;
+        private long outputRecords;
+        private long outputErrors;
+
+        private Counter(TopicMetrics input, TopicMetrics output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        private void report() {
+            long newRecords = input.getRecords();
+            long newBytes = input.getBytes();
+            long newErrors = input.getErrors();
+            if (output == null) {
+                log.info("{} records ({} bytes, {} errors) have been read from {}",
+                        newRecords - records, newBytes - bytes, newErrors - errors,
+                        input.getTopic());
+            } else {
+                long newOutputRecords = output.getRecords();
+                long newOutputErrors = output.getErrors();
+                log.info("{} records ({} bytes, {} errors) have been read from {},"
+                                + " {} records ({} errors) have been written to {}",
+                        newRecords - records, newBytes - bytes, newErrors - errors,
+                        input.getTopic(), newOutputRecords - outputRecords,
+                        newOutputErrors - outputErrors, output.getTopic());
+                outputRecords = newOutputRecords;
+                outputErrors = newOutputErrors;
+            }
+            records = newRecords;
+            bytes = newBytes;
+            errors = newErrors;
+        }
+    }
+}
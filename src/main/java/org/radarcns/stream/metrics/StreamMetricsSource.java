@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import static org.radarcns.metrics.PrometheusWriter.labels;
+
+import java.util.Map;
+import org.radarcns.metrics.MetricsSource;
+import org.radarcns.metrics.PrometheusWriter;
+
+/**
+ * Exports the record counts of all applications in the {@link StreamMetrics} registry.
+ */
+public class StreamMetricsSource implements MetricsSource {
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        for (StreamMetrics metrics : StreamMetrics.getAll().values()) {
+            write(writer, metrics.getApplication(), "input", metrics.getInputs());
+            write(writer, metrics.getApplication(), "output", metrics.getOutputs());
+        }
+    }
+
+    private static void write(PrometheusWriter writer, String application, String direction,
+            Map<String, TopicMetrics> topics) {
+        for (TopicMetrics topic : topics.values()) {
+            Map<String, String> topicLabels = labels("application", application,
+                    "direction", direction, "topic", topic.getTopic());
+            writer.counter("radar_records_total", "Records read or written.", topicLabels,
+                    topic.getRecords());
+            writer.counter("radar_record_bytes_total", "Serialized size of the records.",
+                    topicLabels, topic.getBytes());
+            writer.counter("radar_record_errors_total",
+                    "Records that could not be read or written.", topicLabels,
+                    topic.getErrors());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StreamMetricsSource";
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the records of a single topic. Counters are striped, so stream threads and
+ * producer threads can update them concurrently without contending on a single value.
+ */
+public class TopicMetrics {
+    private final String topic;
+    private final LongAdder records;
+    private final LongAdder bytes;
+    private final LongAdder errors;
+
+    /**
+     * Metrics of a topic.
+     * @param topic topic name
+     */
+    public TopicMetrics(String topic) {
+        this.topic = topic;
+        this.records = new LongAdder();
+        this.bytes = new LongAdder();
+        this.errors = new LongAdder();
+    }
+
+    /**
+     * Record a batch of records.
+     * @param count number of records
+     * @param size serialized size of the records in bytes
+     */
+    public void record(long count, long size) {
+        records.add(count);
+        bytes.add(size);
+    }
+
+    /** Record a record that could not be processed. */
+    public void error() {
+        errors.increment();
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /** Total number of records since the start of the application. */
+    public long getRecords() {
+        return records.sum();
+    }
+
+    /** Total serialized size in bytes of the records since the start of the application. */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /** Total number of errors since the start of the application. */
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -36,7 +36,8 @@ public class PhoneUsageAggregationStream extends
                         PhoneUsageCollector::new,
                         (k, v, valueCollector) -> valueCollector.update(v),
                         RadarSerdes.materialized(definition.getStateStoreName(),
-                                RadarSerdes.getInstance().getPhoneUsageCollector()))
+                                RadarSerdes.getInstance().getPhoneUsageCollector(
+                                        config.getStateFormat())))
                 .toStream()
                 .map(utilities::phoneCollectorToAvro);
     }
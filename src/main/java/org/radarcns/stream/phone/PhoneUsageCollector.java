@@ -1,14 +1,19 @@
 package org.radarcns.stream.phone;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
+import java.nio.ByteBuffer;
 import org.radarcns.passive.phone.PhoneUsageEvent;
 import org.radarcns.passive.phone.UsageEventType;
+import org.radarcns.util.serde.BinaryEncodable;
 
 /**
  * Created by piotrzakrzewski on 27/07/2017.
  */
-public class PhoneUsageCollector {
+public class PhoneUsageCollector implements BinaryEncodable {
     private BigDecimal totalForegroundTime; // total time in seconds
     private double lastForegroundEvent; // date in Unix time in seconds
     private int timesTurnedOn;
@@ -84,4 +89,65 @@ public class PhoneUsageCollector {
     public void setCategoryNameFetchTime(Double categoryNameFetchTime) {
         this.categoryNameFetchTime = categoryNameFetchTime;
     }
+
+    @Override
+    public int binarySize() {
+        int size = 3 * Integer.BYTES + totalForegroundTime.unscaledValue().bitLength() / 8 + 1
+                + Double.BYTES + Integer.BYTES + 1;
+        if (categoryName != null) {
+            size += categoryName.getBytes(UTF_8).length;
+        }
+        if (categoryNameFetchTime != null) {
+            size += Double.BYTES;
+        }
+        return size;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        byte[] unscaled = totalForegroundTime.unscaledValue().toByteArray();
+        buffer.putInt(totalForegroundTime.scale());
+        buffer.putInt(unscaled.length);
+        buffer.put(unscaled);
+        buffer.putDouble(lastForegroundEvent);
+        buffer.putInt(timesTurnedOn);
+        if (categoryName == null) {
+            buffer.putInt(-1);
+        } else {
+            byte[] nameBytes = categoryName.getBytes(UTF_8);
+            buffer.putInt(nameBytes.length);
+            buffer.put(nameBytes);
+        }
+        if (categoryNameFetchTime == null) {
+            buffer.put((byte) 0);
+        } else {
+            buffer.put((byte) 1);
+            buffer.putDouble(categoryNameFetchTime);
+        }
+    }
+
+    /**
+     * Read a collector that was written with {@link #writeTo(ByteBuffer)}. The format has not
+     * changed between binary format versions.
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a full collector.
+     */
+    public static PhoneUsageCollector readFrom(ByteBuffer buffer, int version) {
+        PhoneUsageCollector collector = new PhoneUsageCollector();
+        int scale = buffer.getInt();
+        byte[] unscaled = new byte[buffer.getInt()];
+        buffer.get(unscaled);
+        collector.totalForegroundTime = new BigDecimal(new BigInteger(unscaled), scale);
+        collector.lastForegroundEvent = buffer.getDouble();
+        collector.timesTurnedOn = buffer.getInt();
+        int nameLength = buffer.getInt();
+        if (nameLength >= 0) {
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(nameBytes);
+            collector.categoryName = new String(nameBytes, UTF_8);
+        }
+        if (buffer.get() != 0) {
+            collector.categoryNameFetchTime = buffer.getDouble();
+        }
+        return collector;
+    }
 }
@@ -33,6 +33,7 @@ import org.radarcns.kafka.ObservationKey;
 import org.radarcns.stream.AbstractStreamWorker;
 import org.radarcns.stream.SourceStatistics;
 import org.radarcns.stream.StreamDefinition;
+import org.radarcns.util.NumericFieldAccessor;
 import org.radarcns.util.serde.RadarSerde;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +48,11 @@ public class SourceStatisticsStream extends AbstractStreamWorker {
         return Collections.singletonList(new KafkaStreams(getTopology(), getStreamsConfig()));
     }
 
+    @Override
+    protected KafkaStreams recreateStream(int index) {
+        return new KafkaStreams(getTopology(), getStreamsConfig());
+    }
+
     @Override
     protected void doCleanup() {
         // do nothing
@@ -107,6 +113,8 @@ public class SourceStatisticsStream extends AbstractStreamWorker {
         Properties settings = kafkaProperty.getStreamProperties(name, config);
         settings.remove(DEFAULT_KEY_SERDE_CLASS_CONFIG);
         settings.remove(DEFAULT_VALUE_SERDE_CLASS_CONFIG);
+        addThreadProperties(settings);
+        allConfig.getStream().addTransactionProperties(settings);
         return settings;
     }
 
@@ -115,6 +123,8 @@ public class SourceStatisticsStream extends AbstractStreamWorker {
         private ProcessorContext context;
         private Cancellable punctuateCancellor;
         private Duration localInterval = Duration.ZERO;
+        private TimeFields keyTimes;
+        private TimeFields valueTimes;
 
         @SuppressWarnings("unchecked")
         @Override
@@ -164,11 +174,12 @@ public class SourceStatisticsStream extends AbstractStreamWorker {
             }
             Schema keySchema = genericKey.getSchema();
 
-            Schema valueSchema = value.getSchema();
-            double time = getTime(value, valueSchema, "time", Double.NaN);
-            time = getTime(value, valueSchema, "timeReceived", time);
-            double timeStart = getTime(genericKey, keySchema, "timeStart", time);
-            double timeEnd = getTime(genericKey, keySchema, "timeEnd", time);
+            valueTimes = TimeFields.of(valueTimes, value.getSchema(), "time", "timeReceived");
+            keyTimes = TimeFields.of(keyTimes, keySchema, "timeStart", "timeEnd");
+            double time = getTime(value, valueTimes.first, Double.NaN);
+            time = getTime(value, valueTimes.second, time);
+            double timeStart = getTime(genericKey, keyTimes.first, time);
+            double timeEnd = getTime(genericKey, keyTimes.second, time);
 
             if (Double.isNaN(timeStart) || Double.isNaN(timeEnd)) {
                 logger.error("Record did not contain time values: <{}, {}>", genericKey, value);
@@ -235,13 +246,35 @@ public class SourceStatisticsStream extends AbstractStreamWorker {
         }
     }
 
-    private static double getTime(GenericRecord record, Schema schema, String fieldName,
+    private static double getTime(GenericRecord record, NumericFieldAccessor accessor,
             double defaultValue) {
-        Schema.Field field = schema.getField(fieldName);
-        if (field != null) {
-            return ((Number) record.get(field.pos())).doubleValue();
+        if (accessor != null) {
+            return accessor.get(record);
         } else {
             return defaultValue;
         }
     }
+
+    /** Accessors of two optional time fields, resolved once per schema. */
+    private static final class TimeFields {
+        private final Schema schema;
+        private final NumericFieldAccessor first;
+        private final NumericFieldAccessor second;
+
+        private TimeFields(Schema schema, String first, String second) {
+            this.schema = schema;
+            this.first = NumericFieldAccessor.find(schema, first);
+            this.second = NumericFieldAccessor.find(schema, second);
+        }
+
+        /** Time fields of given schema, reusing the previous fields if the schema is the same. */
+        private static TimeFields of(TimeFields previous, Schema schema, String first,
+                String second) {
+            if (previous != null && previous.schema == schema) {
+                return previous;
+            } else {
+                return new TimeFields(schema, first, second);
+            }
+        }
+    }
 }
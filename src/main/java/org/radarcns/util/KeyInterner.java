@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nonnull;
+import org.radarcns.kafka.AggregateKey;
+import org.radarcns.kafka.ObservationKey;
+
+/**
+ * Shares key objects between records. There are only a few thousand distinct observation keys,
+ * so all records of a key can refer to a single {@link ObservationKey} instance and its
+ * project, user and source ID strings, instead of each keeping its own copy. Output keys are
+ * reused as well: a window is typically updated many times, and each update gets the same
+ * {@link AggregateKey} instance.
+ *
+ * <p>The interner is bounded. When it holds more than its maximum number of keys, it is
+ * cleared, so unexpected key growth costs allocations but not memory. Interned keys must not be
+ * modified.
+ */
+public final class KeyInterner {
+    /** Default maximum number of distinct observation keys. */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+    /** Number of recent windows that are kept per key, enough for all RADAR time windows. */
+    static final int WINDOWS_PER_KEY = 8;
+
+    private static final KeyInterner INSTANCE = new KeyInterner(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+    private final Map<ObservationKey, Entry> entries;
+
+    /**
+     * Interner of at most given number of observation keys.
+     * @param maxSize maximum number of distinct observation keys
+     */
+    public KeyInterner(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /** Interner shared by all streams and monitors. */
+    public static KeyInterner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Shared instance of given key.
+     * @param key key to intern. It must not be modified after this call.
+     * @return an equal key, possibly the same instance.
+     */
+    @Nonnull
+    public ObservationKey intern(@Nonnull ObservationKey key) {
+        return entry(key).key;
+    }
+
+    /**
+     * Output key of given time window. If the same window of the same key was requested
+     * recently, the earlier instance is returned.
+     * @param key observation key
+     * @param timeStart window start time in seconds
+     * @param timeEnd window end time in seconds
+     * @return aggregate key, which must not be modified.
+     */
+    @Nonnull
+    public AggregateKey aggregateKey(@Nonnull ObservationKey key, double timeStart,
+            double timeEnd) {
+        return entry(key).aggregateKey(timeStart, timeEnd);
+    }
+
+    /** Number of interned observation keys. */
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry entry(ObservationKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxSize) {
+                entries.clear();
+            }
+            entry = entries.computeIfAbsent(key, Entry::new);
+        }
+        return entry;
+    }
+
+    /** Shared key and its recent output keys. */
+    private static final class Entry {
+        private final ObservationKey key;
+        private final AtomicReferenceArray<AggregateKey> windows;
+        private final AtomicInteger next;
+
+        private Entry(ObservationKey key) {
+            this.key = key;
+            this.windows = new AtomicReferenceArray<>(WINDOWS_PER_KEY);
+            this.next = new AtomicInteger();
+        }
+
+        private AggregateKey aggregateKey(double timeStart, double timeEnd) {
+            for (int i = 0; i < WINDOWS_PER_KEY; i++) {
+                AggregateKey window = windows.get(i);
+                if (window != null && window.getTimeStart() == timeStart
+                        && window.getTimeEnd() == timeEnd) {
+                    return window;
+                }
+            }
+            AggregateKey window = new AggregateKey(key.getProjectId(), key.getUserId(),
+                    key.getSourceId(), timeStart, timeEnd);
+            // replace the least recently added window
+            windows.set(Math.floorMod(next.getAndIncrement(), WINDOWS_PER_KEY), window);
+            return window;
+        }
+    }
+}
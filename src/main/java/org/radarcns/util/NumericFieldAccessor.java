@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util;
+
+import static org.radarcns.util.Serialization.floatToDouble;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Reads a numeric field of Avro records by its position. The position and the conversion of the
+ * field type to double are resolved once per schema and field, so reading a value does not look
+ * up the field by name. Accessors are cached by schema, since schemas of deserialized records
+ * are shared by the schema registry client and by generated record classes. Callers that read
+ * many records should still keep the accessor of the last schema they saw.
+ *
+ * <p>Fields of type int, long, float or double are supported, optionally in a union with null.
+ * Float values are converted via their decimal representation, like the numeric aggregates do.
+ */
+public final class NumericFieldAccessor {
+    /** Accessors by schema and field name. */
+    private static final Map<Schema, Map<String, NumericFieldAccessor>> CACHE =
+            new ConcurrentHashMap<>();
+    /** Cached accessor of a field that does not exist. */
+    private static final NumericFieldAccessor MISSING =
+            new NumericFieldAccessor(null, null, -1, null);
+    /** Clear the cache if this many schemas were seen, in case schemas are not shared. */
+    private static final int MAX_CACHED_SCHEMAS = 1000;
+
+    private final Schema schema;
+    private final String name;
+    private final int pos;
+    private final ToDoubleFunction<Object> conversion;
+
+    private NumericFieldAccessor(Schema schema, String name, int pos,
+            ToDoubleFunction<Object> conversion) {
+        this.schema = schema;
+        this.name = name;
+        this.pos = pos;
+        this.conversion = conversion;
+    }
+
+    /**
+     * Accessor of a numeric field of records with given schema.
+     * @param schema record schema
+     * @param name field name
+     * @return accessor, possibly shared with earlier calls
+     * @throws IllegalArgumentException if the schema is not a record schema or if it does not
+     *                                  contain a numeric field with given name
+     */
+    @Nonnull
+    public static NumericFieldAccessor of(@Nonnull Schema schema, @Nonnull String name) {
+        NumericFieldAccessor accessor = find(schema, name);
+        if (accessor == null) {
+            throw new IllegalArgumentException(
+                    "Field " + name + " does not exist in schema " + schema.getFullName());
+        }
+        return accessor;
+    }
+
+    /**
+     * Accessor of a numeric field of records with given schema, if the schema has that field.
+     * Missing fields are cached as well, so optional fields can be looked up for each record.
+     * @param schema record schema
+     * @param name field name
+     * @return accessor, or {@code null} if the schema does not contain given field
+     * @throws IllegalArgumentException if the schema is not a record schema or if the field is
+     *                                  not numeric
+     */
+    @Nullable
+    public static NumericFieldAccessor find(@Nonnull Schema schema, @Nonnull String name) {
+        Map<String, NumericFieldAccessor> schemaAccessors = CACHE.get(schema);
+        if (schemaAccessors == null) {
+            if (CACHE.size() >= MAX_CACHED_SCHEMAS) {
+                CACHE.clear();
+            }
+            schemaAccessors = CACHE.computeIfAbsent(schema, s -> new ConcurrentHashMap<>());
+        }
+        NumericFieldAccessor accessor = schemaAccessors.get(name);
+        if (accessor == null) {
+            accessor = schemaAccessors.computeIfAbsent(name, n -> {
+                NumericFieldAccessor compiled = compile(schema, n);
+                return compiled != null ? compiled : MISSING;
+            });
+        }
+        return accessor != MISSING ? accessor : null;
+    }
+
+    /**
+     * Accessors of numeric fields of records with given schema.
+     * @throws IllegalArgumentException if any of the fields is not a numeric field of the schema
+     * @see #of(Schema, String)
+     */
+    @Nonnull
+    public static NumericFieldAccessor[] of(@Nonnull Schema schema, @Nonnull String[] names) {
+        NumericFieldAccessor[] accessors = new NumericFieldAccessor[names.length];
+        for (int i = 0; i < names.length; i++) {
+            accessors[i] = of(schema, names[i]);
+        }
+        return accessors;
+    }
+
+    private static NumericFieldAccessor compile(Schema schema, String name) {
+        if (schema.getType() != Type.RECORD) {
+            throw new IllegalArgumentException("Schema " + schema.getFullName()
+                    + " is not a record schema");
+        }
+        Schema.Field field = schema.getField(name);
+        if (field == null) {
+            return null;
+        }
+        Schema fieldSchema = field.schema();
+        if (fieldSchema.getType() == Type.UNION) {
+            List<Schema> types = fieldSchema.getTypes();
+            if (types.size() == 2 && types.get(0).getType() == Type.NULL) {
+                fieldSchema = types.get(1);
+            } else if (types.size() == 2 && types.get(1).getType() == Type.NULL) {
+                fieldSchema = types.get(0);
+            }
+        }
+        ToDoubleFunction<Object> conversion;
+        switch (fieldSchema.getType()) {
+            case INT:
+                conversion = v -> (Integer) v;
+                break;
+            case LONG:
+                conversion = v -> (Long) v;
+                break;
+            case FLOAT:
+                conversion = v -> floatToDouble((Float) v);
+                break;
+            case DOUBLE:
+                conversion = v -> (Double) v;
+                break;
+            default:
+                throw new IllegalArgumentException("Field " + name + " of schema "
+                        + schema.getFullName() + " is not numeric");
+        }
+        return new NumericFieldAccessor(schema, name, field.pos(), conversion);
+    }
+
+    /**
+     * Read the field from given record.
+     * @param record record with the schema of this accessor
+     * @return field value, or {@link Double#NaN} if the field is null.
+     */
+    public double get(@Nonnull IndexedRecord record) {
+        Object value = record.get(pos);
+        return value != null ? conversion.applyAsDouble(value) : Double.NaN;
+    }
+
+    /**
+     * Convert a non-null value of the field to double.
+     * @param value value read from position {@link #getPosition()} of a record
+     * @return converted value
+     */
+    public double toDouble(@Nonnull Object value) {
+        return conversion.applyAsDouble(value);
+    }
+
+    /** Schema that this accessor reads fields of. */
+    @Nonnull
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /** Name of the field. */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /** Position of the field in the schema. */
+    public int getPosition() {
+        return pos;
+    }
+}
@@ -24,6 +24,9 @@ import org.radarcns.stream.aggregator.AggregateList;
 import org.radarcns.stream.aggregator.NumericAggregate;
 import org.radarcns.stream.aggregator.PhoneUsageAggregate;
 import org.radarcns.stream.collector.AggregateListCollector;
+import org.radarcns.stream.collector.MergeableNumericCollector;
+import org.radarcns.stream.collector.MergeableListCollector;
+import org.radarcns.stream.collector.MultiAxisCollector;
 import org.radarcns.stream.collector.NumericAggregateCollector;
 import org.radarcns.stream.phone.PhoneUsageCollector;
 import org.radarcns.stream.phone.TemporaryPackageKey;
@@ -48,6 +51,15 @@ public interface RadarUtilities {
     KeyValue<AggregateKey, NumericAggregate> numericCollectorToAvro(
             Windowed<ObservationKey> window, NumericAggregateCollector collector);
 
+    KeyValue<AggregateKey, AggregateList> mergeableListCollectorToAvro(
+            Windowed<ObservationKey> window, MergeableListCollector collector);
+
+    KeyValue<AggregateKey, AggregateList> multiAxisCollectorToAvro(
+            Windowed<ObservationKey> window, MultiAxisCollector collector);
+
+    KeyValue<AggregateKey, NumericAggregate> mergeableNumericCollectorToAvro(
+            Windowed<ObservationKey> window, MergeableNumericCollector collector);
+
     KeyValue<AggregateKey, PhoneUsageAggregate> phoneCollectorToAvro(
             Windowed<TemporaryPackageKey> window, PhoneUsageCollector collector);
 }
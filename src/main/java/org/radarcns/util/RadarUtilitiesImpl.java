@@ -18,6 +18,7 @@ package org.radarcns.util;
 
 import static org.apache.kafka.streams.KeyValue.pair;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.apache.kafka.streams.KeyValue;
@@ -29,6 +30,9 @@ import org.radarcns.stream.aggregator.AggregateList;
 import org.radarcns.stream.aggregator.NumericAggregate;
 import org.radarcns.stream.aggregator.PhoneUsageAggregate;
 import org.radarcns.stream.collector.AggregateListCollector;
+import org.radarcns.stream.collector.MergeableNumericCollector;
+import org.radarcns.stream.collector.MergeableListCollector;
+import org.radarcns.stream.collector.MultiAxisCollector;
 import org.radarcns.stream.collector.NumericAggregateCollector;
 import org.radarcns.stream.phone.PhoneUsageCollector;
 import org.radarcns.stream.phone.TemporaryPackageKey;
@@ -43,9 +47,9 @@ public class RadarUtilitiesImpl implements RadarUtilities {
 
     @Override
     public AggregateKey getWindowed(Windowed<ObservationKey> window) {
-        ObservationKey key = window.key();
         Window timeWindow = window.window();
-        return new AggregateKey(key.getProjectId(), key.getUserId(), key.getSourceId(),
+        // updates of the same window share a key instance
+        return KeyInterner.getInstance().aggregateKey(window.key(),
                 timeWindow.start() / 1000d, timeWindow.end() / 1000d);
     }
 
@@ -85,9 +89,44 @@ public class RadarUtilitiesImpl implements RadarUtilities {
         return pair(getWindowed(window), numericCollectorToAggregate(collector));
     }
 
+    @Override
+    public KeyValue<AggregateKey, AggregateList> mergeableListCollectorToAvro(
+            Windowed<ObservationKey> window, MergeableListCollector collector) {
+        List<NumericAggregate> fields = collector.getCollectors().stream()
+                .map(this::mergeableCollectorToAggregate)
+                .collect(Collectors.toList());
+
+        return pair(getWindowed(window), new AggregateList(fields));
+    }
+
+    @Override
+    public KeyValue<AggregateKey, AggregateList> multiAxisCollectorToAvro(
+            Windowed<ObservationKey> window, MultiAxisCollector collector) {
+        List<NumericAggregate> fields = new ArrayList<>(collector.getFieldCount());
+        for (int i = 0; i < collector.getFieldCount(); i++) {
+            fields.add(new NumericAggregate(collector.getName(i), collector.getMin(i),
+                    collector.getMax(i), collector.getSum(i), collector.getCount(i),
+                    collector.getMean(i), collector.getQuartile(i)));
+        }
+
+        return pair(getWindowed(window), new AggregateList(fields));
+    }
+
+    @Override
+    public KeyValue<AggregateKey, NumericAggregate> mergeableNumericCollectorToAvro(
+            Windowed<ObservationKey> window, MergeableNumericCollector collector) {
+        return pair(getWindowed(window), mergeableCollectorToAggregate(collector));
+    }
+
     private NumericAggregate numericCollectorToAggregate(NumericAggregateCollector collector) {
         return new NumericAggregate(collector.getName(), collector.getMin(), collector.getMax(),
                 collector.getSum(), collector.getCount(), collector.getMean(),
                 collector.getQuartile());
     }
+
+    private NumericAggregate mergeableCollectorToAggregate(MergeableNumericCollector collector) {
+        return new NumericAggregate(collector.getName(), collector.getMin(), collector.getMax(),
+                collector.getSum(), collector.getCount(), collector.getMean(),
+                collector.getQuartile());
+    }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util.serde;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Object that can write itself in a compact binary format. It should provide a matching static
+ * method to read the object from a {@link ByteBuffer} again.
+ */
+public interface BinaryEncodable {
+    /** Number of bytes that {@link #writeTo(ByteBuffer)} will write. */
+    int binarySize();
+
+    /** Write the object to given buffer. The buffer must have {@link #binarySize()} remaining. */
+    void writeTo(ByteBuffer buffer);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util.serde;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads an object that was written with {@link BinaryEncodable#writeTo(ByteBuffer)}.
+ * @param <T> type to read
+ */
+@FunctionalInterface
+public interface BinaryReader<T> {
+    /**
+     * Read an object from given buffer.
+     * @param buffer buffer positioned at the start of the object
+     * @param version binary format version that the object was written in
+     * @throws java.nio.BufferUnderflowException if the buffer does not contain a full object.
+     * @throws IllegalArgumentException if the buffer does not contain a valid object.
+     */
+    T read(ByteBuffer buffer, int version);
+}
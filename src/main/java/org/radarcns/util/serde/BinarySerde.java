@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util.serde;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serde that stores objects in a versioned compact binary format. The first byte of the binary
+ * format is the format version. The deserializer also reads objects that were serialized as JSON
+ * by {@link RadarSerde}, so that existing state can be migrated to and from the binary format.
+ * Values with an unknown format version or corrupt data fail with a
+ * {@link SerializationException}.
+ * @param <T> type to serialize
+ */
+public class BinarySerde<T extends BinaryEncodable> {
+    /** Current binary format version. */
+    public static final byte VERSION = 2;
+    /** Oldest binary format version that can still be read. */
+    public static final byte MIN_VERSION = 1;
+    private static final byte JSON_OBJECT_START = '{';
+
+    private final Serializer<T> binarySerializer;
+    private final Serializer<T> jsonSerializer;
+    private final Deserializer<T> deserializer;
+
+    /**
+     * Binary serde for given type.
+     * @param type type to serialize, used for the JSON format.
+     * @param reader reads an object from a buffer that was written with
+     *               {@link BinaryEncodable#writeTo(ByteBuffer)}.
+     */
+    public BinarySerde(Class<T> type, BinaryReader<T> reader) {
+        this.binarySerializer = new BinarySerializer<>();
+        this.jsonSerializer = new JsonSerializer<>(type);
+        this.deserializer = new BinaryDeserializer<>(reader, new JsonDeserializer<>(type));
+    }
+
+    /**
+     * Serde that writes in given format. It reads both formats.
+     * @param format format to serialize objects in.
+     */
+    public Serde<T> getSerde(StateFormat format) {
+        Serializer<T> serializer = format == StateFormat.BINARY
+                ? binarySerializer : jsonSerializer;
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
+
+    private static class BinarySerializer<T extends BinaryEncodable> implements Serializer<T> {
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+            // no configuration needed
+        }
+
+        @Override
+        public byte[] serialize(String topic, T data) {
+            if (data == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(1 + data.binarySize());
+            buffer.put(VERSION);
+            data.writeTo(buffer);
+            return buffer.array();
+        }
+
+        @Override
+        public void close() {
+            // noop
+        }
+    }
+
+    private static class BinaryDeserializer<T> implements Deserializer<T> {
+        private final BinaryReader<T> reader;
+        private final Deserializer<T> jsonDeserializer;
+
+        BinaryDeserializer(BinaryReader<T> reader, Deserializer<T> jsonDeserializer) {
+            this.reader = reader;
+            this.jsonDeserializer = jsonDeserializer;
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+            // no configuration needed
+        }
+
+        @Override
+        public T deserialize(String topic, byte[] data) {
+            if (data == null || data.length == 0) {
+                return null;
+            }
+            if (data[0] == JSON_OBJECT_START) {
+                return jsonDeserializer.deserialize(topic, data);
+            }
+            if (data[0] < MIN_VERSION || data[0] > VERSION) {
+                throw new SerializationException("Cannot deserialize value with unknown binary"
+                        + " format version " + data[0] + " for topic " + topic);
+            }
+            try {
+                return reader.read(ByteBuffer.wrap(data, 1, data.length - 1), data[0]);
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                throw new SerializationException(
+                        "Failed to deserialize binary value for topic " + topic, ex);
+            }
+        }
+
+        @Override
+        public void close() {
+            // noop
+        }
+    }
+}
@@ -45,6 +45,9 @@ public class JsonSerializer<T> implements Serializer<T> {
 
     @Override
     public byte[] serialize(String topic, T t) {
+        if (t == null) {
+            return null;
+        }
         try {
             return writer.writeValueAsBytes(t);
         } catch (JsonProcessingException e) {
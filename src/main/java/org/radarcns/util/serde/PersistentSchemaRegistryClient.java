@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.util.serde;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schema registry client that looks up schemas without locking, and persists them to a file.
+ * The Confluent client synchronizes every lookup, which makes it a bottleneck when it is shared
+ * by many stream threads. Schemas that were persisted by an earlier run are available before
+ * the registry is reachable.
+ */
+public class PersistentSchemaRegistryClient extends CachedSchemaRegistryClient {
+    private static final Logger logger = LoggerFactory.getLogger(
+            PersistentSchemaRegistryClient.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ConcurrentMap<Integer, Schema> schemasById;
+    private final ConcurrentMap<String, Map<Schema, Integer>> idsBySubject;
+    private final Path cacheFile;
+
+    /**
+     * Schema registry client.
+     * @param urls schema registry URLs
+     * @param identityMapCapacity maximum number of schemas per subject
+     * @param originals client configuration
+     * @param cacheFile file to persist schemas to, or {@code null} to not persist them.
+     */
+    public PersistentSchemaRegistryClient(@Nonnull List<String> urls, int identityMapCapacity,
+            @Nonnull Map<String, ?> originals, @Nullable Path cacheFile) {
+        super(urls, identityMapCapacity, originals);
+        this.schemasById = new ConcurrentHashMap<>();
+        this.idsBySubject = new ConcurrentHashMap<>();
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    @Override
+    public int register(String subject, Schema schema) throws IOException, RestClientException {
+        Integer id = getCachedId(subject, schema);
+        if (id == null) {
+            id = super.register(subject, schema);
+            cache(subject, schema, id);
+        }
+        return id;
+    }
+
+    @Override
+    public int getId(String subject, Schema schema) throws IOException, RestClientException {
+        Integer id = getCachedId(subject, schema);
+        if (id == null) {
+            id = super.getId(subject, schema);
+            cache(subject, schema, id);
+        }
+        return id;
+    }
+
+    @Override
+    public Schema getById(int id) throws IOException, RestClientException {
+        Schema schema = schemasById.get(id);
+        if (schema == null) {
+            schema = super.getById(id);
+            cache(null, schema, id);
+        }
+        return schema;
+    }
+
+    @Override
+    public Schema getBySubjectAndId(String subject, int id)
+            throws IOException, RestClientException {
+        // schema IDs are unique across subjects
+        Schema schema = schemasById.get(id);
+        if (schema == null) {
+            schema = super.getBySubjectAndId(subject, id);
+            cache(subject, schema, id);
+        }
+        return schema;
+    }
+
+    /**
+     * Retrieve the latest schema of a subject, unless a schema of the subject was already
+     * retrieved.
+     * @return whether the subject was retrieved from the registry
+     */
+    public boolean warmUp(@Nonnull String subject) throws IOException, RestClientException {
+        if (idsBySubject.containsKey(subject)) {
+            return false;
+        }
+        SchemaMetadata metadata = getLatestSchemaMetadata(subject);
+        cache(subject, new Schema.Parser().parse(metadata.getSchema()), metadata.getId());
+        return true;
+    }
+
+    /** Number of schemas in the cache. */
+    public int size() {
+        return schemasById.size();
+    }
+
+    private Integer getCachedId(String subject, Schema schema) {
+        Map<Schema, Integer> ids = idsBySubject.get(subject);
+        return ids != null ? ids.get(schema) : null;
+    }
+
+    /** Add a schema to the cache, and persist it if it was not yet known. */
+    void cache(String subject, @Nonnull Schema schema, int id) {
+        boolean added = schemasById.putIfAbsent(id, schema) == null;
+        if (subject != null) {
+            added |= idsBySubject.computeIfAbsent(subject, s -> new ConcurrentHashMap<>())
+                    .putIfAbsent(schema, id) == null;
+        }
+        if (added) {
+            persist();
+        }
+    }
+
+    private void load() {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            CacheContents contents = MAPPER.readValue(cacheFile.toFile(), CacheContents.class);
+            contents.schemas.forEach((id, schema) ->
+                    schemasById.put(id, new Schema.Parser().parse(schema)));
+            contents.subjects.forEach((subject, ids) -> {
+                Map<Schema, Integer> subjectIds = idsBySubject.computeIfAbsent(subject,
+                        s -> new ConcurrentHashMap<>());
+                for (Integer id : ids) {
+                    Schema schema = schemasById.get(id);
+                    if (schema != null) {
+                        subjectIds.put(schema, id);
+                    }
+                }
+            });
+            logger.info("Loaded {} schemas of {} subjects from {}",
+                    schemasById.size(), idsBySubject.size(), cacheFile);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Cannot read schema cache {}. Retrieving schemas from the registry.",
+                    cacheFile, ex);
+            schemasById.clear();
+            idsBySubject.clear();
+        }
+    }
+
+    /** Write the cache to a temporary file and replace the cache file with it. */
+    private synchronized void persist() {
+        if (cacheFile == null) {
+            return;
+        }
+        CacheContents contents = new CacheContents();
+        schemasById.forEach((id, schema) -> contents.schemas.put(id, schema.toString()));
+        idsBySubject.forEach((subject, ids) ->
+                contents.subjects.put(subject, new ArrayList<>(ids.values())));
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmpFile = Files.createTempFile(parent, cacheFile.getFileName().toString(),
+                    ".tmp");
+            MAPPER.writeValue(tmpFile.toFile(), contents);
+            Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.warn("Cannot persist schema cache to {}", cacheFile, ex);
+        }
+    }
+
+    /** Persisted cache: schemas by ID, and the IDs of the schemas of each subject. */
+    @SuppressWarnings("PMD.ImmutableField")
+    private static class CacheContents {
+        @JsonProperty
+        private Map<Integer, String> schemas = new HashMap<>();
+        @JsonProperty
+        private Map<String, List<Integer>> subjects = new HashMap<>();
+    }
+}
@@ -19,8 +19,12 @@ package org.radarcns.util.serde;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.WindowBytesStoreSupplier;
 import org.apache.kafka.streams.state.WindowStore;
 import org.radarcns.stream.collector.AggregateListCollector;
+import org.radarcns.stream.collector.MergeableNumericCollector;
+import org.radarcns.stream.collector.MergeableListCollector;
+import org.radarcns.stream.collector.MultiAxisCollector;
 import org.radarcns.stream.collector.NumericAggregateCollector;
 import org.radarcns.stream.phone.PhoneUsageCollector;
 
@@ -31,6 +35,10 @@ public final class RadarSerdes {
     private final Serde<NumericAggregateCollector> numericCollector;
     private final Serde<AggregateListCollector> aggregateListCollector;
     private final Serde<PhoneUsageCollector> phoneUsageCollector;
+    private final BinarySerde<PhoneUsageCollector> phoneUsageCollectorBinary;
+    private final BinarySerde<MergeableNumericCollector> mergeableNumericCollector;
+    private final BinarySerde<MergeableListCollector> mergeableListCollector;
+    private final BinarySerde<MultiAxisCollector> multiAxisCollector;
 
     private static RadarSerdes instance = new RadarSerdes();
 
@@ -42,6 +50,14 @@ public final class RadarSerdes {
         numericCollector = new RadarSerde<>(NumericAggregateCollector.class).getSerde();
         aggregateListCollector = new RadarSerde<>(AggregateListCollector.class).getSerde();
         phoneUsageCollector = new RadarSerde<>(PhoneUsageCollector.class).getSerde();
+        phoneUsageCollectorBinary = new BinarySerde<>(
+                PhoneUsageCollector.class, PhoneUsageCollector::readFrom);
+        mergeableNumericCollector = new BinarySerde<>(
+                MergeableNumericCollector.class, MergeableNumericCollector::readFrom);
+        mergeableListCollector = new BinarySerde<>(
+                MergeableListCollector.class, MergeableListCollector::readFrom);
+        multiAxisCollector = new BinarySerde<>(
+                MultiAxisCollector.class, MultiAxisCollector::readFrom);
     }
 
     public Serde<NumericAggregateCollector> getNumericAggregateCollector() {
@@ -56,8 +72,43 @@ public final class RadarSerdes {
         return phoneUsageCollector;
     }
 
+    /**
+     * Phone usage collector serde that writes in given format and reads both JSON and binary.
+     */
+    public Serde<PhoneUsageCollector> getPhoneUsageCollector(StateFormat format) {
+        return phoneUsageCollectorBinary.getSerde(format);
+    }
+
+    /**
+     * Mergeable collector serde that writes in given format and reads both JSON and binary.
+     */
+    public Serde<MergeableNumericCollector> getMergeableNumericCollector(StateFormat format) {
+        return mergeableNumericCollector.getSerde(format);
+    }
+
+    /**
+     * Mergeable list collector serde that writes in given format and reads both JSON and binary.
+     */
+    public Serde<MergeableListCollector> getMergeableListCollector(StateFormat format) {
+        return mergeableListCollector.getSerde(format);
+    }
+
+    /**
+     * Multi-axis collector serde that writes in given format and reads both JSON and binary.
+     */
+    public Serde<MultiAxisCollector> getMultiAxisCollector(StateFormat format) {
+        return multiAxisCollector.getSerde(format);
+    }
+
     public static <K, V> Materialized<K, V, WindowStore<Bytes, byte[]>> materialized(String name, Serde<V> valueSerde) {
         Materialized<K, V, WindowStore<Bytes, byte[]>> store = Materialized.as(name);
         return store.withValueSerde(valueSerde);
     }
+
+    /** Materialize a windowed aggregate in a store from given supplier. */
+    public static <K, V> Materialized<K, V, WindowStore<Bytes, byte[]>> materialized(
+            WindowBytesStoreSupplier supplier, Serde<V> valueSerde) {
+        Materialized<K, V, WindowStore<Bytes, byte[]>> store = Materialized.as(supplier);
+        return store.withValueSerde(valueSerde);
+    }
 }
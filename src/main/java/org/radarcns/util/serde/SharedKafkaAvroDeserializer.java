@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.util.serde;
+
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import java.util.Map;
+
+/**
+ * Avro deserializer that uses the schema registry client of {@link SharedSchemaRegistry}.
+ */
+public class SharedKafkaAvroDeserializer extends KafkaAvroDeserializer {
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        // the client is only created by the superclass if it was not set yet
+        schemaRegistry = SharedSchemaRegistry.getClient(configs);
+        super.configure(configs, isKey);
+    }
+}
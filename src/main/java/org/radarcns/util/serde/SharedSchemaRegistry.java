@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.util.serde;
+
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.confluent.kafka.serializers.AbstractKafkaAvroSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import org.radarcns.config.ConfigRadar;
+import org.radarcns.config.SchemaCacheConfig;
+import org.radarcns.util.RadarThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide schema registry clients, so that all Kafka Streams instances and monitors share a
+ * single schema cache. The client of the configured schema registry persists its cache.
+ */
+public final class SharedSchemaRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(SharedSchemaRegistry.class);
+    private static final String CACHE_FILE_NAME = "schema-cache.json";
+
+    private static final Map<String, PersistentSchemaRegistryClient> CLIENTS =
+            new ConcurrentHashMap<>();
+    private static volatile String configuredUrls;
+    private static volatile Path cacheFile;
+
+    private SharedSchemaRegistry() {
+        // utility class
+    }
+
+    /**
+     * Configure where the client of the schema registry in given configuration persists its
+     * cache. This must be called before any client is created.
+     */
+    public static void configure(@Nonnull ConfigRadar config) {
+        configuredUrls = config.getSchemaRegistryPaths();
+        SchemaCacheConfig cacheConfig = config.getSchemaCache();
+        if (cacheConfig.getPath() != null) {
+            cacheFile = Paths.get(cacheConfig.getPath());
+        } else if (config.getPersistencePath() != null) {
+            cacheFile = Paths.get(config.getPersistencePath(), CACHE_FILE_NAME);
+        } else {
+            cacheFile = null;
+        }
+    }
+
+    /**
+     * Get the shared client for the schema registry in given serializer configuration.
+     * @param configs serializer or deserializer configuration, including the schema registry URL
+     * @return shared client
+     */
+    public static PersistentSchemaRegistryClient getClient(@Nonnull Map<String, ?> configs) {
+        KafkaAvroDeserializerConfig config = new KafkaAvroDeserializerConfig(configs);
+        List<String> urls = config.getSchemaRegistryUrls();
+        String key = String.join(",", urls);
+        return CLIENTS.computeIfAbsent(key, k -> {
+            Path file = k.equals(configuredUrls) ? cacheFile : null;
+            logger.info("Creating shared schema registry client for {}", k);
+            return new PersistentSchemaRegistryClient(urls,
+                    config.getMaxSchemasPerSubject(), config.originalsWithPrefix(""), file);
+        });
+    }
+
+    /**
+     * Retrieve the latest key and value schemas of given topics in parallel, so the streams do
+     * not all request them at the same time. Subjects that were persisted by an earlier run are
+     * not retrieved again.
+     * @param config configuration with the schema registry and warm-up settings
+     * @param topics topics to retrieve schemas of
+     */
+    public static void warmUp(@Nonnull ConfigRadar config, @Nonnull Collection<String> topics)
+            throws InterruptedException {
+        SchemaCacheConfig cacheConfig = config.getSchemaCache();
+        if (!cacheConfig.isWarmup() || topics.isEmpty()) {
+            return;
+        }
+        PersistentSchemaRegistryClient client = getClient(Collections.singletonMap(
+                AbstractKafkaAvroSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG,
+                config.getSchemaRegistryPaths()));
+
+        long startTime = System.nanoTime();
+        AtomicInteger retrieved = new AtomicInteger(0);
+        AtomicInteger failed = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, cacheConfig.getWarmupThreads()),
+                new RadarThreadFactoryBuilder().setNamePrefix("schema-warmup").build());
+        for (String topic : topics) {
+            for (String subject : new String[] {topic + "-key", topic + "-value"}) {
+                executor.execute(() -> {
+                    try {
+                        if (client.warmUp(subject)) {
+                            retrieved.incrementAndGet();
+                        }
+                    } catch (IOException | RestClientException ex) {
+                        // output topics may not have been written to yet
+                        logger.debug("Cannot retrieve schema of subject {}", subject, ex);
+                        failed.incrementAndGet();
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(cacheConfig.getWarmupTimeout().toMillis(),
+                TimeUnit.MILLISECONDS)) {
+            logger.warn("Schema warm-up did not finish within {}", cacheConfig.getWarmupTimeout());
+            executor.shutdownNow();
+        }
+        logger.info("Retrieved {} schemas in {} ms; {} subjects not found. {} schemas cached.",
+                retrieved.get(), (System.nanoTime() - startTime) / 1_000_000L, failed.get(),
+                client.size());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.util.serde;
+
+import io.confluent.kafka.streams.serdes.avro.SpecificAvroSerde;
+import java.util.Map;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.radarcns.kafka.ObservationKey;
+import org.radarcns.util.KeyInterner;
+
+/**
+ * Specific Avro serde that uses the schema registry client of {@link SharedSchemaRegistry}.
+ * It can only be used after it has been configured, which Kafka Streams does for default serdes.
+ * Deserialized {@link ObservationKey} keys are interned with the {@link KeyInterner}.
+ *
+ * @param <T> record type
+ */
+public class SharedSpecificAvroSerde<T extends SpecificRecord> implements Serde<T> {
+    private Serde<T> inner;
+    private Deserializer<T> deserializer;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        inner = new SpecificAvroSerde<>(SharedSchemaRegistry.getClient(configs));
+        inner.configure(configs, isKey);
+        deserializer = isKey ? new InterningDeserializer<>(inner.deserializer())
+                : inner.deserializer();
+    }
+
+    @Override
+    public void close() {
+        if (inner != null) {
+            inner.close();
+        }
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return getInner().serializer();
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        if (deserializer == null) {
+            throw new IllegalStateException("Serde has not been configured");
+        }
+        return deserializer;
+    }
+
+    private Serde<T> getInner() {
+        if (inner == null) {
+            throw new IllegalStateException("Serde has not been configured");
+        }
+        return inner;
+    }
+
+    /** Deserializer that replaces observation keys with their shared instance. */
+    private static class InterningDeserializer<T> implements Deserializer<T> {
+        private final Deserializer<T> inner;
+
+        InterningDeserializer(Deserializer<T> inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+            inner.configure(configs, isKey);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T deserialize(String topic, byte[] data) {
+            T value = inner.deserialize(topic, data);
+            if (value instanceof ObservationKey) {
+                return (T) KeyInterner.getInstance().intern((ObservationKey) value);
+            }
+            return value;
+        }
+
+        @Override
+        public void close() {
+            inner.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.junit.Test;
+
+public class ConfigFingerprintTest {
+    @Test
+    public void singleStream() {
+        SingleStreamConfig config = new SingleStreamConfig();
+        config.setStreamClass(String.class);
+        String fingerprint = ConfigFingerprint.of(config);
+
+        SingleStreamConfig same = new SingleStreamConfig();
+        same.setStreamClass(String.class);
+        assertEquals(fingerprint, ConfigFingerprint.of(same));
+
+        same.setSharedTopology(!config.isSharedTopology());
+        assertNotEquals(fingerprint, ConfigFingerprint.of(same));
+    }
+
+    @Test
+    public void sharedStreamSettings() throws IOException {
+        String fingerprint = ConfigFingerprint.ofSharedStreamSettings(
+                parse("{\"stream\": {}}"));
+
+        // stream lists and stream master settings are not shared by the workers
+        assertEquals(fingerprint, ConfigFingerprint.ofSharedStreamSettings(parse(
+                "{\"stream\": {\"streams\": [{\"class\": \"java.lang.String\"}],"
+                        + " \"startup_threads\": 1}}")));
+
+        assertNotEquals(fingerprint, ConfigFingerprint.ofSharedStreamSettings(parse(
+                "{\"stream\": {\"standby_replicas_per_priority\": {\"high\": 1}}}")));
+    }
+
+    private static ConfigRadar parse(String json) throws IOException {
+        return new ObjectMapper().readValue(json, ConfigRadar.class);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.MEMORY_CONFIG;
+import static org.radarcns.stream.RocksDbMemoryConfigSetter.POOL_CONFIG;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Properties;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.Test;
+import org.radarcns.config.RadarPropertyHandler.Priority;
+import org.radarcns.stream.RocksDbMemoryConfigSetter;
+import org.radarcns.stream.StoreType;
+import org.radarcns.stream.TimeWindowMetadata;
+
+public class StreamConfigTest {
+    private static final String TRANSACTION_TIMEOUT = StreamsConfig.producerPrefix(
+            ProducerConfig.TRANSACTION_TIMEOUT_CONFIG);
+
+    @Test
+    public void rocksDbDefaults() {
+        StreamConfig config = new StreamConfig();
+        assertFalse(config.hasRocksDbConfig());
+
+        Properties props = new Properties();
+        config.addRocksDbProperties(props, Priority.NORMAL);
+        assertTrue(props.isEmpty());
+    }
+
+    @Test
+    public void rocksDbPerPriority() {
+        StreamConfig config = new StreamConfig();
+        config.setRocksDbPerPriority(Collections.singletonMap("high", new RocksDbConfig()));
+        assertTrue(config.hasRocksDbConfig());
+
+        Properties props = new Properties();
+        config.addRocksDbProperties(props, Priority.HIGH);
+        assertEquals(RocksDbMemoryConfigSetter.class.getName(),
+                props.get(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG));
+        assertEquals("high", props.get(POOL_CONFIG));
+        assertEquals(String.valueOf(512L * 1024L * 1024L), props.get(MEMORY_CONFIG));
+
+        props.clear();
+        config.addRocksDbProperties(props, Priority.LOW);
+        assertTrue(props.isEmpty());
+    }
+
+    @Test
+    public void inMemoryStores() {
+        SingleStreamConfig config = new SingleStreamConfig();
+        assertEquals(StoreType.PERSISTENT, config.getStoreType(Duration.ofSeconds(10)));
+        assertEquals(StoreType.PERSISTENT, config.getStoreType(Duration.ZERO));
+
+        config.setInMemoryMaxWindow(60L);
+        assertEquals(StoreType.IN_MEMORY, config.getStoreType(Duration.ofSeconds(10)));
+        assertEquals(StoreType.IN_MEMORY, config.getStoreType(Duration.ofMinutes(1)));
+        assertEquals(StoreType.PERSISTENT, config.getStoreType(Duration.ofMinutes(10)));
+    }
+
+    @Test
+    public void timeWindowRetention() {
+        StreamConfig config = new StreamConfig();
+        for (TimeWindowMetadata w : TimeWindowMetadata.values()) {
+            Duration size = Duration.ofMillis(w.getIntervalInMilliSec());
+            assertNull(config.getGracePeriodForTimeWindow(w));
+            Duration retention = config.getRetentionForTimeWindow(w);
+            assertTrue(retention.compareTo(Duration.ofDays(1)) >= 0);
+            assertTrue(retention.compareTo(size) >= 0);
+        }
+
+        config.setTimeWindowGracePeriod(Collections.singletonMap("10sec", 3600L));
+        for (TimeWindowMetadata w : TimeWindowMetadata.values()) {
+            Duration grace = config.getGracePeriodForTimeWindow(w);
+            if (w.getTopicLabel("").equals("_10sec")) {
+                assertEquals(Duration.ofHours(1), grace);
+                assertEquals(Duration.ofSeconds(3610), config.getRetentionForTimeWindow(w));
+            } else {
+                assertNull(grace);
+            }
+        }
+    }
+
+    @Test
+    public void standbyReplicas() {
+        StreamConfig config = new StreamConfig();
+        assertNull(config.standbyReplicasByPriority(Priority.HIGH));
+
+        config.setStandbyReplicasPerPriority(Collections.singletonMap("high", 1));
+        assertEquals(Integer.valueOf(1), config.standbyReplicasByPriority(Priority.HIGH));
+        assertNull(config.standbyReplicasByPriority(Priority.LOW));
+    }
+
+    @Test
+    public void transactionsAtLeastOnce() {
+        Properties props = new Properties();
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.AT_LEAST_ONCE);
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, "3600000");
+        new StreamConfig().addTransactionProperties(props);
+        assertEquals("3600000", props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertFalse(props.containsKey(TRANSACTION_TIMEOUT));
+    }
+
+    @Test
+    public void transactionsExactlyOnce() {
+        StreamConfig config = new StreamConfig();
+        Properties props = new Properties();
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.EXACTLY_ONCE);
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, "10000");
+        config.addTransactionProperties(props);
+        assertEquals("10000", props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertEquals("60000", props.get(TRANSACTION_TIMEOUT));
+
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, "300000");
+        props.remove(TRANSACTION_TIMEOUT);
+        config.addTransactionProperties(props);
+        assertEquals("300000", props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertEquals("600000", props.get(TRANSACTION_TIMEOUT));
+
+        // limited by the maximum transaction timeout of 15 minutes
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, "3600000");
+        props.remove(TRANSACTION_TIMEOUT);
+        config.addTransactionProperties(props);
+        assertEquals("450000", props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertEquals("900000", props.get(TRANSACTION_TIMEOUT));
+
+        // configured timeout is kept
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, "3600000");
+        props.put(TRANSACTION_TIMEOUT, "120000");
+        config.addTransactionProperties(props);
+        assertEquals("60000", props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertEquals("120000", props.get(TRANSACTION_TIMEOUT));
+    }
+}
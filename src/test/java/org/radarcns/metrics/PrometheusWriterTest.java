@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.radarcns.metrics.PrometheusWriter.labels;
+
+import java.util.Collections;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.stats.Total;
+import org.junit.Test;
+
+public class PrometheusWriterTest {
+    @Test
+    public void groupSamples() {
+        PrometheusWriter writer = new PrometheusWriter();
+        writer.counter("records_total", "Records.", labels("topic", "a"), 1);
+        writer.gauge("heap", null, Collections.emptyMap(), Double.POSITIVE_INFINITY);
+        writer.counter("records_total", "Records.", labels("topic", "b\"c"), 2);
+
+        assertEquals("# HELP records_total Records.\n"
+                + "# TYPE records_total counter\n"
+                + "records_total{topic=\"a\"} 1.0\n"
+                + "records_total{topic=\"b\\\"c\"} 2.0\n"
+                + "# TYPE heap gauge\n"
+                + "heap +Inf\n", writer.toString());
+    }
+
+    @Test
+    public void sanitizeName() {
+        assertEquals("kafka_streams_stream_metrics_commit_rate",
+                PrometheusWriter.sanitizeName("kafka_streams_stream-metrics_commit-rate"));
+        assertEquals("_10sec", PrometheusWriter.sanitizeName("10sec"));
+    }
+
+    @Test
+    public void kafkaMetrics() {
+        try (Metrics metrics = new Metrics()) {
+            MetricName name = metrics.metricName("records-total", "consumer-metrics",
+                    "Total records.", Collections.singletonMap("client-id", "c1"));
+            metrics.sensor("records").add(name, new Total());
+            metrics.sensor("records").record(3);
+
+            PrometheusWriter writer = new PrometheusWriter();
+            new KafkaMetricsSource("kafka_consumer", labels("monitor", "m"),
+                    () -> Collections.singletonList(metrics.metrics()))
+                    .writeMetrics(writer);
+
+            assertTrue(writer.toString().contains(
+                    "kafka_consumer_consumer_metrics_records_total"
+                            + "{monitor=\"m\",client_id=\"c1\"} 3.0\n"));
+        }
+    }
+}
@@ -16,16 +16,20 @@
 
 package org.radarcns.monitor;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -98,6 +102,23 @@ public class CombinedKafkaMonitorTest {
         verify(kafkaMonitor2, times(1)).setPollTimeout(Duration.ofSeconds(1L));
     }
 
+    @Test
+    public void testReplace() throws Exception {
+        KafkaMonitor kafkaMonitor1 = mock(KafkaMonitor.class);
+        KafkaMonitor kafkaMonitor2 = mock(KafkaMonitor.class);
+        KafkaMonitor replacement = mock(KafkaMonitor.class);
+
+        CombinedKafkaMonitor km = new CombinedKafkaMonitor(Stream.of(kafkaMonitor1, kafkaMonitor2));
+        assertSame(replacement, km.replace(kafkaMonitor1, () -> replacement));
+        verify(kafkaMonitor1, times(1)).shutdown();
+        assertEquals(Arrays.asList(kafkaMonitor2, replacement), km.getMonitors());
+
+        km.start();
+        verify(kafkaMonitor1, never()).start();
+        verify(kafkaMonitor2, times(1)).start();
+        verify(replacement, times(1)).start();
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testEmpty() {
         new CombinedKafkaMonitor(Stream.empty());
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.streams.KafkaStreams;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.config.AdaptiveThreadsConfig;
+import org.radarcns.config.RadarPropertyHandler.Priority;
+
+public class AdaptiveThreadControllerTest {
+    private Map<StreamWorker, LagSample> samples;
+    private AdaptiveThreadController controller;
+    private StreamWorker high;
+    private StreamWorker low;
+
+    @Before
+    public void setUp() {
+        AdaptiveThreadsConfig config = new AdaptiveThreadsConfig();
+        config.setEnable(true);
+        samples = new HashMap<>();
+        controller = new AdaptiveThreadController(config, samples::get);
+        high = worker(2);
+        low = worker(4);
+        controller.add("high", high, Priority.HIGH);
+        controller.add("low", low, Priority.LOW);
+    }
+
+    private static StreamWorker worker(int threads) {
+        StreamWorker worker = mock(StreamWorker.class);
+        when(worker.getNumThreads()).thenReturn(threads);
+        when(worker.getKafkaStreams())
+                .thenReturn(Collections.singletonList(mock(KafkaStreams.class)));
+        return worker;
+    }
+
+    @Test
+    public void moveThreadsToLaggingWorker() {
+        samples.put(high, new LagSample(1_000_000L, 1000.0, 0.0));
+        samples.put(low, new LagSample(0L, 10.0, 0.0));
+
+        Map<StreamWorker, Integer> changes = controller.rebalance(0L);
+        assertEquals(Integer.valueOf(4), changes.get(high));
+        assertEquals(Integer.valueOf(2), changes.get(low));
+        verify(high).setNumThreads(4);
+        verify(low).setNumThreads(2);
+
+        // cooldown
+        assertTrue(controller.rebalance(60_000L).isEmpty());
+
+        // idle again: extra threads are given back, within the budget of 6 threads
+        samples.put(high, new LagSample(10L, 1000.0, 0.0));
+        changes = controller.rebalance(600_000L);
+        assertEquals(Collections.singletonMap(high, 2), changes);
+    }
+
+    @Test
+    public void hysteresis() {
+        // lag would be consumed within 100 seconds: neither lagging nor idle
+        samples.put(high, new LagSample(100_000L, 1000.0, 0.0));
+        samples.put(low, new LagSample(0L, 10.0, 0.0));
+        assertTrue(controller.rebalance(0L).isEmpty());
+    }
+
+    @Test
+    public void noDonors() {
+        samples.put(high, new LagSample(1_000_000L, 1000.0, 0.0));
+        samples.put(low, new LagSample(1_000_000L, 0.0, 0.0));
+        assertTrue(controller.rebalance(0L).isEmpty());
+    }
+}
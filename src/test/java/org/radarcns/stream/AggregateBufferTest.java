@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.function.BiConsumer;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class AggregateBufferTest {
+    private AggregateBuffer<String, String> buffer;
+    private WindowStore<String, String> store;
+    private BiConsumer<Windowed<String>, String> forwarder;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        store = mock(WindowStore.class);
+        WindowStoreIterator<String> emptyIterator = mock(WindowStoreIterator.class);
+        when(store.fetch(anyString(), anyLong(), anyLong())).thenReturn(emptyIterator);
+        forwarder = mock(BiConsumer.class);
+        buffer = new AggregateBuffer<>("buffer", 2);
+        buffer.attach(store, forwarder);
+    }
+
+    @Test
+    public void combineWrites() {
+        Windowed<String> window = window("a", 0L);
+        assertNull(buffer.get(window));
+        buffer.put(window, "1");
+        assertEquals("1", buffer.get(window));
+        buffer.put(window, "2");
+
+        verify(store, times(1)).fetch("a", 0L, 0L);
+        verify(store, never()).put(anyString(), anyString(), anyLong());
+
+        buffer.flush();
+        verify(store).put("a", "2", 0L);
+        verify(store).flush();
+        verify(forwarder).accept(window, "2");
+
+        buffer.forward();
+        // already stored and forwarded on flush
+        verify(store, times(1)).put("a", "2", 0L);
+        verify(forwarder, times(1)).accept(window, "2");
+    }
+
+    @Test
+    public void forwardOnFlush() {
+        Windowed<String> window = window("a", 0L);
+        buffer.put(window, "1");
+        buffer.flush();
+        // the instance fails after the commit, before the update is forwarded by a punctuation
+        buffer = null;
+
+        InOrder order = inOrder(forwarder, store);
+        order.verify(forwarder).accept(window, "1");
+        order.verify(store).put("a", "1", 0L);
+        order.verify(store).flush();
+    }
+
+    @Test
+    public void dropIdleAggregates() {
+        Windowed<String> window = window("a", 0L);
+        buffer.put(window, "1");
+        buffer.forward();
+        assertEquals(1, buffer.size());
+        buffer.forward();
+        assertEquals(0, buffer.size());
+        verify(forwarder, times(1)).accept(window, "1");
+        verify(store, times(1)).put("a", "1", 0L);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        buffer.put(window("a", 0L), "1");
+        buffer.put(window("b", 0L), "2");
+        buffer.get(window("a", 0L));
+        buffer.put(window("c", 0L), "3");
+
+        assertEquals(2, buffer.size());
+        verify(store).put("b", "2", 0L);
+        verify(forwarder).accept(window("b", 0L), "2");
+        verify(store, never()).put("a", "1", 0L);
+    }
+
+    private static Windowed<String> window(String key, long start) {
+        return new Windowed<>(key, new TimeWindow(start, start + 10_000L));
+    }
+}
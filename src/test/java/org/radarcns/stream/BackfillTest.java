@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.config.BackfillConfig;
+
+public class BackfillTest {
+    private static final TopicPartition PARTITION_0 = new TopicPartition("topic", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("topic", 1);
+
+    private Consumer<byte[], byte[]> consumer;
+    private Backfill backfill;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        consumer = mock(Consumer.class);
+        when(consumer.partitionsFor("topic")).thenReturn(Arrays.asList(
+                new PartitionInfo("topic", 0, null, null, null),
+                new PartitionInfo("topic", 1, null, null, null)));
+        Map<TopicPartition, Long> beginning = new HashMap<>();
+        beginning.put(PARTITION_0, 10L);
+        beginning.put(PARTITION_1, 0L);
+        when(consumer.beginningOffsets(anyCollection())).thenReturn(beginning);
+        Map<TopicPartition, Long> end = new HashMap<>();
+        end.put(PARTITION_0, 100L);
+        end.put(PARTITION_1, 0L);
+        when(consumer.endOffsets(anyCollection())).thenReturn(end);
+
+        backfill = new Backfill(new BackfillConfig(), null, null, props -> consumer);
+    }
+
+    @Test
+    public void apply() {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "stream");
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 1);
+        List<String> topics = Collections.singletonList("topic");
+        backfill.apply(props, topics);
+
+        assertEquals("stream-backfill", props.get(StreamsConfig.APPLICATION_ID_CONFIG));
+        assertEquals(8, props.get(StreamsConfig.NUM_STREAM_THREADS_CONFIG));
+
+        Map<TopicPartition, OffsetAndMetadata> initial = new HashMap<>();
+        initial.put(PARTITION_0, new OffsetAndMetadata(10L));
+        initial.put(PARTITION_1, new OffsetAndMetadata(0L));
+        verify(consumer).commitSync(initial);
+        assertEquals(90L, backfill.remaining());
+
+        when(consumer.committed(PARTITION_0)).thenReturn(new OffsetAndMetadata(100L));
+        assertEquals(0L, backfill.remaining());
+    }
+
+    @Test
+    public void continueBackfill() {
+        when(consumer.committed(any())).thenReturn(new OffsetAndMetadata(50L));
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "stream");
+        backfill.apply(props, Collections.singletonList("topic"));
+
+        verify(consumer, never()).commitSync(any(Map.class));
+        assertEquals(50L, backfill.remaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptySuffix() {
+        BackfillConfig config = new BackfillConfig();
+        config.setApplicationIdSuffix("");
+        new Backfill(config, null, null, props -> consumer);
+    }
+}
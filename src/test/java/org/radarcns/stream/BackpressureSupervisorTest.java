@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.config.BackpressureConfig;
+import org.radarcns.config.RadarPropertyHandler.Priority;
+
+public class BackpressureSupervisorTest {
+    private Map<StreamWorker, LagSample> samples;
+    private BackpressureSupervisor supervisor;
+    private StreamWorker high;
+    private StreamWorker normal;
+    private StreamWorker low;
+
+    @Before
+    public void setUp() {
+        BackpressureConfig config = new BackpressureConfig();
+        config.setEnable(true);
+        config.setPauseLatency(10.0);
+        samples = new HashMap<>();
+        supervisor = new BackpressureSupervisor(config, samples::get);
+        high = mock(StreamWorker.class);
+        normal = mock(StreamWorker.class);
+        low = mock(StreamWorker.class);
+        supervisor.add("high", high, Priority.HIGH);
+        supervisor.add("normal", normal, Priority.NORMAL);
+        supervisor.add("low", low, Priority.LOW);
+    }
+
+    @Test
+    public void pauseOnLag() {
+        samples.put(high, new LagSample(1_000_000L, 100.0, 1.0));
+        assertTrue(supervisor.check(0L));
+        verify(low).pause();
+        verify(normal, never()).pause();
+
+        // lag between resume and pause thresholds
+        samples.put(high, new LagSample(50_000L, 100.0, 1.0));
+        assertTrue(supervisor.check(600_000L));
+
+        // caught up, but not yet paused long enough
+        samples.put(high, new LagSample(0L, 100.0, 1.0));
+        assertTrue(supervisor.check(0L));
+        assertFalse(supervisor.check(600_000L));
+        verify(low).resume();
+    }
+
+    @Test
+    public void pauseOnLatency() {
+        samples.put(high, new LagSample(0L, 100.0, 20.0));
+        assertTrue(supervisor.check(0L));
+        verify(low).pause();
+
+        // resumes after the maximum pause, even if still behind
+        assertFalse(supervisor.check(3_600_000L));
+        verify(low).resume();
+
+        // and is not paused again immediately
+        assertFalse(supervisor.check(3_660_000L));
+        verify(low, times(1)).pause();
+    }
+}
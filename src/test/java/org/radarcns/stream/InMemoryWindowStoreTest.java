@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateRestoreCallback;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class InMemoryWindowStoreTest {
+    private static final Bytes KEY_A = Bytes.wrap(new byte[] {1});
+    private static final Bytes KEY_B = Bytes.wrap(new byte[] {2});
+
+    private InMemoryWindowStore store;
+    private ProcessorContext context;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryWindowStore("store", 100L, 10L);
+        context = mock(ProcessorContext.class);
+        store.init(context, store);
+    }
+
+    @Test
+    public void putAndFetch() {
+        store.put(KEY_A, new byte[] {10}, 0L);
+        store.put(KEY_A, new byte[] {11}, 10L);
+        store.put(KEY_B, new byte[] {20}, 10L);
+
+        assertArrayEquals(new byte[] {11}, store.fetch(KEY_A, 10L));
+        assertNull(store.fetch(KEY_B, 0L));
+
+        try (WindowStoreIterator<byte[]> iterator = store.fetch(KEY_A, 0L, 10L)) {
+            assertEquals(Long.valueOf(0L), iterator.peekNextKey());
+            assertArrayEquals(new byte[] {10}, iterator.next().value);
+            assertArrayEquals(new byte[] {11}, iterator.next().value);
+            assertFalse(iterator.hasNext());
+        }
+
+        try (KeyValueIterator<Windowed<Bytes>, byte[]> iterator = store.fetchAll(5L, 20L)) {
+            KeyValue<Windowed<Bytes>, byte[]> next = iterator.next();
+            assertEquals(KEY_A, next.key.key());
+            assertEquals(10L, next.key.window().start());
+            assertEquals(20L, next.key.window().end());
+            assertEquals(KEY_B, iterator.next().key.key());
+            assertFalse(iterator.hasNext());
+        }
+
+        store.put(KEY_A, null, 10L);
+        assertNull(store.fetch(KEY_A, 10L));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void expireWindows() {
+        store.put(KEY_A, new byte[] {10}, 0L);
+        store.put(KEY_A, new byte[] {11}, 150L);
+        assertNull(store.fetch(KEY_A, 0L));
+        assertEquals(1, store.size());
+
+        // too old to be stored
+        store.put(KEY_B, new byte[] {20}, 10L);
+        assertNull(store.fetch(KEY_B, 10L));
+    }
+
+    @Test
+    public void restore() {
+        ArgumentCaptor<StateRestoreCallback> callback =
+                ArgumentCaptor.forClass(StateRestoreCallback.class);
+        verify(context).register(eq(store), callback.capture());
+
+        byte[] changelogKey = ByteBuffer.allocate(KEY_A.get().length + 12)
+                .put(KEY_A.get())
+                .putLong(30L)
+                .putInt(0)
+                .array();
+        callback.getValue().restore(changelogKey, new byte[] {10});
+        assertArrayEquals(new byte[] {10}, store.fetch(KEY_A, 30L));
+
+        callback.getValue().restore(changelogKey, null);
+        assertNull(store.fetch(KEY_A, 30L));
+        assertTrue(store.isOpen());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.internals.InMemoryKeyValueStore;
+import org.junit.Test;
+import org.radarcns.stream.metrics.LateRecordMetrics;
+
+public class LateRecordFilterTest {
+    @Test
+    public void dropLateRecords() {
+        LateRecordFilter<String, String> filter = new LateRecordFilter<>(TimeWindows.of(10L),
+                Duration.ofMillis(5L));
+        ProcessorContext context = mock(ProcessorContext.class);
+        filter.init(context);
+
+        when(context.timestamp()).thenReturn(100L);
+        assertEquals("a", filter.transform("key", "a"));
+        // window [90, 100) closes at 105
+        when(context.timestamp()).thenReturn(95L);
+        assertEquals("b", filter.transform("key", "b"));
+        when(context.timestamp()).thenReturn(110L);
+        assertEquals("c", filter.transform("key", "c"));
+        when(context.timestamp()).thenReturn(95L);
+        assertNull(filter.transform("key", "d"));
+        filter.close();
+    }
+
+    @Test
+    public void hoppingWindows() {
+        LateRecordFilter<String, String> filter = new LateRecordFilter<>(
+                TimeWindows.of(20L).advanceBy(10L), Duration.ZERO);
+        // last window containing 15 is [10, 30)
+        assertFalse(filter.isClosed(15L, 29L));
+        assertTrue(filter.isClosed(15L, 30L));
+    }
+
+    @Test
+    public void keyWatermarks() {
+        LateRecordMetrics.Counts counts = new LateRecordMetrics.Counts();
+        LateRecordFilter<String, String> filter = new LateRecordFilter<>(TimeWindows.of(10L),
+                Duration.ofMillis(5L), "watermarks", false, counts);
+        ProcessorContext context = mock(ProcessorContext.class);
+        KeyValueStore<String, Long> store = new InMemoryKeyValueStore<>(
+                "watermarks", Serdes.String(), Serdes.Long());
+        when(context.getStateStore("watermarks")).thenReturn(store);
+        filter.init(context);
+
+        when(context.timestamp()).thenReturn(110L);
+        assertEquals("a", filter.transform("a", "a"));
+        assertEquals(Long.valueOf(110L), store.get("a"));
+        // an old backlog of another key is not compared to key a
+        when(context.timestamp()).thenReturn(50L);
+        assertEquals("b", filter.transform("b", "b"));
+        assertEquals(Long.valueOf(50L), store.get("b"));
+        // window [100, 110) of key a still accepts records
+        when(context.timestamp()).thenReturn(105L);
+        assertEquals("c", filter.transform("a", "c"));
+        assertEquals(Long.valueOf(110L), store.get("a"));
+        when(context.timestamp()).thenReturn(95L);
+        assertNull(filter.transform("a", "d"));
+        filter.close();
+
+        assertEquals(2L, counts.getOnTime());
+        assertEquals(1L, counts.getLate());
+        assertEquals(1L, counts.getTooLate());
+    }
+
+    @Test
+    public void selectTooLate() {
+        LateRecordFilter<String, String> filter = new LateRecordFilter<>(TimeWindows.of(10L),
+                Duration.ofMillis(5L), null, true, new LateRecordMetrics.Counts());
+        ProcessorContext context = mock(ProcessorContext.class);
+        filter.init(context);
+
+        when(context.timestamp()).thenReturn(110L);
+        assertNull(filter.transform("key", "a"));
+        when(context.timestamp()).thenReturn(105L);
+        assertNull(filter.transform("key", "b"));
+        when(context.timestamp()).thenReturn(95L);
+        assertEquals("c", filter.transform("key", "c"));
+    }
+}
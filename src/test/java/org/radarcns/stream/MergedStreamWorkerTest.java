@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.TopologyDescription;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.config.RadarPropertyHandler;
+import org.radarcns.config.RadarPropertyHandlerImpl;
+import org.radarcns.config.SingleStreamConfig;
+import org.radarcns.stream.empatica.E4HeartRateStream;
+import org.radarcns.stream.empatica.E4InterBeatIntervalStream;
+import org.radarcns.stream.empatica.E4TemperatureStream;
+
+public class MergedStreamWorkerTest {
+    private static final String INPUT_TOPIC = "android_empatica_e4_inter_beat_interval";
+
+    private RadarPropertyHandler propertyHandler;
+    private StreamMaster master;
+
+    @Before
+    public void setUp() throws IOException {
+        propertyHandler = new RadarPropertyHandlerImpl();
+        propertyHandler.load("src/test/resources/config/radar.yml");
+        master = mock(StreamMaster.class);
+    }
+
+    @Test
+    public void mergeKey() {
+        String heartRateKey = MergedStreamWorker.mergeKey(
+                configure(new E4HeartRateStream()));
+        assertNotNull(heartRateKey);
+        assertEquals(heartRateKey, MergedStreamWorker.mergeKey(
+                configure(new E4InterBeatIntervalStream())));
+        assertNotEquals(heartRateKey, MergedStreamWorker.mergeKey(
+                configure(new E4TemperatureStream())));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void consumeOnce() {
+        StreamWorker worker = MergedStreamWorker.merge(master, propertyHandler, Arrays.asList(
+                configure(new E4InterBeatIntervalStream()), configure(new E4HeartRateStream())));
+        assertEquals("E4HeartRateStream+E4InterBeatIntervalStream", worker.getName());
+        MergedStreamWorker<?, ?> merged = (MergedStreamWorker<?, ?>) worker;
+
+        List<StreamDefinition> definitions = merged.getStreamDefinitions()
+                .collect(Collectors.toList());
+        assertEquals(2 * TimeWindowMetadata.values().length, definitions.size());
+
+        StreamsBuilder builder = new StreamsBuilder();
+        ((MergedStreamWorker) merged).implementShared(builder, builder.stream(INPUT_TOPIC),
+                definitions);
+        Set<TopologyDescription.Subtopology> subtopologies = builder.build().describe()
+                .subtopologies();
+
+        List<TopologyDescription.Node> nodes = subtopologies.stream()
+                .flatMap(s -> s.nodes().stream())
+                .collect(Collectors.toList());
+        assertEquals(1, nodes.stream()
+                .filter(n -> n instanceof TopologyDescription.Source)
+                .count());
+        assertEquals(definitions.stream()
+                        .map(d -> d.getOutputTopic().getName())
+                        .collect(Collectors.toSet()),
+                nodes.stream()
+                        .filter(n -> n instanceof TopologyDescription.Sink)
+                        .map(n -> ((TopologyDescription.Sink) n).topic())
+                        .collect(Collectors.toSet()));
+    }
+
+    private StreamWorker configure(StreamWorker worker) {
+        worker.configure(master, propertyHandler, new SingleStreamConfig());
+        return worker;
+    }
+}
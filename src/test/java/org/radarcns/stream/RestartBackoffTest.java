@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RestartBackoffTest {
+    private RestartBackoff backoff;
+
+    @Before
+    public void setUp() {
+        Random random = new Random() {
+            @Override
+            public double nextDouble() {
+                return 1.0;
+            }
+        };
+        backoff = new RestartBackoff(Duration.ofSeconds(10), Duration.ofSeconds(60), 3,
+                Duration.ofHours(1), random);
+        backoff.started(0L);
+    }
+
+    @Test
+    public void exponentialBackoff() {
+        assertEquals(10_000L, backoff.failed(1_000L));
+        // a restart is already scheduled
+        assertEquals(-1L, backoff.failed(1_000L));
+        backoff.started(20_000L);
+        assertEquals(20_000L, backoff.failed(30_000L));
+        backoff.started(60_000L);
+        assertEquals(40_000L, backoff.failed(70_000L));
+        assertFalse(backoff.isCircuitOpen());
+
+        backoff.started(120_000L);
+        assertEquals(3_600_000L, backoff.failed(130_000L));
+        assertTrue(backoff.isCircuitOpen());
+        assertEquals(4, backoff.getFailures());
+    }
+
+    @Test
+    public void resetAfterHealthyRun() {
+        backoff.failed(1_000L);
+        backoff.started(20_000L);
+        backoff.failed(30_000L);
+        backoff.started(60_000L);
+
+        assertEquals(10_000L, backoff.failed(60_000L + 3_600_000L));
+        assertEquals(1, backoff.getFailures());
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.radarcns.stream;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doCallRealMethod;
@@ -25,12 +27,19 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.kafka.streams.kstream.KStream;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.radarcns.config.KafkaProperty;
 import org.radarcns.config.RadarPropertyHandler;
+import org.radarcns.config.RadarPropertyHandlerImpl;
 import org.radarcns.config.SingleStreamConfig;
 import org.radarcns.topic.KafkaTopic;
 import org.radarcns.util.RadarSingletonFactory;
@@ -64,4 +73,52 @@ public class SensorStreamWorkerTest {
 
         verify(aggregator, times(1)).implementStream(eq(sensorTopic), any());
     }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getSharedBuilder() throws IOException {
+        KafkaTopic input = new KafkaTopic("TESTTopic");
+        StreamDefinition tenSec = new StreamDefinition(input, new KafkaTopic("TESTTopic_10sec"),
+                Duration.ofSeconds(10), Duration.ofSeconds(5));
+        StreamDefinition oneMin = new StreamDefinition(input, new KafkaTopic("TESTTopic_1min"),
+                Duration.ofMinutes(1), Duration.ofSeconds(30));
+        List<StreamDefinition> definitions = Arrays.asList(tenSec, oneMin);
+
+        RadarPropertyHandler propertyHandler = new RadarPropertyHandlerImpl();
+        propertyHandler.load("src/test/resources/config/radar.yml");
+        KafkaProperty kafkaProperty = propertyHandler.getKafkaProperties();
+        when(aggregator.getSharedStreamProperties(eq(input), eq(definitions))).thenReturn(
+                kafkaProperty.getStreamProperties(
+                        "test", new SingleStreamConfig(), DeviceTimestampExtractor.class));
+        when(aggregator.implementStream(any(), any())).thenReturn(mock(KStream.class));
+        aggregator.config = new SingleStreamConfig();
+        doCallRealMethod().when(aggregator).createSharedBuilder(definitions);
+        doCallRealMethod().when(aggregator).implementShared(any(), any(), eq(definitions));
+        aggregator.createSharedBuilder(definitions);
+
+        ArgumentCaptor<KStream> streams = ArgumentCaptor.forClass(KStream.class);
+        verify(aggregator, times(1)).implementStream(eq(tenSec), streams.capture());
+        verify(aggregator, times(1)).implementStream(eq(oneMin), streams.capture());
+        assertSame(streams.getAllValues().get(0), streams.getAllValues().get(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void lateRecordTopics() {
+        KafkaTopic input = new KafkaTopic("TESTTopic");
+        StreamDefinition tenSec = new StreamDefinition(input, new KafkaTopic("TESTTopic_10sec"),
+                Duration.ofSeconds(10), Duration.ofSeconds(5));
+        StreamDefinition noGrace = new StreamDefinition(input, new KafkaTopic("TESTTopic_all"));
+        when(aggregator.getStreamDefinitions()).thenAnswer(i -> Stream.of(tenSec, noGrace));
+        doCallRealMethod().when(aggregator).getLateRecordTopics();
+
+        aggregator.config = new SingleStreamConfig();
+        assertEquals(0L, aggregator.getLateRecordTopics().count());
+
+        aggregator.config.setLateRecordTopic(true);
+        assertEquals(Collections.singletonList("TESTTopic_10sec_late"),
+                ((Stream<KafkaTopic>) aggregator.getLateRecordTopics())
+                        .map(KafkaTopic::getName)
+                        .collect(Collectors.toList()));
+    }
 }
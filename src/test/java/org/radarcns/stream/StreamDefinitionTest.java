@@ -21,7 +21,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.radarcns.stream.AbstractStreamWorker.OUTPUT_LABEL;
 
+import java.time.Duration;
 import java.util.regex.Pattern;
+import org.apache.kafka.streams.kstream.TimeWindows;
 import org.junit.Test;
 import org.radarcns.topic.KafkaTopic;
 
@@ -52,4 +54,18 @@ public class StreamDefinitionTest {
         StreamDefinition definition = new StreamDefinition(inputTopic, outputTopic);
         assertFalse(TOPIC_PATTERN.matcher(definition.getStateStoreName()).matches());
     }
+
+    @Test
+    public void retainedWindows() {
+        KafkaTopic inputTopic = new KafkaTopic(INPUT);
+        KafkaTopic outputTopic = new KafkaTopic(OUTPUT);
+
+        assertEquals(0L, new StreamDefinition(inputTopic, outputTopic).getRetainedWindows());
+
+        StreamDefinition definition = new StreamDefinition(inputTopic, outputTopic,
+                TimeWindows.of(10_000L).until(3_605_000L), Duration.ofSeconds(5),
+                EmitPolicy.UPDATES, StoreType.PERSISTENT, Duration.ofHours(1));
+        assertEquals(361L, definition.getRetainedWindows());
+        assertEquals(Duration.ofHours(1), definition.getGracePeriod());
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.Punctuator;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.internals.InMemoryKeyValueStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class WindowEmitterTest {
+    private ProcessorContext context;
+    private WindowStore<String, String> store;
+    private KeyValueStore<String, Long> progress;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = mock(ProcessorContext.class);
+        store = mock(WindowStore.class);
+        progress = new InMemoryKeyValueStore<>("pending-progress", Serdes.String(),
+                Serdes.Long());
+        when(context.getStateStore("pending")).thenReturn(store);
+        when(context.getStateStore("pending-progress")).thenReturn(progress);
+    }
+
+    @Test
+    public void emitFinal() {
+        WindowEmitter<String, String> emitter = new WindowEmitter<>("pending",
+                EmitPolicy.finalResult(Duration.ofMillis(5L)), 10L, 1L);
+        emitter.init(context);
+        verify(context).schedule(eq(1L), eq(PunctuationType.STREAM_TIME), any());
+
+        Windowed<String> window = window("a", 0L);
+        assertNull(emitter.transform(window, "1"));
+        verify(store).put("a", "1", 0L);
+
+        // window has ended, but grace period has not passed
+        emitter.emitFinal(14L);
+        verify(context, never()).forward(any(), any());
+
+        when(store.fetchAll(0L, 5L)).thenReturn(iterator(KeyValue.pair(window, "1")));
+        emitter.emitFinal(20L);
+        verify(context).forward(window, "1");
+        verify(store).put("a", null, 0L);
+
+        // updates of emitted windows are dropped
+        assertNull(emitter.transform(window, "2"));
+        assertEquals(1L, emitter.getDropped());
+        verify(store, never()).put("a", "2", 0L);
+        // open windows are kept pending
+        assertNull(emitter.transform(window("a", 10L), "3"));
+        verify(store).put("a", "3", 10L);
+    }
+
+    @Test
+    public void emitRateLimited() {
+        WindowEmitter<String, String> emitter = new WindowEmitter<>("pending",
+                EmitPolicy.rateLimited(Duration.ofSeconds(10L)), 10L, 10_000L);
+        emitter.init(context);
+        ArgumentCaptor<Punctuator> punctuator = ArgumentCaptor.forClass(Punctuator.class);
+        verify(context).schedule(eq(10_000L), eq(PunctuationType.WALL_CLOCK_TIME),
+                punctuator.capture());
+
+        Windowed<String> window = window("a", 0L);
+        assertNull(emitter.transform(window, "1"));
+        assertNull(emitter.transform(window, "2"));
+        verify(context, never()).forward(any(), any());
+
+        when(store.fetchAll(0L, 0L)).thenReturn(iterator(KeyValue.pair(window, "2")));
+        punctuator.getValue().punctuate(1000L);
+        verify(context).forward(window, "2");
+        verify(store).put("a", null, 0L);
+
+        // nothing was updated since the last emit
+        punctuator.getValue().punctuate(2000L);
+        verify(store).fetchAll(anyLong(), anyLong());
+    }
+
+    @Test
+    public void emitRateLimitedRange() {
+        WindowEmitter<String, String> emitter = new WindowEmitter<>("pending",
+                EmitPolicy.rateLimited(Duration.ofSeconds(10L)), 10L, 10_000L);
+        emitter.init(context);
+
+        emitter.transform(window("a", 50L), "1");
+        emitter.transform(window("b", 30L), "2");
+        emitter.transform(window("a", 40L), "3");
+        when(store.fetchAll(30L, 50L)).thenReturn(iterator(KeyValue.pair(window("b", 30L), "2"),
+                KeyValue.pair(window("a", 40L), "3"), KeyValue.pair(window("a", 50L), "1")));
+
+        // pending range survives a restart
+        emitter = new WindowEmitter<>("pending",
+                EmitPolicy.rateLimited(Duration.ofSeconds(10L)), 10L, 10_000L);
+        emitter.init(context);
+        emitter.emitRateLimited();
+        verify(context).forward(window("b", 30L), "2");
+        verify(context).forward(window("a", 40L), "3");
+        verify(context).forward(window("a", 50L), "1");
+        assertNull(progress.get("pendingFrom"));
+    }
+
+    @Test
+    public void emitFinalRestart() {
+        WindowEmitter<String, String> emitter = new WindowEmitter<>("pending",
+                EmitPolicy.finalResult(Duration.ofMillis(5L)), 10L, 1L);
+        emitter.init(context);
+        Windowed<String> window = window("a", 0L);
+        emitter.transform(window, "1");
+        when(store.fetchAll(0L, 5L)).thenReturn(iterator(KeyValue.pair(window, "1")));
+        emitter.emitFinal(20L);
+        verify(context).forward(window, "1");
+
+        emitter = new WindowEmitter<>("pending",
+                EmitPolicy.finalResult(Duration.ofMillis(5L)), 10L, 1L);
+        emitter.init(context);
+        // closed windows are still known
+        assertNull(emitter.transform(window, "2"));
+        assertEquals(1L, emitter.getDropped());
+        // windows that were emitted are not scanned again
+        when(store.fetchAll(6L, 10L)).thenReturn(iterator());
+        emitter.emitFinal(20L);
+        emitter.emitFinal(25L);
+        verify(store).fetchAll(6L, 10L);
+        verify(store).fetchAll(anyLong(), eq(5L));
+    }
+
+    @Test
+    public void updateAfterEmitFinal() {
+        WindowEmitter<String, String> emitter = new WindowEmitter<>("pending",
+                EmitPolicy.finalResult(Duration.ofMillis(5L)), 10L, 1L);
+        emitter.init(context);
+        Windowed<String> window = window("a", 0L);
+        emitter.transform(window, "1");
+        when(store.fetchAll(0L, 5L)).thenReturn(iterator(KeyValue.pair(window, "1")));
+        emitter.emitFinal(20L);
+
+        // a cached upstream update is delivered after the window was emitted
+        assertNull(emitter.transform(window, "2"));
+        when(store.fetchAll(6L, 15L)).thenReturn(iterator());
+        emitter.emitFinal(30L);
+        verify(context).forward(window, "1");
+        verify(context, never()).forward(window, "2");
+        assertEquals(1L, emitter.getDropped());
+    }
+
+    @Test
+    public void forwardCorrections() {
+        WindowEmitter<String, String> emitter = new WindowEmitter<>("pending",
+                EmitPolicy.finalResult(Duration.ofMillis(5L), true), 10L, 1L);
+        emitter.init(context);
+        Windowed<String> window = window("a", 0L);
+        emitter.transform(window, "1");
+        when(store.fetchAll(0L, 5L)).thenReturn(iterator(KeyValue.pair(window, "1")));
+        emitter.emitFinal(20L);
+        verify(context).forward(window, "1");
+
+        assertEquals(KeyValue.pair(window, "2"), emitter.transform(window, "2"));
+        assertEquals(0L, emitter.getDropped());
+    }
+
+    private static Windowed<String> window(String key, long start) {
+        return new Windowed<>(key, new TimeWindow(start, start + 10L));
+    }
+
+    @SafeVarargs
+    private static KeyValueIterator<Windowed<String>, String> iterator(
+            KeyValue<Windowed<String>, String>... values) {
+        List<KeyValue<Windowed<String>, String>> list = Arrays.asList(values);
+        Iterator<KeyValue<Windowed<String>, String>> iterator = list.iterator();
+        return new KeyValueIterator<Windowed<String>, String>() {
+            @Override
+            public void close() {
+                // nothing to close
+            }
+
+            @Override
+            public Windowed<String> peekNextKey() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public KeyValue<Windowed<String>, String> next() {
+                return iterator.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.internals.TimeWindow;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.stream.collector.MergeableNumericCollector;
+
+public class WindowRollupTransformerTest {
+    private static final double DELTA = 1e-9;
+    private static final long SOURCE_SIZE = 10L;
+    private static final long SIZE = 30L;
+
+    private TreeMap<Long, MergeableNumericCollector> fineWindows;
+    private WindowStore<String, MergeableNumericCollector> sourceStore;
+    private WindowStore<String, MergeableNumericCollector> store;
+    private WindowRollupTransformer<String, MergeableNumericCollector> transformer;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        fineWindows = new TreeMap<>();
+        sourceStore = mock(WindowStore.class);
+        when(sourceStore.fetch(eq("a"), anyLong())).thenAnswer(
+                invocation -> fineWindows.get(invocation.<Long>getArgument(1)));
+        when(sourceStore.fetch(eq("a"), anyLong(), anyLong())).thenAnswer(
+                invocation -> new MapIterator(fineWindows.subMap(
+                        invocation.getArgument(1), true, invocation.getArgument(2), true)));
+        store = mock(WindowStore.class);
+        transformer = newTransformer();
+    }
+
+    @Test
+    public void rollupFineWindows() {
+        assertWindow(update(0L, 1.0), 0L, 1, 1.0);
+        assertWindow(update(10L, 2.0), 0L, 2, 3.0);
+        KeyValue<Windowed<String>, MergeableNumericCollector> result = update(20L, 3.0, 4.0);
+        assertWindow(result, 0L, 4, 10.0);
+        assertEquals(1.0, result.value.getMin(), DELTA);
+        assertEquals(4.0, result.value.getMax(), DELTA);
+        verify(store).put("a", result.value, 0L);
+
+        // next coarse window
+        assertWindow(update(30L, 5.0), 30L, 1, 5.0);
+        // no fine windows are fetched again when updates arrive in order
+        verify(sourceStore, never()).fetch(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void updateLatestFineWindow() {
+        update(0L, 1.0);
+        update(10L, 2.0);
+        // the fine window is updated again and should not be counted twice
+        assertWindow(update(10L, 3.0), 0L, 3, 6.0);
+        assertWindow(update(10L, 4.0), 0L, 4, 10.0);
+        assertWindow(update(20L, 5.0), 0L, 5, 15.0);
+        verify(sourceStore, never()).fetch(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void updateEmittedFineWindow() {
+        update(0L, 1.0);
+        update(10L, 2.0);
+        update(20L, 3.0);
+        assertWindow(update(0L, 4.0), 0L, 4, 10.0);
+        assertWindow(update(20L, 5.0), 0L, 5, 15.0);
+        assertWindow(update(10L, 6.0), 0L, 6, 21.0);
+
+        update(30L, 7.0);
+        // update of a fine window in an older coarse window
+        assertWindow(update(10L, 8.0), 0L, 7, 29.0);
+        assertWindow(update(40L, 9.0), 30L, 2, 16.0);
+    }
+
+    @Test
+    public void restart() {
+        update(0L, 1.0);
+        update(10L, 2.0);
+        transformer.close();
+
+        transformer = newTransformer();
+        assertWindow(update(20L, 3.0), 0L, 3, 6.0);
+        assertWindow(update(10L, 4.0), 0L, 4, 10.0);
+    }
+
+    @Test
+    public void sameAsDirectAggregation() {
+        Random random = new Random(1L);
+        List<MergeableNumericCollector> expected = new ArrayList<>();
+        KeyValue<Windowed<String>, MergeableNumericCollector> result = null;
+
+        for (int i = 0; i < 200; i++) {
+            // mostly in order, sometimes updating an earlier fine window
+            long start = (i / 5 - random.nextInt(3)) * SOURCE_SIZE;
+            if (start < 0L) {
+                start = 0L;
+            }
+            double value = random.nextDouble();
+            int coarse = (int) (start / SIZE);
+            while (expected.size() <= coarse) {
+                expected.add(new MergeableNumericCollector("x"));
+            }
+            expected.get(coarse).add(value);
+
+            result = update(start, value);
+            MergeableNumericCollector direct = expected.get(coarse);
+            assertWindow(result, coarse * SIZE, direct.getCount(), direct.getSum());
+            assertEquals(direct.getMin(), result.value.getMin(), DELTA);
+            assertEquals(direct.getMax(), result.value.getMax(), DELTA);
+            assertEquals(direct.getQuartile(), result.value.getQuartile());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeNotMultiple() {
+        new WindowRollupTransformer<>("source", 10L, "store", 25L,
+                () -> new MergeableNumericCollector("x"));
+    }
+
+    private WindowRollupTransformer<String, MergeableNumericCollector> newTransformer() {
+        ProcessorContext context = mock(ProcessorContext.class);
+        when(context.getStateStore("source")).thenReturn(sourceStore);
+        when(context.getStateStore("store")).thenReturn(store);
+        WindowRollupTransformer<String, MergeableNumericCollector> result =
+                new WindowRollupTransformer<>("source", SOURCE_SIZE, "store", SIZE,
+                        () -> new MergeableNumericCollector("x"));
+        result.init(context);
+        return result;
+    }
+
+    /** Add values to a fine window and pass its aggregate to the transformer. */
+    private KeyValue<Windowed<String>, MergeableNumericCollector> update(
+            long start, double... values) {
+        MergeableNumericCollector collector = fineWindows.computeIfAbsent(start,
+                s -> new MergeableNumericCollector("x"));
+        for (double value : values) {
+            collector.add(value);
+        }
+        return transformer.transform(
+                new Windowed<>("a", new TimeWindow(start, start + SOURCE_SIZE)), collector);
+    }
+
+    private static void assertWindow(KeyValue<Windowed<String>, MergeableNumericCollector> result,
+            long start, int count, double sum) {
+        assertEquals("a", result.key.key());
+        assertEquals(start, result.key.window().start());
+        assertEquals(start + SIZE, result.key.window().end());
+        assertEquals(count, result.value.getCount());
+        assertEquals(sum, result.value.getSum(), DELTA);
+    }
+
+    private static class MapIterator implements WindowStoreIterator<MergeableNumericCollector> {
+        private final Iterator<Map.Entry<Long, MergeableNumericCollector>> iterator;
+
+        MapIterator(Map<Long, MergeableNumericCollector> windows) {
+            this.iterator = windows.entrySet().iterator();
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+
+        @Override
+        public Long peekNextKey() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public KeyValue<Long, MergeableNumericCollector> next() {
+            Map.Entry<Long, MergeableNumericCollector> entry = iterator.next();
+            return KeyValue.pair(entry.getKey(), entry.getValue());
+        }
+    }
+}
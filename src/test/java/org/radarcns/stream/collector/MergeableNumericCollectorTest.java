@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.stream.collector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.Test;
+import org.radarcns.util.serde.RadarSerdes;
+import org.radarcns.util.serde.StateFormat;
+
+public class MergeableNumericCollectorTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void add() {
+        MergeableNumericCollector collector = new MergeableNumericCollector("test");
+        for (double v : new double[] {5, 1, 4, 2, 3}) {
+            collector.add(v);
+        }
+        assertEquals(1d, collector.getMin(), DELTA);
+        assertEquals(5d, collector.getMax(), DELTA);
+        assertEquals(15d, collector.getSum(), DELTA);
+        assertEquals(5, collector.getCount());
+        assertEquals(3d, collector.getMean(), DELTA);
+        assertEquals(Arrays.asList(1.5, 3.0, 4.5), collector.getQuartile());
+    }
+
+    @Test
+    public void merge() {
+        MergeableNumericCollector all = new MergeableNumericCollector("test");
+        MergeableNumericCollector first = new MergeableNumericCollector("test");
+        MergeableNumericCollector second = new MergeableNumericCollector("test");
+        for (int i = 0; i < 100; i++) {
+            double value = (i * 37) % 101;
+            all.add(value);
+            if (i % 3 == 0) {
+                first.add(value);
+            } else {
+                second.add(value);
+            }
+        }
+
+        MergeableNumericCollector merged = new MergeableNumericCollector("test")
+                .merge(first)
+                .merge(second);
+
+        assertEquals(all.getMin(), merged.getMin(), DELTA);
+        assertEquals(all.getMax(), merged.getMax(), DELTA);
+        assertEquals(all.getSum(), merged.getSum(), DELTA);
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getQuartile(), merged.getQuartile());
+    }
+
+    @Test
+    public void serde() {
+        MergeableNumericCollector collector = new MergeableNumericCollector("test");
+        collector.add(2.0).add(1.0).add(3.0);
+
+        Serde<MergeableNumericCollector> serde = RadarSerdes.getInstance()
+                .getMergeableNumericCollector(StateFormat.JSON);
+        MergeableNumericCollector result = serde.deserializer().deserialize("t",
+                serde.serializer().serialize("t", collector));
+
+        assertEquals("test", result.getName());
+        assertEquals(collector.getCount(), result.getCount());
+        assertEquals(collector.getQuartile(), result.getQuartile());
+        result.add(4.0);
+        assertEquals(4, result.getCount());
+        assertEquals(4.0, result.getMax(), DELTA);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.collector;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.passive.empatica.EmpaticaE4Acceleration;
+import org.radarcns.util.serde.RadarSerdes;
+import org.radarcns.util.serde.StateFormat;
+
+public class MultiAxisCollectorTest {
+    private static final double DELTA = 1e-6;
+    private static final String[] AXES = {"x", "y", "z"};
+
+    private MultiAxisCollector collector;
+
+    @Before
+    public void setUp() {
+        collector = new MultiAxisCollector(AXES, EmpaticaE4Acceleration.getClassSchema());
+    }
+
+    @Test
+    public void add() {
+        collector.add(acceleration(0.5f, 1.0f, -1.0f))
+                .add(acceleration(0.25f, 2.0f, -2.0f))
+                .add(acceleration(0.75f, 3.0f, -3.0f));
+
+        assertEquals(3, collector.getFieldCount());
+        assertEquals("y", collector.getName(1));
+        assertEquals(0.25, collector.getMin(0), DELTA);
+        assertEquals(0.75, collector.getMax(0), DELTA);
+        assertEquals(6.0, collector.getSum(1), DELTA);
+        assertEquals(3, collector.getCount(2));
+        assertEquals(-2.0, collector.getMean(2), DELTA);
+        assertEquals(Arrays.asList(1.0, 2.0, 3.0), collector.getQuartile(1));
+    }
+
+    @Test
+    public void addFloatFields() {
+        collector.add(acceleration(0.1f, 0.2f, 0.3f));
+
+        assertEquals(0.1, collector.getMin(0), 0.0);
+        assertEquals(0.2, collector.getMax(1), 0.0);
+        assertEquals(0.3, collector.getSum(2), 0.0);
+        assertEquals(Arrays.asList(0.3, 0.3, 0.3), collector.getQuartile(2));
+    }
+
+    @Test
+    public void merge() {
+        MultiAxisCollector other = new MultiAxisCollector(AXES,
+                EmpaticaE4Acceleration.getClassSchema());
+        collector.add(acceleration(1f, 2f, 3f));
+        other.add(acceleration(4f, 5f, 6f));
+
+        MultiAxisCollector merged = new MultiAxisCollector().merge(collector).merge(other);
+        assertEquals(3, merged.getFieldCount());
+        assertEquals(2, merged.getCount(0));
+        assertEquals(1.0, merged.getMin(0), DELTA);
+        assertEquals(6.0, merged.getMax(2), DELTA);
+        assertEquals(7.0, merged.getSum(1), DELTA);
+    }
+
+    @Test
+    public void readAggregateListCollectorJson() {
+        String field = "{\"name\":\"%s\",\"pos\":%d,\"fieldType\":\"FLOAT\",\"min\":1.0,"
+                + "\"max\":2.0,\"sum\":3.0,\"history\":[1.0,2.0]}";
+        byte[] json = ("{\"collectors\":[" + String.format(field, "x", 2) + ","
+                + String.format(field, "y", 3) + "," + String.format(field, "z", 4) + "]}")
+                .getBytes(UTF_8);
+
+        Serde<MultiAxisCollector> serde = RadarSerdes.getInstance()
+                .getMultiAxisCollector(StateFormat.JSON);
+        MultiAxisCollector result = serde.deserializer().deserialize("t", json);
+        assertEquals(3, result.getFieldCount());
+        assertEquals("z", result.getName(2));
+        assertEquals(2, result.getCount(2));
+
+        result.add(acceleration(0f, 0f, 4f));
+        assertEquals(3, result.getCount(2));
+        assertEquals(4.0, result.getMax(2), DELTA);
+        assertEquals(Arrays.asList(1.0, 2.0, 4.0), result.getQuartile(2));
+
+        MultiAxisCollector copy = serde.deserializer().deserialize("t",
+                serde.serializer().serialize("t", result));
+        assertEquals(result.getQuartile(2), copy.getQuartile(2));
+        assertEquals(result.getSum(0), copy.getSum(0), DELTA);
+    }
+
+    private static EmpaticaE4Acceleration acceleration(float x, float y, float z) {
+        return new EmpaticaE4Acceleration(0d, 0d, x, y, z);
+    }
+}
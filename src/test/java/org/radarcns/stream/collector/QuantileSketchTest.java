@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.collector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+public class QuantileSketchTest {
+    private static final int NUM_VALUES = 1_000_000;
+    private static final double ACCURACY = 0.01;
+
+    @Test
+    public void exactWhenSmall() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.MIN_SIZE);
+        sketch.add(3).add(1).add(2);
+
+        MergeableNumericCollector exact = new MergeableNumericCollector("test")
+                .add(3).add(1).add(2);
+        double[] quartiles = sketch.getQuantiles(0.25, 0.5, 0.75);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(exact.getQuartile().get(i), quartiles[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void boundedSize() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.sizeForAccuracy(ACCURACY));
+        int maxRetained = 0;
+        Random random = new Random(1L);
+        for (int i = 0; i < NUM_VALUES; i++) {
+            sketch.add(random.nextDouble());
+            maxRetained = Math.max(maxRetained, sketch.getRetained());
+        }
+        assertEquals(NUM_VALUES, sketch.getCount());
+        assertTrue("Retained " + maxRetained + " values",
+                maxRetained < 3 * sketch.getSize() + 2 * Long.SIZE);
+    }
+
+    @Test
+    public void accuracy() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.sizeForAccuracy(ACCURACY));
+        Random random = new Random(2L);
+        for (int i = 0; i < NUM_VALUES; i++) {
+            // uniform values, so the value is its own normalized rank
+            sketch.add(random.nextDouble());
+        }
+        assertQuartiles(sketch);
+    }
+
+    @Test
+    public void merge() {
+        int size = QuantileSketch.sizeForAccuracy(ACCURACY);
+        QuantileSketch merged = new QuantileSketch(size);
+        Random random = new Random(3L);
+        for (int s = 0; s < 10; s++) {
+            QuantileSketch part = new QuantileSketch(size);
+            for (int i = 0; i < NUM_VALUES / 10; i++) {
+                part.add(random.nextDouble());
+            }
+            merged.merge(part);
+        }
+        assertEquals(NUM_VALUES, merged.getCount());
+        assertQuartiles(merged);
+    }
+
+    @Test
+    public void binary() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.MIN_SIZE);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(sketch.binarySize());
+        sketch.writeTo(buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+
+        QuantileSketch result = QuantileSketch.readFrom(buffer);
+        assertEquals(sketch.getCount(), result.getCount());
+        assertEquals(sketch.getRetained(), result.getRetained());
+        assertArrayEquals(sketch.getQuantiles(0.25, 0.5, 0.75),
+                result.getQuantiles(0.25, 0.5, 0.75), 0.0);
+    }
+
+    @Test
+    public void collectorMergesExactIntoSketch() {
+        MergeableNumericCollector exact = new MergeableNumericCollector("test");
+        MergeableNumericCollector sketched = new MergeableNumericCollector("test", 64);
+        for (int i = 1; i <= 100; i++) {
+            exact.add(i);
+            sketched.add(100 + i);
+        }
+        exact.merge(sketched);
+        assertTrue(exact.hasSketch());
+        assertEquals(200, exact.getCount());
+        assertEquals(1.0, exact.getMin(), 0.0);
+        assertEquals(200.0, exact.getMax(), 0.0);
+        assertEquals(100.5, exact.getQuartile().get(1), 200 * 0.05);
+    }
+
+    private static void assertQuartiles(QuantileSketch sketch) {
+        double[] quartiles = sketch.getQuantiles(0.25, 0.5, 0.75);
+        // allow for the probabilistic error bound
+        assertEquals(0.25, quartiles[0], 2 * ACCURACY);
+        assertEquals(0.5, quartiles[1], 2 * ACCURACY);
+        assertEquals(0.75, quartiles[2], 2 * ACCURACY);
+    }
+}
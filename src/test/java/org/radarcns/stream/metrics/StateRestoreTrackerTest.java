@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.radarcns.metrics.PrometheusWriter;
+
+public class StateRestoreTrackerTest {
+    @Test
+    public void restoreProgress() {
+        StateRestoreTracker tracker = StateRestoreTracker.getInstance();
+        TopicPartition partition = new TopicPartition("app-store-changelog", 0);
+        tracker.onRestoreStart(partition, "store", 0L, 100L);
+        tracker.onBatchRestored(partition, "store", 40L, 40L);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        tracker.writeMetrics(writer);
+        String metrics = writer.toString();
+        String labels = "{store=\"store\",topic=\"app-store-changelog\",partition=\"0\"}";
+        assertTrue(metrics.contains("radar_state_restore_records_total" + labels + " 40.0\n"));
+        assertTrue(metrics.contains("radar_state_restore_remaining_records" + labels + " 60.0\n"));
+
+        tracker.onRestoreEnd(partition, "store", 100L);
+        writer = new PrometheusWriter();
+        tracker.writeMetrics(writer);
+        metrics = writer.toString();
+        assertTrue(metrics.contains("radar_state_restore_remaining_records" + labels + " 0.0\n"));
+        assertTrue(metrics.contains("radar_state_restore_eta_seconds" + labels + " 0.0\n"));
+    }
+}
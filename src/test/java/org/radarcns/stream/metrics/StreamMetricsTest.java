@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.stream.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.radarcns.stream.metrics.StreamMetrics.APPLICATION_CONFIG;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.Test;
+
+public class StreamMetricsTest {
+    @Test
+    public void streamProperties() {
+        Properties props = new Properties();
+        StreamMetrics.addStreamProperties(props, "streamProperties");
+        assertEquals(MetricsConsumerInterceptor.class.getName(),
+                props.get("consumer.interceptor.classes"));
+        assertEquals("streamProperties",
+                props.get(StreamsConfig.consumerPrefix(APPLICATION_CONFIG)));
+        assertEquals("streamProperties", StreamMetrics.forClient(props).getApplication());
+        assertNull(StreamMetrics.forClient(new Properties()));
+    }
+
+    @Test
+    public void countInput() {
+        StreamMetrics metrics = StreamMetrics.get("countInput");
+        TopicMetrics input = metrics.input("a");
+
+        MetricsConsumerInterceptor interceptor = new MetricsConsumerInterceptor();
+        interceptor.configure(Collections.singletonMap(APPLICATION_CONFIG, "countInput"));
+
+        Map<TopicPartition, List<ConsumerRecord<Object, Object>>> records = new HashMap<>();
+        records.put(new TopicPartition("a", 0), Arrays.asList(record("a", 10), record("a", 20)));
+        records.put(new TopicPartition("b", 0), Collections.singletonList(record("b", 5)));
+        interceptor.onConsume(new ConsumerRecords<>(records));
+
+        assertEquals(2L, input.getRecords());
+        assertEquals(2L * 4L + 30L, input.getBytes());
+        assertNull(metrics.findInput("b"));
+    }
+
+    @Test
+    public void countOutput() {
+        StreamMetrics metrics = StreamMetrics.get("countOutput");
+        TopicMetrics output = metrics.output("a");
+
+        MetricsProducerInterceptor interceptor = new MetricsProducerInterceptor();
+        interceptor.configure(Collections.singletonMap(APPLICATION_CONFIG, "countOutput"));
+
+        TopicPartition partition = new TopicPartition("a", 0);
+        interceptor.onAcknowledgement(
+                new RecordMetadata(partition, 0L, 0L, 0L, null, 4, 10), null);
+        interceptor.onAcknowledgement(
+                new RecordMetadata(partition, -1L, -1L, -1L, null, -1, -1),
+                new IllegalStateException("failed"));
+        interceptor.onAcknowledgement(new RecordMetadata(new TopicPartition("b", 0),
+                0L, 0L, 0L, null, 4, 10), null);
+
+        assertEquals(1L, output.getRecords());
+        assertEquals(14L, output.getBytes());
+        assertEquals(1L, output.getErrors());
+        assertNotNull(metrics.findOutput("a"));
+        assertNull(metrics.findOutput("b"));
+    }
+
+    private static ConsumerRecord<Object, Object> record(String topic, int valueSize) {
+        return new ConsumerRecord<>(topic, 0, 0L, 0L, TimestampType.CREATE_TIME, null,
+                4, valueSize, null, null);
+    }
+}
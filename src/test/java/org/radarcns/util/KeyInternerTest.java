@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.radarcns.kafka.AggregateKey;
+import org.radarcns.kafka.ObservationKey;
+
+public class KeyInternerTest {
+    @Test
+    public void intern() {
+        KeyInterner interner = new KeyInterner(10);
+        ObservationKey key = new ObservationKey("p", "u", "s");
+        assertSame(key, interner.intern(key));
+        assertSame(key, interner.intern(new ObservationKey("p", "u", "s")));
+        ObservationKey other = new ObservationKey(null, "u", "s");
+        assertSame(other, interner.intern(other));
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    public void bounded() {
+        KeyInterner interner = new KeyInterner(2);
+        ObservationKey key = new ObservationKey("p", "u", "s");
+        interner.intern(key);
+        interner.intern(new ObservationKey("p", "u", "s2"));
+        interner.intern(new ObservationKey("p", "u", "s3"));
+        assertEquals(1, interner.size());
+        assertNotSame(key, interner.intern(new ObservationKey("p", "u", "s")));
+    }
+
+    @Test
+    public void aggregateKey() {
+        KeyInterner interner = new KeyInterner(10);
+        ObservationKey key = new ObservationKey("p", "u", "s");
+        AggregateKey window = interner.aggregateKey(key, 10.0, 20.0);
+        assertEquals(new AggregateKey("p", "u", "s", 10.0, 20.0), window);
+        assertSame(window, interner.aggregateKey(new ObservationKey("p", "u", "s"), 10.0, 20.0));
+
+        AggregateKey next = interner.aggregateKey(key, 20.0, 30.0);
+        assertNotSame(window, next);
+        assertSame(window, interner.aggregateKey(key, 10.0, 20.0));
+
+        // old windows are replaced
+        for (int i = 0; i < KeyInterner.WINDOWS_PER_KEY; i++) {
+            interner.aggregateKey(key, 100.0 + i, 200.0);
+        }
+        assertNotSame(window, interner.aggregateKey(key, 10.0, 20.0));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.radarcns.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NumericFieldAccessorTest {
+    private Schema schema;
+    private GenericRecord record;
+
+    @Before
+    public void setUp() {
+        schema = SchemaBuilder.record("Test").fields()
+                .requiredString("name")
+                .requiredInt("i")
+                .requiredLong("l")
+                .requiredFloat("f")
+                .requiredDouble("d")
+                .optionalDouble("o")
+                .endRecord();
+        record = new GenericData.Record(schema);
+        record.put("name", "test");
+        record.put("i", 1);
+        record.put("l", 2L);
+        record.put("f", 0.1f);
+        record.put("d", 3.5);
+    }
+
+    @Test
+    public void get() {
+        assertEquals(1, NumericFieldAccessor.of(schema, "i").getPosition());
+        assertEquals(1.0, NumericFieldAccessor.of(schema, "i").get(record), 0.0);
+        assertEquals(2.0, NumericFieldAccessor.of(schema, "l").get(record), 0.0);
+        // floats are converted by their decimal representation
+        assertEquals(0.1, NumericFieldAccessor.of(schema, "f").get(record), 0.0);
+        assertEquals(3.5, NumericFieldAccessor.of(schema, "d").get(record), 0.0);
+        assertTrue(Double.isNaN(NumericFieldAccessor.of(schema, "o").get(record)));
+        record.put("o", 4.0);
+        assertEquals(4.0, NumericFieldAccessor.of(schema, "o").get(record), 0.0);
+    }
+
+    @Test
+    public void cachedBySchema() {
+        NumericFieldAccessor accessor = NumericFieldAccessor.of(schema, "d");
+        assertSame(accessor, NumericFieldAccessor.of(schema, "d"));
+        assertSame(schema, accessor.getSchema());
+        assertNull(NumericFieldAccessor.find(schema, "missing"));
+        assertNull(NumericFieldAccessor.find(schema, "missing"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingField() {
+        NumericFieldAccessor.of(schema, "missing");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notNumeric() {
+        NumericFieldAccessor.of(schema, "name");
+    }
+}
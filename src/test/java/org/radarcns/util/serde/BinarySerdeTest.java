@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.util.serde;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.Before;
+import org.junit.Test;
+import org.radarcns.stream.collector.MergeableNumericCollector;
+import org.radarcns.stream.collector.MultiAxisCollector;
+
+public class BinarySerdeTest {
+    private static final double DELTA = 1e-9;
+
+    private Serde<MergeableNumericCollector> binarySerde;
+    private Serde<MergeableNumericCollector> jsonSerde;
+    private MergeableNumericCollector collector;
+
+    @Before
+    public void setUp() {
+        binarySerde = RadarSerdes.getInstance().getMergeableNumericCollector(StateFormat.BINARY);
+        jsonSerde = RadarSerdes.getInstance().getMergeableNumericCollector(StateFormat.JSON);
+        collector = new MergeableNumericCollector("test").add(2.0).add(1.0).add(3.0);
+    }
+
+    @Test
+    public void binaryRoundTrip() {
+        byte[] binary = binarySerde.serializer().serialize("t", collector);
+        assertEquals(BinarySerde.VERSION, binary[0]);
+
+        assertCollectorEquals(collector, binarySerde.deserializer().deserialize("t", binary));
+    }
+
+    @Test
+    public void binaryIsSmallerThanJson() {
+        for (int i = 0; i < 100; i++) {
+            collector.add(Math.PI * i);
+        }
+        byte[] binary = binarySerde.serializer().serialize("t", collector);
+        byte[] json = jsonSerde.serializer().serialize("t", collector);
+        assertTrue(binary.length < json.length);
+    }
+
+    @Test
+    public void migrateFromJson() {
+        byte[] json = jsonSerde.serializer().serialize("t", collector);
+        MergeableNumericCollector fromJson = binarySerde.deserializer().deserialize("t", json);
+        assertCollectorEquals(collector, fromJson);
+
+        byte[] binary = binarySerde.serializer().serialize("t", fromJson);
+        assertCollectorEquals(collector, jsonSerde.deserializer().deserialize("t", binary));
+    }
+
+    @Test
+    public void readLegacyCollector() {
+        byte[] legacy = ("{\"name\":\"test\",\"pos\":-1,\"fieldType\":\"DOUBLE\",\"min\":1.0,"
+                + "\"max\":3.0,\"sum\":6.0,\"history\":[1.0,2.0,3.0]}").getBytes(UTF_8);
+        assertCollectorEquals(collector, binarySerde.deserializer().deserialize("t", legacy));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void unknownVersion() {
+        byte[] binary = binarySerde.serializer().serialize("t", collector);
+        binary[0] = BinarySerde.VERSION + 1;
+        binarySerde.deserializer().deserialize("t", binary);
+    }
+
+    @Test(expected = SerializationException.class)
+    public void truncated() {
+        byte[] binary = binarySerde.serializer().serialize("t", collector);
+        binarySerde.deserializer().deserialize("t", Arrays.copyOf(binary, binary.length - 1));
+    }
+
+    @Test
+    public void sketchRoundTrip() {
+        MergeableNumericCollector sketched = new MergeableNumericCollector("test", 16);
+        for (int i = 0; i < 1000; i++) {
+            sketched.add(i);
+        }
+        MergeableNumericCollector result = binarySerde.deserializer().deserialize("t",
+                binarySerde.serializer().serialize("t", sketched));
+        assertTrue(result.hasSketch());
+        assertCollectorEquals(sketched, result);
+
+        result = jsonSerde.deserializer().deserialize("t",
+                jsonSerde.serializer().serialize("t", sketched));
+        assertTrue(result.hasSketch());
+        assertCollectorEquals(sketched, result);
+    }
+
+    @Test
+    public void readVersion1() {
+        byte[] name = "test".getBytes(UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 3 * Integer.BYTES + name.length
+                + 6 * Double.BYTES);
+        buffer.put((byte) 1).putInt(name.length).put(name).putInt(-1).putInt(3)
+                .putDouble(1.0).putDouble(3.0).putDouble(6.0)
+                .putDouble(1.0).putDouble(2.0).putDouble(3.0);
+        assertCollectorEquals(collector,
+                binarySerde.deserializer().deserialize("t", buffer.array()));
+    }
+
+    @Test
+    public void multiAxisRoundTrip() {
+        Schema schema = SchemaBuilder.record("Test").fields()
+                .requiredDouble("x")
+                .requiredFloat("y")
+                .endRecord();
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("x", 1.0);
+        record.put("y", 2.0f);
+        MultiAxisCollector list = new MultiAxisCollector(new String[] {"x", "y"}, schema)
+                .add(record);
+        Serde<MultiAxisCollector> serde = RadarSerdes.getInstance()
+                .getMultiAxisCollector(StateFormat.BINARY);
+        MultiAxisCollector result = serde.deserializer().deserialize("t",
+                serde.serializer().serialize("t", list));
+        assertEquals(2, result.getFieldCount());
+        assertEquals("y", result.getName(1));
+        assertEquals(2.0, result.getMax(1), DELTA);
+        result.add(record);
+        assertEquals(2, result.getCount(1));
+    }
+
+    private static void assertCollectorEquals(MergeableNumericCollector expected,
+            MergeableNumericCollector actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMin(), actual.getMin(), DELTA);
+        assertEquals(expected.getMax(), actual.getMax(), DELTA);
+        assertEquals(expected.getSum(), actual.getSum(), DELTA);
+        assertArrayEquals(expected.getQuartile().toArray(), actual.getQuartile().toArray());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 King's College London and The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.radarcns.util.serde;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.apache.avro.Schema;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.radarcns.kafka.ObservationKey;
+
+public class PersistentSchemaRegistryClientTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void persistCache() throws Exception {
+        Path cacheFile = new File(folder.getRoot(), "schema-cache.json").toPath();
+        Schema schema = ObservationKey.getClassSchema();
+
+        PersistentSchemaRegistryClient client = createClient(cacheFile);
+        client.cache("test-key", schema, 3);
+        assertTrue(cacheFile.toFile().exists());
+
+        // the registry cannot be reached, so schemas must come from the persisted cache
+        PersistentSchemaRegistryClient restarted = createClient(cacheFile);
+        assertEquals(1, restarted.size());
+        assertEquals(schema, restarted.getById(3));
+        assertEquals(schema, restarted.getBySubjectAndId("test-key", 3));
+        assertEquals(3, restarted.register("test-key", schema));
+        assertEquals(3, restarted.getId("test-key", schema));
+    }
+
+    private static PersistentSchemaRegistryClient createClient(Path cacheFile) {
+        return new PersistentSchemaRegistryClient(
+                Collections.singletonList("http://localhost:1"), 100,
+                Collections.emptyMap(), cacheFile);
+    }
+}